@@ -11,7 +11,6 @@ import android.view.ViewGroup;
 import android.view.ViewTreeObserver;
 import android.view.WindowManager;
 
-import com.example.samplegamefix.sprites.TextureSprite;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -81,7 +80,7 @@ public class GameActivity extends AppCompatActivity implements ViewTreeObserver.
     @Override
     protected void onDestroy ()
     {
-        TextureSprite.clearTextureCache();
+        // the engine deletes the textures on the gl thread
         _gameGLSurfaceView.exitGame();
         super.onDestroy();
     }
@@ -6,6 +6,8 @@ import android.opengl.Matrix;
 import android.util.Log;
 
 import com.example.samplegamefix.engine.GameEngine;
+import com.example.samplegamefix.gl.GlBackend;
+import com.example.samplegamefix.gl.GlStateCache;
 import com.example.samplegamefix.sprites.TextureSprite;
 
 import javax.microedition.khronos.egl.EGLConfig;
@@ -30,11 +32,15 @@ public class GameGLRenderer implements GLSurfaceView.Renderer
     {
         Logging.d("SurfaceCreate","onSurface created");
 
-        GLES20.glClearColor(0.09019f, 0.10588f, 0.13333f, 0.0f);
+        // everything the cache remembers went away with the old context
+        GlStateCache cache = GlStateCache.shared();
+        cache.reset();
 
-        GLES20.glEnable(GLES20.GL_BLEND);
-        GLES20.glBlendEquation(GLES20.GL_FUNC_ADD);
-        GLES20.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        cache.glClearColor(0.09019f, 0.10588f, 0.13333f, 0.0f);
+
+        cache.glEnable(GLES20.GL_BLEND);
+        cache.glBlendEquation(GLES20.GL_FUNC_ADD);
+        cache.glBlendFunc(GLES20.GL_SRC_ALPHA, GLES20.GL_ONE_MINUS_SRC_ALPHA);
         /* DEPTH_TEST cause image IMG alpha texture overlap, reference here
             https://stackoverflow.com/questions/11748176/opengles-2-0-png-alpha-texture-overlap
         */
@@ -59,7 +65,7 @@ public class GameGLRenderer implements GLSurfaceView.Renderer
         Logging.d("OnSurfaceChanged","surface changed");
 
         // Adjust the viewport
-        GLES20.glViewport(0, 0, width, height);
+        GlStateCache.shared().glViewport(0, 0, width, height);
 
         float ratio = (float) height / width;
 
@@ -80,14 +86,19 @@ public class GameGLRenderer implements GLSurfaceView.Renderer
     @Override
     public void onDrawFrame (GL10 unused)
     {
+        GlStateCache gl = GlStateCache.shared();
         // Draw background color
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
+        gl.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
 
+        gl.beginFrame();
         _engine.drawFrame(_MVPMatrix);
+        _engine.getProfiler().recordGlState(gl.getFrameChanges(), gl.getFrameSkipped());
 
         if (System.nanoTime() - fpsTime >= 1000000000)
         {
             Logging.d("FPS",String.format("fps: %d", frames));
+            Logging.d("Pools", _engine.describePools());
+            Logging.d("Profile", _engine.getProfiler().describe());
             frames = 0;
             fpsTime = System.nanoTime();
         }
@@ -118,11 +129,12 @@ public class GameGLRenderer implements GLSurfaceView.Renderer
     {
         // create a vertex shader type (GLES20.GL_VERTEX_SHADER)
         // or a fragment shader type (GLES20.GL_FRAGMENT_SHADER)
-        int shader = GLES20.glCreateShader(type);
+        GlBackend gl = GlStateCache.shared();
+        int shader = gl.glCreateShader(type);
 
         // add the source code to the shader and compile it
-        GLES20.glShaderSource(shader, shaderCode);
-        GLES20.glCompileShader(shader);
+        gl.glShaderSource(shader, shaderCode);
+        gl.glCompileShader(shader);
 
         return shader;
     }
@@ -142,7 +154,7 @@ public class GameGLRenderer implements GLSurfaceView.Renderer
     public static void checkGlError (String glOperation)
     {
         int error;
-        while ((error = GLES20.glGetError()) != GLES20.GL_NO_ERROR)
+        while ((error = GlStateCache.shared().glGetError()) != GLES20.GL_NO_ERROR)
         {
             Logging.d("glError",String.format(glOperation + ": glError %d",error));
         }
@@ -53,6 +53,32 @@ public class GameGLSurfaceView extends GLSurfaceView
         _renderer.setGameEngine(_engine);
     }
 
+    @Override
+    public void onPause ()
+    {
+        _engine.pause();
+        super.onPause();
+    }
+
+    @Override
+    public void onResume ()
+    {
+        super.onResume();
+        _engine.resume();
+
+        // run this on the glthread
+        queueEvent(new Runnable()
+        {
+            @Override
+            public void run ()
+            {
+                _engine.resetTiming();
+                // the pause isn't a long frame
+                _engine.getProfiler().resetFrameClock();
+            }
+        });
+    }
+
     public void exitGame ()
     {
         // run this on the glthread
@@ -0,0 +1,159 @@
+package com.example.samplegamefix.engine;
+
+import com.example.samplegamefix.sprites.EntityStore;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid broadphase over the entities of one store. Entities are bucketed by the cell their
+ * center is in, a query only looks at the cells its circle can reach instead of every entity.
+ *
+ * The grid is a spatial hash so it doesn't need bounds, different cells may share a bucket which
+ * only costs a few extra narrowphase tests. Rebuilding is a counting sort over the store, O(n) and
+ * allocation free once the arrays fit the store, and keeps every bucket in index order.
+ */
+public class CollisionGrid
+{
+    private final float _inverseCellSize;
+    private final int _bucketMask;
+
+    // bucket b holds _entries[_bucketStart[b]] up to _entries[_bucketStart[b + 1] - 1]
+    private final int[] _bucketStart;
+    private final int[] _bucketFill;
+    private int[] _entries = new int[0];
+    private int[] _bucketOf = new int[0];
+    private boolean[] _excluded = new boolean[0];
+
+    private int _count;
+    private float _maxRadius;
+
+    /**
+     * @param cellSize should be about the diameter of the biggest entity
+     * @param bucketCount rounded up to a power of two
+     */
+    public CollisionGrid (float cellSize, int bucketCount)
+    {
+        if (cellSize <= 0)
+        {
+            throw new IllegalArgumentException("cell size must be positive: " + cellSize);
+        }
+        int buckets = Integer.highestOneBit(Math.max(bucketCount, 1) * 2 - 1);
+        _inverseCellSize = 1 / cellSize;
+        _bucketMask = buckets - 1;
+        _bucketStart = new int[buckets + 1];
+        _bucketFill = new int[buckets];
+    }
+
+    /** bucket every entity of the store at its current position, clears exclusions */
+    public void rebuild (EntityStore store)
+    {
+        int count = store.size();
+        if (_entries.length < count)
+        {
+            int capacity = Math.max(count, _entries.length * 2);
+            _entries = new int[capacity];
+            _bucketOf = new int[capacity];
+            _excluded = new boolean[capacity];
+        }
+        _count = count;
+
+        float[] posX = store._posX;
+        float[] posY = store._posY;
+        float[] scaleX = store._scaleX;
+
+        Arrays.fill(_bucketStart, 0);
+        Arrays.fill(_excluded, 0, count, false);
+        float maxRadius = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int bucket = bucket(cell(posX[i]), cell(posY[i]));
+            _bucketOf[i] = bucket;
+            _bucketStart[bucket + 1]++;
+            if (scaleX[i] > maxRadius)
+            {
+                maxRadius = scaleX[i];
+            }
+        }
+        _maxRadius = maxRadius;
+
+        for (int b = 0; b <= _bucketMask; b++)
+        {
+            _bucketStart[b + 1] += _bucketStart[b];
+        }
+        System.arraycopy(_bucketStart, 0, _bucketFill, 0, _bucketFill.length);
+        for (int i = 0; i < count; i++)
+        {
+            _entries[_bucketFill[_bucketOf[i]]++] = i;
+        }
+    }
+
+    /** leave entity i out of queries until the next rebuild */
+    public void exclude (int i)
+    {
+        _excluded[i] = true;
+    }
+
+    public boolean isExcluded (int i)
+    {
+        return _excluded[i];
+    }
+
+    /**
+     * @return lowest index of an entity that isn't excluded and overlaps the circle, the same
+     * entity a loop over the whole store testing {@link EntityStore#collidesWith} would stop at,
+     * or -1 if there is none
+     */
+    public int findFirstOverlap (EntityStore store, float x, float y, float radius)
+    {
+        float[] posX = store._posX;
+        float[] posY = store._posY;
+        float[] scaleX = store._scaleX;
+
+        // a little extra so rounding at the edge of the reach can't drop a touching entity
+        float reach = (radius + _maxRadius) * 1.001f;
+        int minCellX = cell(x - reach);
+        int maxCellX = cell(x + reach);
+        int minCellY = cell(y - reach);
+        int maxCellY = cell(y + reach);
+
+        int first = Integer.MAX_VALUE;
+        for (int cellY = minCellY; cellY <= maxCellY; cellY++)
+        {
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++)
+            {
+                int bucket = bucket(cellX, cellY);
+                int end = _bucketStart[bucket + 1];
+                for (int e = _bucketStart[bucket]; e < end; e++)
+                {
+                    int i = _entries[e];
+                    if (i >= first)
+                    {
+                        // buckets are in index order, nothing further in here can be lower
+                        break;
+                    }
+                    if (!_excluded[i]
+                            && EntityStore.circlesOverlap(posX[i], posY[i], x, y, scaleX[i] + radius))
+                    {
+                        first = i;
+                    }
+                }
+            }
+        }
+        return first == Integer.MAX_VALUE ? -1 : first;
+    }
+
+    public int size ()
+    {
+        return _count;
+    }
+
+    private int cell (float coordinate)
+    {
+        return (int) Math.floor(coordinate * _inverseCellSize);
+    }
+
+    private int bucket (int cellX, int cellY)
+    {
+        return ((cellX * 73856093) ^ (cellY * 19349663)) & _bucketMask;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.samplegamefix.engine;
+
+/**
+ * Turns variable frame times into a whole number of fixed-length simulation ticks.
+ *
+ * Elapsed time is collected in an accumulator and spent one tick at a time, so game speed no
+ * longer depends on the display refresh rate. Whatever is left over is exposed as an
+ * interpolation factor for rendering between the previous and the current tick.
+ */
+public class FixedTimestep
+{
+    public static final int DEFAULT_TICK_RATE = 60;
+    public static final int DEFAULT_MAX_CATCH_UP_TICKS = 5;
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private boolean _enabled = true;
+    private int _tickRate;
+    private long _tickNanos;
+    private int _maxCatchUpTicks;
+
+    private long _lastTime;
+    private boolean _started;
+    private long _accumulator;
+    private long _droppedTicks;
+
+    public FixedTimestep (int tickRate, int maxCatchUpTicks)
+    {
+        setTickRate(tickRate);
+        setMaxCatchUpTicks(maxCatchUpTicks);
+    }
+
+    /**
+     * @return how many ticks the simulation has to run to catch up with nowNanos, never more
+     * than the catch up cap. Time beyond the cap is dropped so a long hitch can't spiral.
+     */
+    public int advance (long nowNanos)
+    {
+        if (!_enabled)
+        {
+            return 1;
+        }
+
+        if (!_started)
+        {
+            _started = true;
+            _lastTime = nowNanos;
+            _accumulator = 0;
+            return 0;
+        }
+
+        long elapsed = nowNanos - _lastTime;
+        _lastTime = nowNanos;
+        if (elapsed > 0)
+        {
+            _accumulator += elapsed;
+        }
+
+        int ticks = (int) Math.min(_accumulator / _tickNanos, _maxCatchUpTicks);
+        _accumulator -= ticks * _tickNanos;
+
+        if (_accumulator >= _tickNanos)
+        {
+            _droppedTicks += _accumulator / _tickNanos;
+            _accumulator %= _tickNanos;
+        }
+
+        return ticks;
+    }
+
+    /**
+     * @return how far between the previous and the current tick the frame being drawn is, 0 to 1
+     */
+    public float getAlpha ()
+    {
+        if (!_enabled)
+        {
+            return 1.0f;
+        }
+        return _accumulator / (float) _tickNanos;
+    }
+
+    /** @return how long until the accumulator holds a whole tick again */
+    public long getNanosUntilNextTick ()
+    {
+        if (!_enabled)
+        {
+            return 0;
+        }
+        return _tickNanos - _accumulator;
+    }
+
+    /** forget the time of the last frame, used after a pause so the paused time isn't replayed */
+    public void reset ()
+    {
+        _started = false;
+        _accumulator = 0;
+    }
+
+    public void setEnabled (boolean enabled)
+    {
+        _enabled = enabled;
+        reset();
+    }
+
+    public boolean isEnabled ()
+    {
+        return _enabled;
+    }
+
+    public void setTickRate (int tickRate)
+    {
+        if (tickRate <= 0)
+        {
+            throw new IllegalArgumentException("tick rate must be positive: " + tickRate);
+        }
+        _tickRate = tickRate;
+        _tickNanos = NANOS_PER_SECOND / tickRate;
+        _accumulator = Math.min(_accumulator, _tickNanos - 1);
+    }
+
+    public int getTickRate ()
+    {
+        return _tickRate;
+    }
+
+    public long getTickNanos ()
+    {
+        return _tickNanos;
+    }
+
+    public void setMaxCatchUpTicks (int maxCatchUpTicks)
+    {
+        if (maxCatchUpTicks <= 0)
+        {
+            throw new IllegalArgumentException("catch up cap must be positive: " + maxCatchUpTicks);
+        }
+        _maxCatchUpTicks = maxCatchUpTicks;
+    }
+
+    public int getMaxCatchUpTicks ()
+    {
+        return _maxCatchUpTicks;
+    }
+
+    /** @return ticks that were skipped because a frame needed more than the catch up cap */
+    public long getDroppedTicks ()
+    {
+        return _droppedTicks;
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.samplegamefix.engine;
+
+import java.util.Arrays;
+
+/**
+ * Times the phases of a tick and of a drawn frame into fixed size rings of the latest samples,
+ * recording costs two nanoTime calls and an array store so it can stay on in release builds.
+ *
+ * Every phase has a single writer, simulation phases are recorded by the simulation thread and
+ * draw phases by the gl thread. Samples are ints so a report read from another thread may be a
+ * sample behind but never sees half a value.
+ */
+public class FrameProfiler
+{
+    public enum Phase
+    {
+        // simulation thread
+        TICK("tick"),
+        COLLISION("collision"),
+        ASTEROID_UPDATE("asteroid update"),
+        CHICKEN_UPDATE("chicken update"),
+        SPAWN("spawn"),
+        // gl thread
+        FRAME_INTERVAL("frame interval"),
+        TEXTURE_UPLOAD("texture upload"),
+        DRAW("draw"),
+        ASTEROID_DRAW("asteroid draw"),
+        CHICKEN_DRAW("chicken draw"),
+        PLAYER_DRAW("player draw"),
+        HUD_DRAW("hud draw");
+
+        final String _label;
+
+        Phase (String label)
+        {
+            _label = label;
+        }
+    }
+
+    public static final int DEFAULT_SAMPLES = 256;
+    /** a frame counts as long once it takes longer than one and a half frames at 60Hz */
+    public static final long DEFAULT_LONG_FRAME_NANOS = 25000000L;
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final int[][] _samples;
+    private final int[] _written;
+    private final int _mask;
+    private volatile boolean _enabled = true;
+
+    private long _longFrameNanos = DEFAULT_LONG_FRAME_NANOS;
+    private long _lastFrameStart;
+    private volatile int _longFrames;
+    private volatile int _longFramesTotal;
+
+    // gl state changes of the frames since the last describe, gl thread
+    private volatile int _glFrames;
+    private volatile long _glChanges;
+    private volatile long _glSkipped;
+
+    // for the reporting thread
+    private final int[] _sorted;
+
+    public FrameProfiler ()
+    {
+        this(DEFAULT_SAMPLES);
+    }
+
+    /** @param samples latest samples kept per phase, rounded up to a power of two */
+    public FrameProfiler (int samples)
+    {
+        int size = Integer.highestOneBit(Math.max(samples, 1) * 2 - 1);
+        _mask = size - 1;
+        _samples = new int[PHASES.length][size];
+        _written = new int[PHASES.length];
+        _sorted = new int[size];
+    }
+
+    public void setEnabled (boolean enabled)
+    {
+        _enabled = enabled;
+    }
+
+    public boolean isEnabled ()
+    {
+        return _enabled;
+    }
+
+    public void setLongFrameNanos (long longFrameNanos)
+    {
+        _longFrameNanos = longFrameNanos;
+    }
+
+    //region recording
+    /** @return start time to hand to {@link #end}, 0 when profiling is off */
+    public long start ()
+    {
+        return _enabled ? System.nanoTime() : 0;
+    }
+
+    /** @return end time of the phase, can be used as the start of the next one */
+    public long end (Phase phase, long start)
+    {
+        if (start == 0)
+        {
+            return 0;
+        }
+        long now = System.nanoTime();
+        record(phase, now - start);
+        return now;
+    }
+
+    public void record (Phase phase, long nanos)
+    {
+        int p = phase.ordinal();
+        int written = _written[p];
+        _samples[p][written & _mask] = (int) Math.min(Math.max(nanos, 0), Integer.MAX_VALUE);
+        _written[p] = written + 1;
+    }
+
+    /** call at the start of every drawn frame, times the interval since the previous one */
+    public void frameStarted (long nowNanos)
+    {
+        if (!_enabled)
+        {
+            return;
+        }
+        if (_lastFrameStart != 0)
+        {
+            long interval = nowNanos - _lastFrameStart;
+            record(Phase.FRAME_INTERVAL, interval);
+            if (interval > _longFrameNanos)
+            {
+                _longFrames++;
+                _longFramesTotal++;
+            }
+        }
+        _lastFrameStart = nowNanos;
+    }
+
+    /** state changes a drawn frame made and the ones skipped as already set, gl thread only */
+    public void recordGlState (int changes, int skipped)
+    {
+        if (!_enabled)
+        {
+            return;
+        }
+        _glChanges += changes;
+        _glSkipped += skipped;
+        _glFrames++;
+    }
+
+    /** forget the previous frame so a pause doesn't show up as a long frame, gl thread only */
+    public void resetFrameClock ()
+    {
+        _lastFrameStart = 0;
+    }
+    //endregion
+
+    //region reporting, from one thread only
+    /** @return samples held for the phase, at most the ring size */
+    public int getSampleCount (Phase phase)
+    {
+        return Math.min(_written[phase.ordinal()], _mask + 1);
+    }
+
+    /**
+     * @param percentile 0 to 100, nearest rank over the held samples
+     * @return nanos, 0 if the phase has no samples yet
+     */
+    public long getPercentileNanos (Phase phase, double percentile)
+    {
+        int count = sortSamples(phase);
+        if (count == 0)
+        {
+            return 0;
+        }
+        return _sorted[rank(count, percentile)];
+    }
+
+    public long getMaxNanos (Phase phase)
+    {
+        int p = phase.ordinal();
+        int count = getSampleCount(phase);
+        int max = 0;
+        for (int i = 0; i < count; i++)
+        {
+            max = Math.max(max, _samples[p][i]);
+        }
+        return max;
+    }
+
+    /** @return long frames since the last {@link #describe} */
+    public int getLongFrames ()
+    {
+        return _longFrames;
+    }
+
+    public int getLongFramesTotal ()
+    {
+        return _longFramesTotal;
+    }
+
+    /** @return average gl state changes per frame since the last {@link #describe} */
+    public float getGlChangesPerFrame ()
+    {
+        int frames = _glFrames;
+        return frames == 0 ? 0 : (float) _glChanges / frames;
+    }
+
+    /** @return average skipped gl state changes per frame since the last {@link #describe} */
+    public float getGlSkippedPerFrame ()
+    {
+        int frames = _glFrames;
+        return frames == 0 ? 0 : (float) _glSkipped / frames;
+    }
+
+    /**
+     * one line per phase with p50/p95/p99/max in milliseconds, then the long frames and gl state
+     * changes, resets the long frame count and the gl state averages
+     */
+    public String describe ()
+    {
+        StringBuilder builder = new StringBuilder();
+        for (Phase phase : PHASES)
+        {
+            int count = sortSamples(phase);
+            if (count == 0)
+            {
+                continue;
+            }
+            builder.append(String.format("%-15s p50 %6.3f p95 %6.3f p99 %6.3f max %6.3f ms%n",
+                    phase._label,
+                    _sorted[rank(count, 50)] / 1e6, _sorted[rank(count, 95)] / 1e6,
+                    _sorted[rank(count, 99)] / 1e6, _sorted[count - 1] / 1e6));
+        }
+        int longFrames = _longFrames;
+        _longFrames = 0;
+        builder.append("long frames ").append(longFrames)
+                .append(" (").append(_longFramesTotal).append(" total)");
+        if (_glFrames > 0)
+        {
+            builder.append(String.format("%ngl state changes %.1f per frame, %.1f skipped",
+                    getGlChangesPerFrame(), getGlSkippedPerFrame()));
+            _glFrames = 0;
+            _glChanges = 0;
+            _glSkipped = 0;
+        }
+        return builder.toString();
+    }
+
+    private int sortSamples (Phase phase)
+    {
+        int count = getSampleCount(phase);
+        System.arraycopy(_samples[phase.ordinal()], 0, _sorted, 0, count);
+        Arrays.sort(_sorted, 0, count);
+        return count;
+    }
+
+    private static int rank (int count, double percentile)
+    {
+        int rank = (int) Math.ceil(percentile / 100 * count) - 1;
+        return Math.min(Math.max(rank, 0), count - 1);
+    }
+    //endregion
+}
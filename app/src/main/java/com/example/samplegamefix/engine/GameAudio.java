@@ -0,0 +1,37 @@
+package com.example.samplegamefix.engine;
+
+/**
+ * Sound effects the game plays, called from the simulation thread
+ */
+public interface GameAudio
+{
+    /** plays nothing, for running the game headless */
+    GameAudio SILENT = new GameAudio()
+    {
+        @Override
+        public void playNewGame ()
+        {
+        }
+
+        @Override
+        public void playRockBreak ()
+        {
+        }
+
+        @Override
+        public void playChickenDeath ()
+        {
+        }
+
+        @Override
+        public void release ()
+        {
+        }
+    };
+
+    void playNewGame ();
+    void playRockBreak ();
+    void playChickenDeath ();
+
+    void release ();
+}
@@ -3,22 +3,20 @@ package com.example.samplegamefix.engine;
 import android.content.Context;
 import android.graphics.Color;
 import android.graphics.Rect;
-import android.media.AudioAttributes;
-import android.media.MediaPlayer;
-import android.media.SoundPool;
-import android.os.SystemClock;
-import android.util.Log;
 import com.example.samplegamefix.R;
+import com.example.samplegamefix.gl.GlStateCache;
+import com.example.samplegamefix.gl.RenderQueue;
+import com.example.samplegamefix.helper.FastRandom;
+import com.example.samplegamefix.helper.FixedTiltHelper;
 import com.example.samplegamefix.helper.TiltHelper;
 import com.example.samplegamefix.sprites.AsteroidSprite;
 import com.example.samplegamefix.sprites.BrokenAsteroidSprite;
 import com.example.samplegamefix.sprites.ChickenSprite;
+import com.example.samplegamefix.sprites.EntityStore;
 import com.example.samplegamefix.sprites.PlayerSprite;
-import com.example.samplegamefix.sprites.SpritePool;
+import com.example.samplegamefix.sprites.SpriteBatcher;
 import com.example.samplegamefix.sprites.TextSprite;
 import com.example.samplegamefix.sprites.TextureSprite;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 public class GameEngine
@@ -29,12 +27,18 @@ public class GameEngine
 
     //region opengl drawable objects
     private PlayerSprite _player;
-    private SpritePool<AsteroidSprite> _asteroidPool;
-    private List<AsteroidSprite> _asteroids = new ArrayList<>(100);
-    private SpritePool<BrokenAsteroidSprite> _brokenAsteroidPool;
-    private List<BrokenAsteroidSprite> _brokenAsteroids = new ArrayList<>(20);
-    private SpritePool<ChickenSprite> _chickenPool;
-    private List<ChickenSprite> _chickens = new ArrayList<>(20);
+    private final EntityStore _asteroids = new EntityStore(100, R.drawable.asteroid, 0.1f);
+    private final EntityStore _brokenAsteroids = new EntityStore(100, R.drawable.asteroid, 0);
+    private final EntityStore _chickens = new EntityStore(5, R.drawable.chicken, 0.2f);
+    //endregion
+
+    //region collisions
+    // a cell fits the biggest asteroid so a chicken only ever has to look at the cells around it
+    private final CollisionGrid _asteroidGrid = new CollisionGrid(2 * AsteroidSprite.MAX_SCALE, 256);
+    // per chicken, index of the asteroid that hits it first or -1
+    private int[] _chickenKiller = new int[5];
+    // chickens that got hit, ordered by the asteroid that hit them
+    private int[] _chickenHits = new int[5];
     private AsteroidSprite _asteroidIcon;
     private TextSprite _asteroidCountText;
     private TextSprite _gameOverText;
@@ -48,71 +52,167 @@ public class GameEngine
     private int bestCombo = 0;
     private int _frames;
     private int _framesBetweenAddingAsteroid = 64;
+    // every random draw of the simulation comes from here, seed it to replay a run exactly
+    private final FastRandom _random;
+    //endregion
+
+    //region timing
+    private final FixedTimestep _timestep = new FixedTimestep(
+            FixedTimestep.DEFAULT_TICK_RATE, FixedTimestep.DEFAULT_MAX_CATCH_UP_TICKS);
+    private final FrameProfiler _profiler = new FrameProfiler();
+    //endregion
+
+    //region simulation thread
+    private final SnapshotBuffer _snapshots = new SnapshotBuffer();
+    private SimulationThread _simulationThread;
+    private boolean _simulationThreadEnabled = true;
+    private long _snapshotSequence;
+
+    private final Runnable _startGameEvent = new Runnable()
+    {
+        @Override
+        public void run ()
+        {
+            startNewGame();
+        }
+    };
+
+    private final Runnable _applyRatioEvent = new Runnable()
+    {
+        @Override
+        public void run ()
+        {
+            applyRatio();
+        }
+    };
+
+    private final Runnable _resetTimingEvent = new Runnable()
+    {
+        @Override
+        public void run ()
+        {
+            _timestep.reset();
+        }
+    };
+    //endregion
+
+    //region hud state, only touched by the gl thread
+    private int _shownAsteroidCount = -1;
+    private boolean _gameOverShown;
+    //endregion
+
+    //region render queue, only touched by the gl thread
+    // written by the tools module, ./gradlew :tools:compressSprites
+    private static final String SPRITE_ATLAS_ASSET = "textures/sprites.ktx";
+
+    // what is drawn on top of what, the layers up to the hud icon all go through the sprite batch
+    // so they run as one pass
+    private static final int LAYER_ASTEROIDS = 0;
+    private static final int LAYER_CHICKENS = 1;
+    private static final int LAYER_PLAYER = 2;
+    private static final int LAYER_HUD_ICON = 3;
+    private static final int LAYER_HUD_TEXT = 4;
+
+    // arguments of the sprite command
+    private static final int SPRITES_ASTEROIDS = 0;
+    private static final int SPRITES_CHICKENS = 1;
+    private static final int SPRITES_PLAYER = 2;
+    private static final int SPRITES_HUD_ICON = 3;
+
+    private final RenderQueue _renderQueue = new RenderQueue(16);
+    private int _spritePass = RenderQueue.NO_PASS;
+    // what the commands of the frame being drawn read
+    private RenderSnapshot _drawnSnapshot;
+    private float _drawnAlpha;
+    // width / height of the ship's atlas region, 0 until the atlas is resident
+    private float _shipImageRatio;
+
+    private final RenderQueue.Command _spriteCommand = new RenderQueue.Command()
+    {
+        @Override
+        public void render (float[] viewProjection, int argument)
+        {
+            drawSprites(argument);
+        }
+    };
+
+    private final RenderQueue.Command _hudTextCommand = new RenderQueue.Command()
+    {
+        @Override
+        public void render (float[] viewProjection, int argument)
+        {
+            drawHudText(viewProjection, argument != 0);
+        }
+    };
     //endregion
 
     //region opengl stuff
-    private float _ratio;
+    private volatile float _ratio;
     private float _width;
     private float _height;
 
     Map<Integer, Rect> _viewLocations;
-    private Log Logging;
     //endregion
 
     //region audio stuff
-    private SoundPool soundPool;
-    int deadchickensound,rockbreaksound,gameoversound;
+    private final GameAudio _audio;
     //endregion
 
     public GameEngine (Context context)
     {
-        _context = context;
-        _asteroidPool = new SpritePool<>(context, 100, AsteroidSprite.class);
-        _brokenAsteroidPool = new SpritePool<>(context, 100, BrokenAsteroidSprite.class);
-        _chickenPool = new SpritePool<>(context, 5, ChickenSprite.class);
-
-        AudioAttributes audioAttributes = new AudioAttributes
-                .Builder()
-                .setUsage(AudioAttributes.USAGE_ASSISTANCE_SONIFICATION)
-                .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
-                .build();
-        soundPool = new SoundPool
-                .Builder()
-                .setMaxStreams(7)
-                .setAudioAttributes(audioAttributes)
-                .build();
-        deadchickensound = soundPool.load(_context,R.raw.deadchickensound,1);
-        rockbreaksound = soundPool.load(_context,R.raw.rockbreaksound,1);
-        gameoversound = soundPool.load(_context,R.raw.gameoversound,1);
+        this(context, new SoundPoolAudio(context), tiltHelperFor(context), System.nanoTime());
+    }
 
-        startGame();
+    /**
+     * Engine without a device, for soak tests and benchmarks on a plain JVM. Nothing here touches
+     * gl or android, drive it with {@link #tick()} and never call the drawing methods.
+     */
+    public GameEngine (GameAudio audio, TiltHelper tiltHelper, long seed)
+    {
+        this(null, audio, tiltHelper, seed);
     }
 
+    private GameEngine (Context context, GameAudio audio, TiltHelper tiltHelper, long seed)
+    {
+        _context = context;
+        _audio = audio;
+        _tiltHelper = tiltHelper;
+        _random = new FastRandom(seed);
+        _player = new PlayerSprite(R.drawable.ship2, _tiltHelper);
 
+        startGame();
+    }
 
+    private static TiltHelper tiltHelperFor (Context context)
+    {
+        TiltHelper tiltHelper = TiltHelper.getInstance(context);
+        // no accelerometer, the ship just stays in the middle
+        return tiltHelper != null ? tiltHelper : new FixedTiltHelper();
+    }
 
     public void initSprites ()
     {
-        TextureSprite.clearTextureCache();
-        int asteroidCount = _asteroidPool.getSprites().size();
-        for (int i = 0; i < asteroidCount; i++) {
-            AsteroidSprite asteroidSprite = _asteroidPool.getSprites().get(i);
-            asteroidSprite.reloadTexture();
-        }
-        int chickenCount = _chickenPool.getSprites().size();
-        for (int i = 0; i < chickenCount; i++) {
-            ChickenSprite chickenSprite = _chickenPool.getSprites().get(i);
-            chickenSprite.reloadTexture();
-        }
-        if (_player == null) {
-            _tiltHelper = TiltHelper.getInstance(_context);
-            _player = new PlayerSprite(_context, R.drawable.ship2, _tiltHelper);
-        } else {
-            _player.reloadTexture();
+        // a new context, the textures of the last one went with it
+        TextureSprite.forgetTextures();
+        TextSprite.forgetFonts();
+        _shipImageRatio = 0;
+        // entities belong to the simulation thread, their textures are looked up by drawable when drawn,
+        // all of them in one atlas so the playfield never switches textures, compressed at build time
+        // where the context can sample it, packed otherwise. Loaded in the background, the sprites
+        // appear once it is uploaded rather than holding up the first frame
+        TextureSprite.requestAtlas(_context, R.id.sprite_atlas, SPRITE_ATLAS_ASSET,
+                R.drawable.asteroid, R.drawable.chicken, R.drawable.ship2);
+        if (_spritePass == RenderQueue.NO_PASS)
+        {
+            // the batch outlives the context, it only has to be registered once
+            _spritePass = _renderQueue.registerPass(TextureSprite.getBatcher());
+            // drawn every frame, never evicted, the reference survives context losses
+            TextureSprite.getTextures().acquire(R.id.sprite_atlas);
         }
 
         if (_asteroidIcon == null) {
-            _asteroidIcon = spawnAsteroid();
+            _asteroidIcon = new AsteroidSprite();
+            _asteroidIcon.setContext(_context);
         } else {
             _asteroidIcon.reloadTexture();
         }
@@ -138,60 +238,268 @@ public class GameEngine
     /** ratio is height/width of screen which affects where in Y coordinate to place sprites */
     public void setRatio (float ratio, float width, float height)
     {
-        _ratio = ratio;
         _width = width;
         _height = height;
 
-        _player.setRatio(ratio);
+        setSimulationRatio(ratio);
 
-        int chickenCount = _chickenPool.getSprites().size();
-        for (int i = 0; i < chickenCount; i++)
-        {
-            ChickenSprite chickenSprite = _chickenPool.getSprites().get(i);
-            chickenSprite.setRatio(ratio);
-        }
         _gameOverText.init(ratio, _width, Math.round(_context.getResources().getDimension(R.dimen.game_over_text_size)));
         _gameOverText.getPosition()[1] = 0;
         _rankText.init(ratio, _width, Math.round(_context.getResources().getDimension(R.dimen.rank_text_size)));
         _rankText.getPosition()[1] = -0.3f;
 
         setViewLocations(_viewLocations);
+
+        if (_simulationThreadEnabled && _simulationThread == null)
+        {
+            _simulationThread = new SimulationThread(this);
+            _simulationThread.start();
+        }
+    }
+
+    /** the part of {@link #setRatio} the simulation needs, without the text sprites or the thread */
+    public void setSimulationRatio (float ratio)
+    {
+        _ratio = ratio;
+        runOnSimulation(_applyRatioEvent);
+    }
+
+    private void applyRatio ()
+    {
+        _player.setRatio(_ratio);
+
+        for (int i = 0; i < _chickens.size(); i++)
+        {
+            ChickenSprite.setRatio(_chickens, i, _ratio);
+        }
     }
 
     public void drawFrame (float[] matrix)
     {
-        if (_chickens.isEmpty()) {
-            gameOver();
-        } else {
-            update();
+        long now = System.nanoTime();
+        _profiler.frameStarted(now);
+        long uploadStart = _profiler.start();
+        TextureSprite.getLoader().uploadPending(GlStateCache.shared());
+        _profiler.end(FrameProfiler.Phase.TEXTURE_UPLOAD, uploadStart);
+        if (_shipImageRatio == 0)
+        {
+            updateShipImageRatio();
         }
+        RenderSnapshot snapshot;
+        float alpha;
+        if (_simulationThread == null)
+        {
+            // single threaded, simulate right here and draw the result straight away
+            runSimulation(now);
+            snapshot = _snapshots.acquireLatest();
+            alpha = _timestep.getAlpha();
+        }
+        else
+        {
+            snapshot = _snapshots.acquireLatest();
+            alpha = snapshot.getInterpolation(now);
+        }
+
+        if (snapshot.sequence == 0)
+        {
+            // nothing simulated yet
+            return;
+        }
+        long drawStart = _profiler.start();
+        updateHud(snapshot);
+
+        _drawnSnapshot = snapshot;
+        _drawnAlpha = alpha;
+        submitDrawables(snapshot);
+        _renderQueue.execute(matrix);
+        _drawnSnapshot = null;
+        _profiler.end(FrameProfiler.Phase.DRAW, drawStart);
+    }
+
+    /**
+     * The ship is as wide as the image it's drawn from, whatever density that was baked or decoded at,
+     * so its proportions come from its region once the atlas is resident
+     */
+    private void updateShipImageRatio ()
+    {
+        final float imageRatio = TextureSprite.getCachedImageRatio(R.drawable.ship2);
+        if (imageRatio == 0)
+        {
+            return;
+        }
+        _shipImageRatio = imageRatio;
+        runOnSimulation(new Runnable()
+        {
+            @Override
+            public void run ()
+            {
+                _player.setImageRatio(imageRatio);
+            }
+        });
+    }
 
-        drawAsteroids(matrix);
-        drawChickens(matrix);
+    /** every drawable of the frame goes into the render queue, the keys decide the order they're drawn in */
+    private void submitDrawables (RenderSnapshot snapshot)
+    {
+        RenderQueue queue = _renderQueue;
+        int asteroidTexture = TextureSprite.getCachedTexture(R.drawable.asteroid);
+        queue.submit(LAYER_ASTEROIDS, _spritePass, asteroidTexture, _spriteCommand, SPRITES_ASTEROIDS);
+        queue.submit(LAYER_CHICKENS, _spritePass, TextureSprite.getCachedTexture(R.drawable.chicken),
+                _spriteCommand, SPRITES_CHICKENS);
+        queue.submit(LAYER_PLAYER, _spritePass, TextureSprite.getCachedTexture(R.drawable.ship2),
+                _spriteCommand, SPRITES_PLAYER);
+        queue.submit(LAYER_HUD_ICON, _spritePass, asteroidTexture, _spriteCommand, SPRITES_HUD_ICON);
+        // text sprites draw with their own program and font texture
+        queue.submit(LAYER_HUD_TEXT, RenderQueue.NO_PASS, 0, _hudTextCommand, snapshot.playing ? 0 : 1);
+    }
 
-        _player.draw(matrix);
+    /** runs inside the sprite pass, the sprites only go into the open batch */
+    private void drawSprites (int which)
+    {
+        SpriteBatcher batcher = TextureSprite.getBatcher();
+        RenderSnapshot snapshot = _drawnSnapshot;
+        float alpha = _drawnAlpha;
+        long t = _profiler.start();
+        switch (which)
+        {
+            case SPRITES_ASTEROIDS:
+                batcher.drawLayer(snapshot.asteroids, alpha);
+                batcher.drawLayer(snapshot.brokenAsteroids, alpha);
+                _profiler.end(FrameProfiler.Phase.ASTEROID_DRAW, t);
+                break;
+            case SPRITES_CHICKENS:
+                batcher.drawLayer(snapshot.chickens, alpha);
+                _profiler.end(FrameProfiler.Phase.CHICKEN_DRAW, t);
+                break;
+            case SPRITES_PLAYER:
+                batcher.drawLayer(snapshot.player, alpha);
+                _profiler.end(FrameProfiler.Phase.PLAYER_DRAW, t);
+                break;
+            default:
+                _asteroidIcon.batch(batcher);
+                break;
+        }
+    }
 
-        _asteroidIcon.draw(matrix);
+    private void drawHudText (float[] matrix, boolean gameOver)
+    {
+        long t = _profiler.start();
+        TextSprite.beginFrame();
         _asteroidCountText.draw(matrix);
-
-        if (!_playing)
+        if (gameOver)
         {
             _gameOverText.draw(matrix);
             _rankText.draw(matrix);
         }
+        _profiler.end(FrameProfiler.Phase.HUD_DRAW, t);
+    }
+
+    /**
+     * Runs the ticks that are due at nowNanos and publishes the result for the gl thread.
+     * Called by the simulation thread, or by drawFrame when the game runs single threaded.
+     *
+     * @return how long the caller can sleep before the next tick is due
+     */
+    public long runSimulation (long nowNanos)
+    {
+        int ticks = _timestep.advance(nowNanos);
+        for (int i = 0; i < ticks; i++)
+        {
+            tick();
+        }
+        if (ticks > 0)
+        {
+            writeSnapshot(_snapshots.getBack(), nowNanos);
+            _snapshots.publish();
+        }
+
+        if (!_timestep.isEnabled())
+        {
+            // one update per wake up, paced like a 60Hz display used to pace it
+            return _timestep.getTickNanos();
+        }
+        return _timestep.getNanosUntilNextTick();
+    }
+
+    /** copy everything drawFrame needs, the sprites themselves are never read by the gl thread */
+    private void writeSnapshot (RenderSnapshot snapshot, long nowNanos)
+    {
+        snapshot.asteroids.clear();
+        snapshot.asteroids.addAll(_asteroids);
+        snapshot.brokenAsteroids.clear();
+        snapshot.brokenAsteroids.addAll(_brokenAsteroids);
+        snapshot.chickens.clear();
+        snapshot.chickens.addAll(_chickens);
+        snapshot.player.clear();
+        snapshot.player.add(_player);
+
+        snapshot.playing = _playing;
+        snapshot.asteroidCount = _asteroidCount;
+        snapshot.bestCombo = bestCombo;
+
+        snapshot.tickNanos = _timestep.getTickNanos();
+        snapshot.publishNanos = nowNanos;
+        snapshot.sequence = ++_snapshotSequence;
+    }
+
+    /** text sprites own gl resources so they are only changed here, and only when the value changed */
+    private void updateHud (RenderSnapshot snapshot)
+    {
+        if (snapshot.asteroidCount != _shownAsteroidCount)
+        {
+            _shownAsteroidCount = snapshot.asteroidCount;
+            _asteroidCountText.setNumber(_shownAsteroidCount);
+        }
+
+        if (snapshot.playing)
+        {
+            _gameOverShown = false;
+        }
+        else if (!_gameOverShown)
+        {
+            _gameOverShown = true;
+            String rankString = "Game Rank: " + gameRank(snapshot.asteroidCount, snapshot.bestCombo);
+            String gameOverString = "Score: " + snapshot.asteroidCount + ". Best combo: " + snapshot.bestCombo;
+            _gameOverText.setText(gameOverString, TextSprite.TEXT_ALIGN_CENTER, 0, Color.WHITE);
+            _rankText.setText(rankString, TextSprite.TEXT_ALIGN_CENTER, 0, Color.WHITE);
+        }
+    }
+
+    /** runs one fixed step of the simulation */
+    public void tick ()
+    {
+        long start = _profiler.start();
+        savePreviousState();
+
+        if (_chickens.isEmpty()) {
+            gameOver();
+        } else {
+            update();
+        }
+        _profiler.end(FrameProfiler.Phase.TICK, start);
+    }
+
+    private void savePreviousState ()
+    {
+        _asteroids.savePreviousState();
+        _brokenAsteroids.savePreviousState();
+        _chickens.savePreviousState();
+        _player.savePreviousState();
     }
 
     public void update()
     {
         updateAsteroids();
+
+        long t = _profiler.start();
         updateChickens();
+        t = _profiler.end(FrameProfiler.Phase.CHICKEN_UPDATE, t);
 
         if (_frames++ % _framesBetweenAddingAsteroid == 0)
         {
-            AsteroidSprite asteroidSprite = spawnAsteroid();
-            asteroidSprite.initRandom();
-            addAsteroid(asteroidSprite);
+            AsteroidSprite.spawnRandom(_asteroids, _ratio, _random);
         }
+        _profiler.end(FrameProfiler.Phase.SPAWN, t);
 
         if (_frames % 100 == 0 && _framesBetweenAddingAsteroid > 15)
         {
@@ -201,12 +509,98 @@ public class GameEngine
         _player.update();
     }
 
+    /**
+     * Fixed tick mode runs the simulation at a constant rate whatever the display refresh rate is,
+     * when it is off the game is updated once per drawn frame like it used to be
+     */
+    public void setFixedTimestepEnabled (boolean enabled)
+    {
+        _timestep.setEnabled(enabled);
+    }
+
+    /** @param ticksPerSecond simulation rate, gameplay speed is tuned for 60 */
+    public void setTickRate (int ticksPerSecond)
+    {
+        _timestep.setTickRate(ticksPerSecond);
+    }
+
+    /** @param maxTicks most ticks run in a single frame to catch up after a slow frame */
+    public void setMaxCatchUpTicks (int maxTicks)
+    {
+        _timestep.setMaxCatchUpTicks(maxTicks);
+    }
+
+    /** call when the game comes back from a pause so the paused time is not simulated */
+    public void resetTiming ()
+    {
+        runOnSimulation(_resetTimingEvent);
+    }
+
+    /**
+     * The simulation runs on its own thread by default, turning it off simulates on the gl thread
+     * right before drawing. Only takes effect if called before the surface is first created.
+     */
+    public void setSimulationThreadEnabled (boolean enabled)
+    {
+        _simulationThreadEnabled = enabled;
+    }
+
+    /**
+     * Restart the simulation's random numbers from a seed, a game started right after replays the
+     * same way for the same seed and inputs
+     */
+    public void setRandomSeed (final long seed)
+    {
+        runOnSimulation(new Runnable()
+        {
+            @Override
+            public void run ()
+            {
+                _random.setSeed(seed);
+            }
+        });
+    }
+
+    /** anything changing simulation state from another thread has to go through here */
+    private void runOnSimulation (Runnable event)
+    {
+        if (_simulationThread == null || Thread.currentThread() == _simulationThread)
+        {
+            event.run();
+        }
+        else
+        {
+            _simulationThread.post(event);
+        }
+    }
+
+    public void pause ()
+    {
+        if (_simulationThread != null)
+        {
+            _simulationThread.setPaused(true);
+        }
+    }
+
+    public void resume ()
+    {
+        if (_simulationThread != null)
+        {
+            _simulationThread.setPaused(false);
+        }
+    }
+
     public void startGame()
+    {
+        runOnSimulation(_startGameEvent);
+    }
+
+    private void startNewGame ()
     {
         if (_playing) {
             return;
         }
-        soundPool.play(gameoversound,1,1,2,0,1);
+        _audio.playNewGame();
         bestCombo = 0;
         _playing = true;
         _asteroidCount = 0;
@@ -214,28 +608,17 @@ public class GameEngine
         _framesBetweenAddingAsteroid = 64;
 
         for (int i = 0; i < 5; i++) {
-            ChickenSprite chicken = _chickenPool.spawn();
-            chicken.init();
-            chicken.setRatio(_ratio);
-            _chickens.add(chicken);
+            ChickenSprite.spawn(_chickens, _ratio, _random);
         }
     }
 
     /* TODO: Refactor the game over screen so it will count the score and the most combo */
     public void gameOver() {
-        String rankString = "Game Rank: " + gameRank(_asteroidCount,bestCombo);
-        String gameOverString = "Score: "+_asteroidCount+". Best combo: " + bestCombo;
-        _gameOverText.setText(gameOverString, TextSprite.TEXT_ALIGN_CENTER, 0, Color.WHITE);
-
-        _rankText.setText(rankString,TextSprite.TEXT_ALIGN_CENTER,0,Color.WHITE);
-
         _playing = false;
         for(int i = _asteroids.size() -1; i >= 0; i--){
-            AsteroidSprite asteroid = _asteroids.get(i);
-            breakAsteroid(asteroid);
-            _asteroidPool.kill(asteroid);
-            _asteroids.remove(i);
+            breakAsteroid(i);
         }
+        _asteroids.clear();
     }
     public String gameRank(int _asteroidBreak, int bestCombo){
         int score = _asteroidBreak*110 + bestCombo*300;
@@ -246,138 +629,99 @@ public class GameEngine
         else if(score <= 40000 && score > 20000) return "D";
         else return "F";
     }
-    public AsteroidSprite spawnAsteroid ()
-    {
-        return _asteroidPool.spawn();
-    }
-
-    public void addAsteroid (AsteroidSprite asteroid) {
-        asteroid.setRatio(_ratio);
-        _asteroids.add(asteroid);
-    }
-
+    /**
+     * Asteroids are handled in order: one that hits the player breaks, any other one kills every
+     * chicken it touches that no earlier asteroid killed. The grid finds the first asteroid to
+     * touch each chicken, then the hits are replayed in asteroid order so combos come out the same
+     * as testing every asteroid against every chicken.
+     */
     private void updateAsteroids()
     {
-        for (int i = 0; i < _asteroids.size(); i++)
-        {
-            AsteroidSprite asteroid = _asteroids.get(i);
-            boolean collided = false;
-            if (asteroid.collidesWith(_player)) {
-                collided = true;
-                _asteroidCountText.setText(Integer.toString(++_asteroidCount));
-                combo++;
-                breakAsteroid(asteroid);
-                _asteroidPool.kill(asteroid);
-                _asteroids.remove(i--);
-                soundPool.play(rockbreaksound,1, 1, 0, 0, 1);
-//                playSound(_context,R.raw.rockbreaksound);
-            }
-            else {
-                for (int j = 0; j < _chickens.size(); j++) {
-                    ChickenSprite chicken = _chickens.get(j);
-                    if (asteroid.collidesWith(chicken)) {
-                        if(combo > bestCombo){
-                            bestCombo = combo;
-                        }
-                        combo = 0;
-                        _chickenPool.kill(chicken);
-                        _chickens.remove(j--);
-                        soundPool.play(deadchickensound,1, 1, 0, 0, 1);
-//                        playSound(_context,R.raw.deadchickensound);
-                    }
-                }
-            }
-
-            if (!collided && !asteroid.update()) {
-                _asteroidPool.kill(asteroid);
-                _asteroids.remove(i--);
-            }
-        }
+        long t = _profiler.start();
+        int asteroidCount = _asteroids.size();
+        int chickenCount = _chickens.size();
 
-        for (int i = 0; i < _brokenAsteroids.size(); i++) {
-            BrokenAsteroidSprite brokenAsteroid = _brokenAsteroids.get(i);
-            if (!brokenAsteroid.update()) {
-                _brokenAsteroidPool.kill(brokenAsteroid);
-                _brokenAsteroids.remove(i--);
+        // asteroids that hit the player never get to the chickens
+        _asteroidGrid.rebuild(_asteroids);
+        for (int i = 0; i < asteroidCount; i++)
+        {
+            if (_asteroids.collidesWith(i, _player))
+            {
+                _asteroidGrid.exclude(i);
             }
         }
-    }
 
-    private void drawAsteroids (float[] matrix)
-    {
-        if (_asteroids.size() > 0)
+        if (_chickenKiller.length < chickenCount)
         {
-            _asteroids.get(0).batchDraw(matrix, (List<TextureSprite>) ((Object) _asteroids));
+            _chickenKiller = new int[chickenCount];
+            _chickenHits = new int[chickenCount];
         }
-
-        if (_brokenAsteroids.size() > 0)
+        int hitCount = 0;
+        for (int j = 0; j < chickenCount; j++)
         {
-            _brokenAsteroids.get(0).batchDraw(matrix, (List<TextureSprite>) ((Object) _brokenAsteroids));
+            int killer = _asteroidGrid.findFirstOverlap(_asteroids,
+                    _chickens._posX[j], _chickens._posY[j], _chickens._scaleX[j]);
+            _chickenKiller[j] = killer;
+            if (killer >= 0)
+            {
+                // insertion sort by killer, stable so chickens hit by the same asteroid keep their order
+                int h = hitCount++;
+                while (h > 0 && _chickenKiller[_chickenHits[h - 1]] > killer)
+                {
+                    _chickenHits[h] = _chickenHits[h - 1];
+                    h--;
+                }
+                _chickenHits[h] = j;
+            }
         }
-    }
 
-    private void breakAsteroid (AsteroidSprite asteroid)
-    {
-        float[] origPosition = asteroid.getPosition();
-        float[] origVector = asteroid.getVector();
-        float[] origScale = asteroid.getScale();
-        float newScale = origScale[0] / 4;
-        float[] p = new float[] {
-                origScale[1] * 1 / 4,
-                origScale[1] * 1 / 2,
-                origScale[1],
-                origScale[1] * 1 / 2,
-                origScale[1] * 1 / 4
-        };
-        for (int i = 0; i < 5; i++)
+        // an asteroid that hits the player is killed and dropped by the update pass below
+        // without moving, same as removing it straight away
+        int nextHit = 0;
+        for (int i = 0; i < asteroidCount; i++)
         {
-            float[] newPosition = new float[3];
-            float[] newVector = new float[3];
-            newPosition[1] = origPosition[1] + p[i]; //move it up a bit
-            newVector[1] = (float) (origVector[1] * (0.8f + 0.2f * Math.random())); //slow it's speed a bit
-
-            if (i < 2)
-            {
-                newPosition[0] = origPosition[0] - (float) (0.06f * Math.random());
-                newVector[0] = -(float) (Math.random() * .01f);
+            if (_asteroidGrid.isExcluded(i)) {
+                ++_asteroidCount;
+                combo++;
+                breakAsteroid(i);
+                _asteroids.kill(i);
+                _audio.playRockBreak();
+//                playSound(_context,R.raw.rockbreaksound);
             }
-            else if (i == 2)
-            {
-                newPosition[0] = origPosition[0];
-                newVector[0] = 0;
+            else {
+                while (nextHit < hitCount && _chickenKiller[_chickenHits[nextHit]] == i) {
+                    nextHit++;
+                    if(combo > bestCombo){
+                        bestCombo = combo;
+                    }
+                    combo = 0;
+                    _audio.playChickenDeath();
+//                    playSound(_context,R.raw.deadchickensound);
+                }
             }
-            else
+        }
+        for (int j = chickenCount - 1; j >= 0; j--)
+        {
+            if (_chickenKiller[j] >= 0)
             {
-                newPosition[0] = origPosition[0] + (float) (0.06f * Math.random());
-                newVector[0] = (float) (Math.random() * .01f);
+                _chickens.remove(j);
             }
-
-            BrokenAsteroidSprite piece = _brokenAsteroidPool.spawn();
-            piece.init(_ratio, newPosition, newVector, newScale);
-            _brokenAsteroids.add(piece);
         }
+        t = _profiler.end(FrameProfiler.Phase.COLLISION, t);
+
+        AsteroidSprite.updateAll(_asteroids, _ratio);
+        BrokenAsteroidSprite.updateAll(_brokenAsteroids, _ratio);
+        _profiler.end(FrameProfiler.Phase.ASTEROID_UPDATE, t);
     }
 
-    private void updateChickens()
+    private void breakAsteroid (int asteroid)
     {
-        for (int i = 0; i < _chickens.size(); i++)
-        {
-            ChickenSprite chicken = _chickens.get(i);
-
-            if (!chicken.update())
-            {
-                _chickenPool.kill(chicken);
-                _chickens.remove(i--);
-            }
-        }
+        BrokenAsteroidSprite.breakApart(_asteroids, asteroid, _brokenAsteroids, _random);
     }
 
-    private void drawChickens (float[] matrix)
+    private void updateChickens()
     {
-        if (_chickens.size() > 0)
-        {
-            _chickens.get(0).batchDraw(matrix, (List<TextureSprite>) ((Object) _chickens));
-        }
+        ChickenSprite.updateAll(_chickens, _ratio);
     }
 
     public void setViewLocations (Map<Integer, Rect> viewLocations)
@@ -386,7 +730,7 @@ public class GameEngine
         if (_ratio != 0)
         {
             initHUDIcon(_asteroidIcon, _ratio, R.id.asteroid_icon);
-            initHUDText(_asteroidCountText, Integer.toString(_asteroidCount),
+            initHUDText(_asteroidCountText, Integer.toString(Math.max(_shownAsteroidCount, 0)),
                     TextSprite.TEXT_NO_ALIGN, _ratio, R.id.asteroid_count_text);
         }
     }
@@ -438,56 +782,91 @@ public class GameEngine
         glScale[1] = androidLocation.height() / _width;
     }
 
+    //region simulation state, read these from the simulation thread
+    public boolean isPlaying ()
+    {
+        return _playing;
+    }
+
+    /** @return asteroids broken this game */
+    public int getAsteroidCount ()
+    {
+        return _asteroidCount;
+    }
+
+    public int getBestCombo ()
+    {
+        return bestCombo;
+    }
+
+    EntityStore getAsteroids ()
+    {
+        return _asteroids;
+    }
+
+    EntityStore getBrokenAsteroids ()
+    {
+        return _brokenAsteroids;
+    }
+
+    EntityStore getChickens ()
+    {
+        return _chickens;
+    }
+    //endregion
+
+    public FrameProfiler getProfiler ()
+    {
+        return _profiler;
+    }
+
+    /**
+     * One line of pool pressure for the logs. Read from the gl thread while the simulation runs so
+     * the numbers can be a tick behind.
+     */
+    public String describePools ()
+    {
+        return "asteroids " + describeStore(_asteroids)
+                + ", debris " + describeStore(_brokenAsteroids)
+                + ", chickens " + describeStore(_chickens);
+    }
+
+    private static String describeStore (EntityStore store)
+    {
+        return store.size() + "/" + store.getCapacity()
+                + " (peak " + store.getHighWaterMark() + ", grew " + store.getGrowCount() + ")";
+    }
+
     public void destroy () {
+        if (_simulationThread != null)
+        {
+            // a tick still running could play a sound or write the stores while they are released
+            _simulationThread.quitAndWait();
+        }
         if (_tiltHelper != null)
         {
             _tiltHelper.destroy();
         }
+        _audio.release();
+        if (_spritePass != RenderQueue.NO_PASS)
+        {
+            TextureSprite.getTextures().release(R.id.sprite_atlas);
+        }
+        if (_asteroidIcon != null)
+        {
+            _asteroidIcon.releaseTexture();
+        }
+        TextureSprite.deleteTextures();
+        TextureSprite.releaseGlState();
+        if (_asteroidCountText != null)
+        {
+            _asteroidCountText.releaseMesh();
+        }
+        if (_gameOverText != null)
+        {
+            _gameOverText.releaseMesh();
+            _rankText.releaseMesh();
+        }
+        TextSprite.releaseFonts();
     }
 }
-
-//
-//    //region timing debug
-//    private long _now;
-//    private long _lastUpdate;
-//    private float _totalDiffs;
-//    private float _totalLens;
-//    private long _statFrames;
-//
-//    private void timingDebugStart ()
-//    {
-//        _now = SystemClock.elapsedRealtime();
-//
-//        if (_lastUpdate != 0)
-//        {
-//            _statFrames++;
-//            long timeDiff = _now - _lastUpdate;
-//            _totalDiffs += timeDiff;
-//            if (timeDiff > 20)
-//            {
-//                Logging.d("LogFrame",String.format("long frame %d, %d millis", _statFrames, timeDiff));
-//            }
-//            if (_statFrames % 128 == 0)
-//            {
-//                Logging.d("Average",String.format("avg = %f %f %d", (_totalDiffs / _statFrames), _totalDiffs, _statFrames));
-//            }
-//        }
-//
-//        _lastUpdate = _now;
-//    }
-//
-//    private void timingDebugEnd ()
-//    {
-//        long len = SystemClock.elapsedRealtime() - _now;
-//        if (len > 20)
-//        {
-//            Logging.d("LongLength",String.format("long len %d, %d millis", _statFrames, len));
-//        }
-//        _totalLens += len;
-//        if (_statFrames % 128 == 0)
-//        {
-//            Logging.d("AverageLength",String.format("avg len = %f %f %d", (_totalLens / _statFrames), _totalLens, _statFrames));
-//        }
-//    }
-//    //endregion
-//}
@@ -0,0 +1,84 @@
+package com.example.samplegamefix.engine;
+
+import com.example.samplegamefix.helper.FixedTiltHelper;
+
+/**
+ * Plays the game on a plain JVM as fast as the cpu allows: no gl, no sound, no sensors and no
+ * simulation thread. The ship is steered back and forth so it keeps breaking asteroids, and a new
+ * game is started whenever the last chicken dies, so any number of ticks can be run.
+ */
+public class HeadlessRunner
+{
+    /** height / width of a 16:9 phone in portrait */
+    public static final float DEFAULT_RATIO = 16f / 9f;
+
+    // tilt sweeps one full swing every few seconds of game time
+    private static final float STEER_TILT = 15f;
+    private static final double STEER_SPEED = 0.02;
+
+    private final GameEngine _engine;
+    private final FixedTiltHelper _tilt = new FixedTiltHelper();
+
+    private long _ticks;
+    private int _gamesPlayed;
+    private long _runTicks;
+    private long _runNanos;
+
+    public HeadlessRunner (long seed)
+    {
+        this(seed, DEFAULT_RATIO, GameAudio.SILENT);
+    }
+
+    public HeadlessRunner (long seed, float ratio, GameAudio audio)
+    {
+        _engine = new GameEngine(audio, _tilt, seed);
+        _engine.setSimulationRatio(ratio);
+    }
+
+    /** run the simulation for a number of ticks */
+    public void run (long ticks)
+    {
+        long start = System.nanoTime();
+        for (long n = 0; n < ticks; n++)
+        {
+            step();
+        }
+        _runNanos += System.nanoTime() - start;
+        _runTicks += ticks;
+    }
+
+    /** one tick, starting a new game first if the last one is over */
+    public void step ()
+    {
+        if (!_engine.isPlaying())
+        {
+            _engine.startGame();
+            _gamesPlayed++;
+        }
+        _tilt.setTilt((float) Math.sin(_ticks * STEER_SPEED) * STEER_TILT);
+        _engine.tick();
+        _ticks++;
+    }
+
+    public GameEngine getEngine ()
+    {
+        return _engine;
+    }
+
+    public long getTicks ()
+    {
+        return _ticks;
+    }
+
+    /** @return games started by the runner, not counting the one the engine starts itself */
+    public int getGamesPlayed ()
+    {
+        return _gamesPlayed;
+    }
+
+    /** @return ticks per second over every {@link #run} so far */
+    public double getTicksPerSecond ()
+    {
+        return _runNanos > 0 ? _runTicks * 1e9 / _runNanos : 0;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.samplegamefix.engine;
+
+import com.example.samplegamefix.sprites.SpriteLayer;
+
+/**
+ * Everything the gl thread needs to draw one simulation tick. Snapshots are preallocated and
+ * recycled by {@link SnapshotBuffer}, once published a snapshot is never written again until the
+ * gl thread has moved on to a newer one.
+ */
+public class RenderSnapshot
+{
+    public final SpriteLayer asteroids = new SpriteLayer(100);
+    public final SpriteLayer brokenAsteroids = new SpriteLayer(100);
+    public final SpriteLayer chickens = new SpriteLayer(5);
+    public final SpriteLayer player = new SpriteLayer(1);
+
+    /** increases with every published snapshot, 0 means nothing was published yet */
+    public long sequence;
+    public long publishNanos;
+    public long tickNanos;
+
+    public boolean playing;
+    public int asteroidCount;
+    public int bestCombo;
+
+    /**
+     * @return how far the frame drawn at nowNanos is between the previous tick and this one,
+     * the simulation is always drawn one tick behind so it can be interpolated
+     */
+    public float getInterpolation (long nowNanos)
+    {
+        if (tickNanos <= 0)
+        {
+            return 1.0f;
+        }
+        float alpha = (nowNanos - publishNanos) / (float) tickNanos;
+        if (alpha < 0)
+        {
+            return 0;
+        }
+        return alpha > 1 ? 1 : alpha;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.samplegamefix.engine;
+
+import android.os.Process;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the game simulation off the gl thread so collision, pooling and audio overlap with drawing.
+ * Anything that touches simulation state from another thread has to be posted here.
+ */
+public class SimulationThread extends Thread
+{
+    private final GameEngine _engine;
+    private final ConcurrentLinkedQueue<Runnable> _events = new ConcurrentLinkedQueue<>();
+    private final Object _pauseLock = new Object();
+
+    private volatile boolean _running = true;
+    private boolean _paused;
+
+    public SimulationThread (GameEngine engine)
+    {
+        super("GameSimulation");
+        _engine = engine;
+    }
+
+    @Override
+    public void run ()
+    {
+        raisePriority();
+
+        while (_running)
+        {
+            if (waitWhilePaused())
+            {
+                // don't try to catch up with the time spent paused
+                _engine.resetTiming();
+            }
+            if (!_running)
+            {
+                // quit() wakes a paused thread, it must not run another tick on the way out
+                break;
+            }
+
+            Runnable event;
+            while ((event = _events.poll()) != null)
+            {
+                event.run();
+            }
+
+            long sleepNanos = _engine.runSimulation(System.nanoTime());
+            if (sleepNanos > 0)
+            {
+                LockSupport.parkNanos(this, sleepNanos);
+            }
+        }
+    }
+
+    /** ticks are due every few ms, the thread runs at the priority of the one that draws them */
+    protected void raisePriority ()
+    {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_DISPLAY);
+    }
+
+    /** @return true if the thread had to wait */
+    private boolean waitWhilePaused ()
+    {
+        synchronized (_pauseLock)
+        {
+            boolean waited = false;
+            while (_paused && _running)
+            {
+                waited = true;
+                try
+                {
+                    _pauseLock.wait();
+                }
+                catch (InterruptedException e)
+                {
+                    // checked again by the loop
+                }
+            }
+            return waited;
+        }
+    }
+
+    /** run the event on the simulation thread before the next tick */
+    public void post (Runnable event)
+    {
+        _events.add(event);
+        LockSupport.unpark(this);
+    }
+
+    public void setPaused (boolean paused)
+    {
+        synchronized (_pauseLock)
+        {
+            _paused = paused;
+            _pauseLock.notifyAll();
+        }
+    }
+
+    public boolean isRunning ()
+    {
+        return _running;
+    }
+
+    public void quit ()
+    {
+        _running = false;
+        setPaused(false);
+        LockSupport.unpark(this);
+    }
+
+    /**
+     * Quit and wait for the thread to leave its loop, the tick it is in included. Once this returns
+     * nothing runs on it any more, the engine's audio and sprites can be released.
+     */
+    public void quitAndWait ()
+    {
+        quit();
+        boolean interrupted = false;
+        while (isAlive())
+        {
+            try
+            {
+                join();
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
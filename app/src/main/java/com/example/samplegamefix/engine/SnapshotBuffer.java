@@ -0,0 +1,50 @@
+package com.example.samplegamefix.engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock free triple buffer between the simulation (single writer) and the gl thread (single reader).
+ *
+ * The writer fills its back snapshot and swaps it with the middle one, the reader swaps the middle
+ * one with its front snapshot whenever a newer one was published. Neither side ever waits for the
+ * other and neither side ever sees a snapshot the other one is using.
+ */
+public class SnapshotBuffer
+{
+    private static final int INDEX_MASK = 0x3;
+    private static final int FRESH = 0x4;
+
+    private final RenderSnapshot[] _snapshots = {
+            new RenderSnapshot(), new RenderSnapshot(), new RenderSnapshot()
+    };
+
+    /** index of the middle snapshot, with FRESH set when the reader hasn't picked it up yet */
+    private final AtomicInteger _middle = new AtomicInteger(1);
+
+    // only touched by the writer
+    private int _back = 0;
+    // only touched by the reader
+    private int _front = 2;
+
+    /** @return the snapshot the simulation should fill next */
+    public RenderSnapshot getBack ()
+    {
+        return _snapshots[_back];
+    }
+
+    /** hand the filled back snapshot over to the reader */
+    public void publish ()
+    {
+        _back = _middle.getAndSet(_back | FRESH) & INDEX_MASK;
+    }
+
+    /** @return the newest published snapshot, it stays valid until the next call */
+    public RenderSnapshot acquireLatest ()
+    {
+        if ((_middle.get() & FRESH) != 0)
+        {
+            _front = _middle.getAndSet(_front) & INDEX_MASK;
+        }
+        return _snapshots[_front];
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.samplegamefix.engine;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.SoundPool;
+
+import com.example.samplegamefix.R;
+
+public class SoundPoolAudio implements GameAudio
+{
+    private final SoundPool soundPool;
+    private final int deadchickensound, rockbreaksound, gameoversound;
+
+    public SoundPoolAudio (Context context)
+    {
+        AudioAttributes audioAttributes = new AudioAttributes
+                .Builder()
+                .setUsage(AudioAttributes.USAGE_ASSISTANCE_SONIFICATION)
+                .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                .build();
+        soundPool = new SoundPool
+                .Builder()
+                .setMaxStreams(7)
+                .setAudioAttributes(audioAttributes)
+                .build();
+        deadchickensound = soundPool.load(context,R.raw.deadchickensound,1);
+        rockbreaksound = soundPool.load(context,R.raw.rockbreaksound,1);
+        gameoversound = soundPool.load(context,R.raw.gameoversound,1);
+    }
+
+    @Override
+    public void playNewGame ()
+    {
+        soundPool.play(gameoversound,1,1,2,0,1);
+    }
+
+    @Override
+    public void playRockBreak ()
+    {
+        soundPool.play(rockbreaksound,1, 1, 0, 0, 1);
+    }
+
+    @Override
+    public void playChickenDeath ()
+    {
+        soundPool.play(deadchickensound,1, 1, 0, 0, 1);
+    }
+
+    @Override
+    public void release ()
+    {
+        soundPool.release();
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.samplegamefix.gl;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes textures on worker threads and hands them to the gl thread to upload, a few a frame,
+ * so loading never stalls the gl thread on image decoding and a frame never spends more than its
+ * byte budget sending pixels to the gpu. Whatever draws a texture that isn't resident yet skips
+ * it, {@link #uploadPending} is called once a frame until nothing is left.
+ *
+ * Requests finish in the order their decoding finishes. A request decoded before the context was
+ * lost is uploaded into the new one, so a request doesn't have to be made again after a loss if
+ * it is still pending.
+ */
+public class AsyncTextureLoader
+{
+    /** a 512x512 RGBA texture a frame, several smaller ones or one compressed atlas with its mip chain */
+    public static final long DEFAULT_FRAME_BUDGET = 1 << 20;
+
+    public interface Request
+    {
+        /**
+         * Worker thread, decode whatever {@link #upload} needs
+         *
+         * @return bytes the upload sends to the gpu, what counts against the frame budget
+         */
+        long decode () throws Exception;
+
+        /** gl thread, upload what {@link #decode} made and make it resident */
+        void upload (GlBackend gl);
+
+        /** gl thread, decoding threw, nothing will be uploaded for this request */
+        void failed (Exception e);
+    }
+
+    private static final class Decoded
+    {
+        final Request request;
+        final long bytes;
+        final Exception error;
+
+        Decoded (Request request, long bytes, Exception error)
+        {
+            this.request = request;
+            this.bytes = bytes;
+            this.error = error;
+        }
+    }
+
+    private final Executor _workers;
+    private final ConcurrentLinkedQueue<Decoded> _decoded = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _pending = new AtomicInteger();
+    private volatile long _frameBudget;
+
+    private long _lastFrameBytes;
+    private int _lastFrameUploads;
+
+    /**
+     * @param workers     where requests are decoded, e.g. {@link #newWorkerPool}
+     * @param frameBudget bytes a frame may upload, the first upload of a frame goes through even if
+     *                    it is bigger so nothing waits forever
+     */
+    public AsyncTextureLoader (Executor workers, long frameBudget)
+    {
+        _workers = workers;
+        setFrameBudget(frameBudget);
+    }
+
+    /** daemon threads below the priority of the gl and simulation threads, idle ones go away */
+    public static ExecutorService newWorkerPool (int threads)
+    {
+        ThreadFactory factory = new ThreadFactory()
+        {
+            private final AtomicInteger _count = new AtomicInteger();
+
+            @Override
+            public Thread newThread (Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "TextureDecoder-" + _count.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        };
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 5, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), factory);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    public void setFrameBudget (long bytes)
+    {
+        if (bytes <= 0)
+        {
+            throw new IllegalArgumentException("frame budget must be positive: " + bytes);
+        }
+        _frameBudget = bytes;
+    }
+
+    public long getFrameBudget ()
+    {
+        return _frameBudget;
+    }
+
+    /** decode the request on a worker, any thread */
+    public void submit (final Request request)
+    {
+        _pending.incrementAndGet();
+        _workers.execute(new Runnable()
+        {
+            @Override
+            public void run ()
+            {
+                try
+                {
+                    _decoded.add(new Decoded(request, request.decode(), null));
+                }
+                catch (Exception e)
+                {
+                    _decoded.add(new Decoded(request, 0, e));
+                }
+            }
+        });
+    }
+
+    /**
+     * Upload decoded requests until the frame budget is spent, call once a frame on the gl thread.
+     * Allocates nothing when there is nothing to upload.
+     *
+     * @return bytes uploaded
+     */
+    public long uploadPending (GlBackend gl)
+    {
+        long budget = _frameBudget;
+        long sent = 0;
+        int uploads = 0;
+        Decoded next;
+        while ((next = _decoded.peek()) != null)
+        {
+            if (next.error == null && uploads > 0 && sent + next.bytes > budget)
+            {
+                break;
+            }
+            _decoded.poll();
+            _pending.decrementAndGet();
+            if (next.error != null)
+            {
+                next.request.failed(next.error);
+                continue;
+            }
+            next.request.upload(gl);
+            sent += next.bytes;
+            uploads++;
+        }
+        _lastFrameBytes = sent;
+        _lastFrameUploads = uploads;
+        return sent;
+    }
+
+    /** @return requests submitted that haven't been uploaded or failed yet, decoded or not */
+    public int getPendingCount ()
+    {
+        return _pending.get();
+    }
+
+    /** @return bytes the last {@link #uploadPending} uploaded */
+    public long getLastFrameBytes ()
+    {
+        return _lastFrameBytes;
+    }
+
+    /** @return requests the last {@link #uploadPending} uploaded */
+    public int getLastFrameUploads ()
+    {
+        return _lastFrameUploads;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.samplegamefix.gl;
+
+/**
+ * Where one image ended up in a {@link TextureAtlas}, in pixels and as texture coordinates.
+ * v runs down the image like bitmap rows do, v1 is the top row.
+ */
+public final class AtlasRegion
+{
+    /** the whole texture, for sprites that have a texture of their own */
+    public static final AtlasRegion FULL = new AtlasRegion(0, 0, 0, 1, 1, 1, 1);
+
+    public final int id;
+    public final int x, y, width, height;
+    public final float u1, v1, u2, v2;
+
+    AtlasRegion (int id, int x, int y, int width, int height, int atlasWidth, int atlasHeight)
+    {
+        this.id = id;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+        u1 = x / (float) atlasWidth;
+        v1 = y / (float) atlasHeight;
+        u2 = (x + width) / (float) atlasWidth;
+        v2 = (y + height) / (float) atlasHeight;
+    }
+
+    /** @return u of a texture coordinate of the whole image, 0 to 1, inside this region */
+    public float mapU (float u)
+    {
+        return u1 + (u2 - u1) * u;
+    }
+
+    /** @return v of a texture coordinate of the whole image, 0 to 1, inside this region */
+    public float mapV (float v)
+    {
+        return v1 + (v2 - v1) * v;
+    }
+}
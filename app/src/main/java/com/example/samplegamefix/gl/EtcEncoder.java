@@ -0,0 +1,380 @@
+package com.example.samplegamefix.gl;
+
+/**
+ * Compresses ARGB images into ETC1 (opaque) or ETC2 RGBA8 with EAC alpha, the block formats every
+ * GLES 3 device and most GLES 2 devices decode in hardware at 4 respectively 8 bits a pixel.
+ *
+ * Colour blocks use the individual and differential modes of ETC1 only, which ETC2 decoders read
+ * the same way, so one encoder serves both formats. Every block tries both modes and both
+ * sub-block orientations with each modifier table and keeps the one with the least error, alpha
+ * blocks try every EAC table. Slow enough that it belongs in a build step, not on the device.
+ *
+ * Colour error is weighted by the pixel's alpha, invisible pixels don't spend precision. Images
+ * whose sides aren't a multiple of 4 are padded by repeating their last row and column.
+ */
+public final class EtcEncoder
+{
+    /** GL_ETC1_RGB8_OES */
+    public static final int ETC1_RGB8 = 0x8D64;
+    /** GL_COMPRESSED_RGBA8_ETC2_EAC */
+    public static final int ETC2_RGBA8 = 0x9278;
+
+    static final int[][] ETC1_MODIFIERS = {
+            { 2, 8, -2, -8 },
+            { 5, 17, -5, -17 },
+            { 9, 29, -9, -29 },
+            { 13, 42, -13, -42 },
+            { 18, 60, -18, -60 },
+            { 24, 80, -24, -80 },
+            { 33, 106, -33, -106 },
+            { 47, 183, -47, -183 },
+    };
+
+    static final int[][] EAC_MODIFIERS = {
+            { -3, -6, -9, -15, 2, 5, 8, 14 },
+            { -3, -7, -10, -13, 2, 6, 9, 12 },
+            { -2, -5, -8, -13, 1, 4, 7, 12 },
+            { -2, -4, -6, -13, 1, 3, 5, 12 },
+            { -3, -6, -8, -12, 2, 5, 7, 11 },
+            { -3, -7, -9, -11, 2, 6, 8, 10 },
+            { -4, -7, -8, -11, 3, 6, 7, 10 },
+            { -3, -5, -8, -11, 2, 4, 7, 10 },
+            { -2, -6, -8, -10, 1, 5, 7, 9 },
+            { -2, -5, -8, -10, 1, 4, 7, 9 },
+            { -2, -4, -8, -10, 1, 3, 7, 9 },
+            { -2, -5, -7, -10, 1, 4, 6, 9 },
+            { -3, -4, -7, -10, 2, 3, 6, 9 },
+            { -1, -2, -3, -10, 0, 1, 2, 9 },
+            { -4, -6, -8, -9, 3, 5, 7, 8 },
+            { -3, -5, -7, -9, 2, 4, 6, 8 },
+    };
+
+    private EtcEncoder ()
+    {
+    }
+
+    /** @return bytes a level of the format takes, whole 4x4 blocks */
+    public static int encodedSize (int format, int width, int height)
+    {
+        int blocks = ((width + 3) / 4) * ((height + 3) / 4);
+        return blocks * blockSize(format);
+    }
+
+    static int blockSize (int format)
+    {
+        switch (format)
+        {
+            case ETC1_RGB8:
+                return 8;
+            case ETC2_RGBA8:
+                return 16;
+            default:
+                throw new IllegalArgumentException("not an etc format: 0x" + Integer.toHexString(format));
+        }
+    }
+
+    /**
+     * @param argb   row by row from the top
+     * @param format {@link #ETC1_RGB8}, alpha is dropped, or {@link #ETC2_RGBA8}
+     * @return the blocks row by row, each block big endian as gl expects it
+     */
+    public static byte[] encode (int[] argb, int width, int height, int format)
+    {
+        if (width <= 0 || height <= 0 || argb.length < width * height)
+        {
+            throw new IllegalArgumentException("image is " + width + "x" + height + " with " + argb.length + " pixels");
+        }
+        int blockSize = blockSize(format);
+        byte[] out = new byte[encodedSize(format, width, height)];
+        int[] block = new int[16];
+        int offset = 0;
+        for (int by = 0; by < height; by += 4)
+        {
+            for (int bx = 0; bx < width; bx += 4)
+            {
+                // column by column, the order etc numbers the pixels of a block in
+                for (int x = 0; x < 4; x++)
+                {
+                    for (int y = 0; y < 4; y++)
+                    {
+                        int px = Math.min(bx + x, width - 1);
+                        int py = Math.min(by + y, height - 1);
+                        block[x * 4 + y] = argb[py * width + px];
+                    }
+                }
+                if (format == ETC2_RGBA8)
+                {
+                    putLong(out, offset, encodeAlphaBlock(block));
+                    putLong(out, offset + 8, encodeColorBlock(block, true));
+                }
+                else
+                {
+                    putLong(out, offset, encodeColorBlock(block, false));
+                }
+                offset += blockSize;
+            }
+        }
+        return out;
+    }
+
+    private static void putLong (byte[] out, int offset, long value)
+    {
+        for (int i = 0; i < 8; i++)
+        {
+            out[offset + i] = (byte) (value >>> (56 - i * 8));
+        }
+    }
+
+    //region colour
+    /** pixels of the two sub-blocks, side by side halves when not flipped, top and bottom when flipped */
+    private static boolean inFirstHalf (int pixel, boolean flip)
+    {
+        return flip ? (pixel & 3) < 2 : pixel < 8;
+    }
+
+    /**
+     * @param block  16 argb pixels column by column
+     * @param weighted weigh the error of each pixel by its alpha
+     */
+    static long encodeColorBlock (int[] block, boolean weighted)
+    {
+        int[] weights = new int[16];
+        for (int i = 0; i < 16; i++)
+        {
+            weights[i] = weighted ? block[i] >>> 24 : 255;
+        }
+
+        long best = 0;
+        long bestError = Long.MAX_VALUE;
+        long[] fitted = new long[1];
+        int[] average = new int[6];
+        for (int f = 0; f < 2; f++)
+        {
+            boolean flip = f == 1;
+            averages(block, weights, flip, average);
+
+            // individual, 4 bits a channel for each half
+            int[] first = new int[3];
+            int[] second = new int[3];
+            for (int c = 0; c < 3; c++)
+            {
+                first[c] = Math.round(average[c] * 15 / 255f);
+                second[c] = Math.round(average[3 + c] * 15 / 255f);
+            }
+            long candidate = individualBits(first, second, flip);
+            long error = fitModifiers(block, weights, flip, expand4(first), expand4(second), candidate, fitted);
+            if (error < bestError)
+            {
+                bestError = error;
+                best = fitted[0];
+            }
+
+            // differential, 5 bits for the first half and a 3 bit signed step to the second
+            boolean fits = true;
+            for (int c = 0; c < 3; c++)
+            {
+                first[c] = Math.round(average[c] * 31 / 255f);
+                second[c] = Math.round(average[3 + c] * 31 / 255f);
+                int delta = Math.max(-4, Math.min(3, second[c] - first[c]));
+                second[c] = first[c] + delta;
+                fits &= second[c] >= 0 && second[c] <= 31;
+            }
+            if (fits)
+            {
+                candidate = differentialBits(first, second, flip);
+                error = fitModifiers(block, weights, flip, expand5(first), expand5(second), candidate, fitted);
+                if (error < bestError)
+                {
+                    bestError = error;
+                    best = fitted[0];
+                }
+            }
+        }
+        return best;
+    }
+
+    private static void averages (int[] block, int[] weights, boolean flip, int[] average)
+    {
+        long[] sums = new long[8];
+        for (int i = 0; i < 16; i++)
+        {
+            int half = inFirstHalf(i, flip) ? 0 : 4;
+            // + 1 so a fully transparent half still gets its own colour rather than black
+            int w = weights[i] + 1;
+            sums[half] += ((block[i] >> 16) & 0xff) * w;
+            sums[half + 1] += ((block[i] >> 8) & 0xff) * w;
+            sums[half + 2] += (block[i] & 0xff) * w;
+            sums[half + 3] += w;
+        }
+        for (int c = 0; c < 3; c++)
+        {
+            average[c] = (int) ((sums[c] + sums[3] / 2) / sums[3]);
+            average[3 + c] = (int) ((sums[4 + c] + sums[7] / 2) / sums[7]);
+        }
+    }
+
+    private static int[] expand4 (int[] color)
+    {
+        return new int[] { color[0] << 4 | color[0], color[1] << 4 | color[1], color[2] << 4 | color[2] };
+    }
+
+    private static int[] expand5 (int[] color)
+    {
+        return new int[] { color[0] << 3 | color[0] >> 2, color[1] << 3 | color[1] >> 2, color[2] << 3 | color[2] >> 2 };
+    }
+
+    private static long individualBits (int[] first, int[] second, boolean flip)
+    {
+        long bits = 0;
+        bits |= (long) first[0] << 60 | (long) second[0] << 56;
+        bits |= (long) first[1] << 52 | (long) second[1] << 48;
+        bits |= (long) first[2] << 44 | (long) second[2] << 40;
+        return bits | (flip ? 1L << 32 : 0);
+    }
+
+    private static long differentialBits (int[] first, int[] second, boolean flip)
+    {
+        long bits = 1L << 33;
+        bits |= (long) first[0] << 59 | (long) ((second[0] - first[0]) & 7) << 56;
+        bits |= (long) first[1] << 51 | (long) ((second[1] - first[1]) & 7) << 48;
+        bits |= (long) first[2] << 43 | (long) ((second[2] - first[2]) & 7) << 40;
+        return bits | (flip ? 1L << 32 : 0);
+    }
+
+    /**
+     * pick the table of each half and the modifier of each pixel
+     *
+     * @param fitted gets the finished block
+     * @return the weighted error
+     */
+    private static long fitModifiers (int[] block, int[] weights, boolean flip, int[] firstBase, int[] secondBase,
+                                      long bits, long[] fitted)
+    {
+        long totalError = 0;
+        for (int half = 0; half < 2; half++)
+        {
+            int[] base = half == 0 ? firstBase : secondBase;
+            long bestError = Long.MAX_VALUE;
+            int bestTable = 0;
+            int bestIndices = 0;
+            for (int table = 0; table < 8; table++)
+            {
+                long error = 0;
+                int indices = 0;
+                for (int i = 0; i < 16; i++)
+                {
+                    if (inFirstHalf(i, flip) != (half == 0))
+                    {
+                        continue;
+                    }
+                    int bestPixel = 0;
+                    int bestPixelError = Integer.MAX_VALUE;
+                    for (int m = 0; m < 4; m++)
+                    {
+                        int modifier = ETC1_MODIFIERS[table][m];
+                        int e = colorError(block[i], base, modifier);
+                        if (e < bestPixelError)
+                        {
+                            bestPixelError = e;
+                            bestPixel = m;
+                        }
+                    }
+                    error += (long) bestPixelError * (weights[i] + 1);
+                    indices |= bestPixel << (i * 2);
+                }
+                if (error < bestError)
+                {
+                    bestError = error;
+                    bestTable = table;
+                    bestIndices = indices;
+                }
+            }
+            bits |= (long) bestTable << (half == 0 ? 37 : 34);
+            for (int i = 0; i < 16; i++)
+            {
+                if (inFirstHalf(i, flip) != (half == 0))
+                {
+                    continue;
+                }
+                int m = (bestIndices >> (i * 2)) & 3;
+                // most significant bits of the indices in the upper half word
+                bits |= (long) (m >> 1) << (16 + i) | (long) (m & 1) << i;
+            }
+            totalError += bestError;
+        }
+        fitted[0] = bits;
+        return totalError;
+    }
+
+    private static int colorError (int pixel, int[] base, int modifier)
+    {
+        int dr = clamp(base[0] + modifier) - ((pixel >> 16) & 0xff);
+        int dg = clamp(base[1] + modifier) - ((pixel >> 8) & 0xff);
+        int db = clamp(base[2] + modifier) - (pixel & 0xff);
+        return dr * dr + dg * dg + db * db;
+    }
+    //endregion
+
+    //region alpha
+    /** EAC block for the alpha of 16 pixels column by column */
+    static long encodeAlphaBlock (int[] block)
+    {
+        int min = 255;
+        int max = 0;
+        for (int i = 0; i < 16; i++)
+        {
+            int a = block[i] >>> 24;
+            min = Math.min(min, a);
+            max = Math.max(max, a);
+        }
+
+        long best = 0;
+        long bestError = Long.MAX_VALUE;
+        for (int table = 0; table < 16; table++)
+        {
+            int[] modifiers = EAC_MODIFIERS[table];
+            int span = modifiers[7] - modifiers[3];
+            int idealMultiplier = Math.max(1, Math.round((max - min) / (float) span));
+            // the range sits between the most negative and most positive modifier
+            for (int multiplier = Math.max(1, idealMultiplier - 1); multiplier <= Math.min(15, idealMultiplier + 1); multiplier++)
+            {
+                int base = clamp(Math.round(min - modifiers[3] * multiplier));
+                for (int shift = -2; shift <= 2; shift++)
+                {
+                    int b = clamp(base + shift);
+                    long bits = (long) b << 56 | (long) multiplier << 52 | (long) table << 48;
+                    long error = 0;
+                    for (int i = 0; i < 16; i++)
+                    {
+                        int a = block[i] >>> 24;
+                        int bestIndex = 0;
+                        int bestPixelError = Integer.MAX_VALUE;
+                        for (int m = 0; m < 8; m++)
+                        {
+                            int e = Math.abs(clamp(b + modifiers[m] * multiplier) - a);
+                            if (e < bestPixelError)
+                            {
+                                bestPixelError = e;
+                                bestIndex = m;
+                            }
+                        }
+                        error += bestPixelError * bestPixelError;
+                        bits |= (long) bestIndex << (45 - i * 3);
+                    }
+                    if (error < bestError)
+                    {
+                        bestError = error;
+                        best = bits;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+    //endregion
+
+    private static int clamp (int value)
+    {
+        return value < 0 ? 0 : value > 255 ? 255 : value;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.samplegamefix.gl;
+
+import android.graphics.Bitmap;
+
+import java.nio.Buffer;
+
+/**
+ * Every gl call the game makes, behind an interface so rendering code can be handed a recording
+ * backend and run on a plain JVM. Same names and arguments as {@link android.opengl.GLES20}, the
+ * bitmap uploads as {@link android.opengl.GLUtils}.
+ */
+public interface GlBackend
+{
+    //region state, draws and buffers
+    void glUseProgram (int program);
+
+    void glEnableVertexAttribArray (int index);
+
+    void glDisableVertexAttribArray (int index);
+
+    void glVertexAttribPointer (int index, int size, int type, boolean normalized, int stride, Buffer ptr);
+
+    /** pointer into the bound GL_ARRAY_BUFFER, offset in bytes */
+    void glVertexAttribPointer (int index, int size, int type, boolean normalized, int stride, int offset);
+
+    void glActiveTexture (int texture);
+
+    void glBindTexture (int target, int texture);
+
+    void glUniformMatrix4fv (int location, int count, boolean transpose, float[] value, int offset);
+
+    void glUniform4fv (int location, int count, float[] v, int offset);
+
+    void glUniform1i (int location, int x);
+
+    void glUniform1f (int location, float x);
+
+    void glDrawElements (int mode, int count, int type, Buffer indices);
+
+    /** indices from the bound GL_ELEMENT_ARRAY_BUFFER, offset in bytes */
+    void glDrawElements (int mode, int count, int type, int offset);
+
+    void glDrawArrays (int mode, int first, int count);
+
+    void glGenBuffers (int n, int[] buffers, int offset);
+
+    void glBindBuffer (int target, int buffer);
+
+    void glBufferData (int target, int size, Buffer data, int usage);
+
+    void glDeleteBuffers (int n, int[] buffers, int offset);
+    //endregion
+
+    //region shaders and programs
+    int glCreateShader (int type);
+
+    void glShaderSource (int shader, String string);
+
+    void glCompileShader (int shader);
+
+    void glGetShaderiv (int shader, int pname, int[] params, int offset);
+
+    String glGetShaderInfoLog (int shader);
+
+    void glDeleteShader (int shader);
+
+    int glCreateProgram ();
+
+    void glAttachShader (int program, int shader);
+
+    void glBindAttribLocation (int program, int index, String name);
+
+    void glLinkProgram (int program);
+
+    void glGetProgramiv (int program, int pname, int[] params, int offset);
+
+    String glGetProgramInfoLog (int program);
+
+    void glDeleteProgram (int program);
+
+    int glGetAttribLocation (int program, String name);
+
+    int glGetUniformLocation (int program, String name);
+    //endregion
+
+    //region textures
+    void glGenTextures (int n, int[] textures, int offset);
+
+    void glDeleteTextures (int n, int[] textures, int offset);
+
+    void glTexParameteri (int target, int pname, int param);
+
+    void glTexParameterf (int target, int pname, float param);
+
+    /** pixels in the given format and type, null only allocates the level */
+    void glTexImage2D (int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels);
+
+    /** replace a rectangle of a level allocated before, pixels in the level's format */
+    void glTexSubImage2D (int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, Buffer pixels);
+
+    /** {@link android.opengl.GLUtils}, format and type taken from the bitmap */
+    void texImage2D (int target, int level, Bitmap bitmap, int border);
+
+    /** {@link android.opengl.GLUtils} */
+    void texImage2D (int target, int level, int internalformat, Bitmap bitmap, int border);
+
+    void glCompressedTexImage2D (int target, int level, int internalformat, int width, int height, int border,
+                                 int imageSize, Buffer data);
+
+    void glGenerateMipmap (int target);
+    //endregion
+
+    //region frame
+    void glViewport (int x, int y, int width, int height);
+
+    void glClearColor (float red, float green, float blue, float alpha);
+
+    void glClear (int mask);
+
+    void glEnable (int cap);
+
+    void glDisable (int cap);
+
+    void glBlendEquation (int mode);
+
+    void glBlendFunc (int sfactor, int dfactor);
+
+    int glGetError ();
+
+    String glGetString (int name);
+    //endregion
+}
@@ -0,0 +1,533 @@
+package com.example.samplegamefix.gl;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+
+import java.nio.Buffer;
+
+/**
+ * Remembers the program, texture bindings, buffer bindings and enabled vertex attribute arrays of
+ * the context and only passes a state change on to gl when it changes something. Every renderer
+ * draws through {@link #shared()}, so a sprite batch following text that left the same program or
+ * texture bound costs nothing.
+ *
+ * Enabling and disabling attribute arrays is put off until the next draw, a renderer disabling its
+ * arrays at the end followed by the next one enabling the same arrays comes to no gl call at all.
+ *
+ * State changes that went to gl and ones that were skipped are counted per frame. Gl thread only.
+ */
+public class GlStateCache implements GlBackend
+{
+    private static final int TEXTURE_UNITS = 8;
+    // attribute arrays past this are passed straight on, none of our programs get near it
+    private static final int CACHED_ATTRIBUTES = 32;
+
+    private static GlStateCache _shared;
+
+    private GlBackend _gl;
+
+    private int _program;
+    private int _activeUnit;
+    private final int[] _boundTextures = new int[TEXTURE_UNITS];
+    private int _arrayBuffer;
+    private int _elementBuffer;
+    private int _enabledAttributes;
+    private int _wantedAttributes;
+    private int _attributeRequests;
+
+    private int _changes;
+    private int _skipped;
+
+    /** the cache in front of the game's context, gl thread only */
+    public static GlStateCache shared ()
+    {
+        if (_shared == null)
+        {
+            _shared = new GlStateCache(new Gles20Backend());
+        }
+        return _shared;
+    }
+
+    public GlStateCache (GlBackend gl)
+    {
+        _gl = gl;
+    }
+
+    /**
+     * send everything to another backend from now on, e.g. a recording one so rendering code that
+     * holds on to {@link #shared()} can run in a test. Forgets the state like {@link #reset}
+     */
+    public void setBackend (GlBackend gl)
+    {
+        _gl = gl;
+        reset();
+    }
+
+    /** a new context starts at the gl defaults, call from onSurfaceCreated */
+    public void reset ()
+    {
+        _program = 0;
+        _activeUnit = 0;
+        for (int i = 0; i < TEXTURE_UNITS; i++)
+        {
+            _boundTextures[i] = 0;
+        }
+        _arrayBuffer = 0;
+        _elementBuffer = 0;
+        _enabledAttributes = 0;
+        _wantedAttributes = 0;
+        _attributeRequests = 0;
+    }
+
+    /** start counting the state changes of a new frame */
+    public void beginFrame ()
+    {
+        _changes = 0;
+        _skipped = 0;
+    }
+
+    /** @return state changes passed on to gl since {@link #beginFrame} */
+    public int getFrameChanges ()
+    {
+        return _changes;
+    }
+
+    /** @return state changes dropped because gl was already in that state since {@link #beginFrame} */
+    public int getFrameSkipped ()
+    {
+        return _skipped;
+    }
+
+    //region state
+    @Override
+    public void glUseProgram (int program)
+    {
+        if (program == _program)
+        {
+            _skipped++;
+            return;
+        }
+        _program = program;
+        _changes++;
+        _gl.glUseProgram(program);
+    }
+
+    @Override
+    public void glActiveTexture (int texture)
+    {
+        int unit = texture - GLES20.GL_TEXTURE0;
+        if (unit == _activeUnit)
+        {
+            _skipped++;
+            return;
+        }
+        _activeUnit = unit;
+        _changes++;
+        _gl.glActiveTexture(texture);
+    }
+
+    @Override
+    public void glBindTexture (int target, int texture)
+    {
+        boolean cached = target == GLES20.GL_TEXTURE_2D && _activeUnit >= 0 && _activeUnit < TEXTURE_UNITS;
+        if (cached)
+        {
+            if (_boundTextures[_activeUnit] == texture)
+            {
+                _skipped++;
+                return;
+            }
+            _boundTextures[_activeUnit] = texture;
+        }
+        _changes++;
+        _gl.glBindTexture(target, texture);
+    }
+
+    @Override
+    public void glBindBuffer (int target, int buffer)
+    {
+        if (target == GLES20.GL_ARRAY_BUFFER)
+        {
+            if (buffer == _arrayBuffer)
+            {
+                _skipped++;
+                return;
+            }
+            _arrayBuffer = buffer;
+        }
+        else if (target == GLES20.GL_ELEMENT_ARRAY_BUFFER)
+        {
+            if (buffer == _elementBuffer)
+            {
+                _skipped++;
+                return;
+            }
+            _elementBuffer = buffer;
+        }
+        _changes++;
+        _gl.glBindBuffer(target, buffer);
+    }
+
+    @Override
+    public void glEnableVertexAttribArray (int index)
+    {
+        if (index < 0 || index >= CACHED_ATTRIBUTES)
+        {
+            _changes++;
+            _gl.glEnableVertexAttribArray(index);
+            return;
+        }
+        _wantedAttributes |= 1 << index;
+        _attributeRequests++;
+    }
+
+    @Override
+    public void glDisableVertexAttribArray (int index)
+    {
+        if (index < 0 || index >= CACHED_ATTRIBUTES)
+        {
+            _changes++;
+            _gl.glDisableVertexAttribArray(index);
+            return;
+        }
+        _wantedAttributes &= ~(1 << index);
+        _attributeRequests++;
+    }
+
+    /** bring the enabled attribute arrays up to what was asked for since the last draw */
+    private void applyAttributes ()
+    {
+        int diff = _wantedAttributes ^ _enabledAttributes;
+        int applied = Integer.bitCount(diff);
+        while (diff != 0)
+        {
+            int index = Integer.numberOfTrailingZeros(diff);
+            diff &= diff - 1;
+            if ((_wantedAttributes & (1 << index)) != 0)
+            {
+                _gl.glEnableVertexAttribArray(index);
+            }
+            else
+            {
+                _gl.glDisableVertexAttribArray(index);
+            }
+        }
+        _enabledAttributes = _wantedAttributes;
+        _changes += applied;
+        _skipped += Math.max(_attributeRequests - applied, 0);
+        _attributeRequests = 0;
+    }
+    //endregion
+
+    //region draws
+    @Override
+    public void glDrawElements (int mode, int count, int type, Buffer indices)
+    {
+        applyAttributes();
+        _gl.glDrawElements(mode, count, type, indices);
+    }
+
+    @Override
+    public void glDrawElements (int mode, int count, int type, int offset)
+    {
+        applyAttributes();
+        _gl.glDrawElements(mode, count, type, offset);
+    }
+
+    @Override
+    public void glDrawArrays (int mode, int first, int count)
+    {
+        applyAttributes();
+        _gl.glDrawArrays(mode, first, count);
+    }
+    //endregion
+
+    //region passed straight on
+    @Override
+    public void glVertexAttribPointer (int index, int size, int type, boolean normalized, int stride, Buffer ptr)
+    {
+        _gl.glVertexAttribPointer(index, size, type, normalized, stride, ptr);
+    }
+
+    @Override
+    public void glVertexAttribPointer (int index, int size, int type, boolean normalized, int stride, int offset)
+    {
+        _gl.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    @Override
+    public void glUniformMatrix4fv (int location, int count, boolean transpose, float[] value, int offset)
+    {
+        _gl.glUniformMatrix4fv(location, count, transpose, value, offset);
+    }
+
+    @Override
+    public void glUniform4fv (int location, int count, float[] v, int offset)
+    {
+        _gl.glUniform4fv(location, count, v, offset);
+    }
+
+    @Override
+    public void glUniform1i (int location, int x)
+    {
+        _gl.glUniform1i(location, x);
+    }
+
+    @Override
+    public void glUniform1f (int location, float x)
+    {
+        _gl.glUniform1f(location, x);
+    }
+
+    @Override
+    public void glGenBuffers (int n, int[] buffers, int offset)
+    {
+        _gl.glGenBuffers(n, buffers, offset);
+    }
+
+    @Override
+    public void glBufferData (int target, int size, Buffer data, int usage)
+    {
+        _gl.glBufferData(target, size, data, usage);
+    }
+
+    @Override
+    public void glDeleteBuffers (int n, int[] buffers, int offset)
+    {
+        // gl unbinds a deleted buffer that is bound
+        for (int i = 0; i < n; i++)
+        {
+            if (buffers[offset + i] == _arrayBuffer)
+            {
+                _arrayBuffer = 0;
+            }
+            if (buffers[offset + i] == _elementBuffer)
+            {
+                _elementBuffer = 0;
+            }
+        }
+        _gl.glDeleteBuffers(n, buffers, offset);
+    }
+
+    @Override
+    public int glCreateShader (int type)
+    {
+        return _gl.glCreateShader(type);
+    }
+
+    @Override
+    public void glShaderSource (int shader, String string)
+    {
+        _gl.glShaderSource(shader, string);
+    }
+
+    @Override
+    public void glCompileShader (int shader)
+    {
+        _gl.glCompileShader(shader);
+    }
+
+    @Override
+    public void glGetShaderiv (int shader, int pname, int[] params, int offset)
+    {
+        _gl.glGetShaderiv(shader, pname, params, offset);
+    }
+
+    @Override
+    public String glGetShaderInfoLog (int shader)
+    {
+        return _gl.glGetShaderInfoLog(shader);
+    }
+
+    @Override
+    public void glDeleteShader (int shader)
+    {
+        _gl.glDeleteShader(shader);
+    }
+
+    @Override
+    public int glCreateProgram ()
+    {
+        return _gl.glCreateProgram();
+    }
+
+    @Override
+    public void glAttachShader (int program, int shader)
+    {
+        _gl.glAttachShader(program, shader);
+    }
+
+    @Override
+    public void glBindAttribLocation (int program, int index, String name)
+    {
+        _gl.glBindAttribLocation(program, index, name);
+    }
+
+    @Override
+    public void glLinkProgram (int program)
+    {
+        _gl.glLinkProgram(program);
+    }
+
+    @Override
+    public void glGetProgramiv (int program, int pname, int[] params, int offset)
+    {
+        _gl.glGetProgramiv(program, pname, params, offset);
+    }
+
+    @Override
+    public String glGetProgramInfoLog (int program)
+    {
+        return _gl.glGetProgramInfoLog(program);
+    }
+
+    @Override
+    public void glDeleteProgram (int program)
+    {
+        // the name can come back from glCreateProgram, it has to be used again then
+        if (program == _program)
+        {
+            _program = 0;
+        }
+        _gl.glDeleteProgram(program);
+    }
+
+    @Override
+    public int glGetAttribLocation (int program, String name)
+    {
+        return _gl.glGetAttribLocation(program, name);
+    }
+
+    @Override
+    public int glGetUniformLocation (int program, String name)
+    {
+        return _gl.glGetUniformLocation(program, name);
+    }
+
+    @Override
+    public void glGenTextures (int n, int[] textures, int offset)
+    {
+        _gl.glGenTextures(n, textures, offset);
+    }
+
+    @Override
+    public void glDeleteTextures (int n, int[] textures, int offset)
+    {
+        // gl unbinds a deleted texture from every unit it is bound to
+        for (int i = 0; i < n; i++)
+        {
+            for (int unit = 0; unit < TEXTURE_UNITS; unit++)
+            {
+                if (_boundTextures[unit] == textures[offset + i])
+                {
+                    _boundTextures[unit] = 0;
+                }
+            }
+        }
+        _gl.glDeleteTextures(n, textures, offset);
+    }
+
+    @Override
+    public void glTexParameteri (int target, int pname, int param)
+    {
+        _gl.glTexParameteri(target, pname, param);
+    }
+
+    @Override
+    public void glTexParameterf (int target, int pname, float param)
+    {
+        _gl.glTexParameterf(target, pname, param);
+    }
+
+    @Override
+    public void glTexImage2D (int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels)
+    {
+        _gl.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+    }
+
+    @Override
+    public void glTexSubImage2D (int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, Buffer pixels)
+    {
+        _gl.glTexSubImage2D(target, level, xoffset, yoffset, width, height, format, type, pixels);
+    }
+
+    @Override
+    public void texImage2D (int target, int level, Bitmap bitmap, int border)
+    {
+        _gl.texImage2D(target, level, bitmap, border);
+    }
+
+    @Override
+    public void texImage2D (int target, int level, int internalformat, Bitmap bitmap, int border)
+    {
+        _gl.texImage2D(target, level, internalformat, bitmap, border);
+    }
+
+    @Override
+    public void glCompressedTexImage2D (int target, int level, int internalformat, int width, int height, int border,
+                                        int imageSize, Buffer data)
+    {
+        _gl.glCompressedTexImage2D(target, level, internalformat, width, height, border, imageSize, data);
+    }
+
+    @Override
+    public void glGenerateMipmap (int target)
+    {
+        _gl.glGenerateMipmap(target);
+    }
+
+    @Override
+    public void glViewport (int x, int y, int width, int height)
+    {
+        _gl.glViewport(x, y, width, height);
+    }
+
+    @Override
+    public void glClearColor (float red, float green, float blue, float alpha)
+    {
+        _gl.glClearColor(red, green, blue, alpha);
+    }
+
+    @Override
+    public void glClear (int mask)
+    {
+        _gl.glClear(mask);
+    }
+
+    @Override
+    public void glEnable (int cap)
+    {
+        _gl.glEnable(cap);
+    }
+
+    @Override
+    public void glDisable (int cap)
+    {
+        _gl.glDisable(cap);
+    }
+
+    @Override
+    public void glBlendEquation (int mode)
+    {
+        _gl.glBlendEquation(mode);
+    }
+
+    @Override
+    public void glBlendFunc (int sfactor, int dfactor)
+    {
+        _gl.glBlendFunc(sfactor, dfactor);
+    }
+
+    @Override
+    public int glGetError ()
+    {
+        return _gl.glGetError();
+    }
+
+    @Override
+    public String glGetString (int name)
+    {
+        return _gl.glGetString(name);
+    }
+    //endregion
+}
@@ -0,0 +1,332 @@
+package com.example.samplegamefix.gl;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+
+import java.nio.Buffer;
+
+/** straight through to {@link GLES20} and {@link GLUtils}, the backend the game runs on */
+public class Gles20Backend implements GlBackend
+{
+    //region state, draws and buffers
+    @Override
+    public void glUseProgram (int program)
+    {
+        GLES20.glUseProgram(program);
+    }
+
+    @Override
+    public void glEnableVertexAttribArray (int index)
+    {
+        GLES20.glEnableVertexAttribArray(index);
+    }
+
+    @Override
+    public void glDisableVertexAttribArray (int index)
+    {
+        GLES20.glDisableVertexAttribArray(index);
+    }
+
+    @Override
+    public void glVertexAttribPointer (int index, int size, int type, boolean normalized, int stride, Buffer ptr)
+    {
+        GLES20.glVertexAttribPointer(index, size, type, normalized, stride, ptr);
+    }
+
+    @Override
+    public void glVertexAttribPointer (int index, int size, int type, boolean normalized, int stride, int offset)
+    {
+        GLES20.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    @Override
+    public void glActiveTexture (int texture)
+    {
+        GLES20.glActiveTexture(texture);
+    }
+
+    @Override
+    public void glBindTexture (int target, int texture)
+    {
+        GLES20.glBindTexture(target, texture);
+    }
+
+    @Override
+    public void glUniformMatrix4fv (int location, int count, boolean transpose, float[] value, int offset)
+    {
+        GLES20.glUniformMatrix4fv(location, count, transpose, value, offset);
+    }
+
+    @Override
+    public void glUniform4fv (int location, int count, float[] v, int offset)
+    {
+        GLES20.glUniform4fv(location, count, v, offset);
+    }
+
+    @Override
+    public void glUniform1i (int location, int x)
+    {
+        GLES20.glUniform1i(location, x);
+    }
+
+    @Override
+    public void glUniform1f (int location, float x)
+    {
+        GLES20.glUniform1f(location, x);
+    }
+
+    @Override
+    public void glDrawElements (int mode, int count, int type, Buffer indices)
+    {
+        GLES20.glDrawElements(mode, count, type, indices);
+    }
+
+    @Override
+    public void glDrawElements (int mode, int count, int type, int offset)
+    {
+        GLES20.glDrawElements(mode, count, type, offset);
+    }
+
+    @Override
+    public void glDrawArrays (int mode, int first, int count)
+    {
+        GLES20.glDrawArrays(mode, first, count);
+    }
+
+    @Override
+    public void glGenBuffers (int n, int[] buffers, int offset)
+    {
+        GLES20.glGenBuffers(n, buffers, offset);
+    }
+
+    @Override
+    public void glBindBuffer (int target, int buffer)
+    {
+        GLES20.glBindBuffer(target, buffer);
+    }
+
+    @Override
+    public void glBufferData (int target, int size, Buffer data, int usage)
+    {
+        GLES20.glBufferData(target, size, data, usage);
+    }
+
+    @Override
+    public void glDeleteBuffers (int n, int[] buffers, int offset)
+    {
+        GLES20.glDeleteBuffers(n, buffers, offset);
+    }
+    //endregion
+
+    //region shaders and programs
+    @Override
+    public int glCreateShader (int type)
+    {
+        return GLES20.glCreateShader(type);
+    }
+
+    @Override
+    public void glShaderSource (int shader, String string)
+    {
+        GLES20.glShaderSource(shader, string);
+    }
+
+    @Override
+    public void glCompileShader (int shader)
+    {
+        GLES20.glCompileShader(shader);
+    }
+
+    @Override
+    public void glGetShaderiv (int shader, int pname, int[] params, int offset)
+    {
+        GLES20.glGetShaderiv(shader, pname, params, offset);
+    }
+
+    @Override
+    public String glGetShaderInfoLog (int shader)
+    {
+        return GLES20.glGetShaderInfoLog(shader);
+    }
+
+    @Override
+    public void glDeleteShader (int shader)
+    {
+        GLES20.glDeleteShader(shader);
+    }
+
+    @Override
+    public int glCreateProgram ()
+    {
+        return GLES20.glCreateProgram();
+    }
+
+    @Override
+    public void glAttachShader (int program, int shader)
+    {
+        GLES20.glAttachShader(program, shader);
+    }
+
+    @Override
+    public void glBindAttribLocation (int program, int index, String name)
+    {
+        GLES20.glBindAttribLocation(program, index, name);
+    }
+
+    @Override
+    public void glLinkProgram (int program)
+    {
+        GLES20.glLinkProgram(program);
+    }
+
+    @Override
+    public void glGetProgramiv (int program, int pname, int[] params, int offset)
+    {
+        GLES20.glGetProgramiv(program, pname, params, offset);
+    }
+
+    @Override
+    public String glGetProgramInfoLog (int program)
+    {
+        return GLES20.glGetProgramInfoLog(program);
+    }
+
+    @Override
+    public void glDeleteProgram (int program)
+    {
+        GLES20.glDeleteProgram(program);
+    }
+
+    @Override
+    public int glGetAttribLocation (int program, String name)
+    {
+        return GLES20.glGetAttribLocation(program, name);
+    }
+
+    @Override
+    public int glGetUniformLocation (int program, String name)
+    {
+        return GLES20.glGetUniformLocation(program, name);
+    }
+    //endregion
+
+    //region textures
+    @Override
+    public void glGenTextures (int n, int[] textures, int offset)
+    {
+        GLES20.glGenTextures(n, textures, offset);
+    }
+
+    @Override
+    public void glDeleteTextures (int n, int[] textures, int offset)
+    {
+        GLES20.glDeleteTextures(n, textures, offset);
+    }
+
+    @Override
+    public void glTexParameteri (int target, int pname, int param)
+    {
+        GLES20.glTexParameteri(target, pname, param);
+    }
+
+    @Override
+    public void glTexParameterf (int target, int pname, float param)
+    {
+        GLES20.glTexParameterf(target, pname, param);
+    }
+
+    @Override
+    public void glTexImage2D (int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels)
+    {
+        GLES20.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+    }
+
+    @Override
+    public void glTexSubImage2D (int target, int level, int xoffset, int yoffset, int width, int height, int format, int type, Buffer pixels)
+    {
+        GLES20.glTexSubImage2D(target, level, xoffset, yoffset, width, height, format, type, pixels);
+    }
+
+    @Override
+    public void texImage2D (int target, int level, Bitmap bitmap, int border)
+    {
+        GLUtils.texImage2D(target, level, bitmap, border);
+    }
+
+    @Override
+    public void texImage2D (int target, int level, int internalformat, Bitmap bitmap, int border)
+    {
+        GLUtils.texImage2D(target, level, internalformat, bitmap, border);
+    }
+
+    @Override
+    public void glCompressedTexImage2D (int target, int level, int internalformat, int width, int height, int border,
+                                        int imageSize, Buffer data)
+    {
+        GLES20.glCompressedTexImage2D(target, level, internalformat, width, height, border, imageSize, data);
+    }
+
+    @Override
+    public void glGenerateMipmap (int target)
+    {
+        GLES20.glGenerateMipmap(target);
+    }
+    //endregion
+
+    //region frame
+    @Override
+    public void glViewport (int x, int y, int width, int height)
+    {
+        GLES20.glViewport(x, y, width, height);
+    }
+
+    @Override
+    public void glClearColor (float red, float green, float blue, float alpha)
+    {
+        GLES20.glClearColor(red, green, blue, alpha);
+    }
+
+    @Override
+    public void glClear (int mask)
+    {
+        GLES20.glClear(mask);
+    }
+
+    @Override
+    public void glEnable (int cap)
+    {
+        GLES20.glEnable(cap);
+    }
+
+    @Override
+    public void glDisable (int cap)
+    {
+        GLES20.glDisable(cap);
+    }
+
+    @Override
+    public void glBlendEquation (int mode)
+    {
+        GLES20.glBlendEquation(mode);
+    }
+
+    @Override
+    public void glBlendFunc (int sfactor, int dfactor)
+    {
+        GLES20.glBlendFunc(sfactor, dfactor);
+    }
+
+    @Override
+    public int glGetError ()
+    {
+        return GLES20.glGetError();
+    }
+
+    @Override
+    public String glGetString (int name)
+    {
+        return GLES20.glGetString(name);
+    }
+    //endregion
+}
@@ -0,0 +1,273 @@
+package com.example.samplegamefix.gl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A 2D compressed texture and its mip levels in the KTX 1.1 container, the format the offline
+ * encoder writes and the loader reads back. Only what a compressed 2D texture uses is supported,
+ * no arrays, cube maps or 3D textures. Key/value pairs carry whatever else belongs with the
+ * texture, e.g. where the images of an atlas are.
+ */
+public final class KtxFile
+{
+    private static final byte[] IDENTIFIER = {
+            (byte) 0xAB, 'K', 'T', 'X', ' ', '1', '1', (byte) 0xBB, '\r', '\n', 0x1A, '\n' };
+    private static final int ENDIANNESS = 0x04030201;
+    private static final int HEADER_SIZE = IDENTIFIER.length + 13 * 4;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final int _internalFormat;
+    private final int _baseInternalFormat;
+    private final int _width;
+    private final int _height;
+    private final ByteBuffer[] _levels;
+    private final Map<String, String> _keyValues;
+
+    /**
+     * @param internalFormat     the compressed format, e.g. {@link EtcEncoder#ETC2_RGBA8}
+     * @param baseInternalFormat GL_RGB or GL_RGBA
+     * @param levels             compressed data of each level, from the full size down
+     */
+    public KtxFile (int internalFormat, int baseInternalFormat, int width, int height, ByteBuffer[] levels,
+                    Map<String, String> keyValues)
+    {
+        if (levels.length == 0)
+        {
+            throw new IllegalArgumentException("a texture needs at least one level");
+        }
+        _internalFormat = internalFormat;
+        _baseInternalFormat = baseInternalFormat;
+        _width = width;
+        _height = height;
+        _levels = levels;
+        _keyValues = Collections.unmodifiableMap(new LinkedHashMap<>(keyValues));
+    }
+
+    public int getInternalFormat ()
+    {
+        return _internalFormat;
+    }
+
+    public int getBaseInternalFormat ()
+    {
+        return _baseInternalFormat;
+    }
+
+    public int getWidth ()
+    {
+        return _width;
+    }
+
+    public int getHeight ()
+    {
+        return _height;
+    }
+
+    public int getLevelCount ()
+    {
+        return _levels.length;
+    }
+
+    public int getWidth (int level)
+    {
+        return Math.max(1, _width >> level);
+    }
+
+    public int getHeight (int level)
+    {
+        return Math.max(1, _height >> level);
+    }
+
+    /** @return the level's data from position 0, a view that can be read without disturbing the file */
+    public ByteBuffer getLevel (int level)
+    {
+        ByteBuffer data = _levels[level].duplicate();
+        data.rewind();
+        return data;
+    }
+
+    /** @return the value stored under the key, null if there is none */
+    public String getValue (String key)
+    {
+        return _keyValues.get(key);
+    }
+
+    public Map<String, String> getKeyValues ()
+    {
+        return _keyValues;
+    }
+
+    //region reading
+    /**
+     * Read a whole file, the levels end up in one direct buffer gl can upload from
+     *
+     * @throws IOException if the stream fails or isn't a KTX file of a 2D texture
+     */
+    public static KtxFile read (InputStream in) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(in.available(), 4096));
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = in.read(chunk)) != -1)
+        {
+            bytes.write(chunk, 0, read);
+        }
+        ByteBuffer file = ByteBuffer.allocateDirect(bytes.size());
+        file.put(bytes.toByteArray());
+        file.flip();
+        return read(file);
+    }
+
+    /** @param file the whole file, the levels returned are views of it */
+    public static KtxFile read (ByteBuffer file) throws IOException
+    {
+        try
+        {
+            return parse(file);
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e)
+        {
+            throw new IOException("truncated ktx file", e);
+        }
+    }
+
+    private static KtxFile parse (ByteBuffer file) throws IOException
+    {
+        for (byte expected : IDENTIFIER)
+        {
+            if (file.get() != expected)
+            {
+                throw new IOException("not a ktx file");
+            }
+        }
+        file.order(ByteOrder.LITTLE_ENDIAN);
+        int endianness = file.getInt();
+        if (endianness != ENDIANNESS)
+        {
+            file.order(ByteOrder.BIG_ENDIAN);
+        }
+        int glType = file.getInt();
+        file.getInt(); // glTypeSize
+        file.getInt(); // glFormat
+        int internalFormat = file.getInt();
+        int baseInternalFormat = file.getInt();
+        int width = file.getInt();
+        int height = file.getInt();
+        int depth = file.getInt();
+        int arrayElements = file.getInt();
+        int faces = file.getInt();
+        int levelCount = Math.max(1, file.getInt());
+        int keyValueBytes = file.getInt();
+        if (glType != 0 || depth != 0 || arrayElements != 0 || faces != 1 || width <= 0 || height <= 0)
+        {
+            throw new IOException("only compressed 2D textures are supported");
+        }
+
+        Map<String, String> keyValues = new LinkedHashMap<>();
+        int keyValueEnd = file.position() + keyValueBytes;
+        while (file.position() < keyValueEnd)
+        {
+            int size = file.getInt();
+            byte[] pair = new byte[size];
+            file.get(pair);
+            file.position(file.position() + padding(size));
+            int split = 0;
+            while (split < size && pair[split] != 0)
+            {
+                split++;
+            }
+            // values are usually written with a trailing nul as well
+            int valueEnd = size;
+            if (valueEnd > split + 1 && pair[valueEnd - 1] == 0)
+            {
+                valueEnd--;
+            }
+            String key = new String(pair, 0, split, UTF_8);
+            String value = split < size ? new String(pair, split + 1, valueEnd - split - 1, UTF_8) : "";
+            keyValues.put(key, value);
+        }
+        file.position(keyValueEnd);
+
+        ByteBuffer[] levels = new ByteBuffer[levelCount];
+        for (int level = 0; level < levelCount; level++)
+        {
+            int size = file.getInt();
+            ByteBuffer data = file.slice();
+            data.limit(size);
+            levels[level] = data;
+            file.position(file.position() + size + padding(size));
+        }
+        return new KtxFile(internalFormat, baseInternalFormat, width, height, levels, keyValues);
+    }
+    //endregion
+
+    //region writing
+    /** write the file little endian, the way the devices we run on read it */
+    public void write (OutputStream out) throws IOException
+    {
+        ByteArrayOutputStream keyValues = new ByteArrayOutputStream();
+        for (Map.Entry<String, String> entry : _keyValues.entrySet())
+        {
+            byte[] key = entry.getKey().getBytes(UTF_8);
+            byte[] value = entry.getValue().getBytes(UTF_8);
+            int size = key.length + 1 + value.length + 1;
+            keyValues.write(littleEndian(size));
+            keyValues.write(key);
+            keyValues.write(0);
+            keyValues.write(value);
+            keyValues.write(0);
+            keyValues.write(new byte[padding(size)]);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(IDENTIFIER);
+        header.putInt(ENDIANNESS);
+        header.putInt(0);   // glType, compressed
+        header.putInt(1);   // glTypeSize
+        header.putInt(0);   // glFormat, compressed
+        header.putInt(_internalFormat);
+        header.putInt(_baseInternalFormat);
+        header.putInt(_width);
+        header.putInt(_height);
+        header.putInt(0);   // depth
+        header.putInt(0);   // array elements
+        header.putInt(1);   // faces
+        header.putInt(_levels.length);
+        header.putInt(keyValues.size());
+        out.write(header.array());
+        keyValues.writeTo(out);
+
+        for (int level = 0; level < _levels.length; level++)
+        {
+            ByteBuffer data = getLevel(level);
+            int size = data.remaining();
+            byte[] bytes = new byte[size];
+            data.get(bytes);
+            out.write(littleEndian(size));
+            out.write(bytes);
+            out.write(new byte[padding(size)]);
+        }
+    }
+
+    private static byte[] littleEndian (int value)
+    {
+        return ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+    }
+    //endregion
+
+    /** @return bytes up to the next multiple of 4 */
+    private static int padding (int size)
+    {
+        return 3 - ((size + 3) & 3);
+    }
+}
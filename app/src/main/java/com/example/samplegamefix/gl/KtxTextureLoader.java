@@ -0,0 +1,136 @@
+package com.example.samplegamefix.gl;
+
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Uploads the compressed textures of {@link KtxFile}s with all their mip levels and trilinear
+ * filtering, and reads the regions of atlases packed offline back out of the file.
+ *
+ * Whether a format can be used depends on the context, ETC2 comes with GLES 3 and ETC1 with GLES 3
+ * or the OES extension. When it can't, {@link #upload} returns 0 and the caller falls back to
+ * uploading RGBA.
+ */
+public final class KtxTextureLoader
+{
+    /** where an atlas keeps its regions, one "name x y width height" line per image */
+    public static final String REGIONS_KEY = "samplegamefix.regions";
+
+    private static final String ETC1_EXTENSION = "GL_OES_compressed_ETC1_RGB8_texture";
+
+    private KtxTextureLoader ()
+    {
+    }
+
+    /** @return if the current context can sample textures of the format */
+    public static boolean isSupported (GlBackend gl, int format)
+    {
+        return isSupported(format, gl.glGetString(GLES20.GL_VERSION), gl.glGetString(GLES20.GL_EXTENSIONS));
+    }
+
+    /**
+     * @param version    GL_VERSION of the context, "OpenGL ES major.minor ..."
+     * @param extensions GL_EXTENSIONS of the context
+     */
+    static boolean isSupported (int format, String version, String extensions)
+    {
+        boolean es3 = majorVersion(version) >= 3;
+        switch (format)
+        {
+            case EtcEncoder.ETC1_RGB8:
+                return es3 || (extensions != null && extensions.contains(ETC1_EXTENSION));
+            case EtcEncoder.ETC2_RGBA8:
+                return es3;
+            default:
+                return false;
+        }
+    }
+
+    private static int majorVersion (String version)
+    {
+        String prefix = "OpenGL ES ";
+        if (version == null || !version.startsWith(prefix) || version.length() == prefix.length())
+        {
+            return 0;
+        }
+        char major = version.charAt(prefix.length());
+        return Character.isDigit(major) ? major - '0' : 0;
+    }
+
+    /**
+     * Upload every level of the file into a new texture, must be called on the gl thread
+     *
+     * @return the texture, 0 if the context can't sample the file's format
+     */
+    public static int upload (GlBackend gl, KtxFile file)
+    {
+        int format = file.getInternalFormat();
+        if (!isSupported(gl, format))
+        {
+            return 0;
+        }
+        int[] texture = new int[1];
+        gl.glGenTextures(1, texture, 0);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, texture[0]);
+        // a chain that stops short of 1x1 only samples if the texture is told where it ends, GLES 2
+        // can't be told, so those files get plain linear filtering of the levels they have
+        boolean complete = file.getLevelCount() == MipChain.levelCount(file.getWidth(), file.getHeight());
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER,
+                complete ? GLES20.GL_LINEAR_MIPMAP_LINEAR : GLES20.GL_LINEAR);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        int levels = complete ? file.getLevelCount() : 1;
+        for (int level = 0; level < levels; level++)
+        {
+            ByteBuffer data = file.getLevel(level);
+            gl.glCompressedTexImage2D(GLES20.GL_TEXTURE_2D, level, format, file.getWidth(level), file.getHeight(level),
+                    0, data.remaining(), data);
+        }
+        return texture[0];
+    }
+
+    //region atlas regions
+    /**
+     * @param names what each region is stored as, by region id
+     * @return the value to store under {@link #REGIONS_KEY}
+     */
+    public static String describeRegions (TextureAtlas atlas, String[] names)
+    {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < atlas.getRegionCount(); i++)
+        {
+            AtlasRegion region = atlas.getRegionAt(i);
+            lines.append(names[region.id]).append(' ')
+                    .append(region.x).append(' ').append(region.y).append(' ')
+                    .append(region.width).append(' ').append(region.height).append('\n');
+        }
+        return lines.toString();
+    }
+
+    /**
+     * @param name what the region was stored as
+     * @param id   what the region is looked up by at run time, e.g. the drawable resource id
+     * @return the region, null if the file has none of that name
+     */
+    public static AtlasRegion findRegion (KtxFile file, String name, int id)
+    {
+        String regions = file.getValue(REGIONS_KEY);
+        if (regions == null)
+        {
+            return null;
+        }
+        for (String line : regions.split("\n"))
+        {
+            String[] fields = line.trim().split(" ");
+            if (fields.length == 5 && fields[0].equals(name))
+            {
+                return new AtlasRegion(id, Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                        Integer.parseInt(fields[3]), Integer.parseInt(fields[4]), file.getWidth(), file.getHeight());
+            }
+        }
+        return null;
+    }
+    //endregion
+}
@@ -0,0 +1,115 @@
+package com.example.samplegamefix.gl;
+
+/**
+ * An image and its halvings down to 1x1, what a texture needs to be sampled with a mipmapped
+ * min filter. Each level averages 2x2 pixels of the one above, odd sides round down and the last
+ * row or column is folded into its neighbour.
+ *
+ * Colour is averaged weighted by alpha, so the transparent pixels around a sprite don't darken its
+ * outline in the smaller levels.
+ */
+public final class MipChain
+{
+    private final int[][] _levels;
+    private final int[] _widths;
+    private final int[] _heights;
+
+    private MipChain (int[][] levels, int[] widths, int[] heights)
+    {
+        _levels = levels;
+        _widths = widths;
+        _heights = heights;
+    }
+
+    /** @param argb row by row from the top, becomes level 0 as it is */
+    public static MipChain build (int[] argb, int width, int height)
+    {
+        if (width <= 0 || height <= 0 || argb.length < width * height)
+        {
+            throw new IllegalArgumentException("image is " + width + "x" + height + " with " + argb.length + " pixels");
+        }
+        int count = levelCount(width, height);
+        int[][] levels = new int[count][];
+        int[] widths = new int[count];
+        int[] heights = new int[count];
+        levels[0] = argb;
+        widths[0] = width;
+        heights[0] = height;
+        for (int level = 1; level < count; level++)
+        {
+            widths[level] = Math.max(1, widths[level - 1] / 2);
+            heights[level] = Math.max(1, heights[level - 1] / 2);
+            levels[level] = halve(levels[level - 1], widths[level - 1], heights[level - 1], widths[level], heights[level]);
+        }
+        return new MipChain(levels, widths, heights);
+    }
+
+    /** @return levels of a full chain, 1 + log2 of the longer side */
+    public static int levelCount (int width, int height)
+    {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+    }
+
+    private static int[] halve (int[] source, int sourceWidth, int sourceHeight, int width, int height)
+    {
+        int[] target = new int[width * height];
+        for (int y = 0; y < height; y++)
+        {
+            // the last row of an odd height also takes the row below it
+            int y0 = Math.min(y * 2, sourceHeight - 1);
+            int y1 = y == height - 1 ? sourceHeight - 1 : Math.min(y * 2 + 1, sourceHeight - 1);
+            for (int x = 0; x < width; x++)
+            {
+                int x0 = Math.min(x * 2, sourceWidth - 1);
+                int x1 = x == width - 1 ? sourceWidth - 1 : Math.min(x * 2 + 1, sourceWidth - 1);
+                long a = 0, r = 0, g = 0, b = 0;
+                int count = 0;
+                for (int sy = y0; sy <= y1; sy++)
+                {
+                    for (int sx = x0; sx <= x1; sx++)
+                    {
+                        int pixel = source[sy * sourceWidth + sx];
+                        int alpha = pixel >>> 24;
+                        a += alpha;
+                        r += ((pixel >> 16) & 0xff) * alpha;
+                        g += ((pixel >> 8) & 0xff) * alpha;
+                        b += (pixel & 0xff) * alpha;
+                        count++;
+                    }
+                }
+                if (a == 0)
+                {
+                    target[y * width + x] = 0;
+                    continue;
+                }
+                int alpha = (int) ((a + count / 2) / count);
+                target[y * width + x] = alpha << 24
+                        | (int) ((r + a / 2) / a) << 16
+                        | (int) ((g + a / 2) / a) << 8
+                        | (int) ((b + a / 2) / a);
+            }
+        }
+        return target;
+    }
+
+    public int getLevelCount ()
+    {
+        return _levels.length;
+    }
+
+    public int getWidth (int level)
+    {
+        return _widths[level];
+    }
+
+    public int getHeight (int level)
+    {
+        return _heights[level];
+    }
+
+    /** @return ARGB row by row from the top */
+    public int[] getPixels (int level)
+    {
+        return _levels[level];
+    }
+}
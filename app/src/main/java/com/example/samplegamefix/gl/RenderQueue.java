@@ -0,0 +1,232 @@
+package com.example.samplegamefix.gl;
+
+import java.util.Arrays;
+
+/**
+ * Everything drawn in a frame, submitted as commands keyed by layer, pass and texture and run in
+ * key order. Layers decide what ends up on top, within a layer commands of the same pass run one
+ * after another and within a pass commands of the same texture. Commands with equal keys run in
+ * the order they were submitted.
+ *
+ * A pass is the gl state a group of commands shares, e.g. the sprite batch with its program bound.
+ * The queue begins a pass before the first of its commands and only ends it when a command of
+ * another pass comes up, so sprites of several layers in a row are drawn by one open batch.
+ * Commands of pass 0 set up their own state.
+ *
+ * Keys are sorted with an 8 bit radix sort into arrays that only grow, once the queue has seen its
+ * busiest frame submitting and running it allocates nothing. Gl thread only.
+ */
+public class RenderQueue
+{
+    public static final int MAX_LAYER = 255;
+    /** highest pass id, passes are numbered from 1 */
+    public static final int MAX_PASSES = 255;
+    /** pass id of commands that don't share state with others */
+    public static final int NO_PASS = 0;
+
+    public interface Pass
+    {
+        void begin (float[] viewProjection);
+
+        void end ();
+    }
+
+    public interface Command
+    {
+        /** @param argument whatever was submitted with the command */
+        void render (float[] viewProjection, int argument);
+    }
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    private final Pass[] _passes = new Pass[MAX_PASSES + 1];
+    private int _passCount;
+
+    private int _count;
+    private int[] _keys;
+    private Command[] _commands;
+    private int[] _arguments;
+    private int[] _order;
+    private int[] _scratch;
+    private final int[] _buckets = new int[RADIX];
+
+    private int _passBegins;
+    private int _executed;
+
+    public RenderQueue (int initialCapacity)
+    {
+        int capacity = Math.max(initialCapacity, 1);
+        _keys = new int[capacity];
+        _commands = new Command[capacity];
+        _arguments = new int[capacity];
+        _order = new int[capacity];
+        _scratch = new int[capacity];
+    }
+
+    /** @return the id to submit the pass's commands with */
+    public int registerPass (Pass pass)
+    {
+        if (_passCount == MAX_PASSES)
+        {
+            throw new IllegalStateException("no more than " + MAX_PASSES + " passes");
+        }
+        _passCount++;
+        _passes[_passCount] = pass;
+        return _passCount;
+    }
+
+    /**
+     * @param layer   0 to {@link #MAX_LAYER}, higher layers are drawn later, on top
+     * @param pass    an id from {@link #registerPass} or {@link #NO_PASS}
+     * @param texture gl texture the command draws with, 0 if it doesn't matter, only the low 16 bits
+     *                take part in the order
+     */
+    public void submit (int layer, int pass, int texture, Command command, int argument)
+    {
+        if (layer < 0 || layer > MAX_LAYER)
+        {
+            throw new IllegalArgumentException("layer must be 0 to " + MAX_LAYER + ": " + layer);
+        }
+        if (pass < 0 || pass > _passCount)
+        {
+            throw new IllegalArgumentException("unknown pass: " + pass);
+        }
+        if (_count == _keys.length)
+        {
+            grow();
+        }
+        _keys[_count] = key(layer, pass, texture);
+        _commands[_count] = command;
+        _arguments[_count] = argument;
+        _count++;
+    }
+
+    /** layer in the top byte, pass below it and the texture in the low half */
+    static int key (int layer, int pass, int texture)
+    {
+        return (layer << 24) | (pass << 16) | (texture & 0xffff);
+    }
+
+    /** run the submitted commands in key order and empty the queue */
+    public void execute (float[] viewProjection)
+    {
+        sort();
+        int[] order = _order;
+        int open = NO_PASS;
+        _passBegins = 0;
+        for (int i = 0; i < _count; i++)
+        {
+            int command = order[i];
+            int pass = (_keys[command] >>> 16) & 0xff;
+            if (pass != open)
+            {
+                if (open != NO_PASS)
+                {
+                    _passes[open].end();
+                }
+                if (pass != NO_PASS)
+                {
+                    _passes[pass].begin(viewProjection);
+                    _passBegins++;
+                }
+                open = pass;
+            }
+            _commands[command].render(viewProjection, _arguments[command]);
+        }
+        if (open != NO_PASS)
+        {
+            _passes[open].end();
+        }
+        _executed = _count;
+        clear();
+    }
+
+    /** drop the submitted commands without running them */
+    public void clear ()
+    {
+        // don't keep drawables reachable from a queue that is done with them
+        Arrays.fill(_commands, 0, _count, null);
+        _count = 0;
+    }
+
+    /**
+     * stable least significant digit first radix sort of the command indices by key, digits every
+     * key shares are skipped, in a frame that only uses a few layers and one texture most are
+     */
+    private void sort ()
+    {
+        int count = _count;
+        int[] keys = _keys;
+        int[] order = _order;
+        int[] scratch = _scratch;
+        int[] buckets = _buckets;
+        for (int i = 0; i < count; i++)
+        {
+            order[i] = i;
+        }
+        if (count < 2)
+        {
+            return;
+        }
+
+        for (int shift = 0; shift < 32; shift += RADIX_BITS)
+        {
+            Arrays.fill(buckets, 0);
+            for (int i = 0; i < count; i++)
+            {
+                buckets[(keys[i] >>> shift) & (RADIX - 1)]++;
+            }
+            if (buckets[(keys[0] >>> shift) & (RADIX - 1)] == count)
+            {
+                continue;
+            }
+
+            int total = 0;
+            for (int b = 0; b < RADIX; b++)
+            {
+                int size = buckets[b];
+                buckets[b] = total;
+                total += size;
+            }
+            for (int i = 0; i < count; i++)
+            {
+                int command = order[i];
+                scratch[buckets[(keys[command] >>> shift) & (RADIX - 1)]++] = command;
+            }
+            int[] sorted = scratch;
+            scratch = order;
+            order = sorted;
+        }
+        _order = order;
+        _scratch = scratch;
+    }
+
+    private void grow ()
+    {
+        int capacity = _keys.length * 2;
+        _keys = Arrays.copyOf(_keys, capacity);
+        _commands = Arrays.copyOf(_commands, capacity);
+        _arguments = Arrays.copyOf(_arguments, capacity);
+        _order = new int[capacity];
+        _scratch = new int[capacity];
+    }
+
+    /** @return commands waiting for {@link #execute} */
+    public int size ()
+    {
+        return _count;
+    }
+
+    /** @return commands the last {@link #execute} ran */
+    public int getExecutedCount ()
+    {
+        return _executed;
+    }
+
+    /** @return passes the last {@link #execute} began, the state setups it took to run the frame */
+    public int getPassBegins ()
+    {
+        return _passBegins;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.samplegamefix.gl;
+
+/**
+ * Images packed into one texture by {@link TextureAtlasBuilder}, ARGB pixels row by row from the
+ * top like {@link android.graphics.Bitmap#getPixels}, ready to be made into a bitmap and uploaded.
+ */
+public final class TextureAtlas
+{
+    private final int _width;
+    private final int _height;
+    private final int[] _pixels;
+    private final AtlasRegion[] _regions;
+
+    TextureAtlas (int width, int height, int[] pixels, AtlasRegion[] regions)
+    {
+        _width = width;
+        _height = height;
+        _pixels = pixels;
+        _regions = regions;
+    }
+
+    public int getWidth ()
+    {
+        return _width;
+    }
+
+    public int getHeight ()
+    {
+        return _height;
+    }
+
+    public int[] getPixels ()
+    {
+        return _pixels;
+    }
+
+    public int getRegionCount ()
+    {
+        return _regions.length;
+    }
+
+    /** @return the regions in the order they were packed */
+    public AtlasRegion getRegionAt (int index)
+    {
+        return _regions[index];
+    }
+
+    /** @return the region of the image added with the id, null if there is none */
+    public AtlasRegion getRegion (int id)
+    {
+        for (AtlasRegion region : _regions)
+        {
+            if (region.id == id)
+            {
+                return region;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.samplegamefix.gl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Packs images into one power of two texture so sprites of different images can be drawn without
+ * switching textures. Images go onto shelves tallest first, the atlas starts at the smallest square
+ * that could hold them and grows until they fit.
+ *
+ * Every image gets a border of padding pixels copied from its own edges, so linear filtering at
+ * the edge of a region never picks up its neighbour. The result only depends on the ids, sizes and
+ * pixels added, not on the order they were added in.
+ */
+public class TextureAtlasBuilder
+{
+    public static final int DEFAULT_PADDING = 2;
+    /** padding that keeps neighbours apart down to the fourth mip level, for atlases that get a mip chain */
+    public static final int MIPMAPPED_PADDING = 8;
+    public static final int DEFAULT_MAX_SIZE = 2048;
+
+    private static class Image
+    {
+        final int id;
+        final int width;
+        final int height;
+        final int[] pixels;
+        int x, y;
+
+        Image (int id, int width, int height, int[] pixels)
+        {
+            this.id = id;
+            this.width = width;
+            this.height = height;
+            this.pixels = pixels;
+        }
+    }
+
+    // tallest first, then widest, then by id so equal sizes always land the same way
+    private static final Comparator<Image> PACK_ORDER = new Comparator<Image>()
+    {
+        @Override
+        public int compare (Image a, Image b)
+        {
+            if (a.height != b.height)
+            {
+                return b.height - a.height;
+            }
+            if (a.width != b.width)
+            {
+                return b.width - a.width;
+            }
+            return Integer.compare(a.id, b.id);
+        }
+    };
+
+    private final int _padding;
+    private final int _maxSize;
+    private final List<Image> _images = new ArrayList<>();
+
+    public TextureAtlasBuilder ()
+    {
+        this(DEFAULT_PADDING, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param padding pixels around every image
+     * @param maxSize widest and tallest the atlas may get, a power of two
+     */
+    public TextureAtlasBuilder (int padding, int maxSize)
+    {
+        if (padding < 0)
+        {
+            throw new IllegalArgumentException("padding can't be negative: " + padding);
+        }
+        if (maxSize <= 0 || Integer.bitCount(maxSize) != 1)
+        {
+            throw new IllegalArgumentException("max size must be a power of two: " + maxSize);
+        }
+        _padding = padding;
+        _maxSize = maxSize;
+    }
+
+    /**
+     * @param id     what the region is looked up by, e.g. the drawable resource id
+     * @param pixels ARGB, row by row from the top, kept until {@link #build}
+     */
+    public TextureAtlasBuilder add (int id, int width, int height, int[] pixels)
+    {
+        if (width <= 0 || height <= 0 || pixels.length < width * height)
+        {
+            throw new IllegalArgumentException("image " + id + " is " + width + "x" + height
+                    + " with " + pixels.length + " pixels");
+        }
+        for (Image image : _images)
+        {
+            if (image.id == id)
+            {
+                throw new IllegalArgumentException("image " + id + " was already added");
+            }
+        }
+        _images.add(new Image(id, width, height, pixels));
+        return this;
+    }
+
+    public TextureAtlas build ()
+    {
+        List<Image> images = new ArrayList<>(_images);
+        Collections.sort(images, PACK_ORDER);
+
+        int padded = _padding * 2;
+        long area = 0;
+        int widest = 1;
+        int tallest = 1;
+        for (Image image : images)
+        {
+            area += (long) (image.width + padded) * (image.height + padded);
+            widest = Math.max(widest, image.width + padded);
+            tallest = Math.max(tallest, image.height + padded);
+        }
+
+        int width = Math.max(nextPowerOfTwo((int) Math.ceil(Math.sqrt(area))), nextPowerOfTwo(widest));
+        int height = Math.max(width, nextPowerOfTwo(tallest));
+        while (true)
+        {
+            if (width > _maxSize || height > _maxSize)
+            {
+                throw new IllegalStateException("images don't fit a " + _maxSize + "x" + _maxSize + " atlas");
+            }
+            if (pack(images, width, height))
+            {
+                break;
+            }
+            // grow the shorter side, wide before tall
+            if (width <= height)
+            {
+                width *= 2;
+            }
+            else
+            {
+                height *= 2;
+            }
+        }
+
+        int[] pixels = new int[width * height];
+        AtlasRegion[] regions = new AtlasRegion[images.size()];
+        for (int i = 0; i < regions.length; i++)
+        {
+            Image image = images.get(i);
+            copyPadded(image, pixels, width);
+            regions[i] = new AtlasRegion(image.id, image.x, image.y, image.width, image.height, width, height);
+        }
+        return new TextureAtlas(width, height, pixels, regions);
+    }
+
+    /** place the images on shelves, @return false if they don't fit */
+    private boolean pack (List<Image> images, int width, int height)
+    {
+        int padded = _padding * 2;
+        int x = 0;
+        int y = 0;
+        int shelfHeight = 0;
+        for (Image image : images)
+        {
+            int w = image.width + padded;
+            int h = image.height + padded;
+            if (x + w > width)
+            {
+                // next shelf
+                y += shelfHeight;
+                x = 0;
+                shelfHeight = 0;
+            }
+            if (w > width || y + h > height)
+            {
+                return false;
+            }
+            image.x = x + _padding;
+            image.y = y + _padding;
+            x += w;
+            shelfHeight = Math.max(shelfHeight, h);
+        }
+        return true;
+    }
+
+    /** copy the image and extend its edge pixels out into the padding */
+    private void copyPadded (Image image, int[] atlas, int atlasWidth)
+    {
+        int padding = _padding;
+        for (int row = -padding; row < image.height + padding; row++)
+        {
+            int sourceRow = Math.min(Math.max(row, 0), image.height - 1) * image.width;
+            int target = (image.y + row) * atlasWidth + image.x;
+            for (int column = -padding; column < image.width + padding; column++)
+            {
+                int sourceColumn = Math.min(Math.max(column, 0), image.width - 1);
+                atlas[target + column] = image.pixels[sourceRow + sourceColumn];
+            }
+        }
+    }
+
+    private static int nextPowerOfTwo (int value)
+    {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+}
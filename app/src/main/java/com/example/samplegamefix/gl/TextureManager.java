@@ -0,0 +1,318 @@
+package com.example.samplegamefix.gl;
+
+import java.util.Arrays;
+
+/**
+ * Owns the textures loaded from assets, keyed by asset id, e.g. the drawable resource id or a
+ * resource id reserved for an atlas. Every texture is put in with the bytes it takes on the gpu so
+ * the manager knows how much is resident.
+ *
+ * Users hold on to a texture with {@link #acquire} and let go with {@link #release}. Textures nobody
+ * holds stay resident until the resident bytes go over the budget. Then the ones used longest ago
+ * are deleted first. A texture counts as used every time it is looked up or {@link #touch}ed.
+ * Held textures are never evicted, with too many of them the budget is simply exceeded. A reference
+ * can be taken before the texture is put in, e.g. while it is still loading.
+ *
+ * {@link #forgetAll} drops textures without deleting them. Use it when the context that owned
+ * them is already gone. Gl thread only.
+ */
+public class TextureManager
+{
+    public static final long DEFAULT_BUDGET = 32L << 20;
+
+    public interface Listener
+    {
+        /** the texture put in under the id was deleted or forgotten, it must not be drawn anymore */
+        void onTextureGone (int id, int texture);
+    }
+
+    private static final class Entry
+    {
+        int id;
+        int texture;
+        long bytes;
+        int references;
+        long lastUsed;
+    }
+
+    private final GlBackend _gl;
+    private final Listener _listener;
+    // only a handful of textures, a scan beats boxing the ids on every lookup of a frame
+    private Entry[] _entries = new Entry[8];
+    private int _entryCount;
+    private final int[] _name = new int[1];
+    private long _budget;
+    private long _residentBytes;
+    private long _clock;
+    private int _evictions;
+
+    /** @param listener told about every texture that goes away, null if nobody has to know */
+    public TextureManager (GlBackend gl, long budget, Listener listener)
+    {
+        _gl = gl;
+        _listener = listener;
+        setBudget(budget);
+    }
+
+    /** bytes of unreferenced textures allowed to stay resident, going below evicts right away */
+    public void setBudget (long bytes)
+    {
+        if (bytes < 0)
+        {
+            throw new IllegalArgumentException("budget can't be negative: " + bytes);
+        }
+        _budget = bytes;
+        trim();
+    }
+
+    public long getBudget ()
+    {
+        return _budget;
+    }
+
+    /**
+     * Take over an uploaded texture, one already under the id is deleted. References to the id
+     * are kept.
+     *
+     * @param bytes what the texture takes on the gpu, with its mip levels
+     */
+    public void put (int id, int texture, long bytes)
+    {
+        if (texture == 0)
+        {
+            throw new IllegalArgumentException("texture 0 can't be managed");
+        }
+        Entry entry = find(id);
+        if (entry == null)
+        {
+            entry = add(id);
+        }
+        else if (entry.texture != 0 && entry.texture != texture)
+        {
+            deleteTexture(id, entry);
+        }
+        _residentBytes += bytes - (entry.texture == texture ? entry.bytes : 0);
+        entry.texture = texture;
+        entry.bytes = bytes;
+        entry.lastUsed = ++_clock;
+        trim();
+    }
+
+    /** @return the texture of the id, 0 if none is resident, counts as using it */
+    public int get (int id)
+    {
+        Entry entry = find(id);
+        if (entry == null)
+        {
+            return 0;
+        }
+        entry.lastUsed = ++_clock;
+        return entry.texture;
+    }
+
+    /** count as using the texture of the id, for draws that already know which texture it is */
+    public void touch (int id)
+    {
+        Entry entry = find(id);
+        if (entry != null)
+        {
+            entry.lastUsed = ++_clock;
+        }
+    }
+
+    /** hold on to the texture of the id so it isn't evicted, @return it, 0 if it isn't resident yet */
+    public int acquire (int id)
+    {
+        Entry entry = find(id);
+        if (entry == null)
+        {
+            entry = add(id);
+        }
+        entry.references++;
+        entry.lastUsed = ++_clock;
+        return entry.texture;
+    }
+
+    /** let go of a texture {@link #acquire}d before, it may be evicted once nobody holds it */
+    public void release (int id)
+    {
+        Entry entry = find(id);
+        if (entry == null || entry.references == 0)
+        {
+            throw new IllegalStateException("texture " + id + " isn't held");
+        }
+        entry.references--;
+        entry.lastUsed = ++_clock;
+        if (entry.references == 0 && entry.texture == 0)
+        {
+            remove(entry);
+        }
+        trim();
+    }
+
+    /** delete the texture of the id now, whether it is held or not, references to it are kept */
+    public void delete (int id)
+    {
+        Entry entry = find(id);
+        if (entry == null)
+        {
+            return;
+        }
+        if (entry.texture != 0)
+        {
+            deleteTexture(id, entry);
+        }
+        if (entry.references == 0)
+        {
+            remove(entry);
+        }
+    }
+
+    /** delete every texture, while the context that owns them is still current */
+    public void deleteAll ()
+    {
+        // backwards, a removed entry is replaced by one already deleted
+        for (int i = _entryCount - 1; i >= 0; i--)
+        {
+            delete(_entries[i].id);
+        }
+    }
+
+    /**
+     * Drop every texture without deleting it, after the context that owned them was lost and took
+     * them with it. References are kept, held ids get their textures when they are put in again.
+     */
+    public void forgetAll ()
+    {
+        for (int i = _entryCount - 1; i >= 0; i--)
+        {
+            Entry entry = _entries[i];
+            if (entry.texture != 0)
+            {
+                int texture = entry.texture;
+                entry.texture = 0;
+                entry.bytes = 0;
+                notifyGone(entry.id, texture);
+            }
+            if (entry.references == 0)
+            {
+                remove(entry);
+            }
+        }
+        _residentBytes = 0;
+    }
+
+    /** delete unreferenced textures, least recently used first, until the resident bytes fit the budget */
+    private void trim ()
+    {
+        while (_residentBytes > _budget)
+        {
+            Entry oldest = null;
+            for (int i = 0; i < _entryCount; i++)
+            {
+                Entry entry = _entries[i];
+                if (entry.references == 0 && entry.texture != 0 && (oldest == null || entry.lastUsed < oldest.lastUsed))
+                {
+                    oldest = entry;
+                }
+            }
+            if (oldest == null)
+            {
+                // everything left is held
+                return;
+            }
+            deleteTexture(oldest.id, oldest);
+            remove(oldest);
+            _evictions++;
+        }
+    }
+
+    private Entry find (int id)
+    {
+        for (int i = 0; i < _entryCount; i++)
+        {
+            if (_entries[i].id == id)
+            {
+                return _entries[i];
+            }
+        }
+        return null;
+    }
+
+    private Entry add (int id)
+    {
+        if (_entryCount == _entries.length)
+        {
+            _entries = Arrays.copyOf(_entries, _entryCount * 2);
+        }
+        Entry entry = new Entry();
+        entry.id = id;
+        _entries[_entryCount++] = entry;
+        return entry;
+    }
+
+    private void remove (Entry entry)
+    {
+        for (int i = 0; i < _entryCount; i++)
+        {
+            if (_entries[i] == entry)
+            {
+                _entries[i] = _entries[--_entryCount];
+                _entries[_entryCount] = null;
+                return;
+            }
+        }
+    }
+
+    private void deleteTexture (int id, Entry entry)
+    {
+        int texture = entry.texture;
+        _name[0] = texture;
+        _gl.glDeleteTextures(1, _name, 0);
+        _residentBytes -= entry.bytes;
+        entry.texture = 0;
+        entry.bytes = 0;
+        notifyGone(id, texture);
+    }
+
+    private void notifyGone (int id, int texture)
+    {
+        if (_listener != null)
+        {
+            _listener.onTextureGone(id, texture);
+        }
+    }
+
+    /** @return bytes of all resident textures, held or not */
+    public long getResidentBytes ()
+    {
+        return _residentBytes;
+    }
+
+    /** @return textures resident */
+    public int getResidentCount ()
+    {
+        int count = 0;
+        for (int i = 0; i < _entryCount; i++)
+        {
+            if (_entries[i].texture != 0)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** @return how many hold the id */
+    public int getReferences (int id)
+    {
+        Entry entry = find(id);
+        return entry == null ? 0 : entry.references;
+    }
+
+    /** @return textures evicted to stay in the budget since the manager was made */
+    public int getEvictions ()
+    {
+        return _evictions;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.samplegamefix.helper;
+
+/**
+ * 2d affine transform in 6 floats, what a translate, rotate around z and scale of a 4x4 matrix
+ * boils down to for a flat sprite:
+ *
+ *   x' = a * x + c * y + tx
+ *   y' = b * x + d * y + ty
+ *
+ * a, b, c, d, tx, ty sit where android.opengl.Matrix keeps them in a column major 4x4.
+ */
+public final class Affine2D
+{
+    public float a = 1, b, c, d = 1, tx, ty;
+
+    public void setIdentity ()
+    {
+        a = d = 1;
+        b = c = tx = ty = 0;
+    }
+
+    /**
+     * same as translateM(x, y) then rotateM(degrees, 0, 0, 1) then scaleM(scaleX, scaleY, 1) on
+     * an identity matrix, fused into one step
+     */
+    public void setTranslateRotateScale (float x, float y, float degrees, float scaleX, float scaleY)
+    {
+        float sin = FastTrig.sinDeg(degrees);
+        float cos = FastTrig.cosDeg(degrees);
+        a = cos * scaleX;
+        b = sin * scaleX;
+        c = -sin * scaleY;
+        d = cos * scaleY;
+        tx = x;
+        ty = y;
+    }
+
+    public float transformX (float x, float y)
+    {
+        return a * x + c * y + tx;
+    }
+
+    public float transformY (float x, float y)
+    {
+        return b * x + d * y + ty;
+    }
+
+    /** write the transform as a column major 4x4, moved to z */
+    public void toMatrix (float[] m, int offset, float z)
+    {
+        m[offset] = a;
+        m[offset + 1] = b;
+        m[offset + 2] = 0;
+        m[offset + 3] = 0;
+        m[offset + 4] = c;
+        m[offset + 5] = d;
+        m[offset + 6] = 0;
+        m[offset + 7] = 0;
+        m[offset + 8] = 0;
+        m[offset + 9] = 0;
+        m[offset + 10] = 1;
+        m[offset + 11] = 0;
+        m[offset + 12] = tx;
+        m[offset + 13] = ty;
+        m[offset + 14] = z;
+        m[offset + 15] = 1;
+    }
+
+    /**
+     * result = lhs * transform moved to z, for column major 4x4 matrices. Skips the zeros of the
+     * transform, 24 multiplies instead of the 64 of multiplyMM. result must not be lhs.
+     */
+    public static void multiply (float[] result, float[] lhs, Affine2D transform, float z)
+    {
+        float a = transform.a, b = transform.b, c = transform.c, d = transform.d;
+        float tx = transform.tx, ty = transform.ty;
+        for (int row = 0; row < 4; row++)
+        {
+            float l0 = lhs[row];
+            float l1 = lhs[4 + row];
+            float l2 = lhs[8 + row];
+            float l3 = lhs[12 + row];
+            result[row] = l0 * a + l1 * b;
+            result[4 + row] = l0 * c + l1 * d;
+            result[8 + row] = l2;
+            result[12 + row] = l0 * tx + l1 * ty + l2 * z + l3;
+        }
+    }
+}
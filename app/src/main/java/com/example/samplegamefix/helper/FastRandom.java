@@ -0,0 +1,72 @@
+package com.example.samplegamefix.helper;
+
+/**
+ * Small xorshift64* generator. Unlike Math.random() it isn't shared or synchronized and it can be
+ * seeded, so a run started from the same seed plays out the same way every time.
+ *
+ * Not thread safe, give every thread (every engine) its own.
+ */
+public class FastRandom
+{
+    private long _state;
+
+    public FastRandom (long seed)
+    {
+        setSeed(seed);
+    }
+
+    public void setSeed (long seed)
+    {
+        // splitmix64 spreads similar seeds apart and never leaves the state at 0
+        long z = seed + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        _state = z != 0 ? z : 0x9E3779B97F4A7C15L;
+    }
+
+    public long nextLong ()
+    {
+        long x = _state;
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        _state = x;
+        return x * 0x2545F4914F6CDD1DL;
+    }
+
+    /** @return 0 (inclusive) to bound (exclusive) */
+    public int nextInt (int bound)
+    {
+        if (bound <= 0)
+        {
+            throw new IllegalArgumentException("bound must be positive: " + bound);
+        }
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    /** @return 0 (inclusive) to 1 (exclusive) */
+    public float nextFloat ()
+    {
+        return (nextLong() >>> 40) * 0x1.0p-24f;
+    }
+
+    /** @return 0 (inclusive) to 1 (exclusive) */
+    public double nextDouble ()
+    {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /** @return lower to upper, the bounds can be given in either order */
+    public float floatBetween (float lower, float upper)
+    {
+        if (lower > upper)
+        {
+            float tmp = lower;
+            lower = upper;
+            upper = tmp;
+        }
+        float diff = upper - lower;
+        return lower + (nextFloat() * diff);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.samplegamefix.helper;
+
+/**
+ * Sine and cosine in degrees from a table, interpolated between entries. Off by less than 1e-6
+ * from Math.sin / Math.cos, plenty for placing sprites, without the cost of the real thing.
+ */
+public final class FastTrig
+{
+    private static final int STEPS = 4096;
+    private static final int MASK = STEPS - 1;
+    private static final double STEPS_PER_DEGREE = STEPS / 360.0;
+    // one entry past the end so interpolating from the last step needs no wrap
+    private static final float[] SIN = new float[STEPS + 1];
+
+    static
+    {
+        for (int i = 0; i <= STEPS; i++)
+        {
+            SIN[i] = (float) Math.sin(i * (2 * Math.PI / STEPS));
+        }
+    }
+
+    private FastTrig ()
+    {
+    }
+
+    public static float sinDeg (float degrees)
+    {
+        return lookup(degrees * STEPS_PER_DEGREE);
+    }
+
+    public static float cosDeg (float degrees)
+    {
+        // cos is sin a quarter turn later
+        return lookup(degrees * STEPS_PER_DEGREE + STEPS / 4);
+    }
+
+    private static float lookup (double step)
+    {
+        // double so big angles keep their fraction
+        double floor = Math.floor(step);
+        int i = (int) (long) floor & MASK;
+        float fraction = (float) (step - floor);
+        return SIN[i] + (SIN[i + 1] - SIN[i]) * fraction;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.samplegamefix.helper;
+
+/**
+ * Tilt that is set by code instead of a sensor. Used on devices without an accelerometer and to
+ * steer the player when the game runs headless.
+ */
+public class FixedTiltHelper extends TiltHelper
+{
+    private volatile float _tilt;
+
+    public void setTilt (float tilt)
+    {
+        _tilt = tilt;
+    }
+
+    @Override
+    public float getTilt ()
+    {
+        return _tilt;
+    }
+
+    @Override
+    public void destroy ()
+    {
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.samplegamefix.helper.gltext;
+
+/**
+ * Turns rasterized glyph coverage into a signed distance field: each pixel holds how far it is
+ * from the outline of the glyph, 128 on the outline, brighter inside, darker outside, reaching 255
+ * and 0 spread pixels away. Sampled with bilinear filtering and thresholded at one half by
+ * {@link com.example.samplegamefix.helper.gltext.programs.SdfTextProgram}, one field draws
+ * crisp edges at sizes well above and below the one it was rasterized at.
+ *
+ * Distances are exact euclidean ones, from the squared distance transform of Felzenszwalb and
+ * Huttenlocher run over the columns and then the rows, linear in the number of pixels.
+ */
+public final class DistanceField
+{
+    private static final float FAR = 1e20f;
+
+    private DistanceField ()
+    {
+    }
+
+    //--Generate--//
+    // D: write the distance field of the coverage into field, a pixel counts as inside from half coverage
+    // A: coverage - ALPHA_8 pixels, width a row
+    //    width, height - size of the image (pixels)
+    //    spread - distance (pixels) at which the field reaches 0 and 255, glyphs need that much padding
+    //    field - where the field goes, may be coverage itself
+    public static void generate (byte[] coverage, int width, int height, int spread, byte[] field)
+    {
+        int pixels = width * height;
+        float[] toInside = new float[pixels];
+        float[] toOutside = new float[pixels];
+        for (int i = 0; i < pixels; i++)
+        {
+            boolean inside = (coverage[i] & 0xff) >= 128;
+            toInside[i] = inside ? 0 : FAR;
+            toOutside[i] = inside ? FAR : 0;
+        }
+        int longest = Math.max(width, height);
+        float[] f = new float[longest];
+        float[] d = new float[longest];
+        int[] v = new int[longest];
+        float[] z = new float[longest + 1];
+        transform(toInside, width, height, f, d, v, z);
+        transform(toOutside, width, height, f, d, v, z);
+
+        for (int i = 0; i < pixels; i++)
+        {
+            // pixels either side of the outline are half a pixel away from it
+            float distance = toOutside[i] > 0
+                    ? (float) Math.sqrt(toOutside[i]) - 0.5f
+                    : 0.5f - (float) Math.sqrt(toInside[i]);
+            int value = Math.round(128 + distance / spread * 127);
+            field[i] = (byte) (value < 0 ? 0 : value > 255 ? 255 : value);
+        }
+    }
+
+    // D: squared distance of every pixel to the nearest 0 in grid, in place
+    private static void transform (float[] grid, int width, int height, float[] f, float[] d, int[] v, float[] z)
+    {
+        for (int x = 0; x < width; x++)
+        {
+            for (int y = 0; y < height; y++)
+            {
+                f[y] = grid[y * width + x];
+            }
+            transform1d(f, height, d, v, z);
+            for (int y = 0; y < height; y++)
+            {
+                grid[y * width + x] = d[y];
+            }
+        }
+        for (int y = 0; y < height; y++)
+        {
+            System.arraycopy(grid, y * width, f, 0, width);
+            transform1d(f, width, d, v, z);
+            System.arraycopy(d, 0, grid, y * width, width);
+        }
+    }
+
+    // D: the lower envelope of the parabolas rooted at each sample
+    private static void transform1d (float[] f, int n, float[] d, int[] v, float[] z)
+    {
+        int k = 0;
+        v[0] = 0;
+        z[0] = -FAR;
+        z[1] = FAR;
+        for (int q = 1; q < n; q++)
+        {
+            float s = intersection(f, q, v[k]);
+            while (s <= z[k])
+            {
+                k--;
+                s = intersection(f, q, v[k]);
+            }
+            k++;
+            v[k] = q;
+            z[k] = s;
+            z[k + 1] = FAR;
+        }
+        k = 0;
+        for (int q = 0; q < n; q++)
+        {
+            while (z[k + 1] < q)
+            {
+                k++;
+            }
+            float dq = q - v[k];
+            d[q] = dq * dq + f[v[k]];
+        }
+    }
+
+    private static float intersection (float[] f, int q, int p)
+    {
+        return ((f[q] + (float) q * q) - (f[p] + (float) p * p)) / (2f * q - 2f * p);
+    }
+}
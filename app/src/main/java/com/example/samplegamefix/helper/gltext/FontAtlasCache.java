@@ -0,0 +1,143 @@
+package com.example.samplegamefix.helper.gltext;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Font maps {@link GLText} rasterized before, kept in a directory (the app's cache directory) one
+ * file a font, size and padding, so a later start uploads the atlas instead of drawing it again.
+ * A file is a small header (magic, format version and the key it was written for) followed by
+ * the body GLText wrote: its glyph metrics and the atlas pixels. Files are read memory mapped,
+ * the pixels are handed to glTexImage2D straight from the mapping.
+ *
+ * A file that can't be read, or was written for another key or format, is a miss and is deleted,
+ * the caller rasterizes and writes it again. Writes go to a temporary file renamed into place, a
+ * start interrupted half way leaves no partial atlas behind.
+ */
+public class FontAtlasCache
+{
+    private static final int MAGIC = 0x474c5446;               // "GLTF"
+    static final int VERSION = 1;                              // Bump When the Body GLText Writes Changes
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File mDirectory;
+
+    public FontAtlasCache (File directory)
+    {
+        mDirectory = directory;
+    }
+
+    //--Key--//
+    // D: what an atlas depends on, also what its file is named after
+    // A: file - font file in 'Assets'
+    //    size, padX, padY, spread - the arguments GLText loaded it with
+    public static String key (String file, int size, int padX, int padY, int spread)
+    {
+        return file + "-" + size + "-" + padX + "x" + padY + "-" + spread;
+    }
+
+    //--Read--//
+    // D: map the file of a key
+    // R: the body from its start, a view of the mapping, null if there is no usable file
+    public ByteBuffer read (String key)
+    {
+        File file = file(key);
+        if (!file.isFile())
+        {
+            return null;
+        }
+        try
+        {
+            ByteBuffer mapped;
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try
+            {
+                // the mapping stays valid once the file is closed
+                mapped = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+            }
+            finally
+            {
+                in.close();
+            }
+            if (mapped.getInt() != MAGIC || mapped.getInt() != VERSION)
+            {
+                throw new IOException("not a font atlas of this version");
+            }
+            byte[] stored = new byte[mapped.getShort() & 0xffff];
+            mapped.get(stored);
+            if (!key.equals(new String(stored, UTF_8)))
+            {
+                throw new IOException("font atlas of another key");
+            }
+            return mapped.slice();
+        }
+        catch (IOException | BufferUnderflowException e)
+        {
+            file.delete();
+            return null;
+        }
+    }
+
+    //--Write--//
+    // D: store the body under a key, replacing what was there. failing only costs the next start
+    //    the rasterization
+    // A: body - what read() hands back, from its position to its limit
+    // R: true if the file was written
+    public boolean write (String key, ByteBuffer body)
+    {
+        byte[] stored = key.getBytes(UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(4 + 4 + 2 + stored.length);
+        header.putInt(MAGIC).putInt(VERSION).putShort((short) stored.length).put(stored);
+        header.flip();
+
+        File file = file(key);
+        File partial = new File(mDirectory, file.getName() + ".tmp");
+        try
+        {
+            if (!mDirectory.isDirectory() && !mDirectory.mkdirs())
+            {
+                return false;
+            }
+            FileOutputStream out = new FileOutputStream(partial);
+            try
+            {
+                FileChannel channel = out.getChannel();
+                ByteBuffer data = body.duplicate();
+                while (header.hasRemaining())
+                {
+                    channel.write(header);
+                }
+                while (data.hasRemaining())
+                {
+                    channel.write(data);
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+            if (partial.renameTo(file))
+            {
+                return true;
+            }
+        }
+        catch (IOException e)
+        {
+            // same as a rename that failed
+        }
+        partial.delete();
+        return false;
+    }
+
+    // D: the file of a key, named after it with anything unsafe in a file name replaced
+    File file (String key)
+    {
+        return new File(mDirectory, "font-" + key.replaceAll("[^A-Za-z0-9._-]", "_") + ".atlas");
+    }
+}
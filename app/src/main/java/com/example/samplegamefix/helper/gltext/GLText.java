@@ -16,9 +16,17 @@ import android.graphics.Paint;
 import android.graphics.Typeface;
 import android.opengl.GLES20;
 import android.opengl.Matrix;
+import android.util.Log;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+
+import com.example.samplegamefix.gl.GlBackend;
+import com.example.samplegamefix.gl.GlStateCache;
 import com.example.samplegamefix.helper.gltext.programs.BatchTextProgram;
 import com.example.samplegamefix.helper.gltext.programs.Program;
+import com.example.samplegamefix.helper.gltext.programs.SdfTextProgram;
 
 public class GLText
 {
@@ -34,16 +42,26 @@ public class GLText
     public final static int FONT_SIZE_MIN = 6;         // Minumum Font Size (Pixels)
     public final static int FONT_SIZE_MAX = 180;       // Maximum Font Size (Pixels)
 
+    public final static int SDF_FONT_SIZE = 32;        // Pixel Size Distance Field Fonts Are Rasterized at
+    public final static int SDF_SPREAD = 4;            // Distance Field Spread (Pixels), Also the Padding of Each Side
+
     public final static int CHAR_BATCH_SIZE = 24;     // Number of Characters to Render Per Batch
     // must be the same as the size of u_MVPMatrix
     // in BatchTextProgram
     private static final String TAG = "GLTEXT";
 
+    private static final int ATLAS_HEADER_SIZE = 4 * 4 + 5 * 4;  // Counts and Sizes, Font Metrics Ahead of the Widths
+    private static final int ATLAS_SIZE_MAX = 2048;    // Largest Font Map load() Makes (Pixels)
+
+    private static final HashMap<String, GLText> sSdfFonts = new HashMap<>();  // Distance Field Font of Each Font File
+
     //--Members--//
     AssetManager assets;                               // Asset Manager
     SpriteBatch batch;                                 // Batch Renderer
 
+    int fontSize;                                      // Requested Pixel Size of the Font (Height)
     int fontPadX, fontPadY;                            // Font Padding (Pixels; On Each Side, ie. Doubled on Both X+Y Axis)
+    int sdfSpread;                                     // Distance Field Spread (Pixels), 0 for a Plain Coverage Font Map
 
     float fontHeight;                                  // Font Height (Actual; Pixels)
     float fontAscent;                                  // Font Ascent (Above Baseline; Pixels)
@@ -66,6 +84,17 @@ public class GLText
     private Program mProgram;                           // OpenGL Program object
     private int mColorHandle;                           // Shader color handle
     private int mTextureUniformHandle;                 // Shader texture handle
+    private int mMVPMatrixHandle;                      // Shader handle of the first MVP matrix, the one meshes use
+    private int mSmoothingHandle;                      // Shader handle of the distance field edge smoothing, SdfTextProgram only
+    private final float[] mColor = new float[4];       // Color Handed to the Shader
+    private final float[] mModelMatrix = new float[16]; // Model Matrix of the Text Being Drawn
+    private final int[] mDigits = new int[11];         // Character Indices of a Number, Least Significant Digit First
+    private GlyphCache mGlyphs;                        // Characters Outside the Font Map, null Maps Them to CHAR_UNKNOWN
+    private int[] mGlyphSlots = new int[16];           // Glyph of Each Character Being Laid Out, Cache Slot or -1 - Font Map Index
+    private final GlBackend mGl = GlStateCache.shared(); // State Changes Go Through the Cache
+    private FontAtlasCache mAtlasCache;                // Font Maps Rasterized Before, null to Always Rasterize
+    private long mLoadNanos;                           // Time the Last load() Took
+    private boolean mLoadedFromCache;                  // Whether the Last load() Skipped Rasterization
 
     //--Constructor--//
     // D: save program + asset manager, create arrays, and initialize the members
@@ -108,8 +137,10 @@ public class GLText
 
         // Initialize the color and texture handles
         mProgram = program;
-        mColorHandle = GLES20.glGetUniformLocation(mProgram.getHandle(), "u_Color");
-        mTextureUniformHandle = GLES20.glGetUniformLocation(mProgram.getHandle(), "u_Texture");
+        mColorHandle = mGl.glGetUniformLocation(mProgram.getHandle(), "u_Color");
+        mTextureUniformHandle = mGl.glGetUniformLocation(mProgram.getHandle(), "u_Texture");
+        mMVPMatrixHandle = mGl.glGetUniformLocation(mProgram.getHandle(), "u_MVPMatrix");
+        mSmoothingHandle = mGl.glGetUniformLocation(mProgram.getHandle(), "u_Smoothing");
     }
 
     // Constructor using the default program (BatchTextProgram)
@@ -118,6 +149,64 @@ public class GLText
         this(null, assets);
     }
 
+    //--Shared Distance Field Fonts--//
+    // D: the distance field font of a font file, loaded the first time it is asked for. texts of
+    //    every size in that typeface share its one atlas, scaled with setScale(). gl thread only
+    // A: assets - asset manager to load the font with
+    //    cache - where the atlas is kept between starts, null to rasterize it every time
+    //    file - Filename of the font (.ttf, .otf) to use. In 'Assets' folder.
+    // R: the shared font
+    public static GLText sharedSdf (AssetManager assets, FontAtlasCache cache, String file)
+    {
+        GLText text = sSdfFonts.get(file);
+        if (text == null)
+        {
+            SdfTextProgram program = new SdfTextProgram();
+            program.init();
+            text = new GLText(program, assets);
+            text.setAtlasCache(cache);
+            text.loadSdf(file);
+            // cold or warm start, load() itself stays quiet so it runs in unit tests
+            Log.d(TAG, String.format("%s loaded in %.1f ms, %s", file, text.getLoadNanos() / 1e6,
+                    text.isLoadedFromCache() ? "warm, from the atlas cache" : "cold, rasterized"));
+            sSdfFonts.put(file, text);
+        }
+        return text;
+    }
+
+    // D: drop the shared fonts of a lost context without deleting anything, the next sharedSdf()
+    //    loads them again
+    public static void forgetSharedFonts ()
+    {
+        sSdfFonts.clear();
+    }
+
+    // D: delete the shared fonts, the context that loaded them has to be current
+    public static void releaseSharedFonts ()
+    {
+        for (GLText text : sSdfFonts.values())
+        {
+            text.release();
+        }
+        sSdfFonts.clear();
+    }
+
+    //--Release--//
+    // D: delete the font map, the glyph cache pages and the program
+    public void release ()
+    {
+        if (textureId > 0)
+        {
+            mGl.glDeleteTextures(1, new int[] { textureId }, 0);
+            textureId = -1;
+        }
+        if (mGlyphs != null)
+        {
+            mGlyphs.release(mGl);
+        }
+        mProgram.delete();
+    }
+
     //--Load Font--//
     // description
     //    this will load the specified font file, create a texture for the defined
@@ -128,18 +217,90 @@ public class GLText
     //    padX, padY - Extra padding per character (X+Y Axis); to prevent overlapping characters.
     public boolean load (String file, int size, int padX, int padY)
     {
+        return load(file, size, padX, padY, 0);
+    }
+
+    //--Load Distance Field Font--//
+    // D: load the font as a signed distance field, rasterized once at SDF_FONT_SIZE and drawn at
+    //    any size with setScale(size / getFontSize()). needs a GLText made with an SdfTextProgram
+    // A: file - Filename of the font (.ttf, .otf) to use. In 'Assets' folder.
+    // R: true if the font was loaded
+    public boolean loadSdf (String file)
+    {
+        return load(file, SDF_FONT_SIZE, SDF_SPREAD, SDF_SPREAD, SDF_SPREAD);
+    }
+
+    // A: spread - distance field spread (pixels), 0 for plain coverage. at most the padding
+    private boolean load (String file, int size, int padX, int padY, int spread)
+    {
+        long start = System.nanoTime();
 
         // setup requested values
+        fontSize = size;                                // Save Requested Size
         fontPadX = padX;                                // Set Requested X Axis Padding
         fontPadY = padY;                                // Set Requested Y Axis Padding
+        sdfSpread = spread;                             // Set Distance Field Spread
+
+        // take the font map from the atlas cache, or rasterize it and store it there
+        String key = FontAtlasCache.key(file, size, padX, padY, spread);
+        ByteBuffer cached = mAtlasCache != null ? mAtlasCache.read(key) : null;
+        ByteBuffer pixels = cached != null ? restoreAtlas(cached) : null;
+        mLoadedFromCache = pixels != null;
+        if (pixels == null)
+        {
+            pixels = rasterize(file, size, spread);
+            if (pixels == null)
+            {
+                return false;                            // Return Error
+            }
+            if (mAtlasCache != null)
+            {
+                mAtlasCache.write(key, saveAtlas(pixels));
+            }
+        }
+
+        // save the font map in a texture
+        textureId = TextureHelper.loadAlphaTexture(pixels, textureSize, textureSize);
+
+        // calculate rows/columns
+        // NOTE: while not required for anything, these may be useful to have :)
+        colCnt = textureSize / cellWidth;               // Calculate Number of Columns
+        rowCnt = (int) Math.ceil((float) CHAR_CNT / (float) colCnt);  // Calculate Number of Rows
+
+        // setup the array of character texture regions
+        float x = 0;                                    // Initialize X
+        float y = 0;                                    // Initialize Y
+        for (int c = 0; c < CHAR_CNT; c++)
+        {         // FOR Each Character (On Texture)
+            charRgn[c] = new TextureRegion(textureSize, textureSize, x, y, cellWidth - 1, cellHeight - 1);  // Create Region for Character
+            x += cellWidth;                              // Move to Next Char (Cell)
+            if (x + cellWidth > textureSize)
+            {
+                x = 0;                                    // Reset X Position to Start
+                y += cellHeight;                          // Move to Next Row (Cell)
+            }
+        }
+
+        // create full texture region
+        textureRgn = new TextureRegion(textureSize, textureSize, 0, 0, textureSize, textureSize);  // Create Full Texture Region
+
+        // every other character is rasterized when a text first needs it, into pages of the
+        // smallest texture size the grid would use. the typeface is only created then
+        mGlyphs = new GlyphCache(new CanvasRasterizer(assets, file, size, cellWidth, cellHeight, fontPadX, fontDescent, fontPadY, spread),
+                cellWidth, cellHeight, 256, GlyphCache.DEFAULT_MAX_PAGES, GlyphCache.DEFAULT_FRAME_BUDGET);
 
+        mLoadNanos = System.nanoTime() - start;
+
+        // return success
+        return true;                                    // Return Success
+    }
+
+    // D: set up the metrics and draw the font map, turned into a distance field if spread isn't 0
+    // R: the font map's pixels, textureSize a row, null if the font size is out of bounds
+    private ByteBuffer rasterize (String file, int size, int spread)
+    {
         // load the font and setup paint instance for drawing
-        Typeface tf = Typeface.createFromAsset(assets, file);  // Create the Typeface from Font File
-        Paint paint = new Paint();                      // Create Android Paint Instance
-        paint.setAntiAlias(true);                     // Enable Anti Alias
-        paint.setTextSize(size);                      // Set Text Size
-        paint.setColor(0xffffffff);                   // Set ARGB (White, Opaque)
-        paint.setTypeface(tf);                        // Set Typeface
+        Paint paint = createPaint(assets, file, size);
 
         // get font metrics
         Paint.FontMetrics fm = paint.getFontMetrics();  // Get Font Metrics
@@ -182,13 +343,22 @@ public class GLText
         int maxSize = cellWidth > cellHeight ? cellWidth : cellHeight;  // Save Max Size (Width/Height)
         if (maxSize < FONT_SIZE_MIN || maxSize > FONT_SIZE_MAX)  // IF Maximum Size Outside Valid Bounds
         {
-            return false;                                // Return Error
+            return null;                                 // Return Error
         }
 
         // set texture size based on max font size (width or height)
         // NOTE: these values are fixed, based on the defined characters. when
         // changing start/end characters (CHAR_START/CHAR_END) this will need adjustment too!
-        if (maxSize <= 24)                            // IF Max Size is 18 or Less
+        if (spread > 0)                               // IF Distance Field
+        {
+            // the one atlas of the typeface, no bigger than the grid of cells needs
+            textureSize = 64;
+            while ((textureSize / cellWidth) * (textureSize / cellHeight) < CHAR_CNT)
+            {
+                textureSize *= 2;
+            }
+        }
+        else if (maxSize <= 24)                            // IF Max Size is 18 or Less
         {
             textureSize = 256;                           // Set 256 Texture Size
         }
@@ -210,11 +380,6 @@ public class GLText
         Canvas canvas = new Canvas(bitmap);           // Create Canvas for Rendering to Bitmap
         bitmap.eraseColor(0x00000000);                // Set Transparent Background (ARGB)
 
-        // calculate rows/columns
-        // NOTE: while not required for anything, these may be useful to have :)
-        colCnt = textureSize / cellWidth;               // Calculate Number of Columns
-        rowCnt = (int) Math.ceil((float) CHAR_CNT / (float) colCnt);  // Calculate Number of Rows
-
         // render each of the characters to the canvas (ie. build the font map)
         float x = fontPadX;                             // Set Start Position (X)
         float y = (cellHeight - 1) - fontDescent - fontPadY;  // Set Start Position (Y)
@@ -232,28 +397,104 @@ public class GLText
         s[0] = CHAR_NONE;                               // Set Character to Use for NONE
         canvas.drawText(s, 0, 1, x, y, paint);        // Draw Character
 
-        // save the bitmap in a texture
-        textureId = TextureHelper.loadTexture(bitmap);
+        // read the bitmap back, alpha only is a byte a pixel
+        byte[] pixels = new byte[textureSize * textureSize];
+        bitmap.copyPixelsToBuffer(ByteBuffer.wrap(pixels));
+        bitmap.recycle();
+        if (spread > 0)                               // IF Distance Field
+        {
+            DistanceField.generate(pixels, textureSize, textureSize, spread, pixels);
+        }
+        ByteBuffer map = ByteBuffer.allocateDirect(pixels.length).order(ByteOrder.nativeOrder());
+        map.put(pixels).position(0);
+        return map;
+    }
 
-        // setup the array of character texture regions
-        x = 0;                                          // Initialize X
-        y = 0;                                          // Initialize Y
+    // D: the paint load() draws the font with
+    private static Paint createPaint (AssetManager assets, String file, int size)
+    {
+        Typeface tf = Typeface.createFromAsset(assets, file);  // Create the Typeface from Font File
+        Paint paint = new Paint();                      // Create Android Paint Instance
+        paint.setAntiAlias(true);                     // Enable Anti Alias
+        paint.setTextSize(size);                      // Set Text Size
+        paint.setColor(0xffffffff);                   // Set ARGB (White, Opaque)
+        paint.setTypeface(tf);                        // Set Typeface
+        return paint;
+    }
+
+    //--Atlas Cache--//
+    // D: keep rasterized font maps in the cache, load() takes them from there when they were
+    //    rasterized before. null (the default) rasterizes every time
+    public void setAtlasCache (FontAtlasCache cache)
+    {
+        mAtlasCache = cache;
+    }
+
+    // R: how long the last load() took (nanoseconds), from the cache or not
+    public long getLoadNanos ()
+    {
+        return mLoadNanos;
+    }
+
+    // R: whether the last load() found its font map in the atlas cache
+    public boolean isLoadedFromCache ()
+    {
+        return mLoadedFromCache;
+    }
+
+    // D: the metrics and the font map as written to the atlas cache
+    // A: pixels - the font map, textureSize a row
+    ByteBuffer saveAtlas (ByteBuffer pixels)
+    {
+        ByteBuffer atlas = ByteBuffer.allocate(ATLAS_HEADER_SIZE + CHAR_CNT * 4 + pixels.remaining());
+        atlas.putInt(CHAR_CNT).putInt(textureSize).putInt(cellWidth).putInt(cellHeight);
+        atlas.putFloat(fontHeight).putFloat(fontAscent).putFloat(fontDescent);
+        atlas.putFloat(charWidthMax).putFloat(charHeight);
         for (int c = 0; c < CHAR_CNT; c++)
-        {         // FOR Each Character (On Texture)
-            charRgn[c] = new TextureRegion(textureSize, textureSize, x, y, cellWidth - 1, cellHeight - 1);  // Create Region for Character
-            x += cellWidth;                              // Move to Next Char (Cell)
-            if (x + cellWidth > textureSize)
-            {
-                x = 0;                                    // Reset X Position to Start
-                y += cellHeight;                          // Move to Next Row (Cell)
-            }
+        {
+            atlas.putFloat(charWidths[c]);
         }
+        atlas.put(pixels.duplicate());
+        atlas.flip();
+        return atlas;
+    }
 
-        // create full texture region
-        textureRgn = new TextureRegion(textureSize, textureSize, 0, 0, textureSize, textureSize);  // Create Full Texture Region
-
-        // return success
-        return true;                                    // Return Success
+    // D: take the metrics from what saveAtlas() wrote
+    // R: the font map's pixels, a view of the atlas, null if the atlas doesn't fit this font map or
+    //    its sizes are corrupt, the font map is rasterized and written again then
+    ByteBuffer restoreAtlas (ByteBuffer atlas)
+    {
+        if (atlas.remaining() < ATLAS_HEADER_SIZE || atlas.getInt(atlas.position()) != CHAR_CNT)
+        {
+            return null;
+        }
+        int size = atlas.getInt(atlas.position() + 4);
+        if (size <= 0 || size > ATLAS_SIZE_MAX || Integer.bitCount(size) != 1
+                || atlas.remaining() != ATLAS_HEADER_SIZE + CHAR_CNT * 4 + size * size)
+        {
+            return null;
+        }
+        // a cell of 0 or one bigger than the map would never lay out the character regions
+        int width = atlas.getInt(atlas.position() + 8);
+        int height = atlas.getInt(atlas.position() + 12);
+        if (width <= 0 || width > size || height <= 0 || height > size)
+        {
+            return null;
+        }
+        atlas.getInt();
+        textureSize = atlas.getInt();
+        cellWidth = atlas.getInt();
+        cellHeight = atlas.getInt();
+        fontHeight = atlas.getFloat();
+        fontAscent = atlas.getFloat();
+        fontDescent = atlas.getFloat();
+        charWidthMax = atlas.getFloat();
+        charHeight = atlas.getFloat();
+        for (int c = 0; c < CHAR_CNT; c++)
+        {
+            charWidths[c] = atlas.getFloat();
+        }
+        return atlas.slice();
     }
 
     //--Begin/End Text Drawing--//
@@ -275,31 +516,40 @@ public class GLText
 
     public void begin (float red, float green, float blue, float alpha, float[] vpMatrix)
     {
-        initDraw(red, green, blue, alpha);
+        initDraw(red, green, blue, alpha, scaleY);
         batch.beginBatch(vpMatrix);                             // Begin Batch
     }
 
-    void initDraw (float red, float green, float blue, float alpha)
+    void initDraw (float red, float green, float blue, float alpha, float scale)
     {
-        GLES20.glUseProgram(mProgram.getHandle()); // specify the program to use
+        mGl.glUseProgram(mProgram.getHandle()); // specify the program to use
 
         // set color TODO: only alpha component works, text is always black #BUG
-        float[] color = { red, green, blue, alpha };
-        GLES20.glUniform4fv(mColorHandle, 1, color, 0);
-        GLES20.glEnableVertexAttribArray(mColorHandle);
+        // u_Color is a uniform, there is no attribute array to enable for it
+        mColor[0] = red;
+        mColor[1] = green;
+        mColor[2] = blue;
+        mColor[3] = alpha;
+        mGl.glUniform4fv(mColorHandle, 1, mColor, 0);
 
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);  // Set the active texture unit to texture unit 0
+        mGl.glActiveTexture(GLES20.GL_TEXTURE0);  // Set the active texture unit to texture unit 0
 
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId); // Bind the texture to this unit
+        mGl.glBindTexture(GLES20.GL_TEXTURE_2D, textureId); // Bind the texture to this unit
 
         // Tell the texture uniform sampler to use this texture in the shader by binding to texture unit 0
-        GLES20.glUniform1i(mTextureUniformHandle, 0);
+        mGl.glUniform1i(mTextureUniformHandle, 0);
+
+        if (sdfSpread > 0)
+        {
+            // half a screen pixel either side of the edge, the field changes by about
+            // 0.5 / sdfSpread over an atlas pixel and atlas pixels are drawn scale wide
+            mGl.glUniform1f(mSmoothingHandle, Math.min(0.5f, 0.25f / (sdfSpread * scale)));
+        }
     }
 
     public void end ()
     {
         batch.endBatch();                               // End Batch
-        GLES20.glDisableVertexAttribArray(mColorHandle);
     }
 
     //--Draw Text--//
@@ -316,8 +566,8 @@ public class GLText
         x += (chrWidth / 2.0f) - (fontPadX * scaleX);  // Adjust Start X
         y += (chrHeight / 2.0f) - (fontPadY * scaleY);  // Adjust Start Y
 
-        // create a model matrix based on x, y and angleDeg
-        float[] modelMatrix = new float[16];
+        // create a model matrix based on x, y and angleDeg, the batch copies it for each sprite
+        float[] modelMatrix = mModelMatrix;
         Matrix.setIdentityM(modelMatrix, 0);
         Matrix.translateM(modelMatrix, 0, x, y, z);
         Matrix.rotateM(modelMatrix, 0, angleDegZ, 0, 0, 1);
@@ -355,6 +605,197 @@ public class GLText
         draw(text, x, y, 0, 0);
     }
 
+    //--Build Text Mesh--//
+    // D: lay out the text into a mesh once, placed like draw() places it (without rotation), to be
+    //    drawn with drawMesh() until the text changes
+    // A: mesh - the mesh to replace the quads of
+    //    text - the string to lay out
+    //    x, y - the x, y position of the text (bottom left of text; including descent)
+    // R: [none]
+    public void buildMesh (TextMesh mesh, String text, float x, float y)
+    {
+        float chrHeight = cellHeight * scaleY;          // Calculate Scaled Character Height
+        float chrWidth = cellWidth * scaleX;            // Calculate Scaled Character Width
+        x += (chrWidth / 2.0f) - (fontPadX * scaleX);  // Adjust Start X
+        y += (chrHeight / 2.0f) - (fontPadY * scaleY);  // Adjust Start Y
+
+        // find the glyph of each character first, rasterizing the ones the cache doesn't have yet
+        int len = text.length();                        // Get String Length (Characters Can't Be More)
+        if (mGlyphSlots.length < len)
+        {
+            mGlyphSlots = new int[Math.max(len, mGlyphSlots.length * 2)];
+        }
+        int glyphs = 0;
+        int missing = 0;
+        boolean cached = false;
+        for (int i = 0; i < len; )
+        {              // FOR Each Code Point in String
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            int c = codePoint - CHAR_START;             // Calculate Character Index (Offset by First Char in Font)
+            if (c >= 0 && c < CHAR_CNT - 1)            // IF Character In Font Map
+            {
+                mGlyphSlots[glyphs++] = -1 - c;
+                continue;
+            }
+            int slot = mGlyphs != null ? mGlyphs.get(mGl, codePoint) : -1;
+            if (slot < 0)                               // IF Not In Cache (Yet)
+            {
+                missing += mGlyphs != null ? 1 : 0;
+                slot = -1 - CHAR_UNKNOWN;                 // Set to Unknown Character Index
+            }
+            else
+            {
+                cached = true;
+            }
+            mGlyphSlots[glyphs++] = slot;
+        }
+
+        // the font map's glyphs in one run, then one run for each cache page used
+        mesh.begin(glyphs, scaleY);
+        addRun(mesh, glyphs, -1, x, y, chrWidth, chrHeight);
+        if (cached)
+        {
+            for (int page = 0; page < mGlyphs.getMaxPages(); page++)
+            {
+                addRun(mesh, glyphs, page, x, y, chrWidth, chrHeight);
+            }
+        }
+        mesh.setCacheState(cached || missing > 0 ? mGlyphs.getGeneration() : -1, missing);
+    }
+
+    // D: add the glyphs laid out in mGlyphSlots that are on the page (-1 the font map) as a run
+    private void addRun (TextMesh mesh, int glyphs, int page, float x, float y, float chrWidth, float chrHeight)
+    {
+        for (int i = 0; i < glyphs; i++)
+        {
+            int slot = mGlyphSlots[i];
+            float width;
+            if (slot < 0)
+            {
+                int c = -1 - slot;
+                width = charWidths[c];
+                if (page < 0)
+                {
+                    mesh.addGlyph(x, y, chrWidth, chrHeight, charRgn[c]);
+                }
+            }
+            else
+            {
+                width = mGlyphs.getWidth(slot);
+                if (mGlyphs.getPage(slot) == page)
+                {
+                    mesh.addGlyph(x, y, chrWidth, chrHeight, mGlyphs.getRegion(slot));
+                }
+            }
+            x += (width + spaceX) * scaleX;             // Advance X Position by Scaled Character Width
+        }
+        mesh.endRun(page);
+    }
+
+    // D: lay out a number into a mesh straight from its digits, no String is made for it
+    // A: mesh - the mesh to replace the quads of
+    //    number - the number to lay out, in decimal
+    //    x, y - the x, y position of the text (bottom left of text; including descent)
+    // R: [none]
+    public void buildMesh (TextMesh mesh, int number, float x, float y)
+    {
+        float chrHeight = cellHeight * scaleY;          // Calculate Scaled Character Height
+        float chrWidth = cellWidth * scaleX;            // Calculate Scaled Character Width
+        int len = digits(number);                       // Get Digit Count (Including Sign)
+        x += (chrWidth / 2.0f) - (fontPadX * scaleX);  // Adjust Start X
+        y += (chrHeight / 2.0f) - (fontPadY * scaleY);  // Adjust Start Y
+
+        mesh.begin(len, scaleY);
+        for (int i = len - 1; i >= 0; i--)
+        {              // FOR Each Digit, Most Significant First
+            int c = mDigits[i];
+            mesh.addGlyph(x, y, chrWidth, chrHeight, charRgn[c]);  // Add the Digit
+            x += (charWidths[c] + spaceX) * scaleX;          // Advance X Position by Scaled Character Width
+        }
+        mesh.endRun(-1);
+    }
+
+    // D: put the character indices of the digits of a number in mDigits, least significant first,
+    //    the sign last
+    // R: the number of characters
+    private int digits (int number)
+    {
+        int len = 0;
+        int rest = number > 0 ? -number : number;       // Negative, Integer.MIN_VALUE Has No Positive
+        do
+        {
+            mDigits[len++] = '0' - (rest % 10) - CHAR_START;
+            rest /= 10;
+        }
+        while (rest != 0);
+        if (number < 0)
+        {
+            mDigits[len++] = '-' - CHAR_START;
+        }
+        return len;
+    }
+
+    //--Draw Text Mesh--//
+    // D: draw a mesh built by buildMesh(), one draw call whatever the length of the text. no
+    //    begin()/end() needed
+    // A: mesh - the mesh to draw
+    //    red, green, blue, alpha - color of the text
+    //    mvpMatrix - model, view and projection matrix to use
+    // R: [none]
+    public void drawMesh (TextMesh mesh, float red, float green, float blue, float alpha, float[] mvpMatrix)
+    {
+        initDraw(red, green, blue, alpha, mesh.getScale());
+        mGl.glUniformMatrix4fv(mMVPMatrixHandle, 1, false, mvpMatrix, 0);
+        if (!mesh.bind(mGl))
+        {
+            return;
+        }
+        int runs = mesh.getRunCount();
+        for (int run = 0; run < runs; run++)
+        {
+            int page = mesh.getRunPage(run);
+            if (page >= 0)
+            {
+                mGlyphs.touch(page);                     // Keep the Page for the Rest of the Frame
+            }
+            mGl.glBindTexture(GLES20.GL_TEXTURE_2D, page < 0 ? textureId : mGlyphs.getTexture(page));
+            mesh.drawRun(mGl, run);
+        }
+        mesh.unbind(mGl);
+    }
+
+    //--Mesh Staleness--//
+    // D: whether a mesh has to be built again although its text didn't change: glyphs were left
+    //    out to keep the frame's rasterization budget, or cache pages it uses were emptied since
+    public boolean isStale (TextMesh mesh)
+    {
+        return mesh.getMissingGlyphs() > 0
+                || (mesh.getCacheGeneration() >= 0 && mesh.getCacheGeneration() != mGlyphs.getGeneration());
+    }
+
+    //--Begin Frame--//
+    // D: call once a frame before building meshes, starts the frame's glyph rasterization budget.
+    //    texts sharing this instance may all call it with the same frame
+    public void beginFrame (long frame)
+    {
+        if (mGlyphs != null)
+        {
+            mGlyphs.beginFrame(frame);
+        }
+    }
+
+    //--Glyph Cache--//
+    public GlyphCache getGlyphCache ()
+    {
+        return mGlyphs;
+    }
+
+    public void setGlyphCache (GlyphCache glyphs)
+    {
+        mGlyphs = glyphs;
+    }
+
     //--Draw Text Centered--//
     // D: draw text CENTERED at the specified x,y position
     // A: text - the string to draw
@@ -451,10 +892,17 @@ public class GLText
     public float getLength (String text)
     {
         float len = 0.0f;                               // Working Length
-        int strLen = text.length();                     // Get String Length (Characters)
-        for (int i = 0; i < strLen; i++)
-        {           // For Each Character in String (Except Last
-            int c = (int) text.charAt(i) - CHAR_START;  // Calculate Character Index (Offset by First Char in Font)
+        int strLen = 0;                                 // String Length (Code Points)
+        for (int i = 0; i < text.length(); strLen++)
+        {           // For Each Code Point in String
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            int c = codePoint - CHAR_START;             // Calculate Character Index (Offset by First Char in Font)
+            if ((c < 0 || c >= CHAR_CNT) && mGlyphs != null)
+            {                                           // IF Character Comes From the Glyph Cache
+                len += (mGlyphs.measure(codePoint) * scaleX);
+                continue;
+            }
             if (c < 0 || c >= CHAR_CNT)                // IF Character Not In Font
             {
                 c = CHAR_UNKNOWN;                         // Set to Unknown Character Index
@@ -465,6 +913,21 @@ public class GLText
         return len;                                     // Return Total Length
     }
 
+    // D: return the length of a number if rendered using current settings, without making a String
+    // A: number - the number to get length for
+    // R: the length of the number (pixels)
+    public float getLength (int number)
+    {
+        float len = 0.0f;                               // Working Length
+        int strLen = digits(number);                    // Get Digit Count (Including Sign)
+        for (int i = 0; i < strLen; i++)
+        {
+            len += (charWidths[mDigits[i]] * scaleX);  // Add Scaled Character Width to Total Length
+        }
+        len += (strLen > 1 ? ((strLen - 1) * spaceX) * scaleX : 0);  // Add Space Length
+        return len;                                     // Return Total Length
+    }
+
     //--Get Width/Height of Character--//
     // D: return the scaled width/height of a character, or max character width
     //    NOTE: since all characters are the same height, no character index is required!
@@ -506,6 +969,12 @@ public class GLText
         return (fontHeight * scaleY);                 // Return Font Height (Actual)
     }
 
+    // R: the pixel size the font was loaded at (unscaled)
+    public int getFontSize ()
+    {
+        return fontSize;
+    }
+
     //--Draw Font Texture--//
     // D: draw the entire font texture (NOTE: for testing purposes only)
     // A: width, height - the width and height of the area to draw to. this is used
@@ -513,14 +982,83 @@ public class GLText
     //    vpMatrix - View and projection matrix to use
     public void drawTexture (int width, int height, float[] vpMatrix)
     {
-        initDraw(1.0f, 1.0f, 1.0f, 1.0f);
+        initDraw(1.0f, 1.0f, 1.0f, 1.0f, 1.0f);
 
         batch.beginBatch(vpMatrix);                  // Begin Batch (Bind Texture)
-        float[] idMatrix = new float[16];
+        float[] idMatrix = mModelMatrix;
         Matrix.setIdentityM(idMatrix, 0);
         batch.drawSprite(width - (textureSize / 2), height - (textureSize / 2),
                 textureSize, textureSize, textureRgn, idMatrix);  // Draw
         batch.endBatch();                               // End Batch
     }
-}
 
+    //--Canvas Rasterizer--//
+    // D: draws a glyph the way load() draws the font map, into a cell sized bitmap, turned into
+    //    a distance field too for a distance field font. the typeface is created on the first
+    //    glyph, a font map from the atlas cache doesn't need it otherwise
+    private static class CanvasRasterizer implements GlyphCache.Rasterizer
+    {
+        private final AssetManager mAssets;
+        private final String mFile;
+        private final int mSize;
+        private final int mCellWidth, mCellHeight;
+        private final float mX, mY;                    // Where the Glyph Is Drawn in the Cell
+        private final int mSpread;                     // Distance Field Spread, 0 for Plain Coverage
+        private final char[] mChars = new char[2];
+        private Paint mPaint;                          // Created With the Bitmap on the First Glyph
+        private Bitmap mBitmap;
+        private Canvas mCanvas;
+        private byte[] mPixels;                        // Coverage Turned Into the Distance Field, null Without
+
+        CanvasRasterizer (AssetManager assets, String file, int size, int cellWidth, int cellHeight, int padX,
+                          float descent, int padY, int spread)
+        {
+            mAssets = assets;
+            mFile = file;
+            mSize = size;
+            mCellWidth = cellWidth;
+            mCellHeight = cellHeight;
+            mX = padX;
+            mY = (cellHeight - 1) - descent - padY;
+            mSpread = spread;
+        }
+
+        private void prepare ()
+        {
+            if (mPaint != null)
+            {
+                return;
+            }
+            mPaint = createPaint(mAssets, mFile, mSize);
+            // the same width the cache rounds its cells to, so the rows of both line up
+            mBitmap = Bitmap.createBitmap((mCellWidth + 3) & ~3, mCellHeight, Bitmap.Config.ALPHA_8);
+            mCanvas = new Canvas(mBitmap);
+            mPixels = mSpread > 0 ? new byte[mBitmap.getWidth() * mCellHeight] : null;
+        }
+
+        @Override
+        public float measure (int codePoint)
+        {
+            prepare();
+            int count = Character.toChars(codePoint, mChars, 0);
+            return mPaint.measureText(mChars, 0, count);
+        }
+
+        @Override
+        public void rasterize (int codePoint, ByteBuffer cell, int width, int height)
+        {
+            prepare();
+            int count = Character.toChars(codePoint, mChars, 0);
+            mBitmap.eraseColor(0x00000000);
+            mCanvas.drawText(mChars, 0, count, mX, mY, mPaint);
+            if (mSpread == 0)
+            {
+                mBitmap.copyPixelsToBuffer(cell);
+                return;
+            }
+            mBitmap.copyPixelsToBuffer(ByteBuffer.wrap(mPixels));
+            DistanceField.generate(mPixels, width, height, mSpread, mPixels);
+            cell.put(mPixels);
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.example.samplegamefix.helper.gltext;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import android.opengl.GLES20;
+
+import com.example.samplegamefix.gl.GlBackend;
+
+/**
+ * Glyphs outside the ASCII font map, rasterized when a text first needs them into fixed size
+ * ALPHA_8 atlas pages, one cell each, sent with glTexSubImage2D. Only a few pages are ever made,
+ * when they are full the page used longest ago is emptied and its cells reused, so memory stays
+ * bounded whatever characters the texts use. A page drawn during the current frame is never
+ * emptied, a glyph that finds no room is left out until a later frame.
+ *
+ * At most frameBudget glyphs are rasterized a frame, a burst of new characters is spread over
+ * several frames. Meshes built with glyphs left out or on a page emptied since are stale,
+ * {@link GLText#isStale} tells. Gl thread only.
+ */
+public class GlyphCache
+{
+
+    //--Constants--//
+    public final static int DEFAULT_MAX_PAGES = 4;     // Pages Made at Most
+    public final static int DEFAULT_FRAME_BUDGET = 4;  // Glyphs Rasterized a Frame at Most
+
+    //--Rasterizer--//
+    public interface Rasterizer
+    {
+        // R: the advance width of the code point (pixels)
+        float measure (int codePoint);
+
+        // D: draw the code point into a cleared ALPHA_8 cell, width bytes a row, from position 0
+        void rasterize (int codePoint, ByteBuffer cell, int width, int height);
+    }
+
+    //--Members--//
+    private final Rasterizer mRasterizer;
+    final int cellWidth, cellHeight;                   // Cell Size (Pixels; as the Font Map's, What Is Drawn)
+    private final int mCellStride;                     // Cell Width Rounded Up to a Multiple of 4, the Unpack Alignment
+    final int pageSize;                                // Page Size (Square; Pixels)
+    private final int mColumns;                        // Cells a Row
+    final int slotsPerPage;                            // Cells a Page
+    private final TextureRegion[] mRegions;            // Region of Each Cell, the Same on Every Page
+    private final ByteBuffer mCell;                    // Pixels of the Glyph Being Rasterized
+
+    private final int[] mPageTextures;                 // Texture of Each Page, 0 Until the Page Is First Used
+    private final int[] mPageFill;                     // Cells Used on Each Page
+    private final long[] mPageLastUsed;                // Frame Each Page Was Last Used In
+    private final int[] mSlotCodePoints;               // Code Point in Each Cell (page * slotsPerPage + cell)
+    private final float[] mSlotWidths;                 // Advance Width of Each Cell's Glyph
+    private final int[] mTable;                        // Open Addressing Code Point -> Slot + 1, 0 Is Empty
+    private final int mTableMask;
+    private final int[] mName = new int[1];
+
+    private int mFrameBudget;
+    private long mFrame;                               // Current Frame, Set by beginFrame()
+    private int mFrameRasterized;                      // Glyphs Rasterized This Frame
+    private int mGeneration;                           // Changes Whenever Cells Are Emptied
+    private int mRasterized;
+    private int mEvictions;
+
+    //--Constructor--//
+    // D: make an empty cache, textures are only made once glyphs are put in
+    // A: rasterizer - draws and measures the glyphs
+    //    cellWidth, cellHeight - the cell of one glyph (pixels), cells are laid out and sent a multiple of 4 wide
+    //    pageSize - width and height of a page (pixels), holds at least one cell
+    //    maxPages - pages made at most
+    //    frameBudget - glyphs rasterized a frame at most
+    public GlyphCache (Rasterizer rasterizer, int cellWidth, int cellHeight, int pageSize, int maxPages, int frameBudget)
+    {
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        mCellStride = (cellWidth + 3) & ~3;
+        if (mCellStride > pageSize || cellHeight > pageSize)
+        {
+            throw new IllegalArgumentException("a " + mCellStride + "x" + cellHeight + " cell doesn't fit a page of " + pageSize);
+        }
+        mRasterizer = rasterizer;
+        this.pageSize = pageSize;
+        mColumns = pageSize / mCellStride;
+        slotsPerPage = mColumns * (pageSize / cellHeight);
+        mRegions = new TextureRegion[slotsPerPage];
+        for (int cell = 0; cell < slotsPerPage; cell++)
+        {
+            // as wide as a font map region, GLText draws both with the same quad width
+            mRegions[cell] = new TextureRegion(pageSize, pageSize, (cell % mColumns) * mCellStride,
+                    (cell / mColumns) * cellHeight, cellWidth - 1, cellHeight - 1);
+        }
+        mCell = ByteBuffer.allocateDirect(mCellStride * cellHeight).order(ByteOrder.nativeOrder());
+
+        mPageTextures = new int[maxPages];
+        mPageFill = new int[maxPages];
+        mPageLastUsed = new long[maxPages];
+        mSlotCodePoints = new int[maxPages * slotsPerPage];
+        mSlotWidths = new float[maxPages * slotsPerPage];
+        int tableSize = Integer.highestOneBit(Math.max(mSlotCodePoints.length, 1) * 2) * 2;
+        mTable = new int[tableSize];
+        mTableMask = tableSize - 1;
+        setFrameBudget(frameBudget);
+    }
+
+    public void setFrameBudget (int glyphs)
+    {
+        if (glyphs <= 0)
+        {
+            throw new IllegalArgumentException("frame budget must be positive: " + glyphs);
+        }
+        mFrameBudget = glyphs;
+    }
+
+    //--Frame--//
+    // D: start counting the glyphs of a frame, the same frame again changes nothing so every text
+    //    sharing the cache can call it
+    public void beginFrame (long frame)
+    {
+        if (frame != mFrame)
+        {
+            mFrame = frame;
+            mFrameRasterized = 0;
+        }
+    }
+
+    //--Get Glyph--//
+    // D: the slot of a code point, rasterized into the cache now if it isn't resident yet and the
+    //    frame still has budget and a page has room
+    // R: the slot, -1 if the glyph has to wait for a later frame
+    public int get (GlBackend gl, int codePoint)
+    {
+        int slot = find(codePoint);
+        if (slot >= 0 || mFrameRasterized >= mFrameBudget)
+        {
+            return slot;
+        }
+        slot = allocate(gl);
+        if (slot < 0)
+        {
+            return -1;
+        }
+
+        int page = slot / slotsPerPage;
+        int cell = slot % slotsPerPage;
+        mCell.clear();
+        for (int i = 0; i < mCell.capacity(); i++)
+        {
+            mCell.put(i, (byte) 0);
+        }
+        mRasterizer.rasterize(codePoint, mCell, mCellStride, cellHeight);
+        mCell.position(0);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, mPageTextures[page]);
+        gl.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, (cell % mColumns) * mCellStride, (cell / mColumns) * cellHeight,
+                mCellStride, cellHeight, GLES20.GL_ALPHA, GLES20.GL_UNSIGNED_BYTE, mCell);
+
+        mSlotCodePoints[slot] = codePoint;
+        mSlotWidths[slot] = mRasterizer.measure(codePoint);
+        insert(codePoint, slot);
+        mFrameRasterized++;
+        mRasterized++;
+        return slot;
+    }
+
+    // D: the slot of a resident code point, counts as using its page this frame
+    // R: the slot, -1 if it isn't resident
+    public int find (int codePoint)
+    {
+        for (int i = hash(codePoint); ; i = (i + 1) & mTableMask)
+        {
+            int entry = mTable[i];
+            if (entry == 0)
+            {
+                return -1;
+            }
+            if (mSlotCodePoints[entry - 1] == codePoint)
+            {
+                mPageLastUsed[(entry - 1) / slotsPerPage] = mFrame;
+                return entry - 1;
+            }
+        }
+    }
+
+    // D: the advance width of a code point, measured without rasterizing if it isn't resident
+    public float measure (int codePoint)
+    {
+        int slot = find(codePoint);
+        return slot >= 0 ? mSlotWidths[slot] : mRasterizer.measure(codePoint);
+    }
+
+    //--Slots--//
+    public float getWidth (int slot)
+    {
+        return mSlotWidths[slot];
+    }
+
+    public TextureRegion getRegion (int slot)
+    {
+        return mRegions[slot % slotsPerPage];
+    }
+
+    public int getPage (int slot)
+    {
+        return slot / slotsPerPage;
+    }
+
+    // R: the texture of a page, 0 if it was never used
+    public int getTexture (int page)
+    {
+        return mPageTextures[page];
+    }
+
+    // D: a page drawn this frame, so it isn't emptied before the frame is over
+    public void touch (int page)
+    {
+        mPageLastUsed[page] = mFrame;
+    }
+
+    // D: a free cell, on a page with room, a new page, or the page used longest ago emptied
+    private int allocate (GlBackend gl)
+    {
+        int pages = mPageTextures.length;
+        for (int page = 0; page < pages; page++)
+        {
+            if (mPageFill[page] < slotsPerPage)
+            {
+                if (mPageTextures[page] == 0)
+                {
+                    createPage(gl, page);
+                }
+                mPageLastUsed[page] = mFrame;
+                return page * slotsPerPage + mPageFill[page]++;
+            }
+        }
+
+        int oldest = -1;
+        for (int page = 0; page < pages; page++)
+        {
+            if (mPageLastUsed[page] != mFrame && (oldest < 0 || mPageLastUsed[page] < mPageLastUsed[oldest]))
+            {
+                oldest = page;
+            }
+        }
+        if (oldest < 0)
+        {
+            // every page is drawn this frame
+            return -1;
+        }
+        evict(oldest);
+        mPageLastUsed[oldest] = mFrame;
+        return oldest * slotsPerPage + mPageFill[oldest]++;
+    }
+
+    private void createPage (GlBackend gl, int page)
+    {
+        gl.glGenTextures(1, mName, 0);
+        mPageTextures[page] = mName[0];
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, mName[0]);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        gl.glTexParameterf(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        gl.glTexParameterf(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        // allocated empty, the cells are filled in one by one
+        gl.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_ALPHA, pageSize, pageSize, 0, GLES20.GL_ALPHA,
+                GLES20.GL_UNSIGNED_BYTE, null);
+    }
+
+    // D: empty every cell of a page, the texture is kept for the glyphs that come next
+    private void evict (int page)
+    {
+        mPageFill[page] = 0;
+        for (int slot = page * slotsPerPage; slot < (page + 1) * slotsPerPage; slot++)
+        {
+            mSlotCodePoints[slot] = -1;
+        }
+        rebuildTable();
+        mGeneration++;
+        mEvictions++;
+    }
+
+    //--Lookup Table--//
+    private int hash (int codePoint)
+    {
+        return (codePoint * 0x9E3779B1) >>> 8 & mTableMask;
+    }
+
+    private void insert (int codePoint, int slot)
+    {
+        int i = hash(codePoint);
+        while (mTable[i] != 0)
+        {
+            i = (i + 1) & mTableMask;
+        }
+        mTable[i] = slot + 1;
+    }
+
+    private void rebuildTable ()
+    {
+        Arrays.fill(mTable, 0);
+        for (int page = 0; page < mPageFill.length; page++)
+        {
+            for (int slot = page * slotsPerPage; slot < page * slotsPerPage + mPageFill[page]; slot++)
+            {
+                insert(mSlotCodePoints[slot], slot);
+            }
+        }
+    }
+
+    //--Context--//
+    // D: drop every page without deleting its texture, after the context that owned them was lost
+    public void forget ()
+    {
+        for (int page = 0; page < mPageTextures.length; page++)
+        {
+            mPageTextures[page] = 0;
+            mPageFill[page] = 0;
+        }
+        Arrays.fill(mTable, 0);
+        mGeneration++;
+    }
+
+    // D: delete the pages, the context that made them has to be current
+    public void release (GlBackend gl)
+    {
+        for (int page = 0; page < mPageTextures.length; page++)
+        {
+            if (mPageTextures[page] != 0)
+            {
+                mName[0] = mPageTextures[page];
+                gl.glDeleteTextures(1, mName, 0);
+            }
+        }
+        forget();
+    }
+
+    //--Get Counts--//
+    // R: changes whenever cells are emptied, meshes built before a change may show other glyphs
+    public int getGeneration ()
+    {
+        return mGeneration;
+    }
+
+    public int getMaxPages ()
+    {
+        return mPageTextures.length;
+    }
+
+    // R: pages with a texture
+    public int getPageCount ()
+    {
+        int count = 0;
+        for (int texture : mPageTextures)
+        {
+            if (texture != 0)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // R: glyphs rasterized since the cache was made
+    public int getRasterizedCount ()
+    {
+        return mRasterized;
+    }
+
+    // R: pages emptied to make room
+    public int getEvictions ()
+    {
+        return mEvictions;
+    }
+}
@@ -3,6 +3,8 @@ package com.example.samplegamefix.helper.gltext;
 import android.opengl.GLES20;
 import android.opengl.Matrix;
 
+import com.example.samplegamefix.gl.GlBackend;
+import com.example.samplegamefix.gl.GlStateCache;
 import com.example.samplegamefix.helper.gltext.programs.Program;
 
 public class SpriteBatch
@@ -24,6 +26,7 @@ public class SpriteBatch
     private float[] uMVPMatrices = new float[GLText.CHAR_BATCH_SIZE * 16]; // MVP matrix array to pass to shader
     private int mMVPMatricesHandle;                            // shader handle of the MVP matrix array
     private float[] mMVPMatrix = new float[16];                // used to calculate MVP matrix of each sprite
+    private final GlBackend mGl = GlStateCache.shared();       // state changes go through the cache
 
     //--Constructor--//
     // D: prepare the sprite batcher for specified maximum number of sprites
@@ -50,7 +53,7 @@ public class SpriteBatch
             indices[i + 5] = (short) (j + 0);           // Calculate Index 5
         }
         vertices.setIndices(indices, 0, len);         // Set Index Buffer for Rendering
-        mMVPMatricesHandle = GLES20.glGetUniformLocation(program.getHandle(), "u_MVPMatrix");
+        mMVPMatricesHandle = mGl.glGetUniformLocation(program.getHandle(), "u_MVPMatrix");
     }
 
     public void beginBatch (float[] vpMatrix)
@@ -69,8 +72,7 @@ public class SpriteBatch
         if (numSprites > 0)
         {                        // IF Any Sprites to Render
             // bind MVP matrices array to shader
-            GLES20.glUniformMatrix4fv(mMVPMatricesHandle, numSprites, false, uMVPMatrices, 0);
-            GLES20.glEnableVertexAttribArray(mMVPMatricesHandle);
+            mGl.glUniformMatrix4fv(mMVPMatricesHandle, numSprites, false, uMVPMatrices, 0);
 
             vertices.setVertices(vertexBuffer, 0, bufferIndex);  // Set Vertices from Buffer
             vertices.bind();                             // Bind Vertices
@@ -0,0 +1,263 @@
+package com.example.samplegamefix.helper.gltext;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import android.opengl.GLES20;
+
+import com.example.samplegamefix.gl.GlBackend;
+
+/**
+ * The glyph quads of one string, laid out once by {@link GLText#buildMesh} and kept in a vertex
+ * and an index buffer object. Drawing it is a bind and a single glDrawElements however long the
+ * text is, the quads are only sent to the gpu again after the text was built again. Glyphs from
+ * {@link GlyphCache} pages are grouped into one run a page after the ones of the font map, a run
+ * is a draw call.
+ *
+ * Vertices are laid out like the ones of {@link SpriteBatch} (x, y, u, v and the matrix index,
+ * always 0) so the text keeps using {@link com.example.samplegamefix.helper.gltext.programs.BatchTextProgram}.
+ * Buffer objects die with their context, {@link #forget} after a loss, {@link #release} while the
+ * context is still current. Gl thread only.
+ */
+public class TextMesh
+{
+
+    //--Members--//
+    private float[] mVertices = new float[0];                  // Glyph Quads, VERTEX_SIZE Floats per Vertex
+    private ByteBuffer mUpload;                                // Direct Copy of the Quads Handed to glBufferData
+    private FloatBuffer mUploadFloats;                         // Float View of mUpload
+    private int mGlyphCount;                                   // Glyphs in the Mesh
+    private boolean mChanged;                                  // Quads Changed Since the Last Upload
+    private int[] mRunPages = new int[1];                      // Glyph Cache Page of Each Run, -1 for the Font Map
+    private int[] mRunEnds = new int[1];                       // Glyph Count at the End of Each Run
+    private int mRunCount;
+    private int mRunStart;                                     // First Glyph of the Run Being Added
+    private int mCacheGeneration;                              // GlyphCache Generation the Glyphs Were Taken At, -1 for None
+    private int mMissingGlyphs;                                // Glyphs Left Out, They Had to Wait for a Later Frame
+    private float mScale = 1;                                  // Font Scale the Glyphs Were Laid Out at
+
+    private final int[] mBuffers = new int[2];                 // Vertex, Index Buffer Object
+    private int mIndexCapacity;                                // Glyphs the Index Buffer Has Indices For
+    private boolean mCreated;
+    private int mUploadCount;
+
+    //--Set Glyphs--//
+    // D: start the mesh over for count glyphs laid out at the font scale, then add each with
+    //    addGlyph(). used by GLText
+    void begin (int count, float scale)
+    {
+        int floats = count * SpriteBatch.VERTICES_PER_SPRITE * SpriteBatch.VERTEX_SIZE;
+        if (floats > mVertices.length)
+        {
+            mVertices = new float[floats];
+            mUpload = ByteBuffer.allocateDirect(floats * Utilities.BYTES_PER_FLOAT).order(ByteOrder.nativeOrder());
+            mUploadFloats = mUpload.asFloatBuffer();
+        }
+        mGlyphCount = 0;
+        mRunCount = 0;
+        mRunStart = 0;
+        mCacheGeneration = -1;
+        mMissingGlyphs = 0;
+        mScale = scale;
+        mChanged = true;
+    }
+
+    // D: the glyphs added since the last run make a run drawn with the texture of the page
+    void endRun (int page)
+    {
+        if (mGlyphCount == mRunStart)
+        {
+            return;
+        }
+        if (mRunCount == mRunPages.length)
+        {
+            mRunPages = Arrays.copyOf(mRunPages, mRunCount * 2);
+            mRunEnds = Arrays.copyOf(mRunEnds, mRunCount * 2);
+        }
+        mRunPages[mRunCount] = page;
+        mRunEnds[mRunCount] = mGlyphCount;
+        mRunCount++;
+        mRunStart = mGlyphCount;
+    }
+
+    // D: what the glyphs were taken from, to tell when the mesh has to be built again
+    void setCacheState (int generation, int missingGlyphs)
+    {
+        mCacheGeneration = generation;
+        mMissingGlyphs = missingGlyphs;
+    }
+
+    int getCacheGeneration ()
+    {
+        return mCacheGeneration;
+    }
+
+    int getMissingGlyphs ()
+    {
+        return mMissingGlyphs;
+    }
+
+    float getScale ()
+    {
+        return mScale;
+    }
+
+    // D: add the quad of a glyph centered at x, y
+    void addGlyph (float x, float y, float width, float height, TextureRegion region)
+    {
+        float x1 = x - width / 2.0f;
+        float y1 = y - height / 2.0f;
+        float x2 = x + width / 2.0f;
+        float y2 = y + height / 2.0f;
+
+        int i = mGlyphCount * SpriteBatch.VERTICES_PER_SPRITE * SpriteBatch.VERTEX_SIZE;
+        i = putVertex(i, x1, y1, region.u1, region.v2);
+        i = putVertex(i, x2, y1, region.u2, region.v2);
+        i = putVertex(i, x2, y2, region.u2, region.v1);
+        putVertex(i, x1, y2, region.u1, region.v1);
+        mGlyphCount++;
+    }
+
+    private int putVertex (int i, float x, float y, float u, float v)
+    {
+        mVertices[i++] = x;
+        mVertices[i++] = y;
+        mVertices[i++] = u;
+        mVertices[i++] = v;
+        mVertices[i++] = 0;                                    // every glyph shares the first matrix
+        return i;
+    }
+
+    //--Draw--//
+    // D: upload the quads if they changed and point the attributes into them, then drawRun() each
+    //    run with its texture bound and unbind(). used by GLText.drawMesh()
+    // R: false if there is nothing to draw, then nothing was bound
+    boolean bind (GlBackend gl)
+    {
+        if (mGlyphCount == 0)
+        {
+            return false;
+        }
+        if (mChanged)
+        {
+            upload(gl);
+        }
+
+        int vertexSize = SpriteBatch.VERTEX_SIZE * Utilities.BYTES_PER_FLOAT;
+        int position = AttribVariable.A_Position.getHandle();
+        int textureCoordinate = AttribVariable.A_TexCoordinate.getHandle();
+        int matrixIndex = AttribVariable.A_MVPMatrixIndex.getHandle();
+
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mBuffers[0]);
+        gl.glEnableVertexAttribArray(position);
+        gl.glVertexAttribPointer(position, Vertices.POSITION_CNT_2D, GLES20.GL_FLOAT, false, vertexSize, 0);
+        gl.glEnableVertexAttribArray(textureCoordinate);
+        gl.glVertexAttribPointer(textureCoordinate, Vertices.TEXCOORD_CNT, GLES20.GL_FLOAT, false, vertexSize,
+                Vertices.POSITION_CNT_2D * Utilities.BYTES_PER_FLOAT);
+        gl.glEnableVertexAttribArray(matrixIndex);
+        gl.glVertexAttribPointer(matrixIndex, 1, GLES20.GL_FLOAT, false, vertexSize,
+                (Vertices.POSITION_CNT_2D + Vertices.TEXCOORD_CNT) * Utilities.BYTES_PER_FLOAT);
+        gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mBuffers[1]);
+        return true;
+    }
+
+    int getRunCount ()
+    {
+        return mRunCount;
+    }
+
+    int getRunPage (int run)
+    {
+        return mRunPages[run];
+    }
+
+    void drawRun (GlBackend gl, int run)
+    {
+        int start = run == 0 ? 0 : mRunEnds[run - 1];
+        gl.glDrawElements(GLES20.GL_TRIANGLES, (mRunEnds[run] - start) * SpriteBatch.INDICES_PER_SPRITE,
+                GLES20.GL_UNSIGNED_SHORT, start * SpriteBatch.INDICES_PER_SPRITE * Utilities.BYTES_PER_SHORT);
+    }
+
+    void unbind (GlBackend gl)
+    {
+        int position = AttribVariable.A_Position.getHandle();
+        int textureCoordinate = AttribVariable.A_TexCoordinate.getHandle();
+        int matrixIndex = AttribVariable.A_MVPMatrixIndex.getHandle();
+        // like Vertices.unbind(), and nothing stays bound for the client array draws that follow
+        gl.glDisableVertexAttribArray(position);
+        gl.glDisableVertexAttribArray(textureCoordinate);
+        gl.glDisableVertexAttribArray(matrixIndex);
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+    }
+
+    private void upload (GlBackend gl)
+    {
+        if (!mCreated)
+        {
+            gl.glGenBuffers(2, mBuffers, 0);
+            mCreated = true;
+        }
+        if (mGlyphCount > mIndexCapacity)
+        {
+            // the indices only depend on the glyph count, they are sent again when the text outgrows them
+            int capacity = Math.max(mGlyphCount, mIndexCapacity * 2);
+            ByteBuffer indices = ByteBuffer.allocateDirect(capacity * SpriteBatch.INDICES_PER_SPRITE * Utilities.BYTES_PER_SHORT)
+                    .order(ByteOrder.nativeOrder());
+            for (int j = 0; j < capacity * SpriteBatch.VERTICES_PER_SPRITE; j += SpriteBatch.VERTICES_PER_SPRITE)
+            {
+                indices.putShort((short) j).putShort((short) (j + 1)).putShort((short) (j + 2));
+                indices.putShort((short) (j + 2)).putShort((short) (j + 3)).putShort((short) j);
+            }
+            indices.flip();
+            gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, mBuffers[1]);
+            gl.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, indices.capacity(), indices, GLES20.GL_STATIC_DRAW);
+            mIndexCapacity = capacity;
+        }
+
+        int floats = mGlyphCount * SpriteBatch.VERTICES_PER_SPRITE * SpriteBatch.VERTEX_SIZE;
+        mUploadFloats.clear();
+        mUploadFloats.put(mVertices, 0, floats);
+        gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, mBuffers[0]);
+        gl.glBufferData(GLES20.GL_ARRAY_BUFFER, floats * Utilities.BYTES_PER_FLOAT, mUpload, GLES20.GL_DYNAMIC_DRAW);
+
+        mChanged = false;
+        mUploadCount++;
+    }
+
+    //--Context--//
+    // D: give up the buffer objects of a lost context without deleting them, their names may
+    //    already belong to the new one. the quads are uploaded again on the next draw
+    public void forget ()
+    {
+        mBuffers[0] = 0;
+        mBuffers[1] = 0;
+        mCreated = false;
+        mIndexCapacity = 0;
+        mChanged = true;
+    }
+
+    // D: delete the buffer objects, the context that created them has to be current
+    public void release (GlBackend gl)
+    {
+        if (mCreated)
+        {
+            gl.glDeleteBuffers(2, mBuffers, 0);
+        }
+        forget();
+    }
+
+    //--Get Counts--//
+    public int getGlyphCount ()
+    {
+        return mGlyphCount;
+    }
+
+    // R: times the quads were sent to the gpu
+    public int getUploadCount ()
+    {
+        return mUploadCount;
+    }
+}
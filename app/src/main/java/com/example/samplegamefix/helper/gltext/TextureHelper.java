@@ -4,7 +4,11 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.opengl.GLES20;
-import android.opengl.GLUtils;
+
+import java.nio.ByteBuffer;
+
+import com.example.samplegamefix.gl.GlBackend;
+import com.example.samplegamefix.gl.GlStateCache;
 
 public class TextureHelper {
     public static int loadTexture(final Context context, final int resourceId) {
@@ -16,9 +20,10 @@ public class TextureHelper {
     }
     public static int loadTexture(Bitmap bitmap)
     {
+        GlBackend gl = GlStateCache.shared();
         final int[] textureHandle = new int[1];
 
-        GLES20.glGenTextures(1, textureHandle, 0);
+        gl.glGenTextures(1, textureHandle, 0);
 
         if (textureHandle[0] != 0)
         {
@@ -29,16 +34,16 @@ public class TextureHelper {
 //	        final Bitmap bitmap = BitmapFactory.decodeResource(context.getResources(), resourceId, options);
 
             // Bind to the texture in OpenGL
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
+            gl.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
 
             // Set filtering
-            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
-            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
-            GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE );  // Set U Wrapping
-            GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE );  // Set V Wrapping
+            gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+            gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+            gl.glTexParameterf(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE );  // Set U Wrapping
+            gl.glTexParameterf(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE );  // Set V Wrapping
 
             // Load the bitmap into the bound texture.
-            GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+            gl.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
 
             // Recycle the bitmap, since its data has been loaded into OpenGL.
             bitmap.recycle();
@@ -51,5 +56,28 @@ public class TextureHelper {
 
         return textureHandle[0];
     }
-}
 
+    // an ALPHA texture straight from its pixels, one byte each, for maps drawn without a bitmap
+    public static int loadAlphaTexture(ByteBuffer pixels, int width, int height)
+    {
+        GlBackend gl = GlStateCache.shared();
+        final int[] textureHandle = new int[1];
+
+        gl.glGenTextures(1, textureHandle, 0);
+
+        if (textureHandle[0] == 0)
+        {
+            throw new RuntimeException("Error loading texture.");
+        }
+
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        gl.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        gl.glTexParameterf(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE );
+        gl.glTexParameterf(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE );
+        gl.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_ALPHA, width, height, 0,
+                GLES20.GL_ALPHA, GLES20.GL_UNSIGNED_BYTE, pixels);
+
+        return textureHandle[0];
+    }
+}
@@ -8,6 +8,9 @@ import java.nio.FloatBuffer;
 import android.opengl.GLES20;
 import android.util.Log;
 
+import com.example.samplegamefix.gl.GlBackend;
+import com.example.samplegamefix.gl.GlStateCache;
+
 public class Utilities {
 
     public static final int BYTES_PER_FLOAT = 4;
@@ -15,25 +18,26 @@ public class Utilities {
     private static final String TAG = "Utilities";
 
     public static int createProgram(int vertexShaderHandle, int fragmentShaderHandle, AttribVariable[] variables) {
-        int  mProgram = GLES20.glCreateProgram();
+        GlBackend gl = GlStateCache.shared();
+        int  mProgram = gl.glCreateProgram();
 
         if (mProgram != 0) {
-            GLES20.glAttachShader(mProgram, vertexShaderHandle);
-            GLES20.glAttachShader(mProgram, fragmentShaderHandle);
+            gl.glAttachShader(mProgram, vertexShaderHandle);
+            gl.glAttachShader(mProgram, fragmentShaderHandle);
 
             for (AttribVariable var: variables) {
-                GLES20.glBindAttribLocation(mProgram, var.getHandle(), var.getName());
+                gl.glBindAttribLocation(mProgram, var.getHandle(), var.getName());
             }
 
-            GLES20.glLinkProgram(mProgram);
+            gl.glLinkProgram(mProgram);
 
             final int[] linkStatus = new int[1];
-            GLES20.glGetProgramiv(mProgram, GLES20.GL_LINK_STATUS, linkStatus, 0);
+            gl.glGetProgramiv(mProgram, GLES20.GL_LINK_STATUS, linkStatus, 0);
 
             if (linkStatus[0] == 0)
             {
-                Log.v(TAG, GLES20.glGetProgramInfoLog(mProgram));
-                GLES20.glDeleteProgram(mProgram);
+                Log.v(TAG, gl.glGetProgramInfoLog(mProgram));
+                gl.glDeleteProgram(mProgram);
                 mProgram = 0;
             }
         }
@@ -46,22 +50,23 @@ public class Utilities {
     }
 
     public static int loadShader(int type, String shaderCode){
-        int shaderHandle = GLES20.glCreateShader(type);
+        GlBackend gl = GlStateCache.shared();
+        int shaderHandle = gl.glCreateShader(type);
 
         if (shaderHandle != 0)
         {
-            GLES20.glShaderSource(shaderHandle, shaderCode);
-            GLES20.glCompileShader(shaderHandle);
+            gl.glShaderSource(shaderHandle, shaderCode);
+            gl.glCompileShader(shaderHandle);
 
             // Get the compilation status.
             final int[] compileStatus = new int[1];
-            GLES20.glGetShaderiv(shaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
+            gl.glGetShaderiv(shaderHandle, GLES20.GL_COMPILE_STATUS, compileStatus, 0);
 
             // If the compilation failed, delete the shader.
             if (compileStatus[0] == 0)
             {
-                Log.v(TAG, "Shader fail info: " + GLES20.glGetShaderInfoLog(shaderHandle));
-                GLES20.glDeleteShader(shaderHandle);
+                Log.v(TAG, "Shader fail info: " + gl.glGetShaderInfoLog(shaderHandle));
+                gl.glDeleteShader(shaderHandle);
                 shaderHandle = 0;
             }
         }
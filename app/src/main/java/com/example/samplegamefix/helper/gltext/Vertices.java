@@ -7,6 +7,9 @@ import java.nio.ShortBuffer;
 
 import android.opengl.GLES20;
 
+import com.example.samplegamefix.gl.GlBackend;
+import com.example.samplegamefix.gl.GlStateCache;
+
 public class Vertices {
 
     //--Constants--//
@@ -34,6 +37,7 @@ public class Vertices {
     private int mTextureCoordinateHandle;
     private int mPositionHandle;
     private int mMVPIndexHandle;
+    private final GlBackend mGl = GlStateCache.shared(); // State Changes Go Through the Cache
 
     //--Constructor--//
     // D: create the vertices/indices as specified (for 2d/3d)
@@ -107,21 +111,21 @@ public class Vertices {
     public void bind()  {
         // bind vertex position pointer
         vertices.position( 0 );                         // Set Vertex Buffer to Position
-        GLES20.glVertexAttribPointer(mPositionHandle, positionCnt,
+        mGl.glVertexAttribPointer(mPositionHandle, positionCnt,
                 GLES20.GL_FLOAT, false, vertexSize, vertices);
-        GLES20.glEnableVertexAttribArray(mPositionHandle);
+        mGl.glEnableVertexAttribArray(mPositionHandle);
 
         // bind texture position pointer
         vertices.position(positionCnt);  // Set Vertex Buffer to Texture Coords (NOTE: position based on whether color is also specified)
-        GLES20.glVertexAttribPointer(mTextureCoordinateHandle, TEXCOORD_CNT,
+        mGl.glVertexAttribPointer(mTextureCoordinateHandle, TEXCOORD_CNT,
                 GLES20.GL_FLOAT, false, vertexSize, vertices);
-        GLES20.glEnableVertexAttribArray(mTextureCoordinateHandle);
+        mGl.glEnableVertexAttribArray(mTextureCoordinateHandle);
 
         // bind MVP Matrix index position handle
         vertices.position(positionCnt + TEXCOORD_CNT);
-        GLES20.glVertexAttribPointer(mMVPIndexHandle, MVP_MATRIX_INDEX_CNT,
+        mGl.glVertexAttribPointer(mMVPIndexHandle, MVP_MATRIX_INDEX_CNT,
                 GLES20.GL_FLOAT, false, vertexSize, vertices);
-        GLES20.glEnableVertexAttribArray(mMVPIndexHandle);
+        mGl.glEnableVertexAttribArray(mMVPIndexHandle);
     }
 
     //--Draw--//
@@ -135,12 +139,12 @@ public class Vertices {
         if (indices != null)  {                       // IF Indices Exist
             indices.position(offset);                  // Set Index Buffer to Specified Offset
             //draw indexed
-            GLES20.glDrawElements(primitiveType, numVertices,
+            mGl.glDrawElements(primitiveType, numVertices,
                     GLES20.GL_UNSIGNED_SHORT, indices);
         }
         else  {                                         // ELSE No Indices Exist
             //draw direct
-            GLES20.glDrawArrays(primitiveType, offset, numVertices);
+            mGl.glDrawArrays(primitiveType, offset, numVertices);
         }
     }
 
@@ -150,7 +154,10 @@ public class Vertices {
     // A: [none]
     // R: [none]
     public void unbind()  {
-        GLES20.glDisableVertexAttribArray(mTextureCoordinateHandle);
+        // all three, an array left enabled would be read by the next draw of another program
+        mGl.glDisableVertexAttribArray(mPositionHandle);
+        mGl.glDisableVertexAttribArray(mTextureCoordinateHandle);
+        mGl.glDisableVertexAttribArray(mMVPIndexHandle);
     }
 }
 
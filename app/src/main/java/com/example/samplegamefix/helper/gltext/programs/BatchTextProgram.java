@@ -9,7 +9,7 @@ public class BatchTextProgram extends Program
             AttribVariable.A_Position, AttribVariable.A_TexCoordinate, AttribVariable.A_MVPMatrixIndex
     };
 
-    private static final String vertexShaderCode =
+    static final String vertexShaderCode =
             "uniform mat4 u_MVPMatrix[24];      \n"     // An array representing the combined
                     // model/view/projection matrices for each sprite
 
@@ -2,6 +2,8 @@ package com.example.samplegamefix.helper.gltext.programs;
 
 import android.opengl.GLES20;
 
+import com.example.samplegamefix.gl.GlBackend;
+import com.example.samplegamefix.gl.GlStateCache;
 import com.example.samplegamefix.helper.gltext.AttribVariable;
 import com.example.samplegamefix.helper.gltext.Utilities;
 
@@ -41,9 +43,10 @@ public abstract class Program
 
     public void delete ()
     {
-        GLES20.glDeleteShader(vertexShaderHandle);
-        GLES20.glDeleteShader(fragmentShaderHandle);
-        GLES20.glDeleteProgram(programHandle);
+        GlBackend gl = GlStateCache.shared();
+        gl.glDeleteShader(vertexShaderHandle);
+        gl.glDeleteShader(fragmentShaderHandle);
+        gl.glDeleteProgram(programHandle);
         mInitialized = false;
     }
 
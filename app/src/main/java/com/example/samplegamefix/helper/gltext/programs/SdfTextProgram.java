@@ -0,0 +1,37 @@
+package com.example.samplegamefix.helper.gltext.programs;
+
+import com.example.samplegamefix.helper.gltext.AttribVariable;
+
+/**
+ * BatchTextProgram for fonts loaded as signed distance fields. The alpha of the texture is the
+ * distance to the outline, the edge is where it crosses one half, smoothed over u_Smoothing either
+ * side so the edge stays about a pixel wide at whatever size the text is drawn.
+ */
+public class SdfTextProgram extends Program
+{
+
+    private static final AttribVariable[] programVariables = {
+            AttribVariable.A_Position, AttribVariable.A_TexCoordinate, AttribVariable.A_MVPMatrixIndex
+    };
+
+    private static final String fragmentShaderCode =
+            "uniform sampler2D u_Texture;       \n"    // The distance field.
+                    + "precision mediump float;       \n"
+                    + "uniform vec4 u_Color;          \n"
+                    + "uniform float u_Smoothing;     \n"     // Half the width of the edge, in distance field units
+                    + "varying vec2 v_TexCoordinate;  \n"
+
+                    + "void main()                    \n"
+                    + "{                              \n"
+                    + "   float distance = texture2D(u_Texture, v_TexCoordinate).w;\n"
+                    + "   float alpha = smoothstep(0.5 - u_Smoothing, 0.5 + u_Smoothing, distance);\n"
+                    + "   gl_FragColor = alpha * u_Color;\n"  // like BatchTextProgram, coverage times color
+                    + "}                             \n";
+
+    @Override
+    public void init ()
+    {
+        // the glyph quads are laid out the same, only the fragments differ
+        super.init(BatchTextProgram.vertexShaderCode, fragmentShaderCode, programVariables);
+    }
+}
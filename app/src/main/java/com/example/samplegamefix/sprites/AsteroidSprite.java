@@ -1,7 +1,7 @@
 package com.example.samplegamefix.sprites;
 
 import com.example.samplegamefix.R;
-import com.example.samplegamefix.helper.RandomHelper;
+import com.example.samplegamefix.helper.FastRandom;
 
 public class AsteroidSprite extends MovingSprite
 {
@@ -9,29 +9,11 @@ public class AsteroidSprite extends MovingSprite
     public static final float MIN_SCALE = 0.04f;
     protected static final float IMAGE_RATIO = 408f / 384f;
 
-    public float _rotationDelta;
-
     public AsteroidSprite ()
     {
         _drawableResourceId = R.drawable.asteroid;
     }
 
-    public void initRandom ()
-    {
-        _textureDataHandle = loadGLTexture(_drawableResourceId);
-        _currentScale[0] = RandomHelper.randomFloatBetween(MIN_SCALE, MAX_SCALE);
-        _currentScale[1] = _currentScale[0] / IMAGE_RATIO;
-        _currentPos[0] = RandomHelper.randomFloatBetween(-1, 1);
-        _currentPos[1] = 0;
-        _currentPos[2] = 0.1f;
-
-        _vector[0] = RandomHelper.randomFloatBetween(-0.002f, 0.002f);
-        _vector[1] = RandomHelper.randomFloatBetween(-0.03f, -0.02f);
-        _rotationZ = RandomHelper.randomFloatBetween(-90, 90);
-        _rotationDelta = RandomHelper.randomFloatBetween(-2, 2);
-        _alive = true;
-    }
-
     public void initIcon (float posX, float posY, float scaleX, float scaleY)
     {
         _textureDataHandle = loadGLTexture(_drawableResourceId);
@@ -54,11 +36,36 @@ public class AsteroidSprite extends MovingSprite
         _currentPos[1] = _ratio + _currentScale[1];
     }
 
-    @Override
-    public boolean update ()
+    /** a new asteroid at a random place along the top of the screen */
+    public static int spawnRandom (EntityStore store, float ratio, FastRandom random)
+    {
+        int i = store.spawn();
+        store._scaleX[i] = random.floatBetween(MIN_SCALE, MAX_SCALE);
+        store._scaleY[i] = store._scaleX[i] / IMAGE_RATIO;
+        store._posX[i] = random.floatBetween(-1, 1);
+
+        store._velX[i] = random.floatBetween(-0.002f, 0.002f);
+        store._velY[i] = random.floatBetween(-0.03f, -0.02f);
+        store._rot[i] = random.floatBetween(-90, 90);
+        store._rotDelta[i] = random.floatBetween(-2, 2);
+
+        // start asteroid at top of screen
+        store._posY[i] = ratio + store._scaleY[i];
+        store.finishSpawn(i);
+        return i;
+    }
+
+    /** spins and moves every asteroid in the store */
+    public static void updateAll (EntityStore store, float ratio)
     {
-        _rotationZ += _rotationDelta;
+        int count = store.size();
+        float[] rot = store._rot;
+        float[] rotDelta = store._rotDelta;
+        for (int i = 0; i < count; i++)
+        {
+            rot[i] += rotDelta[i];
+        }
 
-        return super.update();
+        MovingSprite.updateAll(store, ratio);
     }
 }
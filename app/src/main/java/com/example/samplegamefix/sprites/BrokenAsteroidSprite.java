@@ -1,39 +1,88 @@
 package com.example.samplegamefix.sprites;
 
-import com.example.samplegamefix.R;
-import com.example.samplegamefix.helper.RandomHelper;
+import com.example.samplegamefix.helper.FastRandom;
 
 public class BrokenAsteroidSprite extends AsteroidSprite
 {
+    // broken asteroids move down and scale down to 0 to make them look like they are moving away
     private static final float SCALE_DELTA = 0.0005f;
+    // how far above the asteroid each piece starts, in asteroid heights
+    private static final float[] PIECE_HEIGHTS = { 1 / 4f, 1 / 2f, 1, 1 / 2f, 1 / 4f };
 
-    public void init (float ratio, float position[], float vector[], float scale)
+    /** a piece of a broken asteroid as a new entity in the store, it shrinks away as it falls */
+    public static int spawn (EntityStore store, float posX, float posY, float velX, float velY, float scale,
+                             FastRandom random)
     {
-        _textureDataHandle = loadGLTexture(R.drawable.asteroid);
-        _ratio = ratio;
-        _currentScale[0] = scale;
-        _currentScale[1] = _currentScale[0] / IMAGE_RATIO;
-        _currentPos = position;
-        _vector = vector;
-        _rotationZ = RandomHelper.randomFloatBetween(-90, 90);
-        _rotationDelta = RandomHelper.randomFloatBetween(-2, 2);
-        _alive = true;
+        int i = store.spawn();
+        store._scaleX[i] = scale;
+        store._scaleY[i] = scale / IMAGE_RATIO;
+        store._posX[i] = posX;
+        store._posY[i] = posY;
+        store._velX[i] = velX;
+        store._velY[i] = velY;
+        store._rot[i] = random.floatBetween(-90, 90);
+        store._rotDelta[i] = random.floatBetween(-2, 2);
+        store.finishSpawn(i);
+        return i;
     }
 
-    @Override
-    public boolean update ()
+    /**
+     * Breaks asteroid i into five pieces that fly apart and slow down a bit. Pieces are written
+     * straight into the debris store so once it is big enough nothing is allocated.
+     */
+    public static void breakApart (EntityStore asteroids, int asteroid, EntityStore debris, FastRandom random)
     {
-        // broken asteroids move down and scale down to 0 to make them look like they are moving away
-        _currentScale[0] -= SCALE_DELTA;
-        _currentScale[1] -= SCALE_DELTA;
-        if (_currentScale[0] <= 0 || _currentScale[1] <= 0)
+        float origX = asteroids._posX[asteroid];
+        float origY = asteroids._posY[asteroid];
+        float origVectorY = asteroids._velY[asteroid];
+        float origScaleY = asteroids._scaleY[asteroid];
+        float newScale = asteroids._scaleX[asteroid] / 4;
+        for (int i = 0; i < 5; i++)
         {
-            return false;
+            float newX;
+            float newVectorX;
+            float newY = origY + origScaleY * PIECE_HEIGHTS[i]; //move it up a bit
+            float newVectorY = (float) (origVectorY * (0.8f + 0.2f * random.nextDouble())); //slow it's speed a bit
+
+            if (i < 2)
+            {
+                newX = origX - (float) (0.06f * random.nextDouble());
+                newVectorX = -(float) (random.nextDouble() * .01f);
+            }
+            else if (i == 2)
+            {
+                newX = origX;
+                newVectorX = 0;
+            }
+            else
+            {
+                newX = origX + (float) (0.06f * random.nextDouble());
+                newVectorX = (float) (random.nextDouble() * .01f);
+            }
+
+            spawn(debris, newX, newY, newVectorX, newVectorY, newScale, random);
         }
-        else
+    }
+
+    /** update() for every broken asteroid in the store */
+    public static void updateAll (EntityStore store, float ratio)
+    {
+        int count = store.size();
+        float[] scaleX = store._scaleX;
+        float[] scaleY = store._scaleY;
+        boolean[] alive = store._alive;
+        for (int i = 0; i < count; i++)
         {
-            return super.update();
+            scaleX[i] -= SCALE_DELTA;
+            scaleY[i] -= SCALE_DELTA;
+            if (scaleX[i] <= 0 || scaleY[i] <= 0)
+            {
+                // shrunk away, dropped by the pass below
+                alive[i] = false;
+            }
         }
+
+        AsteroidSprite.updateAll(store, ratio);
     }
 }
 
@@ -1,55 +1,60 @@
 package com.example.samplegamefix.sprites;
 
-import com.example.samplegamefix.R;
-import com.example.samplegamefix.helper.RandomHelper;
+import com.example.samplegamefix.helper.FastRandom;
 
 public class ChickenSprite extends MovingSprite
 {
     protected static final float IMAGE_RATIO = 204f / 328f;
     private static float SCALE = 0.07f;
 
-    public ChickenSprite ()
+    /** a new chicken at a random place along the bottom of the screen */
+    public static int spawn (EntityStore store, float ratio, FastRandom random)
     {
-        _drawableResourceId = R.drawable.chicken;
-    }
+        int i = store.spawn();
+        store._scaleX[i] = SCALE;
+        store._scaleY[i] = SCALE / IMAGE_RATIO;
+        store._posX[i] = random.floatBetween(-1, 1);
 
-    public void init ()
-    {
-        _textureDataHandle = loadGLTexture(_drawableResourceId);
-        _currentScale[0] = SCALE;
-        _currentScale[1] = _currentScale[0] / IMAGE_RATIO;
-        _currentPos[0] = RandomHelper.randomFloatBetween(-1, 1);
-        _currentPos[1] = 0;
-        _currentPos[2] = 0.2f;
-
-        _vector[0] = RandomHelper.randomFloatBetween(-0.05f, 0.05f);
-        _alive = true;
+        store._velX[i] = random.floatBetween(-0.05f, 0.05f);
+
+        setRatio(store, i, ratio);
+        store.finishSpawn(i);
+        return i;
     }
 
-    public void setRatio (float ratio)
+    public static void setRatio (EntityStore store, int i, float ratio)
     {
-        super.setRatio(ratio);
-
         // position at bottom of screen
-        _currentPos[1] = -_ratio + 2 * _currentScale[1];
+        store._posY[i] = -ratio + 2 * store._scaleY[i];
     }
 
-    @Override
-    public boolean update ()
+    /** moves every chicken in the store, chickens never leave the screen on their own */
+    public static void updateAll (EntityStore store, float ratio)
     {
-        super.update();
-
-        // if hit wall move back opposite direction
-        if (_currentPos[0] < -1)
-        {
-            _vector[0] = -_vector[0];
-        }
-        else if (_currentPos[0] > 1)
+        int count = store.size();
+        float[] posX = store._posX;
+        float[] posY = store._posY;
+        float[] velX = store._velX;
+        float[] velY = store._velY;
+        boolean[] alive = store._alive;
+        for (int i = 0; i < count; i++)
         {
-            _vector[0] = -_vector[0];
+            if (alive[i])
+            {
+                posX[i] = posX[i] + velX[i];
+                posY[i] = posY[i] + velY[i];
+                if (posY[i] < -ratio)
+                {
+                    alive[i] = false;
+                }
+
+                // if hit wall move back opposite direction
+                if (posX[i] < -1 || posX[i] > 1)
+                {
+                    velX[i] = -velX[i];
+                }
+            }
         }
-
-        return true;
     }
 }
 
@@ -0,0 +1,403 @@
+package com.example.samplegamefix.sprites;
+
+/**
+ * Structure of arrays storage for many sprites of one type. Every field lives in its own primitive
+ * array so the update loops walk contiguous memory instead of chasing one object per sprite.
+ *
+ * Entities are kept densely packed in spawn order, index 0 to size() - 1. Killing an entity only
+ * clears its alive flag, it is dropped by the next update kernel which packs the survivors
+ * without changing their order, same as removing it from a list would.
+ *
+ * Arrays are replaced when the store grows so don't hold on to them across a spawn. What happens
+ * when the store is full is set by its {@link OverflowPolicy}, growing by default. A full store
+ * that recycles writes each new entity over the oldest one in place, so the order then starts at
+ * the oldest and wraps around until the next spawn that doesn't recycle puts it back at index 0.
+ */
+public class EntityStore
+{
+    // well above the float rounding error of a square root, see circlesOverlap
+    private static final double EDGE_TOLERANCE = 1e-5;
+
+    private final int _drawableResourceId;
+    private final float _z;
+
+    private int _count;
+    private OverflowPolicy _overflowPolicy = OverflowPolicy.GROW;
+    // index of the entity the next recycling spawn writes over
+    private int _oldest;
+    private long _spawnCount;
+
+    private int _highWaterMark;
+    private int _growCount;
+
+    public float[] _posX;
+    public float[] _posY;
+    public float[] _velX;
+    public float[] _velY;
+    public float[] _rot;
+    public float[] _rotDelta;
+    public float[] _scaleX;
+    public float[] _scaleY;
+    public boolean[] _alive;
+
+    // state at the start of the current tick, for interpolation
+    public float[] _previousX;
+    public float[] _previousY;
+    public float[] _previousRot;
+
+    // when each entity was spawned, to find the oldest again once the kernels packed the store
+    long[] _spawnedAt;
+
+    public EntityStore (int capacity, int drawableResourceId, float z)
+    {
+        _drawableResourceId = drawableResourceId;
+        _z = z;
+        allocate(Math.max(capacity, 1));
+    }
+
+    private void allocate (int capacity)
+    {
+        _posX = new float[capacity];
+        _posY = new float[capacity];
+        _velX = new float[capacity];
+        _velY = new float[capacity];
+        _rot = new float[capacity];
+        _rotDelta = new float[capacity];
+        _scaleX = new float[capacity];
+        _scaleY = new float[capacity];
+        _alive = new boolean[capacity];
+        _previousX = new float[capacity];
+        _previousY = new float[capacity];
+        _previousRot = new float[capacity];
+        _spawnedAt = new long[capacity];
+    }
+
+    private void grow ()
+    {
+        float[] posX = _posX;
+        float[] posY = _posY;
+        float[] velX = _velX;
+        float[] velY = _velY;
+        float[] rot = _rot;
+        float[] rotDelta = _rotDelta;
+        float[] scaleX = _scaleX;
+        float[] scaleY = _scaleY;
+        boolean[] alive = _alive;
+        float[] previousX = _previousX;
+        float[] previousY = _previousY;
+        float[] previousRot = _previousRot;
+        long[] spawnedAt = _spawnedAt;
+
+        allocate(posX.length * 2);
+
+        System.arraycopy(posX, 0, _posX, 0, _count);
+        System.arraycopy(posY, 0, _posY, 0, _count);
+        System.arraycopy(velX, 0, _velX, 0, _count);
+        System.arraycopy(velY, 0, _velY, 0, _count);
+        System.arraycopy(rot, 0, _rot, 0, _count);
+        System.arraycopy(rotDelta, 0, _rotDelta, 0, _count);
+        System.arraycopy(scaleX, 0, _scaleX, 0, _count);
+        System.arraycopy(scaleY, 0, _scaleY, 0, _count);
+        System.arraycopy(alive, 0, _alive, 0, _count);
+        System.arraycopy(previousX, 0, _previousX, 0, _count);
+        System.arraycopy(previousY, 0, _previousY, 0, _count);
+        System.arraycopy(previousRot, 0, _previousRot, 0, _count);
+        System.arraycopy(spawnedAt, 0, _spawnedAt, 0, _count);
+    }
+
+    /**
+     * @return index of a new zeroed, alive entity at the end of the store. When a full store
+     * recycles, the new entity takes the index of the oldest one instead and nothing else moves.
+     */
+    public int spawn ()
+    {
+        int i;
+        if (_count == _posX.length && _overflowPolicy == OverflowPolicy.RECYCLE_OLDEST)
+        {
+            i = _oldest;
+            _oldest = (_oldest + 1) % _count;
+        }
+        else
+        {
+            if (_count == _posX.length)
+            {
+                if (_overflowPolicy == OverflowPolicy.FAIL)
+                {
+                    throw new IllegalStateException("entity store full, " + _count + " entities in use");
+                }
+                grow();
+                _growCount++;
+            }
+            if (_oldest != 0)
+            {
+                putOldestFirst();
+            }
+
+            i = _count++;
+            if (_count > _highWaterMark)
+            {
+                _highWaterMark = _count;
+            }
+        }
+        _spawnedAt[i] = _spawnCount++;
+        _posX[i] = _posY[i] = 0;
+        _velX[i] = _velY[i] = 0;
+        _rot[i] = _rotDelta[i] = 0;
+        _scaleX[i] = _scaleY[i] = 0;
+        _alive[i] = true;
+        return i;
+    }
+
+    /** call once the spawned entity is placed so it isn't interpolated from where the slot was */
+    void finishSpawn (int i)
+    {
+        _previousX[i] = _posX[i];
+        _previousY[i] = _posY[i];
+        _previousRot[i] = _rot[i];
+    }
+
+    /** the entity stays in place until the next update kernel drops it */
+    public void kill (int i)
+    {
+        _alive[i] = false;
+    }
+
+    /** removes the entity right away, later entities move down one index */
+    public void remove (int i)
+    {
+        int tail = _count - i - 1;
+        if (tail > 0)
+        {
+            System.arraycopy(_posX, i + 1, _posX, i, tail);
+            System.arraycopy(_posY, i + 1, _posY, i, tail);
+            System.arraycopy(_velX, i + 1, _velX, i, tail);
+            System.arraycopy(_velY, i + 1, _velY, i, tail);
+            System.arraycopy(_rot, i + 1, _rot, i, tail);
+            System.arraycopy(_rotDelta, i + 1, _rotDelta, i, tail);
+            System.arraycopy(_scaleX, i + 1, _scaleX, i, tail);
+            System.arraycopy(_scaleY, i + 1, _scaleY, i, tail);
+            System.arraycopy(_alive, i + 1, _alive, i, tail);
+            System.arraycopy(_previousX, i + 1, _previousX, i, tail);
+            System.arraycopy(_previousY, i + 1, _previousY, i, tail);
+            System.arraycopy(_previousRot, i + 1, _previousRot, i, tail);
+            System.arraycopy(_spawnedAt, i + 1, _spawnedAt, i, tail);
+        }
+        _count--;
+    }
+
+    /**
+     * Only needed after recycling, the entities are in spawn order from the oldest on and wrap
+     * around. Rotates them back so the next entity can go at the end.
+     */
+    private void putOldestFirst ()
+    {
+        // the kernels may have dropped the entity _oldest pointed at, look for the oldest left
+        int oldest = 0;
+        for (int i = 1; i < _count; i++)
+        {
+            if (_spawnedAt[i] < _spawnedAt[oldest])
+            {
+                oldest = i;
+            }
+        }
+        if (oldest != 0)
+        {
+            rotate(_posX, oldest);
+            rotate(_posY, oldest);
+            rotate(_velX, oldest);
+            rotate(_velY, oldest);
+            rotate(_rot, oldest);
+            rotate(_rotDelta, oldest);
+            rotate(_scaleX, oldest);
+            rotate(_scaleY, oldest);
+            rotate(_alive, oldest);
+            rotate(_previousX, oldest);
+            rotate(_previousY, oldest);
+            rotate(_previousRot, oldest);
+            rotate(_spawnedAt, oldest);
+        }
+        _oldest = 0;
+    }
+
+    // rotations by three reversals, in place so a rotation never allocates
+
+    private void rotate (float[] values, int first)
+    {
+        reverse(values, 0, first);
+        reverse(values, first, _count);
+        reverse(values, 0, _count);
+    }
+
+    private void rotate (boolean[] values, int first)
+    {
+        reverse(values, 0, first);
+        reverse(values, first, _count);
+        reverse(values, 0, _count);
+    }
+
+    private void rotate (long[] values, int first)
+    {
+        reverse(values, 0, first);
+        reverse(values, first, _count);
+        reverse(values, 0, _count);
+    }
+
+    private static void reverse (float[] values, int from, int to)
+    {
+        for (int i = from, j = to - 1; i < j; i++, j--)
+        {
+            float value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+
+    private static void reverse (boolean[] values, int from, int to)
+    {
+        for (int i = from, j = to - 1; i < j; i++, j--)
+        {
+            boolean value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+
+    private static void reverse (long[] values, int from, int to)
+    {
+        for (int i = from, j = to - 1; i < j; i++, j--)
+        {
+            long value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+
+    /** copy entity from into slot to, used by the kernels to pack survivors */
+    void move (int from, int to)
+    {
+        _posX[to] = _posX[from];
+        _posY[to] = _posY[from];
+        _velX[to] = _velX[from];
+        _velY[to] = _velY[from];
+        _rot[to] = _rot[from];
+        _rotDelta[to] = _rotDelta[from];
+        _scaleX[to] = _scaleX[from];
+        _scaleY[to] = _scaleY[from];
+        _alive[to] = _alive[from];
+        _previousX[to] = _previousX[from];
+        _previousY[to] = _previousY[from];
+        _previousRot[to] = _previousRot[from];
+        _spawnedAt[to] = _spawnedAt[from];
+    }
+
+    void setSize (int count)
+    {
+        _count = count;
+    }
+
+    public void clear ()
+    {
+        _count = 0;
+        _oldest = 0;
+    }
+
+    public int size ()
+    {
+        return _count;
+    }
+
+    public boolean isEmpty ()
+    {
+        return _count == 0;
+    }
+
+    public void setOverflowPolicy (OverflowPolicy overflowPolicy)
+    {
+        _overflowPolicy = overflowPolicy;
+    }
+
+    public OverflowPolicy getOverflowPolicy ()
+    {
+        return _overflowPolicy;
+    }
+
+    //region stats
+    /** @return most entities that were ever alive at the same time */
+    public int getHighWaterMark ()
+    {
+        return _highWaterMark;
+    }
+
+    /** @return how many times the store ran out of room and had to grow */
+    public int getGrowCount ()
+    {
+        return _growCount;
+    }
+
+    public int getCapacity ()
+    {
+        return _posX.length;
+    }
+    //endregion
+
+    public int getDrawableResourceId ()
+    {
+        return _drawableResourceId;
+    }
+
+    public float getZ ()
+    {
+        return _z;
+    }
+
+    /** remember the current position and rotation of every entity, call before every tick */
+    public void savePreviousState ()
+    {
+        System.arraycopy(_posX, 0, _previousX, 0, _count);
+        System.arraycopy(_posY, 0, _previousY, 0, _count);
+        System.arraycopy(_rot, 0, _previousRot, 0, _count);
+    }
+
+    /**
+     * Same test as {@link TextureSprite#collidesWith(TextureSprite)} for an entity, entities
+     * always use the default collision circle: centered with a radius of their x scale
+     */
+    public boolean collidesWith (int i, TextureSprite other)
+    {
+        return circlesOverlap(
+                _posX[i],
+                _posY[i],
+                other._currentPos[0] + other._center[0] * other._currentScale[0],
+                other._currentPos[1] + other._center[1] * other._currentScale[1],
+                _scaleX[i] + other._radius * other._currentScale[0]);
+    }
+
+    public boolean collidesWith (int i, EntityStore other, int j)
+    {
+        return circlesOverlap(_posX[i], _posY[i], other._posX[j], other._posY[j], _scaleX[i] + other._scaleX[j]);
+    }
+
+    /**
+     * Squared distance version of the sqrt test in {@link TextureSprite#collidesWith(TextureSprite)}.
+     * Rounding the square root to a float can flip the result for pairs sitting right on the edge,
+     * those few fall back to the original test so both always agree.
+     */
+    public static boolean circlesOverlap (float x1, float y1, float x2, float y2, float radius)
+    {
+        if (radius <= 0)
+        {
+            return false;
+        }
+        float distanceSquared = (x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2);
+        double radiusSquared = (double) radius * radius;
+        if (distanceSquared < radiusSquared * (1 - EDGE_TOLERANCE))
+        {
+            return true;
+        }
+        if (distanceSquared > radiusSquared * (1 + EDGE_TOLERANCE))
+        {
+            return false;
+        }
+        return (float) Math.sqrt(distanceSquared) < radius;
+    }
+}
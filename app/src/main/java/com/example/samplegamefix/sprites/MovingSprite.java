@@ -12,23 +12,42 @@ public abstract class MovingSprite extends TextureSprite
         _ratio = ratio;
     }
 
-    public boolean update ()
+    /**
+     * Moves every entity in the store in one pass, the ones that went off the bottom of the screen
+     * die. Entities that were already dead are dropped and the survivors are packed down without
+     * changing their order.
+     */
+    public static void updateAll (EntityStore store, float ratio)
     {
-        if (!_alive)
+        int count = store.size();
+        float[] posX = store._posX;
+        float[] posY = store._posY;
+        float[] velX = store._velX;
+        float[] velY = store._velY;
+        boolean[] alive = store._alive;
+
+        int survivors = 0;
+        for (int i = 0; i < count; i++)
         {
-            return false;
-        }
+            if (!alive[i])
+            {
+                continue;
+            }
 
-        // move sprite
-        _currentPos[0] = _currentPos[0] + _vector[0];
-        _currentPos[1] = _currentPos[1] + _vector[1];
+            posX[i] = posX[i] + velX[i];
+            posY[i] = posY[i] + velY[i];
 
-        // if sprite moved off bottom of screen we can remove sprite
-        if (_currentPos[1] < -_ratio)
-        {
-            _alive = false;
-        }
+            if (posY[i] < -ratio)
+            {
+                alive[i] = false;
+            }
 
-        return true;
+            if (survivors != i)
+            {
+                store.move(i, survivors);
+            }
+            survivors++;
+        }
+        store.setSize(survivors);
     }
 }
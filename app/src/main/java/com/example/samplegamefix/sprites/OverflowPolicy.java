@@ -0,0 +1,14 @@
+package com.example.samplegamefix.sprites;
+
+/**
+ * What an entity store does when something is spawned while it is full
+ */
+public enum OverflowPolicy
+{
+    /** make room for more, the default and what the game always did */
+    GROW,
+    /** throw an IllegalStateException, for catching leaks during development */
+    FAIL,
+    /** write over the live entity that was spawned the longest time ago */
+    RECYCLE_OLDEST
+}
@@ -1,7 +1,5 @@
 package com.example.samplegamefix.sprites;
 
-import android.content.Context;
-
 import com.example.samplegamefix.helper.TiltHelper;
 
 public class PlayerSprite extends TextureSprite
@@ -12,16 +10,24 @@ public class PlayerSprite extends TextureSprite
     private static float TILT_SLOP = 1f;
     private static float SCALE = 0.15f;
 
+    /** width / height used until the image is resident, and always when running headless */
+    public static final float DEFAULT_IMAGE_RATIO = 1f;
+
     private TiltHelper _tiltHelper;
 
     private float _tilt;
     private float _ratio;
 
-    public PlayerSprite (Context context, int drawableResourceId, TiltHelper tiltHelper)
+    /**
+     * Player that doesn't load its texture, the drawable has to be requested with
+     * {@link TextureSprite#requestAtlas} or {@link TextureSprite#requestTexture}, it draws once
+     * the texture is resident, {@link #setImageRatio} then gives it the drawable's proportions
+     */
+    public PlayerSprite (int drawableResourceId, TiltHelper tiltHelper)
     {
         super();
-        setContext(context);
-        setDrawable(drawableResourceId);
+        _drawableResourceId = drawableResourceId;
+        _imageRatio = DEFAULT_IMAGE_RATIO;
 
         _tiltHelper = tiltHelper;
     }
@@ -38,6 +44,14 @@ public class PlayerSprite extends TextureSprite
         _alive = true;
     }
 
+    /** @param imageRatio width / height of the region the drawable is drawn from */
+    public void setImageRatio (float imageRatio)
+    {
+        _imageRatio = imageRatio;
+        _currentScale[1] = SCALE / _imageRatio;
+        _currentPos[1] = -_ratio + _currentScale[1] * 3;
+    }
+
     public boolean update ()
     {
         float tilt = _tiltHelper.getTilt() * TILT_SCALE;
@@ -0,0 +1,291 @@
+package com.example.samplegamefix.sprites;
+
+import android.opengl.GLES20;
+
+import com.example.samplegamefix.gl.AtlasRegion;
+import com.example.samplegamefix.gl.GlBackend;
+import com.example.samplegamefix.gl.RenderQueue;
+import com.example.samplegamefix.helper.Affine2D;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Draws any number of textured quads with one draw call per texture. The corners of every sprite
+ * are moved, rotated and scaled on the cpu into one interleaved vertex array, so the shader only
+ * needs the view projection matrix, set once per batch instead of once per sprite.
+ *
+ * The batch is flushed when the texture changes, when it is full and at {@link #end()}, sprites
+ * sharing a texture should be drawn one after another. Drawables packed into one atlas share its
+ * texture, their sprites are given the texture coordinates of their region and batch together.
+ * As a pass of the {@link RenderQueue} one batch stays open across the sprite commands of a frame.
+ *
+ * The indices never change, they go into an index buffer object once per gl context. The vertices
+ * of every flush are handed to a vertex buffer object with glBufferData, which gives the driver
+ * fresh storage instead of waiting on the draw still reading the last batch. Buffer objects die
+ * with their context, {@link #forget} after a loss, {@link #release} while the context is still
+ * current. Gl thread only.
+ */
+public class SpriteBatcher implements RenderQueue.Pass
+{
+    public static final int DEFAULT_MAX_SPRITES = 512;
+    /** indices are shorts, so one draw call can't reach past vertex 65535 */
+    public static final int MAX_SPRITES = 65536 / 4;
+
+    // x, y, z, u, v
+    static final int FLOATS_PER_VERTEX = 5;
+    static final int VERTICES_PER_SPRITE = 4;
+    static final int INDICES_PER_SPRITE = 6;
+    private static final int FLOATS_PER_SPRITE = FLOATS_PER_VERTEX * VERTICES_PER_SPRITE;
+    private static final int STRIDE = FLOATS_PER_VERTEX * 4;
+
+    // the quad every sprite is drawn as, v flipped so the image is upright
+    private static final float[] CORNER_X = { -1, 1, 1, -1 };
+    private static final float[] CORNER_Y = { -1, -1, 1, 1 };
+    private static final float[] CORNER_U = { 0, 1, 1, 0 };
+    private static final float[] CORNER_V = { 1, 1, 0, 0 };
+    // the batch bakes regions into its texture coordinates, the shader maps them onto the whole texture
+    private static final float[] FULL_TEXTURE_RECT = { 0, 0, 1, 1 };
+
+    private final GlBackend _gl;
+    private final int _maxSprites;
+    private final float[] _vertices;
+    private final ByteBuffer _vertexBytes;
+    private final FloatBuffer _vertexBuffer;
+    private final ByteBuffer _indexBytes;
+    private final Affine2D _transform = new Affine2D();
+
+    // vertex buffer, index buffer
+    private final int[] _buffers = new int[2];
+    private boolean _created;
+
+    private int _programHandle;
+    private int _positionHandle = -1;
+    private int _textureCoordinateHandle = -1;
+    private int _mvpMatrixHandle = -1;
+    private int _textureRectHandle = -1;
+
+    private boolean _drawing;
+    private int _texture;
+    private int _boundTexture;
+    private int _spriteCount;
+    private int _drawCalls;
+
+    public SpriteBatcher (GlBackend gl, int maxSprites)
+    {
+        if (maxSprites <= 0 || maxSprites > MAX_SPRITES)
+        {
+            throw new IllegalArgumentException("batch size must be 1 to " + MAX_SPRITES + ": " + maxSprites);
+        }
+        _gl = gl;
+        _maxSprites = maxSprites;
+        _vertices = new float[maxSprites * FLOATS_PER_SPRITE];
+
+        _vertexBytes = ByteBuffer.allocateDirect(_vertices.length * 4);
+        _vertexBytes.order(ByteOrder.nativeOrder());
+        _vertexBuffer = _vertexBytes.asFloatBuffer();
+
+        // kept to upload again after the context was lost
+        _indexBytes = ByteBuffer.allocateDirect(maxSprites * INDICES_PER_SPRITE * 2);
+        _indexBytes.order(ByteOrder.nativeOrder());
+        ShortBuffer indices = _indexBytes.asShortBuffer();
+        for (int i = 0; i < maxSprites; i++)
+        {
+            int first = i * VERTICES_PER_SPRITE;
+            indices.put((short) first);
+            indices.put((short) (first + 1));
+            indices.put((short) (first + 2));
+            indices.put((short) first);
+            indices.put((short) (first + 2));
+            indices.put((short) (first + 3));
+        }
+    }
+
+    /** make the buffers and upload the indices, done by the first begin() in a context */
+    private void create ()
+    {
+        _gl.glGenBuffers(2, _buffers, 0);
+        _gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, _buffers[1]);
+        _gl.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, _indexBytes.capacity(), _indexBytes, GLES20.GL_STATIC_DRAW);
+        _created = true;
+    }
+
+    /**
+     * give up the buffer objects of a lost context without deleting them, their names may already
+     * belong to the new one. the indices are uploaded again by the next begin()
+     */
+    public void forget ()
+    {
+        _buffers[0] = 0;
+        _buffers[1] = 0;
+        _created = false;
+    }
+
+    /** delete the buffers, the context that created them has to be current */
+    public void release ()
+    {
+        if (_created)
+        {
+            _gl.glDeleteBuffers(2, _buffers, 0);
+        }
+        forget();
+    }
+
+    /**
+     * the linked sprite program, uniform mat4 for the mvp, vec4 position, vec2 texture coordinate
+     * and uniform vec4 for the texture rect, -1 if the program has none
+     */
+    public void setProgram (int programHandle, int positionHandle, int textureCoordinateHandle, int mvpMatrixHandle,
+                            int textureRectHandle)
+    {
+        _programHandle = programHandle;
+        _positionHandle = positionHandle;
+        _textureCoordinateHandle = textureCoordinateHandle;
+        _mvpMatrixHandle = mvpMatrixHandle;
+        _textureRectHandle = textureRectHandle;
+    }
+
+    @Override
+    public void begin (float[] mvpMatrix)
+    {
+        if (_drawing)
+        {
+            throw new IllegalStateException("begin() called twice without end()");
+        }
+        _drawing = true;
+        _spriteCount = 0;
+        _texture = 0;
+        _boundTexture = 0;
+
+        _gl.glUseProgram(_programHandle);
+        _gl.glUniformMatrix4fv(_mvpMatrixHandle, 1, false, mvpMatrix, 0);
+        if (_textureRectHandle >= 0)
+        {
+            _gl.glUniform4fv(_textureRectHandle, 1, FULL_TEXTURE_RECT, 0);
+        }
+
+        if (!_created)
+        {
+            create();
+        }
+        // the buffers are read when drawing, so the pointers stay good while the contents change
+        _gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, _buffers[0]);
+        _gl.glEnableVertexAttribArray(_positionHandle);
+        _gl.glVertexAttribPointer(_positionHandle, 3, GLES20.GL_FLOAT, false, STRIDE, 0);
+        _gl.glEnableVertexAttribArray(_textureCoordinateHandle);
+        _gl.glVertexAttribPointer(_textureCoordinateHandle, 2, GLES20.GL_FLOAT, false, STRIDE, 3 * 4);
+        _gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, _buffers[1]);
+    }
+
+    /**
+     * every sprite of the layer between its previous and current tick position, sprites whose
+     * texture isn't loaded are skipped
+     */
+    public void drawLayer (SpriteLayer layer, float alpha)
+    {
+        int lookedUpId = 0;
+        int texture = 0;
+        AtlasRegion region = AtlasRegion.FULL;
+        int count = layer._count;
+        for (int i = 0; i < count; i++)
+        {
+            // the texture cache is only looked up when the drawable changes between sprites
+            if (layer._textureIds[i] != lookedUpId)
+            {
+                lookedUpId = layer._textureIds[i];
+                texture = TextureSprite.getCachedTexture(lookedUpId);
+                region = TextureSprite.getCachedRegion(lookedUpId);
+            }
+            if (texture == 0)
+            {
+                continue;
+            }
+
+            float x = layer._previousX[i] + (layer._x[i] - layer._previousX[i]) * alpha;
+            float y = layer._previousY[i] + (layer._y[i] - layer._previousY[i]) * alpha;
+            float rotation = layer._previousRotation[i] + (layer._rotation[i] - layer._previousRotation[i]) * alpha;
+            draw(texture, region, x, y, layer._z[i], rotation, layer._scaleX[i], layer._scaleY[i]);
+        }
+    }
+
+    /**
+     * queue a sprite, the quad is scaled, then rotated around z, then moved to x, y, z like the
+     * model matrix of a single TextureSprite
+     *
+     * @param rotation degrees
+     */
+    public void draw (int texture, float x, float y, float z, float rotation, float scaleX, float scaleY)
+    {
+        draw(texture, AtlasRegion.FULL, x, y, z, rotation, scaleX, scaleY);
+    }
+
+    /** queue a sprite that shows only a region of the texture */
+    public void draw (int texture, AtlasRegion region, float x, float y, float z, float rotation, float scaleX, float scaleY)
+    {
+        if (_spriteCount > 0 && (texture != _texture || _spriteCount == _maxSprites))
+        {
+            flush();
+        }
+        _texture = texture;
+
+        Affine2D transform = _transform;
+        transform.setTranslateRotateScale(x, y, rotation, scaleX, scaleY);
+        float[] vertices = _vertices;
+        int v = _spriteCount * FLOATS_PER_SPRITE;
+        for (int corner = 0; corner < VERTICES_PER_SPRITE; corner++)
+        {
+            vertices[v++] = transform.transformX(CORNER_X[corner], CORNER_Y[corner]);
+            vertices[v++] = transform.transformY(CORNER_X[corner], CORNER_Y[corner]);
+            vertices[v++] = z;
+            vertices[v++] = region.mapU(CORNER_U[corner]);
+            vertices[v++] = region.mapV(CORNER_V[corner]);
+        }
+        _spriteCount++;
+    }
+
+    @Override
+    public void end ()
+    {
+        if (!_drawing)
+        {
+            throw new IllegalStateException("end() called without begin()");
+        }
+        flush();
+        _gl.glDisableVertexAttribArray(_positionHandle);
+        _gl.glDisableVertexAttribArray(_textureCoordinateHandle);
+        // text and the other passes still draw from client arrays
+        _gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        _gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        _drawing = false;
+    }
+
+    private void flush ()
+    {
+        if (_spriteCount == 0)
+        {
+            return;
+        }
+        if (_texture != _boundTexture)
+        {
+            _gl.glActiveTexture(GLES20.GL_TEXTURE0);
+            _gl.glBindTexture(GLES20.GL_TEXTURE_2D, _texture);
+            _boundTexture = _texture;
+        }
+
+        int floats = _spriteCount * FLOATS_PER_SPRITE;
+        _vertexBuffer.position(0);
+        _vertexBuffer.put(_vertices, 0, floats);
+        _gl.glBufferData(GLES20.GL_ARRAY_BUFFER, floats * 4, _vertexBytes, GLES20.GL_DYNAMIC_DRAW);
+        _gl.glDrawElements(GLES20.GL_TRIANGLES, _spriteCount * INDICES_PER_SPRITE, GLES20.GL_UNSIGNED_SHORT, 0);
+        _drawCalls++;
+        _spriteCount = 0;
+    }
+
+    /** @return draw calls made since the batcher was created */
+    public int getDrawCalls ()
+    {
+        return _drawCalls;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.samplegamefix.sprites;
+
+import java.util.Arrays;
+
+/**
+ * Flat copy of everything needed to draw a group of sprites: texture id, position, rotation and
+ * scale per sprite, plus the values of the previous tick to interpolate from.
+ *
+ * Layers are filled by the simulation and only read by the gl thread, the arrays are allocated
+ * up front and only grow when a layer holds more sprites than ever before.
+ */
+public class SpriteLayer
+{
+    int _count;
+    int[] _textureIds;
+    float[] _previousX;
+    float[] _previousY;
+    float[] _x;
+    float[] _y;
+    float[] _z;
+    float[] _previousRotation;
+    float[] _rotation;
+    float[] _scaleX;
+    float[] _scaleY;
+
+    public SpriteLayer (int capacity)
+    {
+        allocate(Math.max(capacity, 1));
+    }
+
+    private void allocate (int capacity)
+    {
+        _textureIds = new int[capacity];
+        _previousX = new float[capacity];
+        _previousY = new float[capacity];
+        _x = new float[capacity];
+        _y = new float[capacity];
+        _z = new float[capacity];
+        _previousRotation = new float[capacity];
+        _rotation = new float[capacity];
+        _scaleX = new float[capacity];
+        _scaleY = new float[capacity];
+    }
+
+    private void grow ()
+    {
+        int[] textureIds = _textureIds;
+        float[] previousX = _previousX;
+        float[] previousY = _previousY;
+        float[] x = _x;
+        float[] y = _y;
+        float[] z = _z;
+        float[] previousRotation = _previousRotation;
+        float[] rotation = _rotation;
+        float[] scaleX = _scaleX;
+        float[] scaleY = _scaleY;
+
+        allocate(textureIds.length * 2);
+
+        System.arraycopy(textureIds, 0, _textureIds, 0, _count);
+        System.arraycopy(previousX, 0, _previousX, 0, _count);
+        System.arraycopy(previousY, 0, _previousY, 0, _count);
+        System.arraycopy(x, 0, _x, 0, _count);
+        System.arraycopy(y, 0, _y, 0, _count);
+        System.arraycopy(z, 0, _z, 0, _count);
+        System.arraycopy(previousRotation, 0, _previousRotation, 0, _count);
+        System.arraycopy(rotation, 0, _rotation, 0, _count);
+        System.arraycopy(scaleX, 0, _scaleX, 0, _count);
+        System.arraycopy(scaleY, 0, _scaleY, 0, _count);
+    }
+
+    public void clear ()
+    {
+        _count = 0;
+    }
+
+    public void add (TextureSprite sprite)
+    {
+        if (_count == _textureIds.length)
+        {
+            grow();
+        }
+
+        int i = _count++;
+        _textureIds[i] = sprite._drawableResourceId;
+        _x[i] = sprite._currentPos[0];
+        _y[i] = sprite._currentPos[1];
+        _z[i] = sprite._currentPos[2];
+        _rotation[i] = sprite._rotationZ;
+        _scaleX[i] = sprite._currentScale[0];
+        _scaleY[i] = sprite._currentScale[1];
+
+        if (sprite._hasPrevious)
+        {
+            _previousX[i] = sprite._previousPos[0];
+            _previousY[i] = sprite._previousPos[1];
+            _previousRotation[i] = sprite._previousRotationZ;
+        }
+        else
+        {
+            _previousX[i] = _x[i];
+            _previousY[i] = _y[i];
+            _previousRotation[i] = _rotation[i];
+        }
+    }
+
+    /** adds every entity of the store, straight array copies since both sides are laid out the same */
+    public void addAll (EntityStore store)
+    {
+        int count = store.size();
+        while (_count + count > _textureIds.length)
+        {
+            grow();
+        }
+
+        int start = _count;
+        int end = start + count;
+        Arrays.fill(_textureIds, start, end, store.getDrawableResourceId());
+        Arrays.fill(_z, start, end, store.getZ());
+        System.arraycopy(store._previousX, 0, _previousX, start, count);
+        System.arraycopy(store._previousY, 0, _previousY, start, count);
+        System.arraycopy(store._posX, 0, _x, start, count);
+        System.arraycopy(store._posY, 0, _y, start, count);
+        System.arraycopy(store._previousRot, 0, _previousRotation, start, count);
+        System.arraycopy(store._rot, 0, _rotation, start, count);
+        System.arraycopy(store._scaleX, 0, _scaleX, start, count);
+        System.arraycopy(store._scaleY, 0, _scaleY, start, count);
+        _count = end;
+    }
+
+    public int size ()
+    {
+        return _count;
+    }
+}
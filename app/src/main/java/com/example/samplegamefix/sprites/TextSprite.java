@@ -1,9 +1,12 @@
 package com.example.samplegamefix.sprites;
 
 import android.graphics.Color;
-import android.opengl.Matrix;
 
+import com.example.samplegamefix.gl.GlStateCache;
+import com.example.samplegamefix.helper.Affine2D;
+import com.example.samplegamefix.helper.gltext.FontAtlasCache;
 import com.example.samplegamefix.helper.gltext.GLText;
+import com.example.samplegamefix.helper.gltext.TextMesh;
 
 public class TextSprite extends TextureSprite
 {
@@ -12,35 +15,81 @@ public class TextSprite extends TextureSprite
     public static final int TEXT_ALIGN_RIGHT = 3;
     public static final int TEXT_NO_ALIGN = 4;
 
+    // every text shares the distance field atlas of this typeface, whatever its size
+    private static final String FONT = "CyberwayRiders-lg97d.ttf";
+    // the atlas rasterized on the first start, later ones map it from the cache directory
+    private static FontAtlasCache _atlasCache;
+
     private String _text;
+    // shown instead of the text while the text is null
+    private int _number;
     private int _textAlign;
     private int _textSize;
     private GLText _glText;
     private float _width;
     private float _margin;
-    private float _color[];
+    private final float[] _color = new float[4];
+    // the glyphs laid out where the alignment puts them, built again only when the text or its
+    // alignment changed, the color and the position are applied when it is drawn
+    private final TextMesh _mesh = new TextMesh();
+    private boolean _meshChanged = true;
+    // counts hud frames, glyphs missing from the font map are rasterized a few a frame
+    private static long _frame;
+
+    /** drop the shared font atlas of a lost context, texts load it again when they reload */
+    public static void forgetFonts ()
+    {
+        GLText.forgetSharedFonts();
+    }
+
+    /** delete the shared font atlas, the context that created it has to be current */
+    public static void releaseFonts ()
+    {
+        GLText.releaseSharedFonts();
+    }
+
+    /** call once a frame before the texts are drawn */
+    public static void beginFrame ()
+    {
+        _frame++;
+    }
 
     public void setText (String text, int textAlign, float yOffset, int color)
     {
-        _text = text;
+        setText(text);
         setTextAlign(textAlign);
         _currentPos[1] += yOffset;
-        _color = new float[4];
         _color[0] = Color.red(color) / 255f;
         _color[1] = Color.green(color) / 255f;
         _color[2] = Color.blue(color) / 255f;
         _color[3] = Color.alpha(color) / 255f;
     }
 
-    public void setText(String text)
+    public void setText (String text)
     {
-        _text = text;
+        if (!text.equals(_text))
+        {
+            _text = text;
+            _meshChanged = true;
+        }
+    }
+
+    /** show a number, laid out straight from its digits so a counter going up allocates nothing */
+    public void setNumber (int number)
+    {
+        if (_text != null || number != _number)
+        {
+            _text = null;
+            _number = number;
+            _meshChanged = true;
+        }
     }
 
     public void init (float ratio, float width, int textSize)
     {
         _width = width;
         _margin = width / 30f;
+        _meshChanged = true;
         _currentPos[0] = 0;
         _currentPos[1] = ratio;
         _currentPos[2] = 0.1f;
@@ -50,28 +99,55 @@ public class TextSprite extends TextureSprite
         _textSize = textSize;
         if (_glText == null)
         {
-            _glText = new GLText(_context.getAssets());
-            _glText.load("CyberwayRiders-lg97d.ttf", textSize, 2, 2);
+            _glText = sharedFont();
         }
     }
 
-    private float textMatrix[] = new float[16];
+    private GLText sharedFont ()
+    {
+        if (_atlasCache == null)
+        {
+            _atlasCache = new FontAtlasCache(_context.getCacheDir());
+        }
+        return GLText.sharedSdf(_context.getAssets(), _atlasCache, FONT);
+    }
 
-    @Override
-    public boolean update ()
+    /** delete the buffers of the text, the context that created them has to be current */
+    public void releaseMesh ()
     {
-        return true;
+        _mesh.release(GlStateCache.shared());
     }
 
-    @Override
+    private float textMatrix[] = new float[16];
+    private final Affine2D _transform = new Affine2D();
+
     public void draw (float[] mvpMatrix)
     {
-        System.arraycopy(mvpMatrix, 0, textMatrix, 0, 16);
-
-        Matrix.translateM(textMatrix, 0, _currentPos[0], _currentPos[1], _currentPos[2]);
         //TODO see if can use gltext.setscale instead of this
-        Matrix.scaleM(textMatrix, 0, 1 / _width * 2, 1 / _width * 2, 1); // the text code we're using assumes a view scaled by phone width/height, so scale it down
+        float scale = 1 / _width * 2; // the text code we're using assumes a view scaled by phone width/height, so scale it down
+        _transform.setTranslateRotateScale(_currentPos[0], _currentPos[1], 0, scale, scale);
+        Affine2D.multiply(textMatrix, mvpMatrix, _transform, _currentPos[2]);
 
+        _glText.beginFrame(_frame);
+        if (_meshChanged || _glText.isStale(_mesh))
+        {
+            // the font is shared, its scale is this text's size
+            _glText.setScale(_textSize / (float) _glText.getFontSize());
+            if (_text != null)
+            {
+                _glText.buildMesh(_mesh, _text, alignedX(), 0);
+            }
+            else
+            {
+                _glText.buildMesh(_mesh, _number, alignedX(), 0);
+            }
+            _meshChanged = false;
+        }
+        _glText.drawMesh(_mesh, _color[0], _color[1], _color[2], 1.0f, textMatrix);
+    }
+
+    private float alignedX ()
+    {
         float x = 0;
         if (_textAlign == TEXT_NO_ALIGN)
         {
@@ -83,16 +159,18 @@ public class TextSprite extends TextureSprite
         }
         else if (_textAlign == TEXT_ALIGN_RIGHT)
         {
-            x = _width / 2 - _glText.getLength(_text) - _margin;
+            x = _width / 2 - textLength() - _margin;
         }
         else if (_textAlign == TEXT_ALIGN_CENTER)
         {
-            x = -_glText.getLength(_text) / 2;
+            x = -textLength() / 2;
         }
+        return x;
+    }
 
-        _glText.begin(_color[0], _color[1], _color[2], 1.0f, textMatrix);
-        _glText.draw(_text, x, 0, 0, 0);
-        _glText.end();
+    private float textLength ()
+    {
+        return _text != null ? _glText.getLength(_text) : _glText.getLength(_number);
     }
 
     @Override
@@ -100,14 +178,20 @@ public class TextSprite extends TextureSprite
     {
         if (_textSize > 0)
         {
-            _glText = new GLText(_context.getAssets());
-            _glText.load("OpenSans-Light.ttf", _textSize, 2, 2);
+            _glText = sharedFont();
         }
+        // the buffers went with the old context
+        _mesh.forget();
+        _meshChanged = true;
     }
 
     public void setTextAlign (int textAlign)
     {
-        _textAlign = textAlign;
+        if (textAlign != _textAlign)
+        {
+            _textAlign = textAlign;
+            _meshChanged = true;
+        }
         if (_textAlign != TEXT_NO_ALIGN)
         {
             _currentPos[0] = 0;
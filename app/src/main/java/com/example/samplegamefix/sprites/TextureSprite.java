@@ -2,41 +2,51 @@ package com.example.samplegamefix.sprites;
 
 
 import android.content.Context;
+import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.opengl.GLES20;
-import android.opengl.GLUtils;
-import android.opengl.Matrix;
+import android.util.Log;
 
 import com.example.samplegamefix.GameGLRenderer;
-
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
-import java.nio.ShortBuffer;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import com.example.samplegamefix.gl.AsyncTextureLoader;
+import com.example.samplegamefix.gl.AtlasRegion;
+import com.example.samplegamefix.gl.GlBackend;
+import com.example.samplegamefix.gl.GlStateCache;
+import com.example.samplegamefix.gl.KtxFile;
+import com.example.samplegamefix.gl.KtxTextureLoader;
+import com.example.samplegamefix.gl.TextureManager;
+import com.example.samplegamefix.gl.TextureAtlas;
+import com.example.samplegamefix.gl.TextureAtlasBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 
 /**
  * Đối tượng sprite này sẽ vẽ một hình vuông với texture trong đó
  */
-public abstract class TextureSprite implements PoolableSprite
+public abstract class TextureSprite
 {
+    private static final String TAG = "TextureSprite";
+
     //Khu vực dành riêng cho OpenGL ES
     private static final String MVPMATRIX_PARAM = "uMVPMatrix"; //Ma trận Model-View-Projection
     private static final String POSITION_PARAM = "vPosition";   //Hệ số vị trí
-    private static final String TEXTURE_COORDINATE_PARAM = "aTextureCoordinate";    //Hệ tọa độ cho texture
+    private static final String TEXTURE_COORDINATE_PARAM = "aTextureCoordinate";
+    // u, v offset and size of the part of the texture drawn, an atlas region or 0, 0, 1, 1
+    private static final String TEXTURE_RECT_PARAM = "uTextureRect";    //Hệ tọa độ cho texture
 
     //Đây là phần code shader để đưa vào graphic pipeline
     private static final String VERTEX_SHADER_CODE =
             "uniform mat4 " + MVPMATRIX_PARAM + ";" +
                     "attribute vec4 " + POSITION_PARAM + ";" +
                     "attribute vec2 " + TEXTURE_COORDINATE_PARAM + ";" +
+                    "uniform vec4 " + TEXTURE_RECT_PARAM + ";" +
                     "varying vec2 vTexCoordinate;" +
                     "void main() {" +
                     "  gl_Position = " + MVPMATRIX_PARAM + " * " + POSITION_PARAM + ";" +   //Vị trí trong gl sẽ là phép nhân giữa hệ số vị trí với ma trận MVP
-                    "  vTexCoordinate = " + TEXTURE_COORDINATE_PARAM + ";" +    //gán hệ tọa độ cho texture
+                    "  vTexCoordinate = " + TEXTURE_RECT_PARAM + ".xy + " + TEXTURE_COORDINATE_PARAM + " * " + TEXTURE_RECT_PARAM + ".zw;" +
                     "}";
 
     //Đây là phần code fragment để đưa vào graphic pipeline
@@ -48,65 +58,46 @@ public abstract class TextureSprite implements PoolableSprite
                     "  gl_FragColor = texture2D(uTexture, vTexCoordinate); " +  //gán màu vào texture 2D sử dụng hệ tọa độ texture đã cho ở phần shader
                     "}";
 
-    /** Gán tọa độ cho texture
-     *  tọa độ cho texture là một hình vuông 2d với mỗi đỉnh tương ứng với các tọa độ x,y
-     **/
-
-    private static final float[] TEXTURE_COORDINATES =
-            {
-                    0.0f, 1.0f, //x,y
-                    1.0f, 1.0f, //x,y
-                    1.0f, 0.0f, //x,y
-                    0.0f, 0.0f  //x,y
-            };
-
-    /**
-     *  số lượng hệ tọa độ quy chiếu cho mỗi đỉnh trong mảng hiện tại
-     *  số lượng đó sẽ là ba vì ta đang vẽ trong không gian ba chiều
-     */
-    private static final int COORDS_PER_VERTEX = 3;
-
-    /**
-     * gán tọa độ cho hình vuông chứa sprite
-     * Nếu bạn để ý thì vì đây là tọa độ 2 chiều nên chiều z luôn luôn là 0
-     * */
-    private static final float[] SQUARE_COORDINATES =
-            {
-                    -1.0f, -1.0f, 0.0f, //x,y,z, đỉnh 0, dưới trái
-                     1.0f, -1.0f, 0.0f, //x,y,z, đỉnh 1, trên trái
-                     1.0f,  1.0f, 0.0f, //x,y,z, đỉnh 2, trên phải
-                    -1.0f,  1.0f, 0.0f //x,y,z, đỉnh 3, dưới phải
-            };
-
-    /** Thứ tự để vẽ hình vuông chứa sprite
-     * Đây là thứ tự thường thấy để vẽ hình vuông trong OpenGL
-     * Bạn đang thắc mắc 0,1,2,3 là cái gì??? Đó chính là thứ tự đỉnh ta đã được đa đưa vào ở ngay trên, thứ tự vẽ đỉnh trong OpenGL sẽ diễn ra đúng như thế
-     * */
-    private static final short[] DRAW_ORDER = { 0, 1, 2, 0, 2, 3 };
-
-    private static final int VERTEX_STRIDE = COORDS_PER_VERTEX * 4; // 4 bytes cho mỗi vertex = 32 bit lưu giá trị
-
-    /**
-     * Khởi tạo các bộ đệm lưu giữ lần lượt tọa độ điểm, thứ tự vẽ hình và lưu giữ texture
-     * _vertexBuffer là bộ đệm lưu giữ tọa tọa độ các đỉnh của hình khối muốn vẽ, với các tọa độ ở dạng float
-     * _drawListBuffer là bộ đệm lưu giữa thứ tự vẽ các đỉnh, vì là thứ tự nên sẽ dùng số nguyên dương, ta dùng short
-     * _textureBuffer là bộ đệm dùng để trợ giúp việc vẽ texture lên hình khối, tương tự như _vertexBuffer nên dùng float
-     *  **/
-    private static FloatBuffer _vertexBuffer;
-    private static ShortBuffer _drawListBuffer;
-    private static FloatBuffer _textureBuffer;
+    private static final GlBackend _gl = GlStateCache.shared();
 
     protected static int _programHandle;
 
     protected static int positionHandle = -1;
     protected static int mvpMatrixHandle = -1;
     protected static int textureCoordinateHandle = -1;
+    protected static int textureRectHandle = -1;
+    // holds no gl objects, only the program is set again for a new context
+    private static final SpriteBatcher _batcher = new SpriteBatcher(_gl, SpriteBatcher.DEFAULT_MAX_SPRITES);
 
     protected int _textureDataHandle;
     protected int _drawableResourceId;
-
-    private static Map<Integer, Integer> drawableToTextureMap = new HashMap<>();
-    private static Map<Integer, Integer> bitmapToTextureMap = new HashMap<>();
+    // what the sprite holds a reference to in the texture manager, 0 for nothing
+    private int _heldTextureId;
+    protected AtlasRegion _textureRegion = AtlasRegion.FULL;
+
+    // drawable id to texture, there are only a few drawables so a scan beats boxing the ids
+    private static int[] _cachedDrawables = new int[8];
+    private static int[] _cachedTextures = new int[8];
+    private static AtlasRegion[] _cachedRegions = new AtlasRegion[8];
+    // what the texture is kept under by the manager, the drawable itself or its atlas
+    private static int[] _cachedOwners = new int[8];
+    private static int _cachedCount;
+    // owns every texture loaded here, the drawable cache above only says which one to draw
+    private static final TextureManager _textures = new TextureManager(_gl, TextureManager.DEFAULT_BUDGET,
+            new TextureManager.Listener()
+            {
+                @Override
+                public void onTextureGone (int id, int texture)
+                {
+                    forgetCachedTexture(texture);
+                }
+            });
+
+    private static final AsyncTextureLoader _loader = new AsyncTextureLoader(AsyncTextureLoader.newWorkerPool(2),
+            AsyncTextureLoader.DEFAULT_FRAME_BUDGET);
+    // drawables a background request is out for, gl thread only
+    private static int[] _requestedDrawables = new int[8];
+    private static int _requestedCount;
 
     //Kết thúc khu vực
 
@@ -136,11 +127,13 @@ public abstract class TextureSprite implements PoolableSprite
     protected boolean _alive = true;
     protected float _imageRatio;
 
-    protected boolean _inUse;
-
-    //Khởi tạo ma trận gốc dùng cho việc nhân ma trận để ánh xạ vào OpenGL về sau
-    private float[] scratchMatrix = new float[16];
-    // Kết thúc khu vực
+    /**
+     * Position and rotation as of the previous simulation tick, used to interpolate the sprite
+     * between ticks when the simulation runs slower than the display refreshes
+     */
+    protected float[] _previousPos = new float[2];
+    protected float _previousRotationZ;
+    protected boolean _hasPrevious;
 
     protected Context _context;
 
@@ -164,162 +157,94 @@ public abstract class TextureSprite implements PoolableSprite
      * Phần đọc bộ đệm để gán vào OpenGL ES không thay đổi giữa việc vẽ các sprite nên chúng ta có thể viết một lần dùng cho tất cả */
     public static void initGlState ()
     {
-        // Khởi tạo bộ đệm đỉnh cho các tọa độ của hình khối
-        ByteBuffer bb = ByteBuffer.allocateDirect(SQUARE_COORDINATES.length * 4);
-        bb.order(ByteOrder.nativeOrder());
-        _vertexBuffer = bb.asFloatBuffer();
-        _vertexBuffer.put(SQUARE_COORDINATES);
-        _vertexBuffer.position(0);
-
-        // Khởi tạo bộ đệm texture cho các tọa độ của texture
-        bb = ByteBuffer.allocateDirect(TEXTURE_COORDINATES.length * 4);
-        bb.order(ByteOrder.nativeOrder());
-        _textureBuffer = bb.asFloatBuffer();
-        _textureBuffer.put(TEXTURE_COORDINATES);
-        _textureBuffer.position(0);
-
-        // Bộ đệm đỉnh này thì chứa thứ tự vẽ các tam giác
-        ByteBuffer dlb = ByteBuffer.allocateDirect(DRAW_ORDER.length * 2);
-        dlb.order(ByteOrder.nativeOrder());
-        _drawListBuffer = dlb.asShortBuffer();
-        _drawListBuffer.put(DRAW_ORDER);
-        _drawListBuffer.position(0);
+        // runs again in onSurfaceCreated after the context was lost, the batch uploads its buffers again
+        _batcher.forget();
 
         int vertexShader = GameGLRenderer.loadShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER_CODE);
         int fragmentShader = GameGLRenderer.loadShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER_CODE);
-        _programHandle = GLES20.glCreateProgram();             // Khởi tạo một chương trình rỗng
-        GLES20.glAttachShader(_programHandle, vertexShader);   // Nạp vào vertexShader(phủ lên đỉnh)
-        GLES20.glAttachShader(_programHandle, fragmentShader); // Nạp vào fragmentShader(phủ lên mảnh)
+        _programHandle = _gl.glCreateProgram();             // Khởi tạo một chương trình rỗng
+        _gl.glAttachShader(_programHandle, vertexShader);   // Nạp vào vertexShader(phủ lên đỉnh)
+        _gl.glAttachShader(_programHandle, fragmentShader); // Nạp vào fragmentShader(phủ lên mảnh)
 
-        GLES20.glBindAttribLocation(_programHandle, 0, TEXTURE_COORDINATE_PARAM); //Gán hệ tọa độ texture lên hình đã vẽ
-        GLES20.glLinkProgram(_programHandle); // gán tất cả chương trình vào kết nối chuẩn bị cho việc chạy về sau
+        _gl.glBindAttribLocation(_programHandle, 0, TEXTURE_COORDINATE_PARAM); //Gán hệ tọa độ texture lên hình đã vẽ
+        _gl.glLinkProgram(_programHandle); // gán tất cả chương trình vào kết nối chuẩn bị cho việc chạy về sau
 
         /** Phần này sẽ định nghĩa vị trí trong bộ nhớ cho các biến trong phần code GLSL một cách tự động,
          * ta có thể tự định nghĩa vị trí(location) cho nó bằng glBindAttribLocation hoặc viết thẳng vào
          * phần vertexShader ở trên nếu muốn (nhưng không khuyến khích - nhất là gà mờ như tôi và bạn)
         */
-        positionHandle = GLES20.glGetAttribLocation(_programHandle, POSITION_PARAM);
-        textureCoordinateHandle = GLES20.glGetAttribLocation(_programHandle, TEXTURE_COORDINATE_PARAM);
-        mvpMatrixHandle = GLES20.glGetUniformLocation(_programHandle, MVPMATRIX_PARAM);
+        positionHandle = _gl.glGetAttribLocation(_programHandle, POSITION_PARAM);
+        textureCoordinateHandle = _gl.glGetAttribLocation(_programHandle, TEXTURE_COORDINATE_PARAM);
+        mvpMatrixHandle = _gl.glGetUniformLocation(_programHandle, MVPMATRIX_PARAM);
+        textureRectHandle = _gl.glGetUniformLocation(_programHandle, TEXTURE_RECT_PARAM);
+
+        _batcher.setProgram(_programHandle, positionHandle, textureCoordinateHandle, mvpMatrixHandle, textureRectHandle);
+    }
+
+    /** delete the gl objects shared by all sprites, gl thread only while the context is still current */
+    public static void releaseGlState ()
+    {
+        _batcher.release();
     }
 
     /**
-     * Cập nhật trạng thái của các sprite mỗi vòng vẽ mới
-     *
-     * @return true nếu sprite vẫn muốn sống, false nếu như nó đã xong nhiệm vụ của mình và sẵn sàng để chết
+     * the batch every sprite layer is drawn with, a pass of the render queue so the layers of a
+     * frame share one begin and end
      */
-    public abstract boolean update ();
+    public static SpriteBatcher getBatcher ()
+    {
+        return _batcher;
+    }
 
     /**
-     * Chúng ta sẽ không vẽ một hình một đúng chứ, nên đây là phương thức giúp chúng ta vẽ các hình
-     * theo tá(số lượng lớn)
-     * */
-    public void batchDraw (float[] mvpMatrix, List<TextureSprite> sprites)
+     * @return if the texture is resident, sprites of a drawable look theirs up every time, it may
+     * still be loading or have been evicted
+     */
+    private boolean resolveTexture ()
     {
-        // Thêm chương trình vào môi trường của OpenGL
-        GLES20.glUseProgram(_programHandle);
-
-        // Enable a handle to the vertices
-        //We assigned the attribute index of the position attribute to 0 in the vertex shader, so the call to glEnableVertexAttribArray(0)
-        // enables the attribute index for the position attribute.
-        // ... If the attribute is not enabled, it will not be used during rendering.
-
-        /**
-         * Kích hoạt chỉ số cho mảng các đỉnh, bắt buộc phải dùng nếu không mảng đỉnh ta đã định
-         * nghĩa ở trên sẽ không được sử dụng, thêm vào đó sẽ không thể sử dụng được glVertexAttribPointer
-         * ở ngay dưới dây
-         * positionHandle chính là vị trí được định nghĩa trong bộ nhớ mà ta vừa thiết lập ở phần initGlState
-         *  */
-        GLES20.glEnableVertexAttribArray(positionHandle);
-
-        /** phần chuẩn bị dữ liệu tọa độ
-         * Đây mới chính là phần quan trọng nè
-         * Dữ liệu về các đỉnh của ta sẽ được định dạng như sau:
-          - Dữ liệu vị trí được lưu giữ trong số thập phân 32 bit bằng cách dùng float
-          - Mỗi một vị trí sẽ được tạo ra bởi 4 giá trị trong 32 bit đó
-          - Sẽ không có bất kì khoảng cách nào giữa các bộ giá trị đó. Chúng được đóng gói vừa khít trong một mảng
-          - Bộ đệm mà ta sẽ sử dụng
-
-         glVertexAttribPointer sẽ nói cho OpenGL ES tất cả đống kia
-         * @param GLES20.GL_FLOAT Tham số thứ 3 -  sẽ đại diện cho bộ nhớ của số float, tương ứng với 32 bit
-         * @param COORDS_PER_VERTEX Tham số thứ 2 - COORDS_PER_VERTEX định nghĩa bao nhiêu giá trị trong đó đại diện cho một mảnh của dữ liệu
-         * Tham số thứ 5 xác định khoảng cách giữa các bộ dữ liệu liên tiếp nhau, nó là 0 tức là chúng ta sẽ để OpenGL ES tự định nghĩa, ở đây là 12
-         * Tham số thứ 6 xác định bô đệm mà ta sử dụng - khác với OpenGL trên C++ là tham số xác định vị trí offset trong bộ đệm
-         * Tham số thứ 4 là chuẩn hóa, ta không cần quan tâm vì đơn giản nó đa số các trường hợp là dùng false
-         */
-        GLES20.glVertexAttribPointer(positionHandle, COORDS_PER_VERTEX, GLES20.GL_FLOAT, false, VERTEX_STRIDE, _vertexBuffer);
-
-        // Tương tự cho phần texture, nó sẽ được vẽ đè lên hình khối đã được xây dựng lên trước của ta, nên bộ đệm texture mới để vị trí 0
-        _textureBuffer.position(0);
-        GLES20.glEnableVertexAttribArray(textureCoordinateHandle);
-        GLES20.glVertexAttribPointer(textureCoordinateHandle, 2, GLES20.GL_FLOAT, false, 0, _textureBuffer);
-
-        int size = sprites.size();
-        for (int i = 0; i < size; i++)
+        if (_drawableResourceId != 0)
         {
-            System.arraycopy(mvpMatrix, 0, scratchMatrix, 0, 16);
-
-            TextureSprite sprite = sprites.get(i);
-
-            GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, sprite._textureDataHandle);
-
-            // di chuyển sprite đến bị trí hiện tại của nó
-            Matrix.translateM(scratchMatrix, 0, sprite._currentPos[0], sprite._currentPos[1], sprite._currentPos[2]);
-            // xoay sprite
-            Matrix.rotateM(scratchMatrix, 0, sprite._rotationZ, 0, 0, 1.0f);
-            // xác định tỉ lệ của sprite đó với sprite gốc
-            Matrix.scaleM(scratchMatrix, 0, sprite._currentScale[0], sprite._currentScale[1], 1);
-
-            // Apply the projection and view transformation - Sử dụng phép chuyển hình chiếu và phép chuyển góc nhìn cho sprite
-            GLES20.glUniformMatrix4fv(mvpMatrixHandle, 1, false, scratchMatrix, 0);
-
-            // Cuối cùng sau tất tả các bước, hình ảnh của chúng ta sẽ được xuất ra ở đây
-            GLES20.glDrawElements(GLES20.GL_TRIANGLES, DRAW_ORDER.length, GLES20.GL_UNSIGNED_SHORT, _drawListBuffer);
+            _textureDataHandle = getCachedTexture(_drawableResourceId);
+            _textureRegion = getCachedRegion(_drawableResourceId);
+            if (_textureDataHandle != 0)
+            {
+                holdTexture(getCachedTextureId(_drawableResourceId));
+            }
         }
-
-        // Disable vertex array - Sau khi vẽ xong, ta hủy kích hoạt mảng các đỉnh để giải phóng bộ nhớ
-        GLES20.glDisableVertexAttribArray(positionHandle);
-        GLES20.glDisableVertexAttribArray(textureCoordinateHandle);
+        return _textureDataHandle != 0;
     }
 
-    //Đây là phương thức cho phép ta vẽ với một hình
-    public void draw (float[] mvpMatrix)
+    /** keep the texture the sprite draws from being evicted, the one it held before is let go */
+    private void holdTexture (int textureId)
     {
-        System.arraycopy(mvpMatrix, 0, scratchMatrix, 0, 16);
-
-        // Thêm chương trình vào môi trường của OpenGL
-        GLES20.glUseProgram(_programHandle);
-
-        // Kích hoạt chỉ số cho mảng các đỉnh
-        GLES20.glEnableVertexAttribArray(positionHandle);
-
-        // phần chuẩn bị dữ liệu tọa độ
-        GLES20.glVertexAttribPointer(positionHandle, COORDS_PER_VERTEX, GLES20.GL_FLOAT, false, VERTEX_STRIDE, _vertexBuffer);
-
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, _textureDataHandle);
-
-        _textureBuffer.position(0);
-        GLES20.glEnableVertexAttribArray(textureCoordinateHandle);
-        GLES20.glVertexAttribPointer(textureCoordinateHandle, 2, GLES20.GL_FLOAT, false, 0, _textureBuffer);
-
-        // di chuyển sprite đến bị trí hiện tại của nó
-        Matrix.translateM(scratchMatrix, 0, _currentPos[0], _currentPos[1], _currentPos[2]);
-        // xoay sprite
-        Matrix.rotateM(scratchMatrix, 0, _rotationZ, 0, 0, 1.0f);
-        // xác định tỉ lệ của sprite đó với sprite gốc
-        Matrix.scaleM(scratchMatrix, 0, _currentScale[0], _currentScale[1], 1);
-
-        // Apply the projection and view transformation - Sử dụng phép chuyển hình chiếu và phép chuyển góc nhìn cho sprite
-        GLES20.glUniformMatrix4fv(mvpMatrixHandle, 1, false, scratchMatrix, 0);
+        if (textureId == _heldTextureId)
+        {
+            return;
+        }
+        releaseTexture();
+        _textures.acquire(textureId);
+        _heldTextureId = textureId;
+    }
 
-        // Đồ họa sẽ được vẽ ra ở bước này
-        GLES20.glDrawElements(GLES20.GL_TRIANGLES, DRAW_ORDER.length, GLES20.GL_UNSIGNED_SHORT, _drawListBuffer);
+    /** let go of the texture the sprite draws, once it isn't drawn anymore. Gl thread only */
+    public void releaseTexture ()
+    {
+        if (_heldTextureId != 0)
+        {
+            _textures.release(_heldTextureId);
+            _heldTextureId = 0;
+        }
+    }
 
-        // Sau khi vẽ xong, ta hủy kích hoạt mảng các đỉnh để giải phóng bộ nhớ
-        GLES20.glDisableVertexAttribArray(positionHandle);
-        GLES20.glDisableVertexAttribArray(textureCoordinateHandle);
+    /** queue this sprite into an open batch instead of drawing it on its own */
+    public void batch (SpriteBatcher batcher)
+    {
+        if (!resolveTexture())
+        {
+            return;
+        }
+        batcher.draw(_textureDataHandle, _textureRegion, _currentPos[0], _currentPos[1], _currentPos[2], _rotationZ,
+                _currentScale[0], _currentScale[1]);
     }
 
     /**
@@ -350,10 +275,41 @@ public abstract class TextureSprite implements PoolableSprite
         return (float) Math.sqrt((x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2));
     }
 
-    public static void clearTextureCache ()
+    /** the textures loaded for sprites, by drawable or atlas id */
+    public static TextureManager getTextures ()
+    {
+        return _textures;
+    }
+
+    /** delete every sprite texture, gl thread only while the context is still current */
+    public static void deleteTextures ()
     {
-        drawableToTextureMap.clear();
-        bitmapToTextureMap.clear();
+        _textures.deleteAll();
+        _cachedCount = 0;
+    }
+
+    /** drop every sprite texture without deleting it, after the context that owned them was lost */
+    public static void forgetTextures ()
+    {
+        _textures.forgetAll();
+        _cachedCount = 0;
+    }
+
+    /** no drawable draws the texture anymore */
+    private static void forgetCachedTexture (int textureHandle)
+    {
+        for (int i = _cachedCount - 1; i >= 0; i--)
+        {
+            if (_cachedTextures[i] == textureHandle)
+            {
+                _cachedCount--;
+                _cachedDrawables[i] = _cachedDrawables[_cachedCount];
+                _cachedTextures[i] = _cachedTextures[_cachedCount];
+                _cachedRegions[i] = _cachedRegions[_cachedCount];
+                _cachedRegions[_cachedCount] = null;
+                _cachedOwners[i] = _cachedOwners[_cachedCount];
+            }
+        }
     }
 
     /**
@@ -361,50 +317,466 @@ public abstract class TextureSprite implements PoolableSprite
      */
     protected int loadGLTexture (int drawableResourceId)
     {
-        Integer cachedTextureId = drawableToTextureMap.get(drawableResourceId);
-        if (cachedTextureId != null)
+        int cachedTextureId = getCachedTexture(drawableResourceId);
+        if (cachedTextureId != 0)
         {
+            _textureRegion = getCachedRegion(drawableResourceId);
             return cachedTextureId;
         }
+        _textureRegion = AtlasRegion.FULL;
+
+        // decoded in the background, the sprite draws once it is resident
+        requestTexture(_context, drawableResourceId);
+        return 0;
+    }
+
+    //region background loading
+    /** where drawables are decoded off the gl thread, {@link AsyncTextureLoader#uploadPending} once a frame */
+    public static AsyncTextureLoader getLoader ()
+    {
+        return _loader;
+    }
+
+    /**
+     * Decode the drawable on a worker and upload it in a later frame, unless it is already loaded
+     * or on its way. Sprites of the drawable don't draw until it is resident. Gl thread only.
+     */
+    public static void requestTexture (Context context, int drawableResourceId)
+    {
+        if (getCachedTexture(drawableResourceId) != 0 || isRequested(drawableResourceId))
+        {
+            return;
+        }
+        addRequested(drawableResourceId);
+        _loader.submit(new DrawableRequest(context.getResources(), drawableResourceId));
+    }
+
+    /**
+     * Load an atlas the drawables were packed and compressed into at build time, see the tools
+     * module, or pack them into one when the context can't sample its format or the file doesn't
+     * hold every drawable. Whichever it is, the file is read and the drawables decoded on a worker.
+     * Drawables already loaded into another texture or on their way are left out, the atlas holds
+     * the rest. Gl thread only.
+     *
+     * @param atlasId             what the atlas texture is kept under by {@link #getTextures}
+     * @param compressedAssetPath KTX file in the assets, with a region named after each drawable's resource entry
+     */
+    public static void requestAtlas (Context context, int atlasId, String compressedAssetPath, int... drawableResourceIds)
+    {
+        // the new atlas replaces the one under the id, what it holds has to go into the new one
+        int atlasTexture = _textures.get(atlasId);
+        int[] wanted = new int[drawableResourceIds.length];
+        int wantedCount = 0;
+        boolean missing = false;
+        for (int drawableResourceId : drawableResourceIds)
+        {
+            int texture = getCachedTexture(drawableResourceId);
+            if (isRequested(drawableResourceId) || (texture != 0 && texture != atlasTexture))
+            {
+                continue;
+            }
+            missing |= texture == 0;
+            wanted[wantedCount++] = drawableResourceId;
+        }
+        if (!missing)
+        {
+            return;
+        }
+        wanted = Arrays.copyOf(wanted, wantedCount);
+        for (int drawableResourceId : wanted)
+        {
+            addRequested(drawableResourceId);
+        }
+        _loader.submit(new CompressedAtlasRequest(context, atlasId, compressedAssetPath, wanted));
+    }
+
+    private static boolean isRequested (int drawableResourceId)
+    {
+        for (int i = 0; i < _requestedCount; i++)
+        {
+            if (_requestedDrawables[i] == drawableResourceId)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addRequested (int drawableResourceId)
+    {
+        if (_requestedCount == _requestedDrawables.length)
+        {
+            _requestedDrawables = Arrays.copyOf(_requestedDrawables, _requestedCount * 2);
+        }
+        _requestedDrawables[_requestedCount++] = drawableResourceId;
+    }
 
-        // Nạp texture
-        Bitmap bitmap = BitmapFactory.decodeResource(_context.getResources(), drawableResourceId);
-        int handle = loadGLTexture(bitmap);
+    private static void removeRequested (int drawableResourceId)
+    {
+        for (int i = 0; i < _requestedCount; i++)
+        {
+            if (_requestedDrawables[i] == drawableResourceId)
+            {
+                _requestedDrawables[i] = _requestedDrawables[--_requestedCount];
+                return;
+            }
+        }
+    }
 
-        drawableToTextureMap.put(drawableResourceId, handle);
+    private static final class DrawableRequest implements AsyncTextureLoader.Request
+    {
+        private final Resources _resources;
+        private final int _drawableResourceId;
+        private Bitmap _bitmap;
 
-        // Giải phóng bộ nhớ
+        DrawableRequest (Resources resources, int drawableResourceId)
+        {
+            _resources = resources;
+            _drawableResourceId = drawableResourceId;
+        }
+
+        @Override
+        public long decode () throws IOException
+        {
+            _bitmap = BitmapFactory.decodeResource(_resources, _drawableResourceId);
+            if (_bitmap == null)
+            {
+                throw new IOException("can't decode drawable " + _drawableResourceId);
+            }
+            return 4L * _bitmap.getWidth() * _bitmap.getHeight();
+        }
+
+        @Override
+        public void upload (GlBackend gl)
+        {
+            uploadDrawable(_drawableResourceId, _bitmap);
+            _bitmap.recycle();
+            _bitmap = null;
+        }
+
+        @Override
+        public void failed (Exception e)
+        {
+            removeRequested(_drawableResourceId);
+            // its sprites are skipped as they were while it loaded, the game goes on without them
+            Log.e(TAG, "can't load drawable " + _drawableResourceId, e);
+        }
+    }
+
+    private static final class AtlasRequest implements AsyncTextureLoader.Request
+    {
+        private final Resources _resources;
+        private final int _atlasId;
+        private final int[] _drawableResourceIds;
+        private TextureAtlas _atlas;
+        private Bitmap _bitmap;
+
+        AtlasRequest (Resources resources, int atlasId, int[] drawableResourceIds)
+        {
+            _resources = resources;
+            _atlasId = atlasId;
+            _drawableResourceIds = drawableResourceIds;
+        }
+
+        @Override
+        public long decode ()
+        {
+            _atlas = packAtlas(_resources, _drawableResourceIds);
+            _bitmap = Bitmap.createBitmap(_atlas.getPixels(), _atlas.getWidth(), _atlas.getHeight(), Bitmap.Config.ARGB_8888);
+            return 4L * _atlas.getWidth() * _atlas.getHeight();
+        }
+
+        @Override
+        public void upload (GlBackend gl)
+        {
+            uploadAtlas(_atlasId, _atlas, _bitmap);
+            _atlas = null;
+            _bitmap = null;
+        }
+
+        @Override
+        public void failed (Exception e)
+        {
+            // still requested, each drawable is loaded as a texture of its own instead
+            Log.w(TAG, "can't pack atlas " + _atlasId + ", loading its drawables one by one", e);
+            for (int drawableResourceId : _drawableResourceIds)
+            {
+                _loader.submit(new DrawableRequest(_resources, drawableResourceId));
+            }
+        }
+    }
+
+    private static final class CompressedAtlasRequest implements AsyncTextureLoader.Request
+    {
+        private final Context _context;
+        private final int _atlasId;
+        private final String _assetPath;
+        private final int[] _drawableResourceIds;
+        private KtxFile _file;
+        private AtlasRegion[] _regions;
+
+        CompressedAtlasRequest (Context context, int atlasId, String assetPath, int[] drawableResourceIds)
+        {
+            _context = context;
+            _atlasId = atlasId;
+            _assetPath = assetPath;
+            _drawableResourceIds = drawableResourceIds;
+        }
+
+        @Override
+        public long decode () throws IOException
+        {
+            _file = readAsset(_context, _assetPath);
+            _regions = findRegions(_context.getResources(), _file, _drawableResourceIds);
+            long bytes = 0;
+            for (int level = 0; level < _file.getLevelCount(); level++)
+            {
+                bytes += _file.getLevel(level).remaining();
+            }
+            return bytes;
+        }
+
+        @Override
+        public void upload (GlBackend gl)
+        {
+            if (uploadCompressedAtlas(_atlasId, _file, _regions) == 0)
+            {
+                fallBack();
+            }
+            _file = null;
+        }
+
+        @Override
+        public void failed (Exception e)
+        {
+            // no such asset, the drawables are packed as they are
+            fallBack();
+        }
+
+        private void fallBack ()
+        {
+            _loader.submit(new AtlasRequest(_context.getResources(), _atlasId, _drawableResourceIds));
+        }
+    }
+    //endregion
+
+    /** decode the drawables and pack them, any thread */
+    private static TextureAtlas packAtlas (Resources resources, int[] drawableResourceIds)
+    {
+        TextureAtlasBuilder builder = new TextureAtlasBuilder(TextureAtlasBuilder.MIPMAPPED_PADDING,
+                TextureAtlasBuilder.DEFAULT_MAX_SIZE);
+        for (int drawableResourceId : drawableResourceIds)
+        {
+            Bitmap bitmap = BitmapFactory.decodeResource(resources, drawableResourceId);
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            int[] pixels = new int[width * height];
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            bitmap.recycle();
+            builder.add(drawableResourceId, width, height, pixels);
+        }
+        return builder.build();
+    }
+
+    /** upload a drawable's bitmap as a texture of its own, gl thread */
+    private static int uploadDrawable (int drawableResourceId, Bitmap bitmap)
+    {
+        int handle = uploadTexture(bitmap);
+        _textures.put(drawableResourceId, handle, 4L * bitmap.getWidth() * bitmap.getHeight());
+        cacheTexture(drawableResourceId, handle);
+        return handle;
+    }
+
+    /** upload the atlas bitmap and recycle it, gl thread */
+    private static int uploadAtlas (int atlasId, TextureAtlas atlas, Bitmap bitmap)
+    {
+        // atlases are a power of two, gl can make their mip chain
+        int handle = uploadTexture(bitmap, true);
         bitmap.recycle();
+        // the mip chain adds a third
+        _textures.put(atlasId, handle, 4L * atlas.getWidth() * atlas.getHeight() * 4 / 3);
+        for (int i = 0; i < atlas.getRegionCount(); i++)
+        {
+            AtlasRegion region = atlas.getRegionAt(i);
+            cacheTexture(region.id, atlasId, handle, region);
+        }
+        return handle;
+    }
+
+    /** any thread */
+    private static KtxFile readAsset (Context context, String assetPath) throws IOException
+    {
+        InputStream in = context.getAssets().open(assetPath);
+        try
+        {
+            return KtxFile.read(in);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /** @return the region of each drawable, null if the file is missing one, any thread */
+    private static AtlasRegion[] findRegions (Resources resources, KtxFile file, int[] drawableResourceIds)
+    {
+        AtlasRegion[] regions = new AtlasRegion[drawableResourceIds.length];
+        for (int i = 0; i < regions.length; i++)
+        {
+            String name = resources.getResourceEntryName(drawableResourceIds[i]);
+            regions[i] = KtxTextureLoader.findRegion(file, name, drawableResourceIds[i]);
+            if (regions[i] == null)
+            {
+                return null;
+            }
+        }
+        return regions;
+    }
 
+    /** @return the texture, 0 if the regions are missing or the context can't sample the file, gl thread */
+    private static int uploadCompressedAtlas (int atlasId, KtxFile file, AtlasRegion[] regions)
+    {
+        if (regions == null)
+        {
+            return 0;
+        }
+        int handle = KtxTextureLoader.upload(_gl, file);
+        if (handle == 0)
+        {
+            return 0;
+        }
+        long bytes = 0;
+        for (int level = 0; level < file.getLevelCount(); level++)
+        {
+            bytes += file.getLevel(level).remaining();
+        }
+        _textures.put(atlasId, handle, bytes);
+        for (AtlasRegion region : regions)
+        {
+            cacheTexture(region.id, atlasId, handle, region);
+        }
         return handle;
     }
 
+    /** make an uploaded texture the one layers draw for the drawable */
+    static void cacheTexture (int drawableResourceId, int textureHandle)
+    {
+        cacheTexture(drawableResourceId, textureHandle, AtlasRegion.FULL);
+    }
+
+    /** make a region of an uploaded texture the one layers draw for the drawable */
+    static void cacheTexture (int drawableResourceId, int textureHandle, AtlasRegion region)
+    {
+        cacheTexture(drawableResourceId, drawableResourceId, textureHandle, region);
+    }
+
+    /** @param textureId what the texture is kept under by {@link #getTextures} */
+    private static void cacheTexture (int drawableResourceId, int textureId, int textureHandle, AtlasRegion region)
+    {
+        removeRequested(drawableResourceId);
+        for (int i = 0; i < _cachedCount; i++)
+        {
+            if (_cachedDrawables[i] == drawableResourceId)
+            {
+                _cachedTextures[i] = textureHandle;
+                _cachedRegions[i] = region;
+                _cachedOwners[i] = textureId;
+                return;
+            }
+        }
+        if (_cachedCount == _cachedDrawables.length)
+        {
+            _cachedDrawables = Arrays.copyOf(_cachedDrawables, _cachedCount * 2);
+            _cachedTextures = Arrays.copyOf(_cachedTextures, _cachedCount * 2);
+            _cachedRegions = Arrays.copyOf(_cachedRegions, _cachedCount * 2);
+            _cachedOwners = Arrays.copyOf(_cachedOwners, _cachedCount * 2);
+        }
+        _cachedDrawables[_cachedCount] = drawableResourceId;
+        _cachedTextures[_cachedCount] = textureHandle;
+        _cachedRegions[_cachedCount] = region;
+        _cachedOwners[_cachedCount] = textureId;
+        _cachedCount++;
+    }
+
     /**
-     * Phương thức nạp texture với lựa chọn sử dụng bitmap
+     * @return the texture of an already loaded drawable, 0 if it hasn't been loaded. Counts as using
+     * the texture, look it up for every frame it is drawn in so the least recently drawn are evicted first
      */
-    protected int loadGLTexture (Bitmap bitmap)
+    public static int getCachedTexture (int drawableResourceId)
     {
-        Integer cachedTextureId = bitmapToTextureMap.get(bitmap.hashCode());
-        if (cachedTextureId != null)
+        for (int i = 0; i < _cachedCount; i++)
         {
-            return cachedTextureId;
+            if (_cachedDrawables[i] == drawableResourceId)
+            {
+                _textures.touch(_cachedOwners[i]);
+                return _cachedTextures[i];
+            }
+        }
+        return 0;
+    }
+
+    /** @return what the texture of a loaded drawable is kept under by {@link #getTextures}, 0 if it hasn't been loaded */
+    static int getCachedTextureId (int drawableResourceId)
+    {
+        for (int i = 0; i < _cachedCount; i++)
+        {
+            if (_cachedDrawables[i] == drawableResourceId)
+            {
+                return _cachedOwners[i];
+            }
+        }
+        return 0;
+    }
+
+    /** @return the part of its texture a loaded drawable covers, the whole texture if it isn't in an atlas */
+    static AtlasRegion getCachedRegion (int drawableResourceId)
+    {
+        for (int i = 0; i < _cachedCount; i++)
+        {
+            if (_cachedDrawables[i] == drawableResourceId)
+            {
+                return _cachedRegions[i];
+            }
         }
+        return AtlasRegion.FULL;
+    }
+
+    /** @return width / height of a loaded drawable's atlas region, 0 if it isn't resident in an atlas */
+    public static float getCachedImageRatio (int drawableResourceId)
+    {
+        AtlasRegion region = getCachedRegion(drawableResourceId);
+        if (region == AtlasRegion.FULL)
+        {
+            return 0;
+        }
+        return region.width / (float) region.height;
+    }
 
-        _imageRatio = bitmap.getWidth() / ((float) bitmap.getHeight());
+    private static int uploadTexture (Bitmap bitmap)
+    {
+        return uploadTexture(bitmap, false);
+    }
 
+    /** @param mipmapped give the texture a mip chain, only for power of two bitmaps on GLES 2 */
+    private static int uploadTexture (Bitmap bitmap, boolean mipmapped)
+    {
         // Khởi tạo một con trỏ texture và nhúng nó vô phần xử lý của ta
         int[] textureHandle = new int[1];
-        GLES20.glGenTextures(1, textureHandle, 0);
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
+        _gl.glGenTextures(1, textureHandle, 0);
+        _gl.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
 
-        // tạo ra bộ lọc texture gần(nearest filtered)
-        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
-        GLES20.glTexParameterf(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        // linear rather than nearest, sprites drawn smaller than their bitmap shimmer otherwise,
+        // with mipmaps the smaller levels are sampled instead of skipping over texels
+        _gl.glTexParameterf(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER,
+                mipmapped ? GLES20.GL_LINEAR_MIPMAP_LINEAR : GLES20.GL_LINEAR);
+        _gl.glTexParameterf(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
 
         // Sử dụng Android GLUtils để định nghĩa hình ảnh texture 2 chiều từ bitmap của ta
-        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, bitmap, 0);
-
-        bitmapToTextureMap.put(bitmap.hashCode(), textureHandle[0]);
+        _gl.texImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, bitmap, 0);
+        if (mipmapped)
+        {
+            _gl.glGenerateMipmap(GLES20.GL_TEXTURE_2D);
+        }
 
         return textureHandle[0];
     }
@@ -417,14 +789,13 @@ public abstract class TextureSprite implements PoolableSprite
         }
     }
 
-    public boolean isInUse ()
-    {
-        return _inUse;
-    }
-
-    public void setInUse (boolean inUse)
+    /** remember the current position and rotation, call this before every simulation tick */
+    public void savePreviousState ()
     {
-        _inUse = inUse;
+        _previousPos[0] = _currentPos[0];
+        _previousPos[1] = _currentPos[1];
+        _previousRotationZ = _rotationZ;
+        _hasPrevious = true;
     }
 
     public boolean isAlive ()
@@ -0,0 +1,39 @@
+package com.example.samplegamefix;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Counts the bytes the current thread allocates, for tests that make sure a hot path doesn't
+ * allocate. Only works on JVMs with thread allocation accounting (HotSpot), other JVMs skip the
+ * test instead of failing it.
+ */
+public final class Allocations
+{
+    private Allocations ()
+    {
+    }
+
+    /**
+     * @return bytes allocated by the current thread while running the task
+     */
+    public static long measure (Runnable task)
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        long id = Thread.currentThread().getId();
+        // whatever measuring itself costs
+        long overhead = threads.getThreadAllocatedBytes(id);
+        overhead = threads.getThreadAllocatedBytes(id) - overhead;
+
+        long before = threads.getThreadAllocatedBytes(id);
+        task.run();
+        long after = threads.getThreadAllocatedBytes(id);
+        return Math.max(0, after - before - overhead);
+    }
+}
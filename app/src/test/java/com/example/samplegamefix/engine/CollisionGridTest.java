@@ -0,0 +1,229 @@
+package com.example.samplegamefix.engine;
+
+import com.example.samplegamefix.sprites.AsteroidSprite;
+import com.example.samplegamefix.sprites.EntityStore;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CollisionGridTest
+{
+    private static final float CHICKEN_SCALE = 0.07f;
+
+    @Test
+    public void circlesOverlapMatchesSqrtTestOnTheEdge ()
+    {
+        Random random = new Random(1);
+        for (int n = 0; n < 1000000; n++)
+        {
+            float radius = 0.01f + random.nextFloat() * 0.5f;
+            double angle = random.nextDouble() * Math.PI * 2;
+            // right around the edge, where rounding decides
+            double distance = radius * (1 + (random.nextDouble() - 0.5) * 1e-6);
+            float x1 = random.nextFloat() * 2 - 1;
+            float y1 = random.nextFloat() * 2 - 1;
+            float x2 = (float) (x1 + Math.cos(angle) * distance);
+            float y2 = (float) (y1 + Math.sin(angle) * distance);
+
+            assertEquals(sqrtTest(x1, y1, x2, y2, radius), EntityStore.circlesOverlap(x1, y1, x2, y2, radius));
+        }
+    }
+
+    @Test
+    public void gridFindsSameFirstAsteroidAsBruteForce ()
+    {
+        Random random = new Random(2);
+        CollisionGrid grid = new CollisionGrid(2 * AsteroidSprite.MAX_SCALE, 256);
+        for (int scene = 0; scene < 200; scene++)
+        {
+            EntityStore asteroids = randomAsteroids(random, 50 + random.nextInt(3000));
+            EntityStore chickens = randomChickens(random, 1 + random.nextInt(60));
+
+            grid.rebuild(asteroids);
+            boolean[] excluded = new boolean[asteroids.size()];
+            for (int i = 0; i < asteroids.size(); i++)
+            {
+                if (random.nextInt(10) == 0)
+                {
+                    excluded[i] = true;
+                    grid.exclude(i);
+                }
+            }
+
+            for (int j = 0; j < chickens.size(); j++)
+            {
+                assertEquals(bruteForceFirst(asteroids, excluded, chickens, j),
+                        grid.findFirstOverlap(asteroids, chickens._posX[j], chickens._posY[j], chickens._scaleX[j]));
+            }
+        }
+    }
+
+    @Test
+    public void gridFindsTouchingAsteroids ()
+    {
+        Random random = new Random(3);
+        CollisionGrid grid = new CollisionGrid(2 * AsteroidSprite.MAX_SCALE, 256);
+        EntityStore chickens = randomChickens(random, 40);
+        EntityStore asteroids = new EntityStore(100, 0, 0);
+        // put asteroids right on the edge of every chicken
+        for (int j = 0; j < chickens.size(); j++)
+        {
+            for (int n = 0; n < 20; n++)
+            {
+                int i = asteroids.spawn();
+                float radius = AsteroidSprite.MIN_SCALE
+                        + random.nextFloat() * (AsteroidSprite.MAX_SCALE - AsteroidSprite.MIN_SCALE);
+                double angle = random.nextDouble() * Math.PI * 2;
+                double distance = (radius + chickens._scaleX[j]) * (1 + (random.nextDouble() - 0.5) * 1e-6);
+                asteroids._scaleX[i] = radius;
+                asteroids._posX[i] = (float) (chickens._posX[j] + Math.cos(angle) * distance);
+                asteroids._posY[i] = (float) (chickens._posY[j] + Math.sin(angle) * distance);
+            }
+        }
+
+        grid.rebuild(asteroids);
+        boolean[] excluded = new boolean[asteroids.size()];
+        for (int j = 0; j < chickens.size(); j++)
+        {
+            assertEquals(bruteForceFirst(asteroids, excluded, chickens, j),
+                    grid.findFirstOverlap(asteroids, chickens._posX[j], chickens._posY[j], chickens._scaleX[j]));
+        }
+    }
+
+    /**
+     * Not a pass/fail test, prints how both approaches scale. Asteroids are spread over a taller
+     * field the more there are, so the density stays what the game sees on screen.
+     */
+    @Test
+    public void stressBenchmark ()
+    {
+        Random random = new Random(4);
+        CollisionGrid grid = new CollisionGrid(2 * AsteroidSprite.MAX_SCALE, 4096);
+        int[] asteroidCounts = { 100, 1000, 5000, 20000 };
+        int[] chickenCounts = { 5, 50 };
+        for (int asteroidCount : asteroidCounts)
+        {
+            for (int chickenCount : chickenCounts)
+            {
+                float fieldHeight = 4 * asteroidCount / 100f;
+                EntityStore asteroids = randomAsteroids(random, asteroidCount, fieldHeight);
+                EntityStore chickens = randomChickens(random, chickenCount, fieldHeight);
+                int[] bruteKillers = new int[chickenCount];
+                int[] gridKillers = new int[chickenCount];
+                int rounds = Math.max(20, 20000000 / (asteroidCount * chickenCount));
+
+                for (int r = 0; r < rounds; r++)
+                {
+                    nestedLoopKillers(asteroids, chickens, bruteKillers);
+                    gridKillers(grid, asteroids, chickens, gridKillers);
+                }
+
+                long start = System.nanoTime();
+                for (int r = 0; r < rounds; r++)
+                {
+                    nestedLoopKillers(asteroids, chickens, bruteKillers);
+                }
+                long bruteNanos = (System.nanoTime() - start) / rounds;
+
+                start = System.nanoTime();
+                for (int r = 0; r < rounds; r++)
+                {
+                    gridKillers(grid, asteroids, chickens, gridKillers);
+                }
+                long gridNanos = (System.nanoTime() - start) / rounds;
+
+                assertArrayEquals(bruteKillers, gridKillers);
+                System.out.println(String.format("asteroids %6d chickens %3d: nested loop %9d ns, grid %7d ns per tick",
+                        asteroidCount, chickenCount, bruteNanos, gridNanos));
+            }
+        }
+    }
+
+    /** shape of the loop GameEngine used to run, every asteroid against every chicken still alive */
+    private static void nestedLoopKillers (EntityStore asteroids, EntityStore chickens, int[] killers)
+    {
+        Arrays.fill(killers, -1);
+        for (int i = 0; i < asteroids.size(); i++)
+        {
+            for (int j = 0; j < chickens.size(); j++)
+            {
+                if (killers[j] < 0 && sqrtTest(asteroids._posX[i], asteroids._posY[i],
+                        chickens._posX[j], chickens._posY[j], asteroids._scaleX[i] + chickens._scaleX[j]))
+                {
+                    killers[j] = i;
+                }
+            }
+        }
+    }
+
+    private static void gridKillers (CollisionGrid grid, EntityStore asteroids, EntityStore chickens, int[] killers)
+    {
+        grid.rebuild(asteroids);
+        for (int j = 0; j < chickens.size(); j++)
+        {
+            killers[j] = grid.findFirstOverlap(asteroids, chickens._posX[j], chickens._posY[j], chickens._scaleX[j]);
+        }
+    }
+
+    private static EntityStore randomAsteroids (Random random, int count)
+    {
+        return randomAsteroids(random, count, 4.4f);
+    }
+
+    private static EntityStore randomChickens (Random random, int count)
+    {
+        return randomChickens(random, count, 4.4f);
+    }
+
+    private static EntityStore randomAsteroids (Random random, int count, float fieldHeight)
+    {
+        EntityStore asteroids = new EntityStore(count, 0, 0.1f);
+        for (int n = 0; n < count; n++)
+        {
+            int i = asteroids.spawn();
+            asteroids._scaleX[i] = AsteroidSprite.MIN_SCALE
+                    + random.nextFloat() * (AsteroidSprite.MAX_SCALE - AsteroidSprite.MIN_SCALE);
+            asteroids._posX[i] = random.nextFloat() * 2.2f - 1.1f;
+            asteroids._posY[i] = (random.nextFloat() - 0.5f) * fieldHeight;
+        }
+        return asteroids;
+    }
+
+    private static EntityStore randomChickens (Random random, int count, float fieldHeight)
+    {
+        EntityStore chickens = new EntityStore(count, 0, 0.2f);
+        for (int n = 0; n < count; n++)
+        {
+            int i = chickens.spawn();
+            chickens._scaleX[i] = CHICKEN_SCALE;
+            chickens._posX[i] = random.nextFloat() * 2 - 1;
+            chickens._posY[i] = (random.nextFloat() - 0.5f) * fieldHeight;
+        }
+        return chickens;
+    }
+
+    /** the loop GameEngine used to run, with the sqrt test of TextureSprite.collidesWith */
+    private static int bruteForceFirst (EntityStore asteroids, boolean[] excluded, EntityStore chickens, int j)
+    {
+        for (int i = 0; i < asteroids.size(); i++)
+        {
+            if (!excluded[i] && sqrtTest(asteroids._posX[i], asteroids._posY[i],
+                    chickens._posX[j], chickens._posY[j], asteroids._scaleX[i] + chickens._scaleX[j]))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean sqrtTest (float x1, float y1, float x2, float y2, float radius)
+    {
+        float dist = (float) Math.sqrt((x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2));
+        return dist < radius;
+    }
+}
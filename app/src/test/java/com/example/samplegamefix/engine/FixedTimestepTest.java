@@ -0,0 +1,112 @@
+package com.example.samplegamefix.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class FixedTimestepTest
+{
+    private static final long MS = 1000000;
+    // 10ms ticks keep the arithmetic exact
+    private static final int RATE = 100;
+    private static final long TICK = 10 * MS;
+
+    @Test
+    public void firstFrameOnlyStartsTheClock ()
+    {
+        FixedTimestep timestep = new FixedTimestep(RATE, 5);
+        assertEquals(0, timestep.advance(1000 * MS));
+        assertEquals(0, timestep.getAlpha(), 0);
+        assertEquals(TICK, timestep.getNanosUntilNextTick());
+    }
+
+    @Test
+    public void elapsedTimeIsSpentOneTickAtATime ()
+    {
+        FixedTimestep timestep = new FixedTimestep(RATE, 5);
+        long now = 1000 * MS;
+        timestep.advance(now);
+
+        assertEquals(0, timestep.advance(now += 4 * MS));
+        assertEquals(1, timestep.advance(now += 8 * MS));
+        assertEquals(2 * MS, TICK - timestep.getNanosUntilNextTick());
+        assertEquals(3, timestep.advance(now += 29 * MS));
+        assertEquals(0, timestep.getDroppedTicks());
+    }
+
+    @Test
+    public void alphaIsTheLeftoverPartOfATick ()
+    {
+        FixedTimestep timestep = new FixedTimestep(RATE, 5);
+        long now = 1000 * MS;
+        timestep.advance(now);
+
+        timestep.advance(now += 2 * MS);
+        assertEquals(0.2f, timestep.getAlpha(), 1e-6f);
+        timestep.advance(now += 15 * MS);
+        assertEquals(0.7f, timestep.getAlpha(), 1e-6f);
+        assertEquals(3 * MS, timestep.getNanosUntilNextTick());
+    }
+
+    @Test
+    public void catchUpIsCappedAndTheRestIsDropped ()
+    {
+        FixedTimestep timestep = new FixedTimestep(RATE, 5);
+        long now = 1000 * MS;
+        timestep.advance(now);
+
+        // a 1 second hitch is 100 ticks due, only 5 are run
+        assertEquals(5, timestep.advance(now += 1000 * MS + 4 * MS));
+        assertEquals(95, timestep.getDroppedTicks());
+        // the part of a tick left over still interpolates
+        assertEquals(0.4f, timestep.getAlpha(), 1e-6f);
+        // and the next frame doesn't try to catch up again
+        assertEquals(1, timestep.advance(now += 6 * MS));
+    }
+
+    @Test
+    public void resetForgetsTheTimeSpentPaused ()
+    {
+        FixedTimestep timestep = new FixedTimestep(RATE, 5);
+        long now = 1000 * MS;
+        timestep.advance(now);
+        timestep.advance(now += 5 * MS);
+
+        timestep.reset();
+        assertEquals(0, timestep.advance(now += 60000 * MS));
+        assertEquals(0, timestep.getAlpha(), 0);
+        assertEquals(1, timestep.advance(now += TICK));
+        assertEquals(0, timestep.getDroppedTicks());
+    }
+
+    @Test
+    public void disabledRunsOneTickAFrameWithoutInterpolation ()
+    {
+        FixedTimestep timestep = new FixedTimestep(RATE, 5);
+        timestep.setEnabled(false);
+        assertFalse(timestep.isEnabled());
+        assertEquals(1, timestep.advance(1000 * MS));
+        assertEquals(1, timestep.advance(1001 * MS));
+        assertEquals(1.0f, timestep.getAlpha(), 0);
+    }
+
+    @Test
+    public void slowerTickRateKeepsTheLeftoverBelowATick ()
+    {
+        FixedTimestep timestep = new FixedTimestep(RATE, 5);
+        long now = 1000 * MS;
+        timestep.advance(now);
+        timestep.advance(now += 9 * MS);
+
+        timestep.setTickRate(200);
+        assertEquals(5 * MS, timestep.getTickNanos());
+        assertEquals((5 * MS - 1) / (float) (5 * MS), timestep.getAlpha(), 1e-6f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void catchUpCapMustBePositive ()
+    {
+        new FixedTimestep(RATE, 0);
+    }
+}
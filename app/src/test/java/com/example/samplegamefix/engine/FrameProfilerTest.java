@@ -0,0 +1,136 @@
+package com.example.samplegamefix.engine;
+
+import com.example.samplegamefix.Allocations;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameProfilerTest
+{
+    private static final long MS = 1000000;
+
+    @Test
+    public void percentilesUseNearestRank ()
+    {
+        FrameProfiler profiler = new FrameProfiler(128);
+        // 100 down to 1 ms, the order they come in doesn't matter
+        for (int i = 100; i >= 1; i--)
+        {
+            profiler.record(FrameProfiler.Phase.COLLISION, i * MS);
+        }
+
+        assertEquals(100, profiler.getSampleCount(FrameProfiler.Phase.COLLISION));
+        assertEquals(50 * MS, profiler.getPercentileNanos(FrameProfiler.Phase.COLLISION, 50));
+        assertEquals(95 * MS, profiler.getPercentileNanos(FrameProfiler.Phase.COLLISION, 95));
+        assertEquals(99 * MS, profiler.getPercentileNanos(FrameProfiler.Phase.COLLISION, 99));
+        assertEquals(100 * MS, profiler.getMaxNanos(FrameProfiler.Phase.COLLISION));
+        assertEquals(0, profiler.getSampleCount(FrameProfiler.Phase.SPAWN));
+        assertEquals(0, profiler.getPercentileNanos(FrameProfiler.Phase.SPAWN, 50));
+    }
+
+    @Test
+    public void ringKeepsOnlyTheLatestSamples ()
+    {
+        FrameProfiler profiler = new FrameProfiler(16);
+        profiler.record(FrameProfiler.Phase.TICK, 1000 * MS);
+        for (int i = 0; i < 16; i++)
+        {
+            profiler.record(FrameProfiler.Phase.TICK, 2 * MS);
+        }
+
+        assertEquals(16, profiler.getSampleCount(FrameProfiler.Phase.TICK));
+        assertEquals(2 * MS, profiler.getMaxNanos(FrameProfiler.Phase.TICK));
+    }
+
+    @Test
+    public void countsLongFramesButNotPauses ()
+    {
+        FrameProfiler profiler = new FrameProfiler();
+        long now = 1000 * MS;
+        profiler.frameStarted(now);
+        profiler.frameStarted(now += 16 * MS);
+        profiler.frameStarted(now += 40 * MS);
+        profiler.frameStarted(now += 17 * MS);
+        assertEquals(1, profiler.getLongFrames());
+
+        profiler.resetFrameClock();
+        profiler.frameStarted(now += 5000 * MS);
+        assertEquals(1, profiler.getLongFrames());
+        assertEquals(3, profiler.getSampleCount(FrameProfiler.Phase.FRAME_INTERVAL));
+        assertEquals(40 * MS, profiler.getMaxNanos(FrameProfiler.Phase.FRAME_INTERVAL));
+
+        String report = profiler.describe();
+        assertTrue(report, report.contains("frame interval"));
+        assertTrue(report, report.contains("long frames 1 (1 total)"));
+        assertEquals(0, profiler.getLongFrames());
+        assertEquals(1, profiler.getLongFramesTotal());
+    }
+
+    @Test
+    public void disabledProfilerRecordsNothing ()
+    {
+        FrameProfiler profiler = new FrameProfiler();
+        profiler.setEnabled(false);
+        long start = profiler.start();
+        profiler.end(FrameProfiler.Phase.DRAW, start);
+        profiler.frameStarted(1);
+        profiler.frameStarted(100 * MS);
+
+        assertEquals(0, profiler.getSampleCount(FrameProfiler.Phase.DRAW));
+        assertEquals(0, profiler.getLongFrames());
+    }
+
+    @Test
+    public void recordingDoesNotAllocate ()
+    {
+        final FrameProfiler profiler = new FrameProfiler();
+        Runnable frame = new Runnable()
+        {
+            @Override
+            public void run ()
+            {
+                for (int i = 0; i < 1000; i++)
+                {
+                    long t = profiler.start();
+                    t = profiler.end(FrameProfiler.Phase.ASTEROID_DRAW, t);
+                    profiler.end(FrameProfiler.Phase.CHICKEN_DRAW, t);
+                }
+            }
+        };
+        frame.run();
+        assertEquals(0, Allocations.measure(frame));
+    }
+
+    @Test
+    public void glStateChangesAreAveragedUntilDescribed ()
+    {
+        FrameProfiler profiler = new FrameProfiler();
+        profiler.recordGlState(10, 30);
+        profiler.recordGlState(20, 10);
+        assertEquals(15, profiler.getGlChangesPerFrame(), 0);
+        assertEquals(20, profiler.getGlSkippedPerFrame(), 0);
+
+        assertTrue(profiler.describe().contains("gl state changes 15.0 per frame, 20.0 skipped"));
+        assertEquals(0, profiler.getGlChangesPerFrame(), 0);
+        assertTrue(!profiler.describe().contains("gl state"));
+    }
+
+    @Test
+    public void headlessGameFillsSimulationPhases ()
+    {
+        HeadlessRunner runner = new HeadlessRunner(3);
+        runner.run(1000);
+        FrameProfiler profiler = runner.getEngine().getProfiler();
+        for (FrameProfiler.Phase phase : new FrameProfiler.Phase[] {
+                FrameProfiler.Phase.TICK, FrameProfiler.Phase.COLLISION,
+                FrameProfiler.Phase.ASTEROID_UPDATE, FrameProfiler.Phase.CHICKEN_UPDATE,
+                FrameProfiler.Phase.SPAWN })
+        {
+            assertTrue(phase.name(), profiler.getSampleCount(phase) > 0);
+            assertTrue(phase.name(), profiler.getPercentileNanos(phase, 99) <= profiler.getMaxNanos(phase));
+        }
+        assertEquals(0, profiler.getSampleCount(FrameProfiler.Phase.DRAW));
+    }
+}
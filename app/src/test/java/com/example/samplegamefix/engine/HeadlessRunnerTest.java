@@ -0,0 +1,138 @@
+package com.example.samplegamefix.engine;
+
+import com.example.samplegamefix.sprites.EntityStore;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HeadlessRunnerTest
+{
+    private static final long SOAK_TICKS = 1000000;
+
+    private static class RecordingAudio implements GameAudio
+    {
+        int newGames;
+        int rockBreaks;
+        int chickenDeaths;
+        boolean released;
+
+        @Override
+        public void playNewGame ()
+        {
+            newGames++;
+        }
+
+        @Override
+        public void playRockBreak ()
+        {
+            rockBreaks++;
+        }
+
+        @Override
+        public void playChickenDeath ()
+        {
+            chickenDeaths++;
+        }
+
+        @Override
+        public void release ()
+        {
+            released = true;
+        }
+    }
+
+    /**
+     * Runs the game for hours of game time. Whatever the stores need has to be reached early on,
+     * after that nothing may keep growing.
+     */
+    @Test
+    public void soakKeepsPoolsBounded ()
+    {
+        RecordingAudio audio = new RecordingAudio();
+        HeadlessRunner runner = new HeadlessRunner(1, HeadlessRunner.DEFAULT_RATIO, audio);
+        GameEngine engine = runner.getEngine();
+
+        runner.run(SOAK_TICKS / 2);
+        int[] capacities = capacities(engine);
+
+        runner.run(SOAK_TICKS / 2);
+        assertArrayEquals(capacities, capacities(engine));
+        assertTrue(engine.getChickens().size() <= 5);
+        assertTrue(engine.getAsteroids().getHighWaterMark() <= engine.getAsteroids().getCapacity());
+        assertTrue(engine.getBrokenAsteroids().getHighWaterMark() <= engine.getBrokenAsteroids().getCapacity());
+
+        // the first game is started by the engine itself
+        assertTrue(runner.getGamesPlayed() > 0);
+        assertEquals(runner.getGamesPlayed() + 1, audio.newGames);
+        assertTrue(audio.rockBreaks > 0);
+        assertTrue(audio.chickenDeaths >= 5 * runner.getGamesPlayed());
+
+        engine.destroy();
+        assertTrue(audio.released);
+
+        System.out.println(String.format("%d ticks, %d games, %.0f ticks per second, %s",
+                runner.getTicks(), runner.getGamesPlayed() + 1, runner.getTicksPerSecond(),
+                engine.describePools()));
+    }
+
+    @Test
+    public void sameSeedPlaysSameGame ()
+    {
+        HeadlessRunner first = new HeadlessRunner(42);
+        HeadlessRunner second = new HeadlessRunner(42);
+        for (int n = 0; n < 20; n++)
+        {
+            first.run(1000);
+            second.run(1000);
+            assertSameState(first.getEngine(), second.getEngine());
+        }
+        assertEquals(first.getGamesPlayed(), second.getGamesPlayed());
+    }
+
+    @Test
+    public void startsOverWhenTheLastChickenDies ()
+    {
+        HeadlessRunner runner = new HeadlessRunner(7);
+        while (runner.getGamesPlayed() == 0)
+        {
+            runner.step();
+            assertTrue("no game over in a reasonable time", runner.getTicks() < SOAK_TICKS);
+        }
+        GameEngine engine = runner.getEngine();
+        assertTrue(engine.isPlaying());
+        assertEquals(5, engine.getChickens().size());
+    }
+
+    private static int[] capacities (GameEngine engine)
+    {
+        return new int[] {
+                engine.getAsteroids().getCapacity(),
+                engine.getBrokenAsteroids().getCapacity(),
+                engine.getChickens().getCapacity(),
+        };
+    }
+
+    private static void assertSameState (GameEngine a, GameEngine b)
+    {
+        assertEquals(a.isPlaying(), b.isPlaying());
+        assertEquals(a.getAsteroidCount(), b.getAsteroidCount());
+        assertEquals(a.getBestCombo(), b.getBestCombo());
+        assertSameStore(a.getAsteroids(), b.getAsteroids());
+        assertSameStore(a.getBrokenAsteroids(), b.getBrokenAsteroids());
+        assertSameStore(a.getChickens(), b.getChickens());
+    }
+
+    private static void assertSameStore (EntityStore a, EntityStore b)
+    {
+        assertEquals(a.size(), b.size());
+        int size = a.size();
+        assertArrayEquals(Arrays.copyOf(a._posX, size), Arrays.copyOf(b._posX, size), 0);
+        assertArrayEquals(Arrays.copyOf(a._posY, size), Arrays.copyOf(b._posY, size), 0);
+        assertArrayEquals(Arrays.copyOf(a._scaleX, size), Arrays.copyOf(b._scaleX, size), 0);
+    }
+}
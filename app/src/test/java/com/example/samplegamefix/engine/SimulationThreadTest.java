@@ -0,0 +1,128 @@
+package com.example.samplegamefix.engine;
+
+import com.example.samplegamefix.helper.FixedTiltHelper;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SimulationThreadTest
+{
+    /** counts simulation steps and takes a while over each, like a heavy tick */
+    private static class SlowEngine extends GameEngine
+    {
+        final AtomicInteger steps = new AtomicInteger();
+        final AtomicBoolean inside = new AtomicBoolean();
+
+        SlowEngine ()
+        {
+            super(GameAudio.SILENT, new FixedTiltHelper(), 1);
+        }
+
+        @Override
+        public long runSimulation (long nowNanos)
+        {
+            inside.set(true);
+            try
+            {
+                Thread.sleep(2);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            steps.incrementAndGet();
+            inside.set(false);
+            return 0;
+        }
+    }
+
+    /** android.os.Process isn't there on the JVM */
+    private static class TestThread extends SimulationThread
+    {
+        TestThread (GameEngine engine)
+        {
+            super(engine);
+        }
+
+        @Override
+        protected void raisePriority ()
+        {
+        }
+    }
+
+    private SimulationThread _thread;
+
+    @After
+    public void tearDown ()
+    {
+        if (_thread != null)
+        {
+            _thread.quitAndWait();
+        }
+    }
+
+    @Test
+    public void postedEventsRunOnTheSimulationThread () throws InterruptedException
+    {
+        _thread = new TestThread(new SlowEngine());
+        _thread.start();
+
+        final AtomicReference<Thread> ranOn = new AtomicReference<>();
+        final CountDownLatch ran = new CountDownLatch(1);
+        _thread.post(new Runnable()
+        {
+            @Override
+            public void run ()
+            {
+                ranOn.set(Thread.currentThread());
+                ran.countDown();
+            }
+        });
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertSame(_thread, ranOn.get());
+    }
+
+    @Test
+    public void quitAndWaitReturnsOnlyOnceTheLastStepIsDone () throws InterruptedException
+    {
+        SlowEngine engine = new SlowEngine();
+        _thread = new TestThread(engine);
+        _thread.start();
+        while (engine.steps.get() < 3)
+        {
+            Thread.sleep(1);
+        }
+
+        _thread.quitAndWait();
+        assertFalse(_thread.isAlive());
+        assertFalse(engine.inside.get());
+        int steps = engine.steps.get();
+        Thread.sleep(20);
+        assertEquals(steps, engine.steps.get());
+    }
+
+    @Test
+    public void quitWakesAPausedThread ()
+    {
+        SlowEngine engine = new SlowEngine();
+        _thread = new TestThread(engine);
+        _thread.setPaused(true);
+        _thread.start();
+
+        _thread.quitAndWait();
+        assertFalse(_thread.isAlive());
+        assertFalse(_thread.isRunning());
+        assertEquals(0, engine.steps.get());
+    }
+}
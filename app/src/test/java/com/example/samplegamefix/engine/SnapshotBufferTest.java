@@ -0,0 +1,101 @@
+package com.example.samplegamefix.engine;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotBufferTest
+{
+    @Test
+    public void readerGetsTheLatestPublishedSnapshot ()
+    {
+        SnapshotBuffer buffer = new SnapshotBuffer();
+        assertEquals(0, buffer.acquireLatest().sequence);
+
+        buffer.getBack().sequence = 1;
+        buffer.publish();
+        buffer.getBack().sequence = 2;
+        buffer.publish();
+        RenderSnapshot front = buffer.acquireLatest();
+        assertEquals(2, front.sequence);
+
+        // nothing new, the reader keeps what it has
+        assertSame(front, buffer.acquireLatest());
+    }
+
+    @Test
+    public void readerAndWriterNeverShareASnapshot ()
+    {
+        SnapshotBuffer buffer = new SnapshotBuffer();
+        long published = 0;
+        long seen = 0;
+        // every interleaving of up to three publishes between reads, a few times over
+        for (int step = 0; step < 200; step++)
+        {
+            int publishes = step % 4;
+            for (int i = 0; i < publishes; i++)
+            {
+                RenderSnapshot back = buffer.getBack();
+                back.sequence = ++published;
+                buffer.publish();
+                assertNotSame(back, buffer.getBack());
+            }
+            RenderSnapshot front = buffer.acquireLatest();
+            assertNotSame(front, buffer.getBack());
+            assertEquals(published, front.sequence);
+            assertTrue(front.sequence >= seen);
+            seen = front.sequence;
+        }
+    }
+
+    @Test
+    public void concurrentReaderNeverSeesASnapshotBeingWritten () throws InterruptedException
+    {
+        final SnapshotBuffer buffer = new SnapshotBuffer();
+        final int snapshots = 200000;
+        final AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread writer = new Thread()
+        {
+            @Override
+            public void run ()
+            {
+                for (int n = 1; n <= snapshots; n++)
+                {
+                    // the two halves only disagree while the writer is between them
+                    RenderSnapshot back = buffer.getBack();
+                    back.asteroidCount = n;
+                    back.bestCombo = -n;
+                    back.sequence = n;
+                    buffer.publish();
+                }
+            }
+        };
+        writer.start();
+
+        long last = 0;
+        while (last < snapshots && failure.get() == null)
+        {
+            RenderSnapshot front = buffer.acquireLatest();
+            long sequence = front.sequence;
+            if (front.asteroidCount != sequence || front.bestCombo != -sequence)
+            {
+                failure.set("torn snapshot " + sequence + ": " + front.asteroidCount + ", " + front.bestCombo);
+            }
+            else if (sequence < last)
+            {
+                failure.set("went back from " + last + " to " + sequence);
+            }
+            last = sequence;
+        }
+        writer.join();
+        assertNull(failure.get());
+        assertEquals(snapshots, buffer.acquireLatest().sequence);
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.samplegamefix.gl;
+
+import com.example.samplegamefix.Allocations;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncTextureLoaderTest
+{
+    /** runs what was submitted only when the test says so */
+    private static class ManualExecutor implements Executor
+    {
+        final List<Runnable> queued = new ArrayList<>();
+
+        @Override
+        public void execute (Runnable command)
+        {
+            queued.add(command);
+        }
+
+        void runAll ()
+        {
+            for (Runnable runnable : queued)
+            {
+                runnable.run();
+            }
+            queued.clear();
+        }
+    }
+
+    private static class FakeRequest implements AsyncTextureLoader.Request
+    {
+        final long bytes;
+        final List<String> log;
+        final String name;
+        Thread decodedOn;
+
+        FakeRequest (List<String> log, String name, long bytes)
+        {
+            this.log = log;
+            this.name = name;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public long decode () throws Exception
+        {
+            decodedOn = Thread.currentThread();
+            if (bytes < 0)
+            {
+                throw new IOException("corrupt");
+            }
+            return bytes;
+        }
+
+        @Override
+        public void upload (GlBackend gl)
+        {
+            log.add("upload " + name);
+        }
+
+        @Override
+        public void failed (Exception e)
+        {
+            log.add("failed " + name + " " + e.getMessage());
+        }
+    }
+
+    private static final int KB = 1024;
+
+    @Test
+    public void nothingIsUploadedBeforeItIsDecoded ()
+    {
+        List<String> log = new ArrayList<>();
+        ManualExecutor workers = new ManualExecutor();
+        AsyncTextureLoader loader = new AsyncTextureLoader(workers, 1024 * KB);
+        loader.submit(new FakeRequest(log, "a", 10 * KB));
+
+        assertEquals(0, loader.uploadPending(null));
+        assertEquals(1, loader.getPendingCount());
+        assertEquals(0, log.size());
+
+        workers.runAll();
+        // decoding alone doesn't touch gl
+        assertEquals(0, log.size());
+        assertEquals(10 * KB, loader.uploadPending(null));
+        assertEquals("upload a", log.get(0));
+        assertEquals(0, loader.getPendingCount());
+    }
+
+    @Test
+    public void budgetSpreadsUploadsOverFrames ()
+    {
+        List<String> log = new ArrayList<>();
+        ManualExecutor workers = new ManualExecutor();
+        AsyncTextureLoader loader = new AsyncTextureLoader(workers, 1024 * KB);
+        for (int i = 0; i < 5; i++)
+        {
+            loader.submit(new FakeRequest(log, "t" + i, 400 * KB));
+        }
+        workers.runAll();
+
+        int[] expectedUploads = { 2, 2, 1, 0 };
+        for (int frame = 0; frame < expectedUploads.length; frame++)
+        {
+            loader.uploadPending(null);
+            assertEquals(expectedUploads[frame], loader.getLastFrameUploads());
+            assertTrue(loader.getLastFrameBytes() <= loader.getFrameBudget());
+        }
+        assertEquals(5, log.size());
+        assertEquals("upload t0", log.get(0));
+        assertEquals("upload t4", log.get(4));
+    }
+
+    @Test
+    public void textureBiggerThanTheBudgetGetsAFrameToItself ()
+    {
+        List<String> log = new ArrayList<>();
+        ManualExecutor workers = new ManualExecutor();
+        AsyncTextureLoader loader = new AsyncTextureLoader(workers, 256 * KB);
+        loader.submit(new FakeRequest(log, "huge", 4096 * KB));
+        loader.submit(new FakeRequest(log, "small", 1 * KB));
+        workers.runAll();
+
+        assertEquals(4096 * KB, loader.uploadPending(null));
+        assertEquals(1, loader.getLastFrameUploads());
+        assertEquals(1 * KB, loader.uploadPending(null));
+    }
+
+    @Test
+    public void failuresAreReportedOnTheGlThreadAndCostNothing ()
+    {
+        List<String> log = new ArrayList<>();
+        ManualExecutor workers = new ManualExecutor();
+        AsyncTextureLoader loader = new AsyncTextureLoader(workers, 1 * KB);
+        loader.submit(new FakeRequest(log, "bad", -1));
+        loader.submit(new FakeRequest(log, "good", 1 * KB));
+        workers.runAll();
+        assertEquals(0, log.size());
+
+        loader.uploadPending(null);
+        assertEquals("failed bad corrupt", log.get(0));
+        assertEquals("upload good", log.get(1));
+        assertEquals(0, loader.getPendingCount());
+    }
+
+    @Test
+    public void idleFramesDoNotAllocate ()
+    {
+        final AsyncTextureLoader loader = new AsyncTextureLoader(new ManualExecutor(), 1024 * KB);
+        Runnable frame = new Runnable()
+        {
+            @Override
+            public void run ()
+            {
+                loader.uploadPending(null);
+            }
+        };
+        frame.run();
+
+        assertEquals(0, Allocations.measure(frame));
+    }
+
+    @Test
+    public void workerPoolDecodesOffTheCallingThread () throws InterruptedException
+    {
+        ExecutorService pool = AsyncTextureLoader.newWorkerPool(2);
+        try
+        {
+            List<String> log = new ArrayList<>();
+            final CountDownLatch decoded = new CountDownLatch(1);
+            AsyncTextureLoader loader = new AsyncTextureLoader(pool, 1024 * KB);
+            FakeRequest request = new FakeRequest(log, "a", 1)
+            {
+                @Override
+                public long decode () throws Exception
+                {
+                    long bytes = super.decode();
+                    decoded.countDown();
+                    return bytes;
+                }
+            };
+            loader.submit(request);
+            assertTrue(decoded.await(5, TimeUnit.SECONDS));
+            assertNotSame(Thread.currentThread(), request.decodedOn);
+            assertTrue(request.decodedOn.isDaemon());
+
+            // the request is queued right after decode returns
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (log.isEmpty() && System.nanoTime() < deadline)
+            {
+                loader.uploadPending(null);
+            }
+            assertEquals("upload a", log.get(0));
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.samplegamefix.gl;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Encoded blocks are decoded the way the specification decodes them and compared with the
+ * pixels that went in.
+ */
+public class EtcEncoderTest
+{
+    @Test
+    public void solidColoursComeBackClose ()
+    {
+        int[] colours = { 0xff000000, 0xffffffff, 0xff808080, 0xffff0000, 0xff00ff00, 0xff0000ff, 0xff3c7a19 };
+        for (int colour : colours)
+        {
+            int[] image = new int[8 * 8];
+            Arrays.fill(image, colour);
+            int[] decoded = decode(EtcEncoder.encode(image, 8, 8, EtcEncoder.ETC1_RGB8), 8, 8, EtcEncoder.ETC1_RGB8);
+            for (int pixel : decoded)
+            {
+                assertTrue(Integer.toHexString(colour) + " came back as " + Integer.toHexString(pixel),
+                        maxChannelError(colour, pixel) <= 6);
+            }
+        }
+    }
+
+    @Test
+    public void gradientsKeepTheirQuality ()
+    {
+        int size = 32;
+        int[] image = new int[size * size];
+        for (int y = 0; y < size; y++)
+        {
+            for (int x = 0; x < size; x++)
+            {
+                image[y * size + x] = 0xff000000 | (x * 8) << 16 | (y * 8) << 8 | ((x + y) * 4);
+            }
+        }
+        int[] decoded = decode(EtcEncoder.encode(image, size, size, EtcEncoder.ETC1_RGB8), size, size,
+                EtcEncoder.ETC1_RGB8);
+        assertTrue("psnr " + psnr(image, decoded, false), psnr(image, decoded, false) > 34);
+    }
+
+    @Test
+    public void noisyImagesStayAboveTheUsualEtcQuality ()
+    {
+        Random random = new Random(7);
+        int size = 16;
+        int[] image = new int[size * size];
+        for (int i = 0; i < image.length; i++)
+        {
+            // smooth base plus noise, like the shading of a sprite
+            int base = 96 + (i % size) * 4;
+            image[i] = 0xff000000 | channel(base + random.nextInt(24)) << 16 | channel(base / 2 + random.nextInt(24)) << 8
+                    | channel(200 - base / 3 + random.nextInt(24));
+        }
+        int[] decoded = decode(EtcEncoder.encode(image, size, size, EtcEncoder.ETC2_RGBA8), size, size,
+                EtcEncoder.ETC2_RGBA8);
+        assertTrue("psnr " + psnr(image, decoded, false), psnr(image, decoded, false) > 28);
+    }
+
+    @Test
+    public void alphaSurvivesEac ()
+    {
+        int size = 16;
+        int[] image = new int[size * size];
+        for (int y = 0; y < size; y++)
+        {
+            for (int x = 0; x < size; x++)
+            {
+                // a soft edged disc, what the sprites' outlines look like
+                double distance = Math.hypot(x - 7.5, y - 7.5);
+                int alpha = channel((int) Math.round((7 - distance) * 64));
+                image[y * size + x] = alpha << 24 | 0x00c08040;
+            }
+        }
+        int[] decoded = decode(EtcEncoder.encode(image, size, size, EtcEncoder.ETC2_RGBA8), size, size,
+                EtcEncoder.ETC2_RGBA8);
+        for (int i = 0; i < image.length; i++)
+        {
+            int expected = image[i] >>> 24;
+            int actual = decoded[i] >>> 24;
+            // eac has 8 levels a block, the blocks across the steep edge lose a little
+            assertTrue("alpha " + expected + " came back as " + actual, Math.abs(expected - actual) <= 12);
+            if (expected == 0 || expected == 255)
+            {
+                // fully transparent and opaque pixels have to stay exactly that
+                assertEquals(expected, actual);
+            }
+        }
+        assertTrue("psnr " + psnr(image, decoded, true), psnr(image, decoded, true) > 34);
+    }
+
+    @Test
+    public void oddSizesArePaddedToWholeBlocks ()
+    {
+        int[] image = new int[5 * 3];
+        Arrays.fill(image, 0xff406080);
+        byte[] blocks = EtcEncoder.encode(image, 5, 3, EtcEncoder.ETC2_RGBA8);
+        assertEquals(2 * 16, blocks.length);
+        assertEquals(EtcEncoder.encodedSize(EtcEncoder.ETC2_RGBA8, 5, 3), blocks.length);
+        assertEquals(8, EtcEncoder.encodedSize(EtcEncoder.ETC1_RGB8, 1, 1));
+        int[] decoded = decode(blocks, 5, 3, EtcEncoder.ETC2_RGBA8);
+        for (int pixel : decoded)
+        {
+            assertTrue(maxChannelError(0xff406080, pixel) <= 6);
+        }
+    }
+
+    //region reference decoder
+    private static int[] decode (byte[] blocks, int width, int height, int format)
+    {
+        int blockSize = format == EtcEncoder.ETC2_RGBA8 ? 16 : 8;
+        int[] image = new int[width * height];
+        int offset = 0;
+        for (int by = 0; by < height; by += 4)
+        {
+            for (int bx = 0; bx < width; bx += 4)
+            {
+                int[] alpha = new int[16];
+                Arrays.fill(alpha, 255);
+                long colour;
+                if (format == EtcEncoder.ETC2_RGBA8)
+                {
+                    decodeAlpha(readLong(blocks, offset), alpha);
+                    colour = readLong(blocks, offset + 8);
+                }
+                else
+                {
+                    colour = readLong(blocks, offset);
+                }
+                int[] rgb = decodeColour(colour);
+                for (int i = 0; i < 16; i++)
+                {
+                    int x = bx + i / 4;
+                    int y = by + i % 4;
+                    if (x < width && y < height)
+                    {
+                        image[y * width + x] = alpha[i] << 24 | rgb[i];
+                    }
+                }
+                offset += blockSize;
+            }
+        }
+        assertEquals(blocks.length, offset);
+        return image;
+    }
+
+    private static long readLong (byte[] bytes, int offset)
+    {
+        long value = 0;
+        for (int i = 0; i < 8; i++)
+        {
+            value = value << 8 | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static int[] decodeColour (long block)
+    {
+        boolean differential = (block >>> 33 & 1) == 1;
+        boolean flip = (block >>> 32 & 1) == 1;
+        int[][] base = new int[2][3];
+        for (int c = 0; c < 3; c++)
+        {
+            int shift = 56 - c * 8;
+            if (differential)
+            {
+                int first = (int) (block >>> (shift + 3) & 31);
+                int delta = (int) (block >>> shift & 7);
+                delta = delta >= 4 ? delta - 8 : delta;
+                int second = first + delta;
+                if (second < 0 || second > 31)
+                {
+                    // an etc2 decoder would read the block as one of its other modes
+                    fail("differential block overflows");
+                }
+                base[0][c] = first << 3 | first >> 2;
+                base[1][c] = second << 3 | second >> 2;
+            }
+            else
+            {
+                int first = (int) (block >>> (shift + 4) & 15);
+                int second = (int) (block >>> shift & 15);
+                base[0][c] = first << 4 | first;
+                base[1][c] = second << 4 | second;
+            }
+        }
+        int[] tables = { (int) (block >>> 37 & 7), (int) (block >>> 34 & 7) };
+
+        int[] rgb = new int[16];
+        for (int i = 0; i < 16; i++)
+        {
+            int x = i / 4;
+            int y = i % 4;
+            int half = flip ? (y < 2 ? 0 : 1) : (x < 2 ? 0 : 1);
+            int msb = (int) (block >>> (16 + i) & 1);
+            int lsb = (int) (block >>> i & 1);
+            int modifier = EtcEncoder.ETC1_MODIFIERS[tables[half]][msb << 1 | lsb];
+            rgb[i] = clamp(base[half][0] + modifier) << 16 | clamp(base[half][1] + modifier) << 8
+                    | clamp(base[half][2] + modifier);
+        }
+        return rgb;
+    }
+
+    private static void decodeAlpha (long block, int[] alpha)
+    {
+        int base = (int) (block >>> 56 & 0xff);
+        int multiplier = (int) (block >>> 52 & 15);
+        int table = (int) (block >>> 48 & 15);
+        assertTrue("multiplier 0 is reserved in etc2 eac", multiplier > 0);
+        for (int i = 0; i < 16; i++)
+        {
+            int index = (int) (block >>> (45 - i * 3) & 7);
+            alpha[i] = clamp(base + EtcEncoder.EAC_MODIFIERS[table][index] * multiplier);
+        }
+    }
+    //endregion
+
+    private static double psnr (int[] expected, int[] actual, boolean alpha)
+    {
+        double squared = 0;
+        int samples = 0;
+        for (int i = 0; i < expected.length; i++)
+        {
+            for (int shift = 0; shift <= (alpha ? 24 : 16); shift += 8)
+            {
+                int d = (expected[i] >>> shift & 0xff) - (actual[i] >>> shift & 0xff);
+                squared += d * d;
+                samples++;
+            }
+        }
+        double mse = squared / samples;
+        return mse == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(255 * 255 / mse);
+    }
+
+    private static int maxChannelError (int expected, int actual)
+    {
+        int error = 0;
+        for (int shift = 0; shift <= 16; shift += 8)
+        {
+            error = Math.max(error, Math.abs((expected >>> shift & 0xff) - (actual >>> shift & 0xff)));
+        }
+        return error;
+    }
+
+    private static int channel (int value)
+    {
+        return clamp(value);
+    }
+
+    private static int clamp (int value)
+    {
+        return value < 0 ? 0 : value > 255 ? 255 : value;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.samplegamefix.gl;
+
+import android.opengl.GLES20;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class GlStateCacheTest
+{
+    @Test
+    public void repeatedStateIsPassedOnOnce ()
+    {
+        RecordingGlBackend recording = new RecordingGlBackend(0, 1);
+        GlStateCache gl = new GlStateCache(recording);
+        gl.beginFrame();
+        for (int i = 0; i < 3; i++)
+        {
+            gl.glUseProgram(5);
+            gl.glActiveTexture(GLES20.GL_TEXTURE0);
+            gl.glBindTexture(GLES20.GL_TEXTURE_2D, 7);
+            gl.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 2);
+        }
+        assertEquals(1, recording.countCalls("glUseProgram"));
+        // unit 0 is already active in a new context
+        assertEquals(0, recording.countCalls("glActiveTexture"));
+        assertEquals(1, recording.countCalls("glBindTexture"));
+        assertEquals(1, recording.countCalls("glBindBuffer"));
+        assertEquals(3, gl.getFrameChanges());
+        assertEquals(9, gl.getFrameSkipped());
+
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 8);
+        gl.glUseProgram(6);
+        assertEquals(2, recording.countCalls("glBindTexture"));
+        assertEquals(2, recording.countCalls("glUseProgram"));
+
+        gl.beginFrame();
+        assertEquals(0, gl.getFrameChanges());
+        assertEquals(0, gl.getFrameSkipped());
+    }
+
+    @Test
+    public void textureBindingsAreKeptPerUnit ()
+    {
+        RecordingGlBackend recording = new RecordingGlBackend(0, 1);
+        GlStateCache gl = new GlStateCache(recording);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 7);
+        gl.glActiveTexture(GLES20.GL_TEXTURE1);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 7);
+        gl.glActiveTexture(GLES20.GL_TEXTURE0);
+        gl.glBindTexture(GLES20.GL_TEXTURE_2D, 7);
+        assertEquals(2, recording.countCalls("glBindTexture"));
+        assertEquals(2, recording.countCalls("glActiveTexture"));
+    }
+
+    @Test
+    public void attributeArraysOnlyChangeWhenADrawNeedsThem ()
+    {
+        RecordingGlBackend recording = new RecordingGlBackend(0, 1);
+        GlStateCache gl = new GlStateCache(recording);
+        gl.beginFrame();
+
+        // two renderers that enable the same arrays and disable them when done
+        for (int i = 0; i < 2; i++)
+        {
+            gl.glEnableVertexAttribArray(0);
+            gl.glEnableVertexAttribArray(1);
+            gl.glDrawArrays(GLES20.GL_TRIANGLES, 0, 6);
+            gl.glDisableVertexAttribArray(0);
+            gl.glDisableVertexAttribArray(1);
+        }
+        assertEquals(2, recording.countCalls("glEnableVertexAttribArray"));
+        assertEquals(0, recording.countCalls("glDisableVertexAttribArray"));
+
+        // one that only needs array 1, array 0 is disabled before it draws
+        gl.glEnableVertexAttribArray(1);
+        gl.glDrawArrays(GLES20.GL_TRIANGLES, 0, 3);
+        assertEquals(2, recording.countCalls("glEnableVertexAttribArray"));
+        assertEquals(1, recording.countCalls("glDisableVertexAttribArray 0"));
+        int disable = recording.calls.indexOf("glDisableVertexAttribArray 0");
+        assertEquals(disable + 1, recording.calls.indexOf("glDrawArrays 3"));
+
+        assertEquals(3, gl.getFrameChanges());
+        assertEquals(6, gl.getFrameSkipped());
+    }
+
+    @Test
+    public void resetAndDeleteForgetBindings ()
+    {
+        RecordingGlBackend recording = new RecordingGlBackend(0, 1);
+        GlStateCache gl = new GlStateCache(recording);
+        gl.glUseProgram(5);
+        gl.glGenBuffers(1, new int[1], 0);
+        gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 1);
+        gl.glDeleteBuffers(1, new int[] { 1 }, 0);
+        // the id can come back from glGenBuffers and has to be bound again
+        gl.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 1);
+        assertEquals(2, recording.countCalls("glBindBuffer"));
+
+        // new context, program 0 is current again
+        gl.reset();
+        gl.glUseProgram(5);
+        assertEquals(2, recording.countCalls("glUseProgram"));
+    }
+
+    @Test
+    public void aDeletedProgramsNameIsUsedAgain ()
+    {
+        RecordingGlBackend recording = new RecordingGlBackend(0, 1);
+        GlStateCache gl = new GlStateCache(recording);
+        int program = gl.glCreateProgram();
+        gl.glLinkProgram(program);
+        gl.glUseProgram(program);
+        gl.glDeleteProgram(program);
+
+        // e.g. the program made again after the context was lost, under the same name
+        assertEquals(program, gl.glCreateProgram());
+        gl.glLinkProgram(program);
+        gl.glUseProgram(program);
+        assertEquals(2, recording.countCalls("glUseProgram " + program));
+        assertEquals(0, recording.errors.size());
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.samplegamefix.gl;
+
+import android.opengl.GLES20;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class KtxTextureLoaderTest
+{
+    @Test
+    public void formatsNeedTheirContext ()
+    {
+        assertTrue(KtxTextureLoader.isSupported(EtcEncoder.ETC2_RGBA8, "OpenGL ES 3.2 v1.r26p0", ""));
+        assertFalse(KtxTextureLoader.isSupported(EtcEncoder.ETC2_RGBA8, "OpenGL ES 2.0 build 1.9", ""));
+        assertTrue(KtxTextureLoader.isSupported(EtcEncoder.ETC1_RGB8, "OpenGL ES 2.0",
+                "GL_OES_depth24 GL_OES_compressed_ETC1_RGB8_texture"));
+        assertFalse(KtxTextureLoader.isSupported(EtcEncoder.ETC1_RGB8, "OpenGL ES 2.0", "GL_OES_depth24"));
+        assertFalse(KtxTextureLoader.isSupported(EtcEncoder.ETC1_RGB8, null, null));
+        assertFalse(KtxTextureLoader.isSupported(GLES20.GL_RGBA, "OpenGL ES 3.0", ""));
+    }
+
+    @Test
+    public void fileSurvivesARoundTrip () throws IOException
+    {
+        KtxFile file = atlasFile();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        file.write(out);
+        KtxFile read = KtxFile.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(EtcEncoder.ETC2_RGBA8, read.getInternalFormat());
+        assertEquals(GLES20.GL_RGBA, read.getBaseInternalFormat());
+        assertEquals(16, read.getWidth());
+        assertEquals(16, read.getHeight());
+        assertEquals(file.getLevelCount(), read.getLevelCount());
+        for (int level = 0; level < file.getLevelCount(); level++)
+        {
+            assertArrayEquals(bytes(file.getLevel(level)), bytes(read.getLevel(level)));
+        }
+        assertEquals(file.getKeyValues(), read.getKeyValues());
+    }
+
+    @Test
+    public void regionsAreFoundByName () throws IOException
+    {
+        KtxFile file = atlasFile();
+        AtlasRegion region = KtxTextureLoader.findRegion(file, "chicken", 42);
+        assertEquals(42, region.id);
+        assertEquals(8, region.x);
+        assertEquals(4, region.width);
+        assertEquals(0.5f, region.u1, 0);
+        assertEquals(0.75f, region.u2, 0);
+        assertNull(KtxTextureLoader.findRegion(file, "ship", 1));
+    }
+
+    @Test
+    public void uploadsEveryLevelWithMipmappedFiltering () throws IOException
+    {
+        RecordingGlBackend gl = new RecordingGlBackend(0, 1);
+        gl.setVersion("OpenGL ES 3.0", "");
+        KtxFile file = atlasFile();
+        int texture = KtxTextureLoader.upload(gl, file);
+
+        assertTrue(texture != 0);
+        assertEquals(gl.errors.toString(), 0, gl.errors.size());
+        assertEquals(5, gl.countCalls("glCompressedTexImage2D"));
+        assertTrue(gl.calls.contains("glCompressedTexImage2D 4 1x1"));
+        assertTrue(gl.calls.contains("glTexParameteri " + GLES20.GL_TEXTURE_MIN_FILTER + " " + GLES20.GL_LINEAR_MIPMAP_LINEAR));
+        long expected = 0;
+        for (int level = 0; level < file.getLevelCount(); level++)
+        {
+            expected += file.getLevel(level).remaining();
+        }
+        assertEquals(expected, gl.getBytesUploaded());
+    }
+
+    @Test
+    public void unsupportedFormatsUploadNothing () throws IOException
+    {
+        RecordingGlBackend gl = new RecordingGlBackend(0, 1);
+        assertEquals(0, KtxTextureLoader.upload(gl, atlasFile()));
+        assertEquals(0, gl.getLiveTextures());
+        assertEquals(0, gl.getBytesUploaded());
+    }
+
+    @Test
+    public void truncatedFilesAreRefused () throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        atlasFile().write(out);
+        byte[] bytes = out.toByteArray();
+        byte[] truncated = new byte[bytes.length - 10];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        try
+        {
+            KtxFile.read(new ByteArrayInputStream(truncated));
+            fail("file is cut short");
+        }
+        catch (IOException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void shippedAtlasIsBakedFromTheHighestDensity () throws IOException
+    {
+        // unit tests run in the module directory
+        KtxFile file;
+        try (InputStream in = new FileInputStream("src/main/assets/textures/sprites.ktx"))
+        {
+            file = KtxFile.read(in);
+        }
+        for (String name : new String[] { "asteroid", "chicken", "ship2" })
+        {
+            AtlasRegion region = KtxTextureLoader.findRegion(file, name, 0);
+            assertNotNull(name, region);
+            BufferedImage drawable = ImageIO.read(new File("src/main/res/drawable-xxxhdpi", name + ".png"));
+            assertEquals(name, drawable.getWidth(), region.width);
+            assertEquals(name, drawable.getHeight(), region.height);
+        }
+    }
+
+    /** a 16x16 atlas of two images with its whole chain, the way the tools module writes one */
+    private static KtxFile atlasFile ()
+    {
+        TextureAtlasBuilder builder = new TextureAtlasBuilder(0, 16);
+        builder.add(0, 8, 8, solid(64, 0xff806040));
+        builder.add(1, 4, 4, solid(16, 0x80204080));
+        TextureAtlas atlas = builder.build();
+        MipChain mips = MipChain.build(atlas.getPixels(), atlas.getWidth(), atlas.getHeight());
+        ByteBuffer[] levels = new ByteBuffer[mips.getLevelCount()];
+        for (int level = 0; level < levels.length; level++)
+        {
+            levels[level] = ByteBuffer.wrap(EtcEncoder.encode(mips.getPixels(level), mips.getWidth(level),
+                    mips.getHeight(level), EtcEncoder.ETC2_RGBA8));
+        }
+        String regions = KtxTextureLoader.describeRegions(atlas, new String[] { "asteroid", "chicken" });
+        return new KtxFile(EtcEncoder.ETC2_RGBA8, GLES20.GL_RGBA, atlas.getWidth(), atlas.getHeight(), levels,
+                Collections.singletonMap(KtxTextureLoader.REGIONS_KEY, regions));
+    }
+
+    private static int[] solid (int count, int argb)
+    {
+        int[] pixels = new int[count];
+        Arrays.fill(pixels, argb);
+        return pixels;
+    }
+
+    private static byte[] bytes (ByteBuffer buffer)
+    {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
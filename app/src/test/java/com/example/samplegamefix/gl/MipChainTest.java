@@ -0,0 +1,59 @@
+package com.example.samplegamefix.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class MipChainTest
+{
+    @Test
+    public void chainRunsDownToOnePixel ()
+    {
+        MipChain chain = MipChain.build(new int[8 * 2], 8, 2);
+        assertEquals(4, chain.getLevelCount());
+        int[][] sizes = { { 8, 2 }, { 4, 1 }, { 2, 1 }, { 1, 1 } };
+        for (int level = 0; level < sizes.length; level++)
+        {
+            assertEquals(sizes[level][0], chain.getWidth(level));
+            assertEquals(sizes[level][1], chain.getHeight(level));
+            assertEquals(sizes[level][0] * sizes[level][1], chain.getPixels(level).length);
+        }
+        assertEquals(1, MipChain.levelCount(1, 1));
+        assertEquals(11, MipChain.levelCount(1024, 512));
+    }
+
+    @Test
+    public void levelsAverageTheLevelAbove ()
+    {
+        int[] image = {
+                0xff000000, 0xff404040, 0xffffffff, 0xffffffff,
+                0xff808080, 0xffc0c0c0, 0xffffffff, 0xffffffff,
+        };
+        MipChain chain = MipChain.build(image, 4, 2);
+        assertSame(image, chain.getPixels(0));
+        assertEquals(0xff606060, chain.getPixels(1)[0]);
+        assertEquals(0xffffffff, chain.getPixels(1)[1]);
+        assertEquals(0xffb0b0b0, chain.getPixels(2)[0]);
+    }
+
+    @Test
+    public void transparentPixelsDoNotDarkenTheEdge ()
+    {
+        // a red pixel next to transparent black, the average stays red and only gets fainter
+        int[] image = { 0xffff0000, 0x00000000, 0x00000000, 0x00000000 };
+        int pixel = MipChain.build(image, 2, 2).getPixels(1)[0];
+        assertEquals(0x40, pixel >>> 24);
+        assertEquals(0xff0000, pixel & 0xffffff);
+        assertEquals(0, MipChain.build(new int[4], 2, 2).getPixels(1)[0]);
+    }
+
+    @Test
+    public void oddSidesFoldTheirLastPixelIn ()
+    {
+        int[] image = { 0xff000000, 0xff000000, 0xffffffff };
+        int[] level = MipChain.build(image, 3, 1).getPixels(1);
+        assertEquals(1, level.length);
+        assertEquals(0xff555555, level[0]);
+    }
+}
@@ -0,0 +1,854 @@
+package com.example.samplegamefix.gl;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Gl that draws nothing and remembers what it was asked to do. Every draw keeps a copy of the
+ * positions it would have drawn, read through the attribute pointers like a driver would, from
+ * client arrays or from the buffer objects bound at the time.
+ *
+ * Draw calls, state changes (and the ones that set what was already set) and bytes uploaded are
+ * counted so tests can hold the render path to a budget. Calls gl would reject or silently get
+ * wrong, like drawing without a program or binding a deleted texture, are written to
+ * {@link #errors} instead of failing right away, tests that care assert it stays empty.
+ */
+public class RecordingGlBackend implements GlBackend
+{
+    public static class Draw
+    {
+        public int texture;
+        public int indexCount;
+        /** x, y, z of every index drawn, null without a position pointer */
+        public float[] positions;
+        /** u, v of every index drawn, null without a texture coordinate pointer */
+        public float[] textureCoordinates;
+    }
+
+    private static final int TEXTURE_UNITS = 8;
+
+    public final List<String> calls = new ArrayList<>();
+    public final List<Draw> draws = new ArrayList<>();
+    /** invalid call sequences, in the order they happened */
+    public final List<String> errors = new ArrayList<>();
+
+    private final Map<Integer, FloatBuffer> _pointers = new HashMap<>();
+    // buffer object and float offset of the pointers into one, like gl they are read at draw time
+    private final Map<Integer, Integer> _pointerBuffers = new HashMap<>();
+    private final Map<Integer, Integer> _pointerOffsets = new HashMap<>();
+    private final Map<Integer, Integer> _pointerSizes = new HashMap<>();
+    private final Map<Integer, Integer> _pointerStrides = new HashMap<>();
+    private final Set<Integer> _enabledAttributes = new HashSet<>();
+    private final Set<Integer> _enabledCaps = new HashSet<>();
+
+    // buffer objects, a copy of the data uploaded into each
+    private final Map<Integer, ByteBuffer> _bufferData = new HashMap<>();
+    private int _nextBuffer = 1;
+    private int _boundArrayBuffer;
+    private int _boundElementBuffer;
+
+    // textures, shaders and programs share one name counter so mixing them up shows
+    private int _nextName = 1;
+    private final Set<Integer> _textures = new HashSet<>();
+    private final int[] _boundTextures = new int[TEXTURE_UNITS];
+    private int _activeUnit;
+    private final Set<Integer> _compiledShaders = new HashSet<>();
+    private final Set<Integer> _shaders = new HashSet<>();
+    private final Map<Integer, Map<String, Integer>> _attributeLocations = new HashMap<>();
+    private final Map<Integer, Map<String, Integer>> _uniformLocations = new HashMap<>();
+    private final Set<Integer> _linkedPrograms = new HashSet<>();
+    // drivers hand the names of deleted programs out again
+    private final List<Integer> _deletedPrograms = new ArrayList<>();
+    private int _program;
+
+    private int _drawCalls;
+    private int _stateChanges;
+    private int _redundantStateChanges;
+    private long _bytesUploaded;
+
+    private String _version = "OpenGL ES 2.0";
+    private String _extensions = "";
+
+    // the attribute indices of the positions and texture coordinates, to read them at draw time
+    private final int _positionHandle;
+    private final int _textureCoordinateHandle;
+
+    public RecordingGlBackend (int positionHandle, int textureCoordinateHandle)
+    {
+        _positionHandle = positionHandle;
+        _textureCoordinateHandle = textureCoordinateHandle;
+    }
+
+    //region counts
+    /** @return glDrawElements and glDrawArrays calls */
+    public int getDrawCalls ()
+    {
+        return _drawCalls;
+    }
+
+    /** @return calls that change bound objects, enabled arrays or capabilities, or blending */
+    public int getStateChanges ()
+    {
+        return _stateChanges;
+    }
+
+    /** @return the state changes that set what was already set */
+    public int getRedundantStateChanges ()
+    {
+        return _redundantStateChanges;
+    }
+
+    /** @return bytes handed to buffer objects and textures */
+    public long getBytesUploaded ()
+    {
+        return _bytesUploaded;
+    }
+
+    /** start counting again, e.g. after the first frame set everything up */
+    public void resetCounts ()
+    {
+        calls.clear();
+        draws.clear();
+        _drawCalls = 0;
+        _stateChanges = 0;
+        _redundantStateChanges = 0;
+        _bytesUploaded = 0;
+    }
+
+    public int countCalls (String prefix)
+    {
+        int count = 0;
+        for (String call : calls)
+        {
+            if (call.startsWith(prefix))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void stateChange (boolean redundant)
+    {
+        _stateChanges++;
+        if (redundant)
+        {
+            _redundantStateChanges++;
+        }
+    }
+
+    private void error (String message)
+    {
+        errors.add(message);
+    }
+    //endregion
+
+    //region state, draws and buffers
+    @Override
+    public void glUseProgram (int program)
+    {
+        calls.add("glUseProgram " + program);
+        stateChange(program == _program);
+        if (program != 0 && !_linkedPrograms.contains(program))
+        {
+            error("glUseProgram " + program + ": not a linked program");
+        }
+        _program = program;
+    }
+
+    @Override
+    public void glEnableVertexAttribArray (int index)
+    {
+        calls.add("glEnableVertexAttribArray " + index);
+        stateChange(!_enabledAttributes.add(index));
+    }
+
+    @Override
+    public void glDisableVertexAttribArray (int index)
+    {
+        calls.add("glDisableVertexAttribArray " + index);
+        stateChange(!_enabledAttributes.remove(index));
+    }
+
+    @Override
+    public void glVertexAttribPointer (int index, int size, int type, boolean normalized, int stride, Buffer ptr)
+    {
+        calls.add("glVertexAttribPointer " + index);
+        if (_boundArrayBuffer != 0)
+        {
+            error("glVertexAttribPointer " + index + ": client array while buffer " + _boundArrayBuffer + " is bound");
+        }
+        // like the android bindings, the pointer starts at the position the buffer has right now
+        _pointers.put(index, ((FloatBuffer) ptr).duplicate());
+        _pointerBuffers.remove(index);
+        _pointerSizes.put(index, size);
+        _pointerStrides.put(index, stride == 0 ? size : stride / 4);
+    }
+
+    @Override
+    public void glVertexAttribPointer (int index, int size, int type, boolean normalized, int stride, int offset)
+    {
+        calls.add("glVertexAttribPointer " + index + " @" + offset);
+        if (_boundArrayBuffer == 0)
+        {
+            error("glVertexAttribPointer " + index + " @" + offset + ": no array buffer bound");
+            return;
+        }
+        _pointers.put(index, null);
+        _pointerBuffers.put(index, _boundArrayBuffer);
+        _pointerOffsets.put(index, offset / 4);
+        _pointerSizes.put(index, size);
+        _pointerStrides.put(index, stride == 0 ? size : stride / 4);
+    }
+
+    @Override
+    public void glActiveTexture (int texture)
+    {
+        calls.add("glActiveTexture " + texture);
+        int unit = texture - GLES20.GL_TEXTURE0;
+        stateChange(unit == _activeUnit);
+        if (unit < 0 || unit >= TEXTURE_UNITS)
+        {
+            error("glActiveTexture " + texture + ": no such unit");
+            return;
+        }
+        _activeUnit = unit;
+    }
+
+    @Override
+    public void glBindTexture (int target, int texture)
+    {
+        calls.add("glBindTexture " + texture);
+        stateChange(_boundTextures[_activeUnit] == texture);
+        if (texture != 0 && !_textures.contains(texture))
+        {
+            error("glBindTexture " + texture + ": not a live texture");
+        }
+        _boundTextures[_activeUnit] = texture;
+    }
+
+    @Override
+    public void glUniformMatrix4fv (int location, int count, boolean transpose, float[] value, int offset)
+    {
+        calls.add("glUniformMatrix4fv " + location);
+        checkUniform("glUniformMatrix4fv", location);
+    }
+
+    @Override
+    public void glUniform4fv (int location, int count, float[] v, int offset)
+    {
+        calls.add("glUniform4fv " + location);
+        checkUniform("glUniform4fv", location);
+    }
+
+    @Override
+    public void glUniform1i (int location, int x)
+    {
+        calls.add("glUniform1i " + location);
+        checkUniform("glUniform1i", location);
+    }
+
+    @Override
+    public void glUniform1f (int location, float x)
+    {
+        calls.add("glUniform1f " + location + " " + x);
+        checkUniform("glUniform1f", location);
+    }
+
+    private void checkUniform (String call, int location)
+    {
+        // -1 is what gl hands out for a uniform the shader optimised away, setting it does nothing
+        if (location != -1 && _program == 0)
+        {
+            error(call + " " + location + ": no program in use");
+        }
+    }
+
+    @Override
+    public void glDrawArrays (int mode, int first, int count)
+    {
+        calls.add("glDrawArrays " + count);
+        checkDraw("glDrawArrays");
+    }
+
+    @Override
+    public void glDrawElements (int mode, int count, int type, Buffer indices)
+    {
+        calls.add("glDrawElements " + count);
+        checkDraw("glDrawElements");
+        if (_boundElementBuffer != 0)
+        {
+            error("glDrawElements: client indices while buffer " + _boundElementBuffer + " is bound");
+        }
+        recordDraw(((ShortBuffer) indices).duplicate(), count);
+    }
+
+    @Override
+    public void glDrawElements (int mode, int count, int type, int offset)
+    {
+        calls.add("glDrawElements " + count + " @" + offset);
+        checkDraw("glDrawElements");
+        if (_boundElementBuffer == 0)
+        {
+            error("glDrawElements @" + offset + ": no element buffer bound");
+            return;
+        }
+        ShortBuffer shorts = boundData(_boundElementBuffer).asShortBuffer();
+        shorts.position(offset / 2);
+        recordDraw(shorts, count);
+    }
+
+    private void checkDraw (String call)
+    {
+        _drawCalls++;
+        if (_program == 0)
+        {
+            error(call + ": no program in use");
+        }
+        for (int attribute : _enabledAttributes)
+        {
+            if (!_pointers.containsKey(attribute))
+            {
+                error(call + ": attribute " + attribute + " is enabled without a pointer");
+            }
+        }
+    }
+
+    private void recordDraw (ShortBuffer indices, int count)
+    {
+        Draw draw = new Draw();
+        draw.texture = _boundTextures[_activeUnit];
+        draw.indexCount = count;
+        draw.positions = read(_positionHandle, indices, count);
+        draw.textureCoordinates = read(_textureCoordinateHandle, indices, count);
+        draws.add(draw);
+    }
+
+    @Override
+    public void glGenBuffers (int n, int[] buffers, int offset)
+    {
+        calls.add("glGenBuffers " + n);
+        for (int i = 0; i < n; i++)
+        {
+            buffers[offset + i] = _nextBuffer++;
+            _bufferData.put(buffers[offset + i], null);
+        }
+    }
+
+    @Override
+    public void glBindBuffer (int target, int buffer)
+    {
+        calls.add("glBindBuffer " + target + " " + buffer);
+        if (buffer != 0 && !_bufferData.containsKey(buffer))
+        {
+            error("glBindBuffer " + buffer + ": not a live buffer");
+        }
+        if (target == GLES20.GL_ARRAY_BUFFER)
+        {
+            stateChange(_boundArrayBuffer == buffer);
+            _boundArrayBuffer = buffer;
+        }
+        else
+        {
+            stateChange(_boundElementBuffer == buffer);
+            _boundElementBuffer = buffer;
+        }
+    }
+
+    @Override
+    public void glBufferData (int target, int size, Buffer data, int usage)
+    {
+        calls.add("glBufferData " + target + " " + size);
+        int buffer = target == GLES20.GL_ARRAY_BUFFER ? _boundArrayBuffer : _boundElementBuffer;
+        if (buffer == 0)
+        {
+            error("glBufferData " + target + ": no buffer bound");
+            return;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(size).order(ByteOrder.nativeOrder());
+        if (data != null)
+        {
+            ByteBuffer source = ((ByteBuffer) data).duplicate();
+            source.limit(size);
+            copy.put(source);
+            _bytesUploaded += size;
+        }
+        _bufferData.put(buffer, copy);
+    }
+
+    @Override
+    public void glDeleteBuffers (int n, int[] buffers, int offset)
+    {
+        calls.add("glDeleteBuffers " + n);
+        for (int i = 0; i < n; i++)
+        {
+            int buffer = buffers[offset + i];
+            _bufferData.remove(buffer);
+            if (buffer == _boundArrayBuffer)
+            {
+                _boundArrayBuffer = 0;
+            }
+            if (buffer == _boundElementBuffer)
+            {
+                _boundElementBuffer = 0;
+            }
+        }
+    }
+
+    /** @return buffer objects generated and not deleted */
+    public int getLiveBuffers ()
+    {
+        return _bufferData.size();
+    }
+
+    private ByteBuffer boundData (int buffer)
+    {
+        ByteBuffer data = _bufferData.get(buffer);
+        if (data == null)
+        {
+            throw new IllegalStateException("no data in buffer " + buffer);
+        }
+        ByteBuffer view = data.duplicate().order(ByteOrder.nativeOrder());
+        view.position(0);
+        return view;
+    }
+
+    private float[] read (int attribute, ShortBuffer indices, int count)
+    {
+        FloatBuffer pointer = _pointers.get(attribute);
+        Integer buffer = _pointerBuffers.get(attribute);
+        if (buffer != null)
+        {
+            pointer = boundData(buffer).asFloatBuffer();
+            pointer.position(_pointerOffsets.get(attribute));
+        }
+        if (pointer == null)
+        {
+            return null;
+        }
+        int size = _pointerSizes.get(attribute);
+        int stride = _pointerStrides.get(attribute);
+        int start = pointer.position();
+        float[] values = new float[count * size];
+        for (int i = 0; i < count; i++)
+        {
+            int vertex = indices.get(indices.position() + i) & 0xffff;
+            for (int c = 0; c < size; c++)
+            {
+                values[i * size + c] = pointer.get(start + vertex * stride + c);
+            }
+        }
+        return values;
+    }
+    //endregion
+
+    //region shaders and programs
+    @Override
+    public int glCreateShader (int type)
+    {
+        calls.add("glCreateShader " + type);
+        int shader = _nextName++;
+        _shaders.add(shader);
+        return shader;
+    }
+
+    @Override
+    public void glShaderSource (int shader, String string)
+    {
+        calls.add("glShaderSource " + shader);
+        checkShader("glShaderSource", shader);
+    }
+
+    @Override
+    public void glCompileShader (int shader)
+    {
+        calls.add("glCompileShader " + shader);
+        if (checkShader("glCompileShader", shader))
+        {
+            _compiledShaders.add(shader);
+        }
+    }
+
+    @Override
+    public void glGetShaderiv (int shader, int pname, int[] params, int offset)
+    {
+        calls.add("glGetShaderiv " + shader);
+        checkShader("glGetShaderiv", shader);
+        params[offset] = pname == GLES20.GL_COMPILE_STATUS && _compiledShaders.contains(shader) ? 1 : 0;
+    }
+
+    @Override
+    public String glGetShaderInfoLog (int shader)
+    {
+        calls.add("glGetShaderInfoLog " + shader);
+        return "";
+    }
+
+    @Override
+    public void glDeleteShader (int shader)
+    {
+        calls.add("glDeleteShader " + shader);
+        _shaders.remove(shader);
+        _compiledShaders.remove(shader);
+    }
+
+    private boolean checkShader (String call, int shader)
+    {
+        if (!_shaders.contains(shader))
+        {
+            error(call + " " + shader + ": not a shader");
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int glCreateProgram ()
+    {
+        calls.add("glCreateProgram");
+        int program = _deletedPrograms.isEmpty() ? _nextName++ : _deletedPrograms.remove(0);
+        _attributeLocations.put(program, new HashMap<String, Integer>());
+        _uniformLocations.put(program, new HashMap<String, Integer>());
+        return program;
+    }
+
+    @Override
+    public void glAttachShader (int program, int shader)
+    {
+        calls.add("glAttachShader " + program + " " + shader);
+        checkProgram("glAttachShader", program);
+        if (!_compiledShaders.contains(shader))
+        {
+            error("glAttachShader " + program + " " + shader + ": not a compiled shader");
+        }
+    }
+
+    @Override
+    public void glBindAttribLocation (int program, int index, String name)
+    {
+        calls.add("glBindAttribLocation " + program + " " + index + " " + name);
+        if (checkProgram("glBindAttribLocation", program))
+        {
+            _attributeLocations.get(program).put(name, index);
+        }
+    }
+
+    @Override
+    public void glLinkProgram (int program)
+    {
+        calls.add("glLinkProgram " + program);
+        if (checkProgram("glLinkProgram", program))
+        {
+            _linkedPrograms.add(program);
+        }
+    }
+
+    @Override
+    public void glGetProgramiv (int program, int pname, int[] params, int offset)
+    {
+        calls.add("glGetProgramiv " + program);
+        checkProgram("glGetProgramiv", program);
+        params[offset] = pname == GLES20.GL_LINK_STATUS && _linkedPrograms.contains(program) ? 1 : 0;
+    }
+
+    @Override
+    public String glGetProgramInfoLog (int program)
+    {
+        calls.add("glGetProgramInfoLog " + program);
+        return "";
+    }
+
+    @Override
+    public void glDeleteProgram (int program)
+    {
+        calls.add("glDeleteProgram " + program);
+        if (_attributeLocations.containsKey(program))
+        {
+            _deletedPrograms.add(program);
+        }
+        _attributeLocations.remove(program);
+        _uniformLocations.remove(program);
+        _linkedPrograms.remove(program);
+    }
+
+    /** attributes bound before linking keep their index, the others get the lowest free one */
+    @Override
+    public int glGetAttribLocation (int program, String name)
+    {
+        calls.add("glGetAttribLocation " + program + " " + name);
+        if (!checkLinked("glGetAttribLocation", program))
+        {
+            return -1;
+        }
+        Map<String, Integer> locations = _attributeLocations.get(program);
+        Integer location = locations.get(name);
+        if (location == null)
+        {
+            int free = 0;
+            while (locations.containsValue(free))
+            {
+                free++;
+            }
+            location = free;
+            locations.put(name, location);
+        }
+        return location;
+    }
+
+    @Override
+    public int glGetUniformLocation (int program, String name)
+    {
+        calls.add("glGetUniformLocation " + program + " " + name);
+        if (!checkLinked("glGetUniformLocation", program))
+        {
+            return -1;
+        }
+        Map<String, Integer> locations = _uniformLocations.get(program);
+        Integer location = locations.get(name);
+        if (location == null)
+        {
+            location = locations.size();
+            locations.put(name, location);
+        }
+        return location;
+    }
+
+    private boolean checkProgram (String call, int program)
+    {
+        if (!_attributeLocations.containsKey(program))
+        {
+            error(call + " " + program + ": not a program");
+            return false;
+        }
+        return true;
+    }
+
+    private boolean checkLinked (String call, int program)
+    {
+        if (!_linkedPrograms.contains(program))
+        {
+            error(call + " " + program + ": not a linked program");
+            return false;
+        }
+        return true;
+    }
+    //endregion
+
+    //region textures
+    @Override
+    public void glGenTextures (int n, int[] textures, int offset)
+    {
+        calls.add("glGenTextures " + n);
+        for (int i = 0; i < n; i++)
+        {
+            textures[offset + i] = _nextName++;
+            _textures.add(textures[offset + i]);
+        }
+    }
+
+    @Override
+    public void glDeleteTextures (int n, int[] textures, int offset)
+    {
+        calls.add("glDeleteTextures " + n);
+        for (int i = 0; i < n; i++)
+        {
+            int texture = textures[offset + i];
+            _textures.remove(texture);
+            for (int unit = 0; unit < TEXTURE_UNITS; unit++)
+            {
+                if (_boundTextures[unit] == texture)
+                {
+                    _boundTextures[unit] = 0;
+                }
+            }
+        }
+    }
+
+    /** @return textures generated and not deleted */
+    public int getLiveTextures ()
+    {
+        return _textures.size();
+    }
+
+    @Override
+    public void glTexParameteri (int target, int pname, int param)
+    {
+        calls.add("glTexParameteri " + pname + " " + param);
+        checkTextureBound("glTexParameteri");
+    }
+
+    @Override
+    public void glTexParameterf (int target, int pname, float param)
+    {
+        calls.add("glTexParameterf " + pname + " " + param);
+        checkTextureBound("glTexParameterf");
+    }
+
+    @Override
+    public void glTexImage2D (int target, int level, int internalformat, int width, int height, int border,
+                              int format, int type, Buffer pixels)
+    {
+        calls.add("glTexImage2D " + level + " " + width + "x" + height);
+        checkTextureBound("glTexImage2D");
+        if (pixels != null)
+        {
+            _bytesUploaded += (long) width * height * bytesPerPixel(format, type);
+        }
+    }
+
+    @Override
+    public void glTexSubImage2D (int target, int level, int xoffset, int yoffset, int width, int height, int format,
+                                 int type, Buffer pixels)
+    {
+        calls.add("glTexSubImage2D " + level + " " + xoffset + "," + yoffset + " " + width + "x" + height);
+        checkTextureBound("glTexSubImage2D");
+        _bytesUploaded += (long) width * height * bytesPerPixel(format, type);
+    }
+
+    @Override
+    public void texImage2D (int target, int level, Bitmap bitmap, int border)
+    {
+        calls.add("texImage2D " + level);
+        checkTextureBound("texImage2D");
+        _bytesUploaded += bitmap.getByteCount();
+    }
+
+    @Override
+    public void texImage2D (int target, int level, int internalformat, Bitmap bitmap, int border)
+    {
+        calls.add("texImage2D " + level);
+        checkTextureBound("texImage2D");
+        _bytesUploaded += bitmap.getByteCount();
+    }
+
+    @Override
+    public void glCompressedTexImage2D (int target, int level, int internalformat, int width, int height,
+                                        int border, int imageSize, Buffer data)
+    {
+        calls.add("glCompressedTexImage2D " + level + " " + width + "x" + height);
+        checkTextureBound("glCompressedTexImage2D");
+        if (data.remaining() < imageSize)
+        {
+            error("glCompressedTexImage2D: " + imageSize + " bytes from a buffer of " + data.remaining());
+        }
+        _bytesUploaded += imageSize;
+    }
+
+    @Override
+    public void glGenerateMipmap (int target)
+    {
+        calls.add("glGenerateMipmap");
+        checkTextureBound("glGenerateMipmap");
+    }
+
+    private void checkTextureBound (String call)
+    {
+        if (_boundTextures[_activeUnit] == 0)
+        {
+            error(call + ": no texture bound");
+        }
+    }
+
+    private static int bytesPerPixel (int format, int type)
+    {
+        if (type == GLES20.GL_UNSIGNED_SHORT_5_6_5 || type == GLES20.GL_UNSIGNED_SHORT_4_4_4_4
+                || type == GLES20.GL_UNSIGNED_SHORT_5_5_5_1)
+        {
+            return 2;
+        }
+        switch (format)
+        {
+            case GLES20.GL_ALPHA:
+            case GLES20.GL_LUMINANCE:
+                return 1;
+            case GLES20.GL_LUMINANCE_ALPHA:
+                return 2;
+            case GLES20.GL_RGB:
+                return 3;
+            default:
+                return 4;
+        }
+    }
+    //endregion
+
+    //region frame
+    @Override
+    public void glViewport (int x, int y, int width, int height)
+    {
+        calls.add("glViewport " + width + "x" + height);
+    }
+
+    @Override
+    public void glClearColor (float red, float green, float blue, float alpha)
+    {
+        calls.add("glClearColor");
+    }
+
+    @Override
+    public void glClear (int mask)
+    {
+        calls.add("glClear " + mask);
+    }
+
+    @Override
+    public void glEnable (int cap)
+    {
+        calls.add("glEnable " + cap);
+        stateChange(!_enabledCaps.add(cap));
+    }
+
+    @Override
+    public void glDisable (int cap)
+    {
+        calls.add("glDisable " + cap);
+        stateChange(!_enabledCaps.remove(cap));
+    }
+
+    @Override
+    public void glBlendEquation (int mode)
+    {
+        calls.add("glBlendEquation " + mode);
+        stateChange(false);
+    }
+
+    @Override
+    public void glBlendFunc (int sfactor, int dfactor)
+    {
+        calls.add("glBlendFunc " + sfactor + " " + dfactor);
+        stateChange(false);
+    }
+
+    @Override
+    public int glGetError ()
+    {
+        calls.add("glGetError");
+        return GLES20.GL_NO_ERROR;
+    }
+
+    @Override
+    public String glGetString (int name)
+    {
+        calls.add("glGetString " + name);
+        return name == GLES20.GL_VERSION ? _version : name == GLES20.GL_EXTENSIONS ? _extensions : "";
+    }
+
+    /** what glGetString reports the context to be */
+    public void setVersion (String version, String extensions)
+    {
+        _version = version;
+        _extensions = extensions;
+    }
+    //endregion
+}
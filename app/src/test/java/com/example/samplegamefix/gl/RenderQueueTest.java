@@ -0,0 +1,230 @@
+package com.example.samplegamefix.gl;
+
+import com.example.samplegamefix.Allocations;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class RenderQueueTest
+{
+    private static final float[] MATRIX = new float[16];
+
+    /** writes what ran, in order, into a log */
+    private static class Recorder implements RenderQueue.Command
+    {
+        final List<String> log;
+
+        Recorder (List<String> log)
+        {
+            this.log = log;
+        }
+
+        @Override
+        public void render (float[] viewProjection, int argument)
+        {
+            log.add("draw " + argument);
+        }
+    }
+
+    private static class RecordingPass implements RenderQueue.Pass
+    {
+        final List<String> log;
+        final String name;
+
+        RecordingPass (List<String> log, String name)
+        {
+            this.log = log;
+            this.name = name;
+        }
+
+        @Override
+        public void begin (float[] viewProjection)
+        {
+            log.add("begin " + name);
+        }
+
+        @Override
+        public void end ()
+        {
+            log.add("end " + name);
+        }
+    }
+
+    @Test
+    public void commandsRunByLayerThenPassThenTexture ()
+    {
+        List<String> log = new ArrayList<>();
+        RenderQueue queue = new RenderQueue(4);
+        int sprites = queue.registerPass(new RecordingPass(log, "sprites"));
+        Recorder command = new Recorder(log);
+
+        queue.submit(2, RenderQueue.NO_PASS, 9, command, 5);
+        queue.submit(1, sprites, 7, command, 4);
+        queue.submit(1, sprites, 3, command, 3);
+        queue.submit(0, sprites, 7, command, 1);
+        queue.submit(1, RenderQueue.NO_PASS, 1, command, 2);
+        queue.execute(MATRIX);
+
+        String[] expected = {
+                "begin sprites", "draw 1", "end sprites",
+                "draw 2",
+                "begin sprites", "draw 3", "draw 4", "end sprites",
+                "draw 5" };
+        assertEquals(Arrays.asList(expected), log);
+        assertEquals(5, queue.getExecutedCount());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void equalKeysKeepTheirSubmitOrder ()
+    {
+        List<String> log = new ArrayList<>();
+        RenderQueue queue = new RenderQueue(2);
+        Recorder command = new Recorder(log);
+        for (int i = 0; i < 40; i++)
+        {
+            // two keys interleaved, each group has to come out in the order it went in
+            queue.submit(i % 2, RenderQueue.NO_PASS, 0, command, i);
+        }
+        queue.execute(MATRIX);
+        for (int i = 0; i < 40; i++)
+        {
+            int expected = i < 20 ? i * 2 : (i - 20) * 2 + 1;
+            assertEquals("draw " + expected, log.get(i));
+        }
+    }
+
+    @Test
+    public void passStaysOpenAcrossLayers ()
+    {
+        List<String> log = new ArrayList<>();
+        RenderQueue queue = new RenderQueue(8);
+        int sprites = queue.registerPass(new RecordingPass(log, "sprites"));
+        Recorder command = new Recorder(log);
+
+        // the way the engine lays out a frame, playfield layers and the hud icon then the text
+        queue.submit(4, RenderQueue.NO_PASS, 0, command, 4);
+        for (int layer = 3; layer >= 0; layer--)
+        {
+            queue.submit(layer, sprites, 1, command, layer);
+        }
+        queue.execute(MATRIX);
+        assertEquals(1, queue.getPassBegins());
+        assertEquals("begin sprites", log.get(0));
+        assertEquals("end sprites", log.get(5));
+        assertEquals("draw 4", log.get(6));
+    }
+
+    @Test
+    public void radixOrderMatchesASortOfTheKeys ()
+    {
+        final int[] ran = new int[1000];
+        final int[] ranCount = new int[1];
+        RenderQueue.Command command = new RenderQueue.Command()
+        {
+            @Override
+            public void render (float[] viewProjection, int argument)
+            {
+                ran[ranCount[0]++] = argument;
+            }
+        };
+        RenderQueue queue = new RenderQueue(16);
+        for (int p = 0; p < 20; p++)
+        {
+            queue.registerPass(new RecordingPass(new ArrayList<String>(), "pass " + p));
+        }
+
+        Random random = new Random(42);
+        long[] expected = new long[ran.length];
+        for (int i = 0; i < ran.length; i++)
+        {
+            int layer = random.nextInt(RenderQueue.MAX_LAYER + 1);
+            int pass = random.nextInt(21);
+            int texture = random.nextInt(70000);
+            queue.submit(layer, pass, texture, command, i);
+            // keys compare unsigned, the submit index breaks ties as a stable sort does
+            expected[i] = ((RenderQueue.key(layer, pass, texture) & 0xffffffffL) << 16) | i;
+        }
+        queue.execute(MATRIX);
+
+        Arrays.sort(expected);
+        for (int i = 0; i < ran.length; i++)
+        {
+            assertEquals((int) (expected[i] & 0xffff), ran[i]);
+        }
+    }
+
+    @Test
+    public void framesAfterTheFirstDoNotAllocate ()
+    {
+        final RenderQueue queue = new RenderQueue(2);
+        final int pass = queue.registerPass(new RenderQueue.Pass()
+        {
+            @Override
+            public void begin (float[] viewProjection)
+            {
+            }
+
+            @Override
+            public void end ()
+            {
+            }
+        });
+        final RenderQueue.Command command = new RenderQueue.Command()
+        {
+            @Override
+            public void render (float[] viewProjection, int argument)
+            {
+            }
+        };
+        final Runnable frame = new Runnable()
+        {
+            @Override
+            public void run ()
+            {
+                for (int i = 0; i < 64; i++)
+                {
+                    queue.submit(63 - i, i % 3 == 0 ? RenderQueue.NO_PASS : pass, i & 7, command, i);
+                }
+                queue.execute(MATRIX);
+            }
+        };
+        // the first frame grows the arrays
+        frame.run();
+
+        assertEquals(0, Allocations.measure(frame));
+    }
+
+    @Test
+    public void unknownPassesAndLayersAreRefused ()
+    {
+        RenderQueue queue = new RenderQueue(1);
+        RenderQueue.Command command = new Recorder(new ArrayList<String>());
+        try
+        {
+            queue.submit(0, 1, 0, command, 0);
+            fail("pass 1 was never registered");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+        try
+        {
+            queue.submit(RenderQueue.MAX_LAYER + 1, RenderQueue.NO_PASS, 0, command, 0);
+            fail("layer out of range");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+        assertEquals(0, queue.size());
+    }
+}
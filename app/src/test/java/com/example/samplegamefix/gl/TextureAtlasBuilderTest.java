@@ -0,0 +1,170 @@
+package com.example.samplegamefix.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TextureAtlasBuilderTest
+{
+    private static final int PADDING = 2;
+
+    /** every pixel different, the image id in the top byte so images can't be mixed up */
+    private static int[] image (int id, int width, int height)
+    {
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++)
+        {
+            pixels[i] = (id << 24) | i;
+        }
+        return pixels;
+    }
+
+    private static TextureAtlasBuilder gameSizedImages (int[] order)
+    {
+        // asteroid, chicken and ship sized images
+        int[][] sizes = { { 1, 102, 96 }, { 2, 64, 80 }, { 3, 90, 120 }, { 4, 16, 16 } };
+        TextureAtlasBuilder builder = new TextureAtlasBuilder(PADDING, 1024);
+        for (int index : order)
+        {
+            int[] size = sizes[index];
+            builder.add(size[0], size[1], size[2], image(size[0], size[1], size[2]));
+        }
+        return builder;
+    }
+
+    @Test
+    public void everyImageIsCopiedIntoItsRegion ()
+    {
+        TextureAtlas atlas = gameSizedImages(new int[] { 0, 1, 2, 3 }).build();
+        assertEquals(4, atlas.getRegionCount());
+        assertEquals(1, Integer.bitCount(atlas.getWidth()));
+        assertEquals(1, Integer.bitCount(atlas.getHeight()));
+
+        int[] pixels = atlas.getPixels();
+        for (int r = 0; r < atlas.getRegionCount(); r++)
+        {
+            AtlasRegion region = atlas.getRegionAt(r);
+            int[] expected = image(region.id, region.width, region.height);
+            for (int y = 0; y < region.height; y++)
+            {
+                for (int x = 0; x < region.width; x++)
+                {
+                    assertEquals(expected[y * region.width + x],
+                            pixels[(region.y + y) * atlas.getWidth() + region.x + x]);
+                }
+            }
+            assertEquals(region.x / (float) atlas.getWidth(), region.u1, 0);
+            assertEquals((region.y + region.height) / (float) atlas.getHeight(), region.v2, 0);
+        }
+        assertNull(atlas.getRegion(99));
+    }
+
+    @Test
+    public void paddedRegionsDoNotOverlap ()
+    {
+        TextureAtlas atlas = gameSizedImages(new int[] { 0, 1, 2, 3 }).build();
+        for (int a = 0; a < atlas.getRegionCount(); a++)
+        {
+            AtlasRegion first = atlas.getRegionAt(a);
+            assertTrue(first.x >= PADDING && first.y >= PADDING);
+            assertTrue(first.x + first.width + PADDING <= atlas.getWidth());
+            assertTrue(first.y + first.height + PADDING <= atlas.getHeight());
+            for (int b = a + 1; b < atlas.getRegionCount(); b++)
+            {
+                AtlasRegion second = atlas.getRegionAt(b);
+                boolean apart = first.x + first.width + PADDING <= second.x - PADDING
+                        || second.x + second.width + PADDING <= first.x - PADDING
+                        || first.y + first.height + PADDING <= second.y - PADDING
+                        || second.y + second.height + PADDING <= first.y - PADDING;
+                assertTrue(first.id + " and " + second.id + " overlap", apart);
+            }
+        }
+    }
+
+    @Test
+    public void paddingRepeatsTheEdges ()
+    {
+        TextureAtlas atlas = new TextureAtlasBuilder(PADDING, 64).add(7, 3, 2, image(7, 3, 2)).build();
+        AtlasRegion region = atlas.getRegion(7);
+        int[] pixels = atlas.getPixels();
+        int width = atlas.getWidth();
+        int topLeft = image(7, 3, 2)[0];
+        int bottomRight = image(7, 3, 2)[5];
+        for (int p = 1; p <= PADDING; p++)
+        {
+            assertEquals(topLeft, pixels[(region.y - p) * width + region.x - p]);
+            assertEquals(bottomRight, pixels[(region.y + 1 + p) * width + region.x + 2 + p]);
+        }
+        // beyond the padding the atlas stays transparent
+        assertEquals(0, pixels[pixels.length - 1]);
+    }
+
+    @Test
+    public void addOrderDoesNotChangeTheAtlas ()
+    {
+        TextureAtlas first = gameSizedImages(new int[] { 0, 1, 2, 3 }).build();
+        TextureAtlas second = gameSizedImages(new int[] { 3, 1, 0, 2 }).build();
+        assertEquals(first.getWidth(), second.getWidth());
+        assertEquals(first.getHeight(), second.getHeight());
+        assertArrayEquals(first.getPixels(), second.getPixels());
+        for (int r = 0; r < first.getRegionCount(); r++)
+        {
+            AtlasRegion a = first.getRegionAt(r);
+            AtlasRegion b = second.getRegion(a.id);
+            assertEquals(a.x, b.x);
+            assertEquals(a.y, b.y);
+        }
+    }
+
+    @Test
+    public void atlasGrowsUntilEverythingFits ()
+    {
+        TextureAtlasBuilder builder = new TextureAtlasBuilder(0, 256);
+        // four 64 wide images fill one 256 row exactly, the fifth needs a second shelf
+        for (int id = 1; id <= 5; id++)
+        {
+            builder.add(id, 64, 100, image(id, 64, 100));
+        }
+        TextureAtlas atlas = builder.build();
+        assertEquals(256, atlas.getWidth());
+        assertEquals(256, atlas.getHeight());
+        assertEquals(100, atlas.getRegion(5).y);
+    }
+
+    @Test
+    public void tooMuchForTheMaxSizeFails ()
+    {
+        TextureAtlasBuilder builder = new TextureAtlasBuilder(1, 64);
+        builder.add(1, 63, 10, image(1, 63, 10));
+        try
+        {
+            builder.build();
+            fail("63 pixels and padding don't fit 64");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+    }
+
+    @Test
+    public void duplicateIdsAreRefused ()
+    {
+        TextureAtlasBuilder builder = new TextureAtlasBuilder();
+        builder.add(1, 2, 2, new int[4]);
+        try
+        {
+            builder.add(1, 2, 2, new int[4]);
+            fail("id 1 added twice");
+        }
+        catch (IllegalArgumentException e)
+        {
+            assertFalse(e.getMessage().isEmpty());
+        }
+    }
+}
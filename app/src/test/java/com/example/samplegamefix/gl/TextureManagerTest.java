@@ -0,0 +1,204 @@
+package com.example.samplegamefix.gl;
+
+import com.example.samplegamefix.Allocations;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TextureManagerTest
+{
+    private static final int KB = 1024;
+
+    private RecordingGlBackend _gl;
+    private final List<String> _gone = new ArrayList<>();
+    private TextureManager _manager;
+
+    @Before
+    public void setUp ()
+    {
+        _gl = new RecordingGlBackend(0, 1);
+        _manager = new TextureManager(_gl, 100 * KB, new TextureManager.Listener()
+        {
+            @Override
+            public void onTextureGone (int id, int texture)
+            {
+                _gone.add(id + ":" + texture);
+            }
+        });
+    }
+
+    private int upload ()
+    {
+        int[] name = new int[1];
+        _gl.glGenTextures(1, name, 0);
+        return name[0];
+    }
+
+    @Test
+    public void bytesAreAccountedPerTexture ()
+    {
+        int a = upload();
+        int b = upload();
+        _manager.put(1, a, 30 * KB);
+        _manager.put(2, b, 20 * KB);
+        assertEquals(50 * KB, _manager.getResidentBytes());
+        assertEquals(2, _manager.getResidentCount());
+        assertEquals(a, _manager.get(1));
+        assertEquals(0, _manager.get(3));
+
+        // putting a new texture under an id deletes the old one
+        int c = upload();
+        _manager.put(1, c, 10 * KB);
+        assertEquals(30 * KB, _manager.getResidentBytes());
+        assertEquals(2, _gl.getLiveTextures());
+        assertEquals("1:" + a, _gone.get(0));
+    }
+
+    @Test
+    public void leastRecentlyUsedGoesFirstWhenOverBudget ()
+    {
+        int a = upload();
+        int b = upload();
+        int c = upload();
+        _manager.put(1, a, 40 * KB);
+        _manager.put(2, b, 40 * KB);
+        // 1 was used after 2
+        _manager.get(1);
+        _manager.put(3, c, 40 * KB);
+
+        assertEquals(0, _manager.get(2));
+        assertEquals(a, _manager.get(1));
+        assertEquals(c, _manager.get(3));
+        assertEquals(80 * KB, _manager.getResidentBytes());
+        assertEquals(2, _gl.getLiveTextures());
+        assertEquals(1, _manager.getEvictions());
+        assertEquals("2:" + b, _gone.get(0));
+    }
+
+    @Test
+    public void drawingATextureCountsAsUsingIt ()
+    {
+        int a = upload();
+        int b = upload();
+        _manager.put(1, a, 40 * KB);
+        _manager.put(2, b, 40 * KB);
+        // drawn without looking it up again
+        _manager.touch(1);
+        _manager.put(3, upload(), 40 * KB);
+
+        assertEquals(a, _manager.get(1));
+        assertEquals(0, _manager.get(2));
+        assertEquals("2:" + b, _gone.get(0));
+    }
+
+    @Test
+    public void lookupsDoNotAllocate ()
+    {
+        // resource ids are far outside the range of cached boxes
+        final int id = 0x7f020001;
+        _manager.put(id, upload(), 10 * KB);
+        Runnable frame = new Runnable()
+        {
+            @Override
+            public void run ()
+            {
+                _manager.touch(id);
+                _manager.get(id);
+            }
+        };
+        frame.run();
+        assertEquals(0, Allocations.measure(frame));
+    }
+
+    @Test
+    public void heldTexturesAreNeverEvicted ()
+    {
+        int a = upload();
+        int b = upload();
+        assertEquals(0, _manager.acquire(1));
+        _manager.put(1, a, 80 * KB);
+        assertEquals(a, _manager.get(1));
+        assertEquals(0, _manager.acquire(2));
+        _manager.put(2, b, 80 * KB);
+
+        // both held, the budget can't be kept
+        assertEquals(160 * KB, _manager.getResidentBytes());
+        assertEquals(0, _manager.getEvictions());
+
+        _manager.release(1);
+        assertEquals(0, _manager.get(1));
+        assertEquals(80 * KB, _manager.getResidentBytes());
+        assertEquals(1, _gl.getLiveTextures());
+        assertEquals(1, _manager.getReferences(2));
+    }
+
+    @Test
+    public void loweringTheBudgetEvictsRightAway ()
+    {
+        _manager.put(1, upload(), 30 * KB);
+        _manager.put(2, upload(), 30 * KB);
+        _manager.setBudget(40 * KB);
+        assertEquals(30 * KB, _manager.getResidentBytes());
+        _manager.setBudget(0);
+        assertEquals(0, _manager.getResidentBytes());
+        assertEquals(0, _gl.getLiveTextures());
+    }
+
+    @Test
+    public void deleteAllDeletesEveryTexture ()
+    {
+        _manager.put(1, upload(), 10 * KB);
+        _manager.acquire(2);
+        _manager.put(2, upload(), 10 * KB);
+        _manager.deleteAll();
+
+        assertEquals(0, _gl.getLiveTextures());
+        assertEquals(0, _manager.getResidentBytes());
+        assertEquals(2, _gone.size());
+        // the reference outlives its texture
+        assertEquals(1, _manager.getReferences(2));
+    }
+
+    @Test
+    public void forgettingTouchesNoGl ()
+    {
+        _manager.acquire(1);
+        _manager.put(1, upload(), 10 * KB);
+        _manager.put(2, upload(), 10 * KB);
+        _gl.calls.clear();
+        _manager.forgetAll();
+
+        assertEquals(0, _gl.countCalls("glDeleteTextures"));
+        assertEquals(0, _manager.getResidentBytes());
+        assertEquals(0, _manager.getResidentCount());
+        assertEquals(2, _gone.size());
+        assertEquals(1, _manager.getReferences(1));
+        assertEquals(0, _manager.getReferences(2));
+
+        // the held id gets its texture in the new context
+        int texture = upload();
+        _manager.put(1, texture, 10 * KB);
+        assertEquals(texture, _manager.get(1));
+    }
+
+    @Test
+    public void releasingWhatIsNotHeldIsRefused ()
+    {
+        _manager.put(1, upload(), 10 * KB);
+        try
+        {
+            _manager.release(1);
+            fail("texture 1 was never acquired");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+    }
+}
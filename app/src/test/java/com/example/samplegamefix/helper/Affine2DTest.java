@@ -0,0 +1,110 @@
+package com.example.samplegamefix.helper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class Affine2DTest
+{
+    private static final float EPSILON = 1e-5f;
+
+    @Test
+    public void fastTrigMatchesMath ()
+    {
+        for (float degrees = -1000; degrees <= 1000; degrees += 0.37f)
+        {
+            double radians = Math.toRadians(degrees);
+            assertEquals("sin " + degrees, Math.sin(radians), FastTrig.sinDeg(degrees), 1e-6);
+            assertEquals("cos " + degrees, Math.cos(radians), FastTrig.cosDeg(degrees), 1e-6);
+        }
+        assertEquals(0, FastTrig.sinDeg(0), 0);
+        assertEquals(1, FastTrig.cosDeg(0), 0);
+        assertEquals(1, FastTrig.sinDeg(90), 0);
+        assertEquals(-1, FastTrig.sinDeg(-90), 0);
+    }
+
+    @Test
+    public void multiplyMatchesTranslateRotateScale ()
+    {
+        FastRandom random = new FastRandom(3);
+        float[] lhs = new float[16];
+        float[] expected = new float[16];
+        float[] actual = new float[16];
+        Affine2D transform = new Affine2D();
+        for (int i = 0; i < 1000; i++)
+        {
+            for (int j = 0; j < 16; j++)
+            {
+                lhs[j] = random.floatBetween(-2, 2);
+            }
+            float x = random.floatBetween(-2, 2);
+            float y = random.floatBetween(-2, 2);
+            float z = random.floatBetween(-1, 1);
+            float degrees = random.floatBetween(-720, 720);
+            float scaleX = random.floatBetween(0.01f, 1);
+            float scaleY = random.floatBetween(0.01f, 1);
+
+            matrixPath(expected, lhs, x, y, z, degrees, scaleX, scaleY);
+            transform.setTranslateRotateScale(x, y, degrees, scaleX, scaleY);
+            Affine2D.multiply(actual, lhs, transform, z);
+            for (int j = 0; j < 16; j++)
+            {
+                assertEquals("element " + j, expected[j], actual[j], EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void toMatrixAndTransformAgree ()
+    {
+        Affine2D transform = new Affine2D();
+        transform.setTranslateRotateScale(0.5f, -0.25f, 30, 2, 3);
+        float[] m = new float[20];
+        transform.toMatrix(m, 4, 0.7f);
+
+        float x = 0.3f, y = -0.8f;
+        assertEquals(m[4] * x + m[8] * y + m[16], transform.transformX(x, y), EPSILON);
+        assertEquals(m[5] * x + m[9] * y + m[17], transform.transformY(x, y), EPSILON);
+        assertEquals(0.7f, m[18], 0);
+        assertEquals(1, m[19], 0);
+
+        // the +x corner is scaled by 2 and turned 30 degrees
+        assertEquals(0.5f + 2 * Math.cos(Math.toRadians(30)), transform.transformX(1, 0), EPSILON);
+        assertEquals(-0.25f + 2 * Math.sin(Math.toRadians(30)), transform.transformY(1, 0), EPSILON);
+
+        transform.setIdentity();
+        assertEquals(x, transform.transformX(x, y), 0);
+        assertEquals(y, transform.transformY(x, y), 0);
+    }
+
+    // what TextureSprite.draw did with android.opengl.Matrix, written out in column major floats
+    private static void matrixPath (float[] result, float[] lhs, float x, float y, float z,
+                                    float degrees, float scaleX, float scaleY)
+    {
+        float[] model = new float[16];
+        double radians = Math.toRadians(degrees);
+        float sin = (float) Math.sin(radians);
+        float cos = (float) Math.cos(radians);
+        model[0] = cos * scaleX;
+        model[1] = sin * scaleX;
+        model[4] = -sin * scaleY;
+        model[5] = cos * scaleY;
+        model[10] = 1;
+        model[12] = x;
+        model[13] = y;
+        model[14] = z;
+        model[15] = 1;
+        for (int column = 0; column < 4; column++)
+        {
+            for (int row = 0; row < 4; row++)
+            {
+                float sum = 0;
+                for (int k = 0; k < 4; k++)
+                {
+                    sum += lhs[k * 4 + row] * model[column * 4 + k];
+                }
+                result[column * 4 + row] = sum;
+            }
+        }
+    }
+}
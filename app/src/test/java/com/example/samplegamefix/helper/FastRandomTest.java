@@ -0,0 +1,56 @@
+package com.example.samplegamefix.helper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FastRandomTest
+{
+    @Test
+    public void sameSeedGivesSameSequence ()
+    {
+        FastRandom a = new FastRandom(42);
+        FastRandom b = new FastRandom(42);
+        for (int i = 0; i < 1000; i++)
+        {
+            assertEquals(a.nextLong(), b.nextLong());
+        }
+
+        a.setSeed(7);
+        b.setSeed(7);
+        for (int i = 0; i < 1000; i++)
+        {
+            assertEquals(a.floatBetween(-1, 1), b.floatBetween(-1, 1), 0);
+        }
+    }
+
+    @Test
+    public void differentSeedsDiverge ()
+    {
+        assertNotEquals(new FastRandom(0).nextLong(), new FastRandom(1).nextLong());
+    }
+
+    @Test
+    public void rangesAreRespected ()
+    {
+        FastRandom random = new FastRandom(3);
+        double sum = 0;
+        int n = 100000;
+        for (int i = 0; i < n; i++)
+        {
+            float f = random.nextFloat();
+            assertTrue(f >= 0 && f < 1);
+            double d = random.nextDouble();
+            assertTrue(d >= 0 && d < 1);
+            int k = random.nextInt(7);
+            assertTrue(k >= 0 && k < 7);
+            // bounds may come in either order, like RandomHelper took them
+            float between = random.floatBetween(-0.02f, -0.03f);
+            assertTrue(between >= -0.03f && between <= -0.02f);
+            sum += f;
+        }
+        assertEquals(0.5, sum / n, 0.01);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.samplegamefix.helper.gltext;
+
+import com.example.samplegamefix.gl.GlStateCache;
+import com.example.samplegamefix.gl.Gles20Backend;
+import com.example.samplegamefix.gl.RecordingGlBackend;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DistanceFieldTest
+{
+    private static final int SIZE = 32;
+    private static final int SPREAD = 4;
+
+    @After
+    public void tearDown ()
+    {
+        GlStateCache.shared().setBackend(new Gles20Backend());
+    }
+
+    /** a disc of radius 8 in the middle of the image, fully covered or not at all */
+    private static byte[] disc ()
+    {
+        byte[] coverage = new byte[SIZE * SIZE];
+        for (int y = 0; y < SIZE; y++)
+        {
+            for (int x = 0; x < SIZE; x++)
+            {
+                float dx = x + 0.5f - SIZE / 2;
+                float dy = y + 0.5f - SIZE / 2;
+                coverage[y * SIZE + x] = (byte) (dx * dx + dy * dy <= 64 ? 255 : 0);
+            }
+        }
+        return coverage;
+    }
+
+    private static int at (byte[] field, int x, int y)
+    {
+        return field[y * SIZE + x] & 0xff;
+    }
+
+    @Test
+    public void theOutlineIsHalfWayAndTheFieldFallsAwayFromIt ()
+    {
+        byte[] field = new byte[SIZE * SIZE];
+        DistanceField.generate(disc(), SIZE, SIZE, SPREAD, field);
+
+        // either side of the outline, along the middle row, half a pixel from it
+        int row = SIZE / 2;
+        assertEquals(128 + 127 / 8, at(field, 23, row), 1);
+        assertEquals(128 - 127 / 8, at(field, 24, row), 1);
+
+        // further in is brighter, further out darker, until the spread
+        for (int x = 17; x < 24; x++)
+        {
+            assertTrue(at(field, x, row) >= at(field, x + 1, row));
+        }
+        assertEquals(255, at(field, SIZE / 2, row));
+        assertEquals(0, at(field, 30, row));
+        // distances are euclidean, the diagonal is as far out as the row
+        assertEquals(at(field, 28, row), at(field, 16 + 9, 16 + 9), 16);
+    }
+
+    @Test
+    public void theFieldMayReplaceTheCoverage ()
+    {
+        byte[] separate = new byte[SIZE * SIZE];
+        DistanceField.generate(disc(), SIZE, SIZE, SPREAD, separate);
+        byte[] inPlace = disc();
+        DistanceField.generate(inPlace, SIZE, SIZE, SPREAD, inPlace);
+        for (int i = 0; i < SIZE * SIZE; i++)
+        {
+            assertEquals(separate[i], inPlace[i]);
+        }
+    }
+
+    @Test
+    public void meshesOfASharedFontSmoothTheirEdgesForTheirOwnSize ()
+    {
+        RecordingGlBackend gl = new RecordingGlBackend(AttribVariable.A_Position.getHandle(), AttribVariable.A_TexCoordinate.getHandle());
+        GlStateCache.shared().setBackend(gl);
+        GLText glText = new GLText(null, null);
+        int[] texture = new int[1];
+        gl.glGenTextures(1, texture, 0);
+        glText.textureId = texture[0];
+        glText.sdfSpread = SPREAD;
+        glText.cellWidth = SIZE;
+        glText.cellHeight = SIZE;
+        for (int c = 0; c < GLText.CHAR_CNT; c++)
+        {
+            glText.charRgn[c] = new TextureRegion(256, 256, 0, 0, SIZE, SIZE);
+        }
+
+        TextMesh small = new TextMesh();
+        glText.setScale(0.5f);
+        glText.buildMesh(small, "small", 0, 0);
+        TextMesh large = new TextMesh();
+        glText.setScale(2);
+        glText.buildMesh(large, "LARGE", 0, 0);
+
+        glText.drawMesh(small, 1, 1, 1, 1, new float[16]);
+        glText.drawMesh(large, 1, 1, 1, 1, new float[16]);
+        // the field is magnified 4 times as much, its edge is 4 times narrower
+        assertEquals(1, smoothing(gl, "0.125"));
+        assertEquals(1, smoothing(gl, "0.03125"));
+        assertEquals(0, gl.errors.size());
+    }
+
+    private static int smoothing (RecordingGlBackend gl, String value)
+    {
+        int count = 0;
+        for (String call : gl.calls)
+        {
+            count += call.startsWith("glUniform1f ") && call.endsWith(" " + value) ? 1 : 0;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.samplegamefix.helper.gltext;
+
+import com.example.samplegamefix.gl.GlStateCache;
+import com.example.samplegamefix.gl.Gles20Backend;
+import com.example.samplegamefix.gl.RecordingGlBackend;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FontAtlasCacheTest
+{
+    private static final String FONT = "CyberwayRiders-lg97d.ttf";
+    private static final int SIZE = 64;
+
+    private RecordingGlBackend _gl;
+    private File _directory;
+    private FontAtlasCache _cache;
+
+    @Before
+    public void setUp () throws IOException
+    {
+        // a GLText makes its program as it is made
+        _gl = new RecordingGlBackend(AttribVariable.A_Position.getHandle(), AttribVariable.A_TexCoordinate.getHandle());
+        GlStateCache.shared().setBackend(_gl);
+        _directory = Files.createTempDirectory("atlas").toFile();
+        _cache = new FontAtlasCache(_directory);
+    }
+
+    @After
+    public void tearDown ()
+    {
+        File[] files = _directory.listFiles();
+        for (File file : files != null ? files : new File[0])
+        {
+            file.delete();
+        }
+        _directory.delete();
+        GlStateCache.shared().setBackend(new Gles20Backend());
+    }
+
+    private static ByteBuffer bytes (int count)
+    {
+        ByteBuffer bytes = ByteBuffer.allocate(count);
+        for (int i = 0; i < count; i++)
+        {
+            bytes.put((byte) (i * 7));
+        }
+        bytes.flip();
+        return bytes;
+    }
+
+    @Test
+    public void whatIsWrittenIsMappedBack ()
+    {
+        String key = FontAtlasCache.key(FONT, 32, 4, 4, 4);
+        assertNull(_cache.read(key));
+        assertTrue(_cache.write(key, bytes(1000)));
+
+        ByteBuffer read = _cache.read(key);
+        assertNotNull(read);
+        // a view of the mapping, gl uploads from it without a copy
+        assertTrue(read.isDirect());
+        assertEquals(bytes(1000), read);
+        assertEquals(1, _directory.listFiles().length);
+    }
+
+    @Test
+    public void otherKeysVersionsAndTruncatedFilesAreMisses () throws IOException
+    {
+        String key = FontAtlasCache.key(FONT, 32, 4, 4, 4);
+        String otherSize = FontAtlasCache.key(FONT, 24, 4, 4, 4);
+        _cache.write(key, bytes(100));
+        assertNull(_cache.read(otherSize));
+
+        // a file for another key under this key's name
+        _cache.file(key).renameTo(_cache.file(otherSize));
+        assertNull(_cache.read(otherSize));
+        assertFalse(_cache.file(otherSize).exists());
+
+        _cache.write(key, bytes(100));
+        RandomAccessFile file = new RandomAccessFile(_cache.file(key), "rw");
+        file.setLength(6);
+        file.close();
+        assertNull(_cache.read(key));
+        assertFalse(_cache.file(key).exists());
+    }
+
+    /** what the first start rasterized, 12x20 cells on a 64x64 map */
+    private static GLText rasterized ()
+    {
+        GLText glText = new GLText(null, null);
+        glText.textureSize = SIZE;
+        glText.cellWidth = 12;
+        glText.cellHeight = 20;
+        glText.fontHeight = 16;
+        glText.fontAscent = 13;
+        glText.fontDescent = 3;
+        glText.charWidthMax = 11;
+        glText.charHeight = 16;
+        for (int c = 0; c < GLText.CHAR_CNT; c++)
+        {
+            glText.charWidths[c] = 5 + c % 7;
+        }
+        return glText;
+    }
+
+    @Test
+    public void aSecondLoadTakesTheAtlasFromTheCache ()
+    {
+        // what the first start wrote
+        GLText first = rasterized();
+        ByteBuffer pixels = bytes(SIZE * SIZE);
+        _cache.write(FontAtlasCache.key(FONT, 16, 2, 2, 0), first.saveAtlas(pixels));
+
+        // no asset manager, it would fail if the font had to be rasterized
+        GLText second = new GLText(null, null);
+        second.setAtlasCache(_cache);
+        assertTrue(second.load(FONT, 16, 2, 2));
+        assertTrue(second.isLoadedFromCache());
+        assertTrue(second.getLoadNanos() > 0);
+
+        assertEquals(SIZE, second.textureSize);
+        assertEquals(13, second.getAscent(), 0);
+        assertEquals(first.getLength("Hello, world"), second.getLength("Hello, world"), 0);
+        assertEquals(2 * 12 / (float) SIZE, second.charRgn[2].u1, 0);
+        assertEquals(1, _gl.countCalls("glTexImage2D 0 64x64"));
+        assertEquals(SIZE * SIZE, _gl.getBytesUploaded());
+        assertEquals(0, _gl.errors.size());
+    }
+
+    @Test
+    public void atlasesOfAnotherLayoutAreNotRestored ()
+    {
+        GLText glText = new GLText(null, null);
+        glText.textureSize = SIZE;
+        ByteBuffer atlas = glText.saveAtlas(bytes(SIZE * SIZE));
+        atlas.limit(atlas.limit() - 1);
+        assertNull(new GLText(null, null).restoreAtlas(atlas));
+    }
+
+    @Test
+    public void atlasesWithCorruptSizesAreNotRestored ()
+    {
+        // offsets of the texture size, the cell width and the cell height in the header
+        assertNull(corrupted(8, 0));
+        assertNull(corrupted(8, -12));
+        assertNull(corrupted(12, SIZE + 1));
+        assertNull(corrupted(4, 48));
+        assertNull(corrupted(4, Integer.MIN_VALUE));
+
+        // nothing is taken from an atlas that isn't restored
+        GLText glText = new GLText(null, null);
+        ByteBuffer atlas = rasterized().saveAtlas(bytes(SIZE * SIZE));
+        atlas.putInt(8, 0);
+        assertNull(glText.restoreAtlas(atlas));
+        assertEquals(0, glText.cellWidth);
+        assertEquals(0, glText.textureSize);
+
+        assertNotNull(corrupted(8, SIZE));
+    }
+
+    /** @return what restoring the atlas of {@link #rasterized} gives with an int of its header changed */
+    private static ByteBuffer corrupted (int offset, int value)
+    {
+        ByteBuffer atlas = rasterized().saveAtlas(bytes(SIZE * SIZE));
+        atlas.putInt(offset, value);
+        return new GLText(null, null).restoreAtlas(atlas);
+    }
+}
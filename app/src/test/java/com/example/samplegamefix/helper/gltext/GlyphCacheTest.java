@@ -0,0 +1,241 @@
+package com.example.samplegamefix.helper.gltext;
+
+import com.example.samplegamefix.gl.GlStateCache;
+import com.example.samplegamefix.gl.Gles20Backend;
+import com.example.samplegamefix.gl.RecordingGlBackend;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GlyphCacheTest
+{
+    /** glyphs as wide as their code point modulo 5 plus 6, every pixel the low byte of the code point */
+    private static class FakeRasterizer implements GlyphCache.Rasterizer
+    {
+        final List<Integer> rasterized = new ArrayList<>();
+
+        @Override
+        public float measure (int codePoint)
+        {
+            return 6 + codePoint % 5;
+        }
+
+        @Override
+        public void rasterize (int codePoint, ByteBuffer cell, int width, int height)
+        {
+            rasterized.add(codePoint);
+            for (int i = 0; i < width * height; i++)
+            {
+                cell.put((byte) codePoint);
+            }
+        }
+    }
+
+    // 16x16 cells, 4 on a 32x32 page
+    private static final int CELL = 16;
+    private static final int PAGE = 32;
+    private static final float[] MATRIX = new float[16];
+
+    private RecordingGlBackend _gl;
+    private FakeRasterizer _rasterizer;
+    private GlyphCache _cache;
+
+    @Before
+    public void setUp ()
+    {
+        _gl = new RecordingGlBackend(AttribVariable.A_Position.getHandle(), AttribVariable.A_TexCoordinate.getHandle());
+        GlStateCache.shared().setBackend(_gl);
+        _rasterizer = new FakeRasterizer();
+        _cache = new GlyphCache(_rasterizer, CELL, CELL, PAGE, 2, 3);
+        _cache.beginFrame(1);
+    }
+
+    @After
+    public void tearDown ()
+    {
+        GlStateCache.shared().setBackend(new Gles20Backend());
+    }
+
+    @Test
+    public void glyphsAreRasterizedOnceIntoCellsOfAPage ()
+    {
+        int slot = _cache.get(_gl, 0x4E2D);
+        assertEquals(0, slot);
+        assertEquals(1, _gl.countCalls("glTexImage2D"));
+        assertEquals(1, _gl.countCalls("glTexSubImage2D 0 0,0 16x16"));
+        assertEquals(CELL * CELL, _gl.getBytesUploaded());
+
+        assertEquals(1, _cache.get(_gl, 0x00E9));
+        assertEquals(1, _gl.countCalls("glTexSubImage2D 0 16,0 16x16"));
+
+        _gl.resetCounts();
+        assertEquals(slot, _cache.get(_gl, 0x4E2D));
+        assertEquals(0, _gl.calls.size());
+        assertEquals(2, _rasterizer.rasterized.size());
+        assertEquals(6 + 0x4E2D % 5, _cache.getWidth(slot), 0);
+        assertEquals(0.5f, _cache.getRegion(1).u1, 0);
+        assertEquals(1, _cache.getPageCount());
+        assertEquals(0, _gl.errors.size());
+    }
+
+    @Test
+    public void narrowCellsAreSentAlignedButDrawnAtTheirWidth ()
+    {
+        // 14 wide cells are laid out and sent 16 wide, the unpack alignment
+        GlyphCache cache = new GlyphCache(_rasterizer, 14, CELL, PAGE, 1, 3);
+        cache.beginFrame(1);
+        cache.get(_gl, 0x4E2D);
+        int slot = cache.get(_gl, 0x00E9);
+        assertEquals(1, _gl.countCalls("glTexSubImage2D 0 16,0 16x16"));
+
+        // but a region is as wide as one of the font map, 14 - 1 pixels, GLText draws both alike
+        TextureRegion region = cache.getRegion(slot);
+        assertEquals(16f / PAGE, region.u1, 0);
+        assertEquals(13f / PAGE, region.u2 - region.u1, 1e-6f);
+        assertEquals(0, _gl.errors.size());
+    }
+
+    @Test
+    public void rasterizingIsCappedEachFrame ()
+    {
+        int[] codePoints = { 0x3042, 0x3044, 0x3046, 0x3048, 0x304A };
+        int resident = 0;
+        for (int codePoint : codePoints)
+        {
+            resident += _cache.get(_gl, codePoint) >= 0 ? 1 : 0;
+        }
+        assertEquals(3, resident);
+
+        // the same frame again, still nothing more
+        _cache.beginFrame(1);
+        assertEquals(-1, _cache.get(_gl, 0x3048));
+
+        _cache.beginFrame(2);
+        assertTrue(_cache.get(_gl, 0x3048) >= 0);
+        assertTrue(_cache.get(_gl, 0x304A) >= 0);
+        assertEquals(5, _cache.getRasterizedCount());
+    }
+
+    @Test
+    public void fullCacheEmptiesThePageUsedLongestAgo ()
+    {
+        _cache.setFrameBudget(8);
+        for (int i = 0; i < 8; i++)
+        {
+            _cache.get(_gl, 0x0400 + i);
+        }
+        assertEquals(2, _cache.getPageCount());
+        int generation = _cache.getGeneration();
+
+        // the first page is used again later, the second one is the oldest
+        _cache.beginFrame(2);
+        _cache.find(0x0400);
+        _cache.beginFrame(3);
+        int slot = _cache.get(_gl, 0x0500);
+        assertEquals(1, _cache.getPage(slot));
+        assertEquals(1, _cache.getEvictions());
+        assertNotEquals(generation, _cache.getGeneration());
+
+        assertEquals(-1, _cache.find(0x0404));
+        assertEquals(-1, _cache.find(0x0407));
+        assertEquals(0, _cache.find(0x0400));
+        assertEquals(3, _cache.find(0x0403));
+        // the page's texture is reused, memory stays where it was
+        assertEquals(2, _gl.getLiveTextures());
+        assertEquals(2, _gl.countCalls("glTexImage2D"));
+    }
+
+    @Test
+    public void pagesDrawnThisFrameAreKept ()
+    {
+        _cache.setFrameBudget(16);
+        for (int i = 0; i < 8; i++)
+        {
+            _cache.get(_gl, 0x0400 + i);
+        }
+        _cache.beginFrame(2);
+        _cache.touch(0);
+        _cache.touch(1);
+        assertEquals(-1, _cache.get(_gl, 0x0500));
+        assertEquals(0, _cache.getEvictions());
+
+        _cache.beginFrame(3);
+        assertTrue(_cache.get(_gl, 0x0500) >= 0);
+    }
+
+    @Test
+    public void textMixesTheFontMapAndCachePagesInOneDrawEach ()
+    {
+        GLText glText = glText();
+        TextMesh mesh = new TextMesh();
+        glText.beginFrame(1);
+        glText.buildMesh(mesh, "AéB中", 0, 0);
+        assertFalse(glText.isStale(mesh));
+
+        _gl.resetCounts();
+        glText.drawMesh(mesh, 1, 1, 1, 1, MATRIX);
+        assertEquals(2, _gl.getDrawCalls());
+        // A and B from the font map, then both cached glyphs from the page
+        assertEquals(12, _gl.draws.get(0).indexCount);
+        assertEquals(glText.textureId, _gl.draws.get(0).texture);
+        assertEquals(12, _gl.draws.get(1).indexCount);
+        assertEquals(_cache.getTexture(0), _gl.draws.get(1).texture);
+        assertEquals(0, _gl.errors.size());
+
+        // the glyphs keep their place in the line, the second one starts after A
+        float[] positions = _gl.draws.get(1).positions;
+        assertEquals(8, positions[0], 0);
+        assertEquals(8 + 6 + 0xe9 % 5 + 8, positions[12], 0);
+        assertEquals(8 + 6 + 0xe9 % 5 + 8 + 6 + 0x4e2d % 5, glText.getLength("AéB中"), 0);
+    }
+
+    @Test
+    public void glyphsLeftOutAreAddedOnALaterFrame ()
+    {
+        GLText glText = glText();
+        TextMesh mesh = new TextMesh();
+        glText.beginFrame(1);
+        glText.buildMesh(mesh, "АБВГД", 0, 0);
+        // three rasterized this frame, two shown as blanks for now
+        assertTrue(glText.isStale(mesh));
+        assertEquals(3, _cache.getRasterizedCount());
+
+        glText.beginFrame(2);
+        glText.buildMesh(mesh, "АБВГД", 0, 0);
+        assertFalse(glText.isStale(mesh));
+        assertEquals(5, _cache.getRasterizedCount());
+
+        // a page the mesh uses is emptied, the mesh has to be built again
+        _cache.setFrameBudget(8);
+        glText.beginFrame(3);
+        glText.buildMesh(new TextMesh(), "ԀԁԂԃ", 0, 0);
+        assertTrue(glText.isStale(mesh));
+    }
+
+    private GLText glText ()
+    {
+        GLText glText = new GLText(null, null);
+        int[] texture = new int[1];
+        _gl.glGenTextures(1, texture, 0);
+        glText.textureId = texture[0];
+        glText.cellWidth = CELL;
+        glText.cellHeight = CELL;
+        for (int c = 0; c < GLText.CHAR_CNT; c++)
+        {
+            glText.charWidths[c] = 8;
+            glText.charRgn[c] = new TextureRegion(256, 256, c, 0, CELL, CELL);
+        }
+        glText.setGlyphCache(_cache);
+        return glText;
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.samplegamefix.helper.gltext;
+
+import com.example.samplegamefix.Allocations;
+import com.example.samplegamefix.gl.GlStateCache;
+import com.example.samplegamefix.gl.Gles20Backend;
+import com.example.samplegamefix.gl.RecordingGlBackend;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Text laid out once into buffer objects and drawn from them. No font is loaded, every character
+ * gets a made up cell so the quads can be checked by hand.
+ */
+public class TextMeshTest
+{
+    private static final float[] MATRIX = new float[16];
+
+    private RecordingGlBackend _gl;
+    private GLText _glText;
+
+    @Before
+    public void setUp ()
+    {
+        _gl = new RecordingGlBackend(AttribVariable.A_Position.getHandle(), AttribVariable.A_TexCoordinate.getHandle());
+        GlStateCache.shared().setBackend(_gl);
+        _glText = new GLText(null, null);
+
+        int[] texture = new int[1];
+        _gl.glGenTextures(1, texture, 0);
+        _glText.textureId = texture[0];
+        _glText.cellWidth = 10;
+        _glText.cellHeight = 20;
+        for (int c = 0; c < GLText.CHAR_CNT; c++)
+        {
+            _glText.charWidths[c] = 8;
+            _glText.charRgn[c] = new TextureRegion(256, 256, c * 10, 0, 10, 20);
+        }
+    }
+
+    @After
+    public void tearDown ()
+    {
+        GlStateCache.shared().setBackend(new Gles20Backend());
+    }
+
+    @Test
+    public void textIsUploadedOnceAndDrawnInOneCall ()
+    {
+        TextMesh mesh = new TextMesh();
+        _glText.buildMesh(mesh, "ab", 100, 0);
+        _glText.drawMesh(mesh, 1, 1, 1, 1, MATRIX);
+        assertEquals(1, mesh.getUploadCount());
+
+        _gl.resetCounts();
+        for (int frame = 0; frame < 3; frame++)
+        {
+            _glText.drawMesh(mesh, 1, 1, 1, 1, MATRIX);
+        }
+        assertEquals(0, _gl.getBytesUploaded());
+        assertEquals(3, _gl.getDrawCalls());
+        assertEquals(0, _gl.countCalls("glBufferData"));
+        assertEquals(1, mesh.getUploadCount());
+        assertEquals(0, _gl.errors.size());
+
+        // the quads are centered like draw() centers its sprites, 'b' one character width on
+        RecordingGlBackend.Draw draw = _gl.draws.get(2);
+        assertEquals(12, draw.indexCount);
+        assertArrayEquals(new float[] {
+                100, 0, 110, 0, 110, 20,
+                110, 20, 100, 20, 100, 0,
+                108, 0, 118, 0, 118, 20,
+                118, 20, 108, 20, 108, 0 }, draw.positions, 0);
+        float u = 'b' - GLText.CHAR_START;
+        assertEquals(u * 10 / 256, draw.textureCoordinates[12], 1e-6f);
+    }
+
+    @Test
+    public void longTextIsStillOneDraw ()
+    {
+        // more characters than a sprite batch holds, drawn by GLText.draw() in several batches
+        TextMesh mesh = new TextMesh();
+        _glText.buildMesh(mesh, "Score: 123456789. Best combo: 987654321", 0, 0);
+        _glText.drawMesh(mesh, 1, 1, 1, 1, MATRIX);
+        assertEquals(1, _gl.getDrawCalls());
+        assertEquals(39 * 6, _gl.draws.get(0).indexCount);
+    }
+
+    @Test
+    public void changedTextIsUploadedAgainIndicesOnlyWhenItGrows ()
+    {
+        TextMesh mesh = new TextMesh();
+        _glText.buildMesh(mesh, "1234", 0, 0);
+        _glText.drawMesh(mesh, 1, 1, 1, 1, MATRIX);
+
+        _gl.resetCounts();
+        _glText.buildMesh(mesh, "99", 0, 0);
+        _glText.drawMesh(mesh, 1, 1, 1, 1, MATRIX);
+        // only the vertices of the two quads
+        assertEquals(2 * 4 * 5 * 4, _gl.getBytesUploaded());
+        assertEquals(12, _gl.draws.get(0).indexCount);
+
+        _gl.resetCounts();
+        _glText.buildMesh(mesh, "123456", 0, 0);
+        _glText.drawMesh(mesh, 1, 1, 1, 1, MATRIX);
+        assertEquals(2, _gl.countCalls("glBufferData"));
+        assertEquals(36, _gl.draws.get(0).indexCount);
+        assertEquals(2, _gl.getLiveBuffers());
+        assertEquals(0, _gl.errors.size());
+    }
+
+    @Test
+    public void contextLossUploadsIntoNewBuffersWithoutDeleting ()
+    {
+        TextMesh mesh = new TextMesh();
+        _glText.buildMesh(mesh, "12", 0, 0);
+        _glText.drawMesh(mesh, 1, 1, 1, 1, MATRIX);
+
+        mesh.forget();
+        _glText.drawMesh(mesh, 1, 1, 1, 1, MATRIX);
+        assertEquals(0, _gl.countCalls("glDeleteBuffers"));
+        assertEquals(2, mesh.getUploadCount());
+        assertEquals(4, _gl.getLiveBuffers());
+
+        mesh.release(GlStateCache.shared());
+        mesh.release(GlStateCache.shared());
+        assertEquals(1, _gl.countCalls("glDeleteBuffers"));
+        assertEquals(2, _gl.getLiveBuffers());
+    }
+
+    @Test
+    public void numbersAreLaidOutLikeTheirText ()
+    {
+        _glText.setSpace(1);
+        int[] numbers = { 0, 7, 42, 1234567890, -305, Integer.MIN_VALUE, Integer.MAX_VALUE };
+        for (int number : numbers)
+        {
+            String text = Integer.toString(number);
+            assertEquals(text, _glText.getLength(text), _glText.getLength(number), 0);
+
+            TextMesh fromText = new TextMesh();
+            TextMesh fromNumber = new TextMesh();
+            _glText.buildMesh(fromText, text, 5, 3);
+            _glText.buildMesh(fromNumber, number, 5, 3);
+            _gl.resetCounts();
+            _glText.drawMesh(fromText, 1, 1, 1, 1, MATRIX);
+            _glText.drawMesh(fromNumber, 1, 1, 1, 1, MATRIX);
+            assertArrayEquals(text, _gl.draws.get(0).positions, _gl.draws.get(1).positions, 0);
+            assertArrayEquals(text, _gl.draws.get(0).textureCoordinates, _gl.draws.get(1).textureCoordinates, 0);
+        }
+    }
+
+    @Test
+    public void countingUpDoesNotAllocate ()
+    {
+        GlStateCache.shared().setBackend(new NoGl());
+        final TextMesh mesh = new TextMesh();
+        final int[] count = { 1000 };
+        Runnable frame = new Runnable()
+        {
+            @Override
+            public void run ()
+            {
+                // a hit every frame, the counter changes and is drawn
+                _glText.buildMesh(mesh, ++count[0], 0, 0);
+                _glText.drawMesh(mesh, 1, 1, 1, 1, MATRIX);
+            }
+        };
+        frame.run();
+
+        assertEquals(0, Allocations.measure(frame));
+        assertEquals(2, mesh.getUploadCount());
+    }
+
+    @Test
+    public void emptyTextDrawsNothing ()
+    {
+        TextMesh mesh = new TextMesh();
+        _glText.buildMesh(mesh, "", 0, 0);
+        _glText.drawMesh(mesh, 1, 1, 1, 1, MATRIX);
+        assertEquals(0, _gl.getDrawCalls());
+        assertEquals(0, _gl.getLiveBuffers());
+    }
+
+    /** takes the calls without recording them, recording allocates */
+    private static class NoGl extends RecordingGlBackend
+    {
+        NoGl ()
+        {
+            super(AttribVariable.A_Position.getHandle(), AttribVariable.A_TexCoordinate.getHandle());
+        }
+
+        @Override
+        public void glUseProgram (int program)
+        {
+        }
+
+        @Override
+        public void glUniform4fv (int location, int count, float[] v, int offset)
+        {
+        }
+
+        @Override
+        public void glUniform1i (int location, int x)
+        {
+        }
+
+        @Override
+        public void glUniformMatrix4fv (int location, int count, boolean transpose, float[] value, int offset)
+        {
+        }
+
+        @Override
+        public void glActiveTexture (int texture)
+        {
+        }
+
+        @Override
+        public void glBindTexture (int target, int texture)
+        {
+        }
+
+        @Override
+        public void glGenBuffers (int n, int[] buffers, int offset)
+        {
+            buffers[offset] = 1;
+            buffers[offset + 1] = 2;
+        }
+
+        @Override
+        public void glBindBuffer (int target, int buffer)
+        {
+        }
+
+        @Override
+        public void glBufferData (int target, int size, java.nio.Buffer data, int usage)
+        {
+        }
+
+        @Override
+        public void glEnableVertexAttribArray (int index)
+        {
+        }
+
+        @Override
+        public void glDisableVertexAttribArray (int index)
+        {
+        }
+
+        @Override
+        public void glVertexAttribPointer (int index, int size, int type, boolean normalized, int stride, int offset)
+        {
+        }
+
+        @Override
+        public void glDrawElements (int mode, int count, int type, int offset)
+        {
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.samplegamefix.sprites;
+
+import com.example.samplegamefix.Allocations;
+import com.example.samplegamefix.helper.FastRandom;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BrokenAsteroidSpriteTest
+{
+    private static final int BREAKS = 100000;
+
+    @Test
+    public void breakingSpawnsFivePiecesAroundTheAsteroid ()
+    {
+        EntityStore asteroids = new EntityStore(1, 0, 0.1f);
+        EntityStore debris = new EntityStore(5, 0, 0);
+        int asteroid = asteroid(asteroids);
+
+        BrokenAsteroidSprite.breakApart(asteroids, asteroid, debris, new FastRandom(1));
+
+        assertEquals(5, debris.size());
+        float[] heights = { 0.25f, 0.5f, 1, 0.5f, 0.25f };
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals(asteroids._scaleX[asteroid] / 4, debris._scaleX[i], 0);
+            assertEquals(asteroids._posY[asteroid] + asteroids._scaleY[asteroid] * heights[i], debris._posY[i], 0);
+            assertEquals(debris._posY[i], debris._previousY[i], 0);
+        }
+        // middle piece falls straight down, the others spread out left and right
+        assertEquals(asteroids._posX[asteroid], debris._posX[2], 0);
+        assertEquals(0, debris._velX[2], 0);
+        for (int i = 0; i < 2; i++)
+        {
+            assertTrue(debris._velX[i] <= 0 && debris._posX[i] <= asteroids._posX[asteroid]);
+            assertTrue(debris._velX[4 - i] >= 0 && debris._posX[4 - i] >= asteroids._posX[asteroid]);
+        }
+    }
+
+    @Test
+    public void breakingDoesNotAllocateOnceDebrisIsBigEnough ()
+    {
+        final EntityStore asteroids = new EntityStore(1, 0, 0.1f);
+        final EntityStore debris = new EntityStore(100, 0, 0);
+        final int asteroid = asteroid(asteroids);
+        final FastRandom random = new FastRandom(2);
+        final Runnable breaks = new Runnable()
+        {
+            @Override
+            public void run ()
+            {
+                for (int n = 0; n < BREAKS; n++)
+                {
+                    if (debris.size() + 5 > debris.getCapacity())
+                    {
+                        debris.clear();
+                    }
+                    BrokenAsteroidSprite.breakApart(asteroids, asteroid, debris, random);
+                }
+            }
+        };
+
+        // warm up so the measured run is the steady state
+        breaks.run();
+        long bytes = Allocations.measure(breaks);
+
+        assertEquals("bytes allocated per break", 0, bytes / BREAKS);
+        assertEquals(0, debris.getGrowCount());
+    }
+
+    private static int asteroid (EntityStore asteroids)
+    {
+        int i = asteroids.spawn();
+        asteroids._posX[i] = 0.3f;
+        asteroids._posY[i] = 0.8f;
+        asteroids._velY[i] = -0.025f;
+        asteroids._scaleX[i] = 0.2f;
+        asteroids._scaleY[i] = 0.2f / (408f / 384f);
+        return i;
+    }
+}
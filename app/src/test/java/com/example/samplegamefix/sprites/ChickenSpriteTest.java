@@ -0,0 +1,28 @@
+package com.example.samplegamefix.sprites;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ChickenSpriteTest
+{
+    @Test
+    public void onlyLiveChickensBounceOffTheWalls ()
+    {
+        EntityStore chickens = new EntityStore(2, 0, 0);
+        int live = chickens.spawn();
+        int dead = chickens.spawn();
+        for (int i : new int[] { live, dead })
+        {
+            chickens._posX[i] = 1.5f;
+            chickens._velX[i] = 0.05f;
+        }
+        chickens.kill(dead);
+
+        ChickenSprite.updateAll(chickens, 1);
+
+        assertEquals(-0.05f, chickens._velX[live], 0);
+        assertEquals(0.05f, chickens._velX[dead], 0);
+        assertEquals(1.5f, chickens._posX[dead], 0);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.samplegamefix.sprites;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class EntityStoreTest
+{
+    private static final float RATIO = 16f / 9f;
+
+    /** spawns an entity marked with its number in _posX */
+    private static int spawn (EntityStore store, int number)
+    {
+        int i = store.spawn();
+        store._posX[i] = number;
+        store.finishSpawn(i);
+        return i;
+    }
+
+    private static void assertNumbers (EntityStore store, int... numbers)
+    {
+        assertEquals(numbers.length, store.size());
+        for (int i = 0; i < numbers.length; i++)
+        {
+            assertEquals("entity " + i, numbers[i], store._posX[i], 0);
+        }
+    }
+
+    @Test
+    public void growPolicyGrowsAndCounts ()
+    {
+        EntityStore store = new EntityStore(2, 0, 0);
+        for (int n = 0; n < 5; n++)
+        {
+            assertEquals(n, spawn(store, n));
+        }
+        assertNumbers(store, 0, 1, 2, 3, 4);
+        assertEquals(5, store.getHighWaterMark());
+        assertEquals(2, store.getGrowCount());
+        assertEquals(8, store.getCapacity());
+    }
+
+    @Test
+    public void failPolicyThrowsWhenFull ()
+    {
+        EntityStore store = new EntityStore(2, 0, 0);
+        store.setOverflowPolicy(OverflowPolicy.FAIL);
+        spawn(store, 0);
+        spawn(store, 1);
+        try
+        {
+            store.spawn();
+            fail("expected the store to be full");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+        assertNumbers(store, 0, 1);
+    }
+
+    @Test
+    public void recyclingWritesOverTheOldestInPlace ()
+    {
+        EntityStore store = new EntityStore(3, 0, 0);
+        store.setOverflowPolicy(OverflowPolicy.RECYCLE_OLDEST);
+        for (int n = 0; n < 3; n++)
+        {
+            spawn(store, n);
+        }
+
+        // nothing else moves, the others keep their index
+        assertEquals(0, spawn(store, 3));
+        assertNumbers(store, 3, 1, 2);
+        assertEquals(1, spawn(store, 4));
+        assertEquals(2, spawn(store, 5));
+        assertEquals(0, spawn(store, 6));
+        assertNumbers(store, 6, 4, 5);
+        assertEquals(3, store.getCapacity());
+        assertEquals(0, store.getGrowCount());
+    }
+
+    @Test
+    public void theOldestIsFoundAgainAfterTheKernelsPackTheStore ()
+    {
+        EntityStore store = new EntityStore(4, 0, 0);
+        store.setOverflowPolicy(OverflowPolicy.RECYCLE_OLDEST);
+        for (int n = 0; n < 6; n++)
+        {
+            spawn(store, n);
+        }
+        // 4, 5, 2, 3 with 2 the oldest, kill it and let the kernel drop it
+        assertNumbers(store, 4, 5, 2, 3);
+        store.kill(2);
+        MovingSprite.updateAll(store, RATIO);
+        assertNumbers(store, 4, 5, 3);
+
+        // the next spawn has room, it puts the store back in spawn order first
+        assertEquals(3, spawn(store, 6));
+        assertNumbers(store, 3, 4, 5, 6);
+        assertEquals(0, spawn(store, 7));
+        assertNumbers(store, 7, 4, 5, 6);
+    }
+
+    @Test
+    public void growingAfterRecyclingKeepsSpawnOrder ()
+    {
+        EntityStore store = new EntityStore(3, 0, 0);
+        store.setOverflowPolicy(OverflowPolicy.RECYCLE_OLDEST);
+        for (int n = 0; n < 4; n++)
+        {
+            spawn(store, n);
+        }
+
+        store.setOverflowPolicy(OverflowPolicy.GROW);
+        assertEquals(3, spawn(store, 4));
+        assertNumbers(store, 1, 2, 3, 4);
+    }
+
+    @Test
+    public void clearForgetsTheOldest ()
+    {
+        EntityStore store = new EntityStore(2, 0, 0);
+        store.setOverflowPolicy(OverflowPolicy.RECYCLE_OLDEST);
+        for (int n = 0; n < 3; n++)
+        {
+            spawn(store, n);
+        }
+        store.clear();
+        assertEquals(0, spawn(store, 3));
+        assertEquals(1, spawn(store, 4));
+        assertEquals(0, spawn(store, 5));
+        assertNumbers(store, 5, 4);
+        assertEquals(2, store.getHighWaterMark());
+    }
+}
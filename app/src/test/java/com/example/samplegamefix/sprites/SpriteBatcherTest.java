@@ -0,0 +1,410 @@
+package com.example.samplegamefix.sprites;
+
+import android.opengl.GLES20;
+
+import com.example.samplegamefix.Allocations;
+import com.example.samplegamefix.gl.AtlasRegion;
+import com.example.samplegamefix.gl.RecordingGlBackend;
+import com.example.samplegamefix.gl.TextureAtlas;
+import com.example.samplegamefix.gl.TextureAtlasBuilder;
+import com.example.samplegamefix.helper.FastRandom;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class SpriteBatcherTest
+{
+    private static final int POSITION = 1;
+    private static final int TEXTURE_COORDINATE = 2;
+    private static final int MVP_MATRIX = 3;
+    private static final int TEXTURE_RECT = 4;
+
+    private static final int ASTEROID_DRAWABLE = 1001;
+    private static final int CHICKEN_DRAWABLE = 1002;
+    private static final int UNLOADED_DRAWABLE = 1003;
+    private static final int ATLAS_ASTEROID_DRAWABLE = 1004;
+    private static final int ATLAS_CHICKEN_DRAWABLE = 1005;
+    private static final int ASTEROID_TEXTURE = 7;
+    private static final int CHICKEN_TEXTURE = 8;
+    private static final int ATLAS_TEXTURE = 9;
+
+    private static final float[] IDENTITY = {
+            1, 0, 0, 0,
+            0, 1, 0, 0,
+            0, 0, 1, 0,
+            0, 0, 0, 1,
+    };
+
+    private RecordingGlBackend _gl;
+    private FastRandom _random;
+
+    @Before
+    public void setUp ()
+    {
+        TextureSprite.cacheTexture(ASTEROID_DRAWABLE, ASTEROID_TEXTURE);
+        TextureSprite.cacheTexture(CHICKEN_DRAWABLE, CHICKEN_TEXTURE);
+        _gl = new RecordingGlBackend(POSITION, TEXTURE_COORDINATE);
+        _random = new FastRandom(1);
+    }
+
+    @Test
+    public void oneDrawCallPerLayer ()
+    {
+        SpriteBatcher batcher = batcher(SpriteBatcher.DEFAULT_MAX_SPRITES);
+        SpriteLayer asteroids = layer(ASTEROID_DRAWABLE, 100);
+        SpriteLayer debris = layer(ASTEROID_DRAWABLE, 50);
+        SpriteLayer chickens = layer(CHICKEN_DRAWABLE, 5);
+
+        for (SpriteLayer layer : new SpriteLayer[] { asteroids, debris, chickens })
+        {
+            batcher.begin(IDENTITY);
+            batcher.drawLayer(layer, 1);
+            batcher.end();
+        }
+
+        assertEquals(3, _gl.draws.size());
+        assertEquals(100 * 6, _gl.draws.get(0).indexCount);
+        assertEquals(50 * 6, _gl.draws.get(1).indexCount);
+        assertEquals(5 * 6, _gl.draws.get(2).indexCount);
+        assertEquals(ASTEROID_TEXTURE, _gl.draws.get(0).texture);
+        assertEquals(CHICKEN_TEXTURE, _gl.draws.get(2).texture);
+        // the matrix goes up once per layer, not once per sprite
+        assertEquals(3, _gl.countCalls("glUniformMatrix4fv"));
+        assertEquals(3, batcher.getDrawCalls());
+    }
+
+    @Test
+    public void cornersMatchTheModelMatrixOfASingleSprite ()
+    {
+        SpriteBatcher batcher = batcher(SpriteBatcher.DEFAULT_MAX_SPRITES);
+        SpriteLayer layer = layer(ASTEROID_DRAWABLE, 40);
+        float alpha = 0.25f;
+
+        batcher.begin(IDENTITY);
+        batcher.drawLayer(layer, alpha);
+        batcher.end();
+
+        float[] positions = _gl.draws.get(0).positions;
+        float[] textureCoordinates = _gl.draws.get(0).textureCoordinates;
+        // quad indices 0, 1, 2, 0, 2, 3 and the corners of the sprite quad
+        int[] order = { 0, 1, 2, 0, 2, 3 };
+        float[][] corners = { { -1, -1 }, { 1, -1 }, { 1, 1 }, { -1, 1 } };
+        float[][] uvs = { { 0, 1 }, { 1, 1 }, { 1, 0 }, { 0, 0 } };
+        for (int i = 0; i < layer._count; i++)
+        {
+            double[] model = modelMatrix(layer, i, alpha);
+            for (int n = 0; n < 6; n++)
+            {
+                float[] corner = corners[order[n]];
+                int p = (i * 6 + n) * 3;
+                assertEquals(model[0] * corner[0] + model[4] * corner[1] + model[12], positions[p], 1e-5);
+                assertEquals(model[1] * corner[0] + model[5] * corner[1] + model[13], positions[p + 1], 1e-5);
+                assertEquals(model[14], positions[p + 2], 1e-6);
+                int t = (i * 6 + n) * 2;
+                assertEquals(uvs[order[n]][0], textureCoordinates[t], 0);
+                assertEquals(uvs[order[n]][1], textureCoordinates[t + 1], 0);
+            }
+        }
+    }
+
+    @Test
+    public void textureChangesFlushTheBatch ()
+    {
+        SpriteBatcher batcher = batcher(SpriteBatcher.DEFAULT_MAX_SPRITES);
+        SpriteLayer layer = new SpriteLayer(5);
+        int[] drawables = { ASTEROID_DRAWABLE, ASTEROID_DRAWABLE, CHICKEN_DRAWABLE, CHICKEN_DRAWABLE, ASTEROID_DRAWABLE };
+        for (int drawable : drawables)
+        {
+            add(layer, drawable);
+        }
+
+        batcher.begin(IDENTITY);
+        batcher.drawLayer(layer, 1);
+        batcher.end();
+
+        assertEquals(3, _gl.draws.size());
+        assertEquals(12, _gl.draws.get(0).indexCount);
+        assertEquals(CHICKEN_TEXTURE, _gl.draws.get(1).texture);
+        assertEquals(6, _gl.draws.get(2).indexCount);
+        assertEquals(3, _gl.countCalls("glBindTexture"));
+    }
+
+    @Test
+    public void atlasRegionsShareOneDrawCall ()
+    {
+        TextureAtlas atlas = new TextureAtlasBuilder(1, 256)
+                .add(ATLAS_ASTEROID_DRAWABLE, 40, 30, new int[40 * 30])
+                .add(ATLAS_CHICKEN_DRAWABLE, 20, 20, new int[20 * 20])
+                .build();
+        AtlasRegion asteroid = atlas.getRegion(ATLAS_ASTEROID_DRAWABLE);
+        AtlasRegion chicken = atlas.getRegion(ATLAS_CHICKEN_DRAWABLE);
+        TextureSprite.cacheTexture(ATLAS_ASTEROID_DRAWABLE, ATLAS_TEXTURE, asteroid);
+        TextureSprite.cacheTexture(ATLAS_CHICKEN_DRAWABLE, ATLAS_TEXTURE, chicken);
+
+        SpriteBatcher batcher = batcher(SpriteBatcher.DEFAULT_MAX_SPRITES);
+        SpriteLayer layer = new SpriteLayer(4);
+        add(layer, ATLAS_ASTEROID_DRAWABLE);
+        add(layer, ATLAS_CHICKEN_DRAWABLE);
+        add(layer, ATLAS_ASTEROID_DRAWABLE);
+        add(layer, ATLAS_CHICKEN_DRAWABLE);
+
+        batcher.begin(IDENTITY);
+        batcher.drawLayer(layer, 1);
+        batcher.end();
+
+        assertEquals(1, _gl.draws.size());
+        assertEquals(ATLAS_TEXTURE, _gl.draws.get(0).texture);
+        // the shader is told to use the texture coordinates as they are
+        assertEquals(1, _gl.countCalls("glUniform4fv " + TEXTURE_RECT));
+
+        // bottom left corner of the second sprite is the bottom left of the chicken region
+        float[] textureCoordinates = _gl.draws.get(0).textureCoordinates;
+        assertEquals(chicken.u1, textureCoordinates[12], 0);
+        assertEquals(chicken.v2, textureCoordinates[13], 0);
+        // top right corner of the first is the top right of the asteroid region
+        assertEquals(asteroid.u2, textureCoordinates[4], 0);
+        assertEquals(asteroid.v1, textureCoordinates[5], 0);
+    }
+
+    @Test
+    public void fullBatchFlushes ()
+    {
+        SpriteBatcher batcher = batcher(8);
+        batcher.begin(IDENTITY);
+        batcher.drawLayer(layer(ASTEROID_DRAWABLE, 20), 1);
+        batcher.end();
+
+        assertEquals(3, _gl.draws.size());
+        assertEquals(8 * 6, _gl.draws.get(0).indexCount);
+        assertEquals(8 * 6, _gl.draws.get(1).indexCount);
+        assertEquals(4 * 6, _gl.draws.get(2).indexCount);
+        // same texture all along, bound once
+        assertEquals(1, _gl.countCalls("glBindTexture"));
+    }
+
+    @Test
+    public void spritesWithoutTextureAreSkipped ()
+    {
+        SpriteBatcher batcher = batcher(SpriteBatcher.DEFAULT_MAX_SPRITES);
+        SpriteLayer layer = new SpriteLayer(3);
+        add(layer, ASTEROID_DRAWABLE);
+        add(layer, UNLOADED_DRAWABLE);
+        add(layer, ASTEROID_DRAWABLE);
+
+        batcher.begin(IDENTITY);
+        batcher.drawLayer(layer, 1);
+        batcher.end();
+
+        assertEquals(1, _gl.draws.size());
+        assertEquals(2 * 6, _gl.draws.get(0).indexCount);
+    }
+
+    @Test
+    public void emptyBatchDrawsNothing ()
+    {
+        SpriteBatcher batcher = batcher(SpriteBatcher.DEFAULT_MAX_SPRITES);
+        batcher.begin(IDENTITY);
+        batcher.end();
+        assertEquals(0, _gl.draws.size());
+    }
+
+    @Test
+    public void indicesAreUploadedOncePerContext ()
+    {
+        SpriteBatcher batcher = batcher(8);
+        SpriteLayer layer = layer(ASTEROID_DRAWABLE, 12);
+        for (int frame = 0; frame < 2; frame++)
+        {
+            batcher.begin(IDENTITY);
+            batcher.drawLayer(layer, 1);
+            batcher.end();
+        }
+
+        assertNoBufferErrors();
+        assertEquals(1, _gl.countCalls("glBufferData " + GLES20.GL_ELEMENT_ARRAY_BUFFER + " " + 8 * 6 * 2));
+        // the vertices of every flush, a full batch and the rest
+        assertEquals(2, _gl.countCalls("glBufferData " + GLES20.GL_ARRAY_BUFFER + " " + 8 * 4 * 5 * 4));
+        assertEquals(2, _gl.countCalls("glBufferData " + GLES20.GL_ARRAY_BUFFER + " " + 4 * 4 * 5 * 4));
+        assertEquals(2, _gl.getLiveBuffers());
+
+        // a new context, the old names are given up and the indices go up again
+        batcher.forget();
+        _gl.resetCounts();
+        batcher.begin(IDENTITY);
+        batcher.drawLayer(layer, 1);
+        batcher.end();
+        assertNoBufferErrors();
+        assertEquals(1, _gl.countCalls("glBufferData " + GLES20.GL_ELEMENT_ARRAY_BUFFER));
+        assertEquals(2, _gl.draws.size());
+
+        // only the new pair is deleted, the recording never lost the first one
+        batcher.release();
+        assertEquals(2, _gl.getLiveBuffers());
+    }
+
+    @Test
+    public void aBatchedSpriteHoldsItsTextureUntilReleased ()
+    {
+        AsteroidSprite sprite = new AsteroidSprite();
+        sprite._drawableResourceId = ASTEROID_DRAWABLE;
+        SpriteBatcher batcher = batcher(SpriteBatcher.DEFAULT_MAX_SPRITES);
+        batcher.begin(IDENTITY);
+        sprite.batch(batcher);
+        sprite.batch(batcher);
+        batcher.end();
+
+        // one reference however often it is drawn
+        assertEquals(1, TextureSprite.getTextures().getReferences(ASTEROID_DRAWABLE));
+        sprite.releaseTexture();
+        assertEquals(0, TextureSprite.getTextures().getReferences(ASTEROID_DRAWABLE));
+    }
+
+    @Test
+    public void batchingDoesNotAllocate ()
+    {
+        final SpriteBatcher batcher = new SpriteBatcher(new NoGl(), SpriteBatcher.DEFAULT_MAX_SPRITES);
+        final SpriteLayer layer = layer(ASTEROID_DRAWABLE, 300);
+        Runnable frame = new Runnable()
+        {
+            @Override
+            public void run ()
+            {
+                batcher.begin(IDENTITY);
+                batcher.drawLayer(layer, 0.5f);
+                batcher.end();
+            }
+        };
+        frame.run();
+        assertEquals(0, Allocations.measure(frame));
+    }
+
+    /** the program and textures of these tests are made up, only buffer mistakes count */
+    private void assertNoBufferErrors ()
+    {
+        for (String error : _gl.errors)
+        {
+            assertFalse(error, error.contains("buffer") || error.contains("pointer"));
+        }
+    }
+
+    private SpriteBatcher batcher (int maxSprites)
+    {
+        SpriteBatcher batcher = new SpriteBatcher(_gl, maxSprites);
+        batcher.setProgram(1, POSITION, TEXTURE_COORDINATE, MVP_MATRIX, TEXTURE_RECT);
+        return batcher;
+    }
+
+    private SpriteLayer layer (int drawable, int count)
+    {
+        SpriteLayer layer = new SpriteLayer(count);
+        for (int i = 0; i < count; i++)
+        {
+            add(layer, drawable);
+        }
+        return layer;
+    }
+
+    private void add (SpriteLayer layer, int drawable)
+    {
+        EntityStore store = new EntityStore(1, drawable, _random.nextFloat() * 0.2f);
+        int i = store.spawn();
+        store._previousX[i] = _random.floatBetween(-1, 1);
+        store._previousY[i] = _random.floatBetween(-1.7f, 1.7f);
+        store._posX[i] = store._previousX[i] + _random.floatBetween(-0.03f, 0.03f);
+        store._posY[i] = store._previousY[i] + _random.floatBetween(-0.03f, 0.03f);
+        store._previousRot[i] = _random.floatBetween(-360, 360);
+        store._rot[i] = store._previousRot[i] + _random.floatBetween(-2, 2);
+        store._scaleX[i] = _random.floatBetween(0.05f, 0.2f);
+        store._scaleY[i] = store._scaleX[i] * _random.floatBetween(0.5f, 1.5f);
+        layer.addAll(store);
+    }
+
+    /** translate, rotate around z, scale, the model matrix of a sprite, in double */
+    private static double[] modelMatrix (SpriteLayer layer, int i, float alpha)
+    {
+        double x = layer._previousX[i] + (layer._x[i] - layer._previousX[i]) * alpha;
+        double y = layer._previousY[i] + (layer._y[i] - layer._previousY[i]) * alpha;
+        double rotation = layer._previousRotation[i] + (layer._rotation[i] - layer._previousRotation[i]) * alpha;
+        double radians = Math.toRadians(rotation);
+        double sin = Math.sin(radians);
+        double cos = Math.cos(radians);
+        double[] m = new double[16];
+        m[0] = cos * layer._scaleX[i];
+        m[1] = sin * layer._scaleX[i];
+        m[4] = -sin * layer._scaleY[i];
+        m[5] = cos * layer._scaleY[i];
+        m[10] = 1;
+        m[12] = x;
+        m[13] = y;
+        m[14] = layer._z[i];
+        m[15] = 1;
+        return m;
+    }
+
+    /** gl that does nothing at all, for measuring the batcher alone */
+    private static class NoGl extends RecordingGlBackend
+    {
+        NoGl ()
+        {
+            super(POSITION, TEXTURE_COORDINATE);
+        }
+
+        @Override
+        public void glUseProgram (int program)
+        {
+        }
+
+        @Override
+        public void glEnableVertexAttribArray (int index)
+        {
+        }
+
+        @Override
+        public void glDisableVertexAttribArray (int index)
+        {
+        }
+
+        @Override
+        public void glVertexAttribPointer (int index, int size, int type, boolean normalized, int stride, int offset)
+        {
+        }
+
+        @Override
+        public void glBindBuffer (int target, int buffer)
+        {
+        }
+
+        @Override
+        public void glBufferData (int target, int size, java.nio.Buffer data, int usage)
+        {
+        }
+
+        @Override
+        public void glActiveTexture (int texture)
+        {
+        }
+
+        @Override
+        public void glBindTexture (int target, int texture)
+        {
+        }
+
+        @Override
+        public void glUniformMatrix4fv (int location, int count, boolean transpose, float[] value, int offset)
+        {
+        }
+
+        @Override
+        public void glUniform4fv (int location, int count, float[] v, int offset)
+        {
+        }
+
+        @Override
+        public void glDrawElements (int mode, int count, int type, int offset)
+        {
+        }
+    }
+}
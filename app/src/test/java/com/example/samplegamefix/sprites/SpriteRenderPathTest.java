@@ -0,0 +1,140 @@
+package com.example.samplegamefix.sprites;
+
+import android.opengl.GLES20;
+
+import com.example.samplegamefix.gl.GlStateCache;
+import com.example.samplegamefix.gl.Gles20Backend;
+import com.example.samplegamefix.gl.RecordingGlBackend;
+import com.example.samplegamefix.gl.RenderQueue;
+import com.example.samplegamefix.helper.FastRandom;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The sprite renderers as the game sets them up, drawing through the shared state cache into a
+ * recording backend, so what a frame costs in gl calls is checked on every build.
+ */
+public class SpriteRenderPathTest
+{
+    // TextureSprite binds its texture coordinates to 0, the position gets the next free index
+    private static final int POSITION = 1;
+    private static final int TEXTURE_COORDINATE = 0;
+
+    private static final int ASTEROID_DRAWABLE = 2001;
+    private static final int CHICKEN_DRAWABLE = 2002;
+
+    private static final float[] IDENTITY = {
+            1, 0, 0, 0,
+            0, 1, 0, 0,
+            0, 0, 1, 0,
+            0, 0, 0, 1,
+    };
+
+    private RecordingGlBackend _gl;
+    private int _texture;
+
+    @Before
+    public void setUp ()
+    {
+        _gl = new RecordingGlBackend(POSITION, TEXTURE_COORDINATE);
+        GlStateCache.shared().setBackend(_gl);
+        TextureSprite.initGlState();
+
+        int[] texture = new int[1];
+        _gl.glGenTextures(1, texture, 0);
+        _texture = texture[0];
+        // both drawables in one texture, like the atlas the game packs at load time
+        TextureSprite.cacheTexture(ASTEROID_DRAWABLE, _texture);
+        TextureSprite.cacheTexture(CHICKEN_DRAWABLE, _texture);
+    }
+
+    @After
+    public void tearDown ()
+    {
+        TextureSprite.releaseGlState();
+        TextureSprite.forgetTextures();
+        GlStateCache.shared().setBackend(new Gles20Backend());
+    }
+
+    @Test
+    public void setUpIsValidAndLeavesTheBuffersToTheFirstBatch ()
+    {
+        assertEquals(0, _gl.errors.size());
+        assertEquals(1, _gl.countCalls("glLinkProgram"));
+        assertEquals(0, _gl.getBytesUploaded());
+        assertEquals(0, _gl.getLiveBuffers());
+
+        SpriteBatcher batcher = TextureSprite.getBatcher();
+        for (int frame = 0; frame < 2; frame++)
+        {
+            batcher.begin(IDENTITY);
+            batcher.end();
+        }
+        // one vertex and one index buffer, the indices of a full batch uploaded once
+        assertEquals(2, _gl.getLiveBuffers());
+        assertEquals(SpriteBatcher.DEFAULT_MAX_SPRITES * 6 * 2, _gl.getBytesUploaded());
+        assertEquals(0, _gl.errors.size());
+    }
+
+    @Test
+    public void spriteFrameStaysInBudget ()
+    {
+        FastRandom random = new FastRandom(3);
+        final SpriteLayer asteroids = layer(random, ASTEROID_DRAWABLE, 60);
+        final SpriteLayer chickens = layer(random, CHICKEN_DRAWABLE, 5);
+
+        RenderQueue queue = new RenderQueue(4);
+        int sprites = queue.registerPass(TextureSprite.getBatcher());
+        RenderQueue.Command drawLayer = new RenderQueue.Command()
+        {
+            @Override
+            public void render (float[] viewProjection, int argument)
+            {
+                TextureSprite.getBatcher().drawLayer(argument == 0 ? asteroids : chickens, 0.5f);
+            }
+        };
+
+        for (int frame = 0; frame < 2; frame++)
+        {
+            // the second frame is measured, the first one leaves the context the way frames do
+            _gl.resetCounts();
+            queue.submit(1, sprites, _texture, drawLayer, 1);
+            queue.submit(0, sprites, _texture, drawLayer, 0);
+            queue.execute(IDENTITY);
+        }
+
+        assertEquals(_gl.errors.toString(), 0, _gl.errors.size());
+        // both layers in one batch
+        assertEquals(1, _gl.getDrawCalls());
+        assertEquals(65 * 6, _gl.draws.get(0).indexCount);
+        // the batch streams its vertices, its indices went into their buffer with the first frame
+        assertEquals(65 * 4 * 5 * 4, _gl.getBytesUploaded());
+        assertEquals(0, _gl.countCalls("glBufferData " + GLES20.GL_ELEMENT_ARRAY_BUFFER));
+        // the cache lets nothing through that is already set, the one program, texture and set of
+        // arrays stay as they are, only the batch's buffers are bound and unbound again
+        assertEquals(0, _gl.getRedundantStateChanges());
+        assertEquals(4, _gl.getStateChanges());
+    }
+
+    private static SpriteLayer layer (FastRandom random, int drawable, int count)
+    {
+        SpriteLayer layer = new SpriteLayer(count);
+        EntityStore store = new EntityStore(count, drawable, 0.1f);
+        for (int i = 0; i < count; i++)
+        {
+            int e = store.spawn();
+            store._posX[e] = random.floatBetween(-1, 1);
+            store._posY[e] = random.floatBetween(-1.7f, 1.7f);
+            store._previousX[e] = store._posX[e];
+            store._previousY[e] = store._posY[e];
+            store._scaleX[e] = 0.1f;
+            store._scaleY[e] = 0.1f;
+        }
+        layer.addAll(store);
+        return layer;
+    }
+}
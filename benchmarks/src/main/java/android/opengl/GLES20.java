@@ -0,0 +1,39 @@
+package android.opengl;
+
+import java.nio.Buffer;
+
+/**
+ * JVM stand-in for the calls the text batching code makes, they do nothing so benchmarks only
+ * measure the java side. Add a method here when a benchmark reaches a new gl call.
+ */
+public class GLES20
+{
+    public static int glGetUniformLocation (int program, String name)
+    {
+        return 0;
+    }
+
+    public static void glUniformMatrix4fv (int location, int count, boolean transpose, float[] value, int offset)
+    {
+    }
+
+    public static void glEnableVertexAttribArray (int index)
+    {
+    }
+
+    public static void glDisableVertexAttribArray (int index)
+    {
+    }
+
+    public static void glVertexAttribPointer (int index, int size, int type, boolean normalized, int stride, Buffer ptr)
+    {
+    }
+
+    public static void glDrawElements (int mode, int count, int type, Buffer indices)
+    {
+    }
+
+    public static void glDrawArrays (int mode, int first, int count)
+    {
+    }
+}
@@ -0,0 +1,39 @@
+package android.opengl;
+
+/**
+ * JVM stand-in for the matrix functions the benchmarked code uses, same column major layout and
+ * results as android's
+ */
+public class Matrix
+{
+    public static void multiplyMM (float[] result, int resultOffset,
+                                   float[] lhs, int lhsOffset, float[] rhs, int rhsOffset)
+    {
+        for (int i = 0; i < 4; i++)
+        {
+            float rhs0 = rhs[rhsOffset + 4 * i];
+            float rhs1 = rhs[rhsOffset + 4 * i + 1];
+            float rhs2 = rhs[rhsOffset + 4 * i + 2];
+            float rhs3 = rhs[rhsOffset + 4 * i + 3];
+            for (int j = 0; j < 4; j++)
+            {
+                result[resultOffset + 4 * i + j] = lhs[lhsOffset + j] * rhs0
+                        + lhs[lhsOffset + 4 + j] * rhs1
+                        + lhs[lhsOffset + 8 + j] * rhs2
+                        + lhs[lhsOffset + 12 + j] * rhs3;
+            }
+        }
+    }
+
+    public static void setIdentityM (float[] sm, int smOffset)
+    {
+        for (int i = 0; i < 16; i++)
+        {
+            sm[smOffset + i] = 0;
+        }
+        for (int i = 0; i < 16; i += 5)
+        {
+            sm[smOffset + i] = 1.0f;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.samplegamefix.engine;
+
+import com.example.samplegamefix.helper.FastRandom;
+import com.example.samplegamefix.helper.FixedTiltHelper;
+import com.example.samplegamefix.sprites.AsteroidSprite;
+import com.example.samplegamefix.sprites.EntityStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One simulation step with a screen full of asteroids. The asteroids are parked above the chickens
+ * and the ship so the count stays about the same while the benchmark runs, only the ones the game
+ * keeps spawning come and go.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameEngineBenchmark
+{
+    private static final long SEED = 1;
+
+    @Param({ "10", "100", "1000", "5000" })
+    public int asteroidCount;
+
+    private GameEngine _engine;
+
+    @Setup(Level.Iteration)
+    public void setUp ()
+    {
+        float ratio = HeadlessRunner.DEFAULT_RATIO;
+        _engine = new GameEngine(GameAudio.SILENT, new FixedTiltHelper(), SEED);
+        _engine.setSimulationRatio(ratio);
+
+        FastRandom random = new FastRandom(SEED);
+        EntityStore asteroids = _engine.getAsteroids();
+        for (int n = 0; n < asteroidCount; n++)
+        {
+            int i = AsteroidSprite.spawnRandom(asteroids, ratio, random);
+            asteroids._posY[i] = random.floatBetween(-ratio / 4, ratio);
+            asteroids._velX[i] = 0;
+            asteroids._velY[i] = 0;
+        }
+    }
+
+    @Benchmark
+    public void update ()
+    {
+        _engine.update();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.samplegamefix.helper.gltext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measuring strings the way the hud and game over texts do. No font is loaded, the character
+ * widths are made up, only the loop over the string is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GLTextBenchmark
+{
+    @Param({ "128", "Score: 123. Best combo: 45", "Game Rank: S" })
+    public String text;
+
+    private GLText _glText;
+
+    @Setup
+    public void setUp ()
+    {
+        _glText = new GLText(new NullProgram(), null);
+        for (int c = 0; c < GLText.CHAR_CNT; c++)
+        {
+            _glText.charWidths[c] = 20 + c % 13;
+        }
+        _glText.setScale(0.5f);
+        _glText.setSpace(1);
+    }
+
+    @Benchmark
+    public float getLength ()
+    {
+        return _glText.getLength(text);
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.samplegamefix.helper.gltext;
+
+import com.example.samplegamefix.helper.gltext.programs.Program;
+
+/** program that never compiles anything, its handle stays 0 */
+class NullProgram extends Program
+{
+    @Override
+    public void init ()
+    {
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.samplegamefix.helper.gltext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packing one full batch of characters, first into the float array and then into the vertex
+ * buffer. The gl calls at the end of a batch are stand-ins that do nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpriteBatchBenchmark
+{
+    private SpriteBatch _batch;
+    private TextureRegion _region;
+    private final float[] _vpMatrix = new float[16];
+    private final float[] _modelMatrix = new float[16];
+
+    @Setup
+    public void setUp ()
+    {
+        _batch = new SpriteBatch(GLText.CHAR_BATCH_SIZE, new NullProgram());
+        _region = new TextureRegion(256, 256, 32, 32, 20, 24);
+        for (int i = 0; i < 16; i += 5)
+        {
+            _vpMatrix[i] = 1;
+            _modelMatrix[i] = 1;
+        }
+
+        // fill the vertex array once so setVertices has a full batch to copy
+        drawSprites();
+    }
+
+    @Benchmark
+    public float[] drawSprites ()
+    {
+        _batch.beginBatch(_vpMatrix);
+        for (int i = 0; i < GLText.CHAR_BATCH_SIZE; i++)
+        {
+            _batch.drawSprite(i * 20, 0, 20, 24, _region, _modelMatrix);
+        }
+        return _batch.vertexBuffer;
+    }
+
+    @Benchmark
+    public Vertices setVertices ()
+    {
+        _batch.vertices.setVertices(_batch.vertexBuffer, 0, _batch.bufferIndex);
+        return _batch.vertices;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.samplegamefix.sprites;
+
+import com.example.samplegamefix.helper.FastRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every asteroid against the ship, once through {@link TextureSprite#collidesWith} on sprite
+ * objects and once through {@link EntityStore#collidesWith} on the same asteroids in a store
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark
+{
+    private static final float RATIO = 16f / 9f;
+
+    @Param({ "100", "1000" })
+    public int asteroidCount;
+
+    private AsteroidSprite[] _asteroidSprites;
+    private EntityStore _asteroids;
+    private AsteroidSprite _ship;
+
+    @Setup
+    public void setUp ()
+    {
+        FastRandom random = new FastRandom(1);
+        _asteroids = new EntityStore(asteroidCount, 0, 0.1f);
+        _asteroidSprites = new AsteroidSprite[asteroidCount];
+        for (int n = 0; n < asteroidCount; n++)
+        {
+            int i = AsteroidSprite.spawnRandom(_asteroids, RATIO, random);
+            _asteroids._posY[i] = random.floatBetween(-RATIO, RATIO);
+
+            AsteroidSprite sprite = new AsteroidSprite();
+            sprite.getPosition()[0] = _asteroids._posX[i];
+            sprite.getPosition()[1] = _asteroids._posY[i];
+            sprite.getScale()[0] = _asteroids._scaleX[i];
+            sprite.getScale()[1] = _asteroids._scaleY[i];
+            _asteroidSprites[n] = sprite;
+        }
+
+        // a circle about the size of the ship near the bottom of the screen
+        _ship = new AsteroidSprite();
+        _ship.getPosition()[1] = -RATIO + 0.45f;
+        _ship.getScale()[0] = 0.15f;
+        _ship.getScale()[1] = 0.15f;
+    }
+
+    @Benchmark
+    public int textureSpriteCollidesWith ()
+    {
+        int hits = 0;
+        for (AsteroidSprite asteroid : _asteroidSprites)
+        {
+            if (asteroid.collidesWith(_ship))
+            {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int entityStoreCollidesWith ()
+    {
+        int hits = 0;
+        for (int i = 0; i < _asteroids.size(); i++)
+        {
+            if (_asteroids.collidesWith(i, _ship))
+            {
+                hits++;
+            }
+        }
+        return hits;
+    }
+}
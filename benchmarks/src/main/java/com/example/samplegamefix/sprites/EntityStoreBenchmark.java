@@ -0,0 +1,63 @@
+package com.example.samplegamefix.sprites;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityStoreBenchmark
+{
+    @Param({ "100", "1000" })
+    public int storeSize;
+
+    private EntityStore _store;
+    private EntityStore _fullStore;
+
+    @Setup
+    public void setUp ()
+    {
+        _store = new EntityStore(storeSize, 0, 0);
+        _store.setOverflowPolicy(OverflowPolicy.FAIL);
+        for (int i = 0; i < storeSize / 2; i++)
+        {
+            _store.spawn();
+        }
+
+        _fullStore = new EntityStore(storeSize, 0, 0);
+        _fullStore.setOverflowPolicy(OverflowPolicy.RECYCLE_OLDEST);
+        for (int i = 0; i < storeSize; i++)
+        {
+            _fullStore.spawn();
+        }
+    }
+
+    /** half full store, remove the oldest entity and spawn a new one at the end */
+    @Benchmark
+    public int spawnAndRemove ()
+    {
+        _store.remove(0);
+        return _store.spawn();
+    }
+
+    /** full store, every spawn recycles the oldest entity */
+    @Benchmark
+    public int spawnRecyclingOldest ()
+    {
+        return _fullStore.spawn();
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.samplegamefix.tools;
+
+import com.example.samplegamefix.gl.EtcEncoder;
+import com.example.samplegamefix.gl.KtxFile;
+import com.example.samplegamefix.gl.KtxTextureLoader;
+import com.example.samplegamefix.gl.MipChain;
+import com.example.samplegamefix.gl.TextureAtlas;
+import com.example.samplegamefix.gl.TextureAtlasBuilder;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Packs drawables into an atlas the way the game does at load time, builds the atlas's mip chain
+ * and writes it ETC2 compressed as a KTX file, with each drawable's region stored under its name.
+ *
+ * Arguments: the KTX file to write, the drawable directory, then the drawable names.
+ */
+public final class CompressSprites
+{
+    private CompressSprites ()
+    {
+    }
+
+    public static void main (String[] args) throws IOException
+    {
+        if (args.length < 3)
+        {
+            System.err.println("usage: CompressSprites <out.ktx> <drawable dir> <drawable name>...");
+            System.exit(2);
+        }
+        File out = new File(args[0]);
+        File drawables = new File(args[1]);
+        String[] names = new String[args.length - 2];
+        System.arraycopy(args, 2, names, 0, names.length);
+
+        long start = System.nanoTime();
+        TextureAtlasBuilder builder = new TextureAtlasBuilder(TextureAtlasBuilder.MIPMAPPED_PADDING,
+                TextureAtlasBuilder.DEFAULT_MAX_SIZE);
+        for (int id = 0; id < names.length; id++)
+        {
+            File file = new File(drawables, names[id] + ".png");
+            BufferedImage image = ImageIO.read(file);
+            if (image == null)
+            {
+                throw new IOException("can't read " + file);
+            }
+            int width = image.getWidth();
+            int height = image.getHeight();
+            builder.add(id, width, height, image.getRGB(0, 0, width, height, null, 0, width));
+        }
+        TextureAtlas atlas = builder.build();
+        MipChain mips = MipChain.build(atlas.getPixels(), atlas.getWidth(), atlas.getHeight());
+
+        ByteBuffer[] levels = new ByteBuffer[mips.getLevelCount()];
+        long compressed = 0;
+        for (int level = 0; level < levels.length; level++)
+        {
+            byte[] blocks = EtcEncoder.encode(mips.getPixels(level), mips.getWidth(level), mips.getHeight(level),
+                    EtcEncoder.ETC2_RGBA8);
+            levels[level] = ByteBuffer.wrap(blocks);
+            compressed += blocks.length;
+        }
+        Map<String, String> keyValues = Collections.singletonMap(KtxTextureLoader.REGIONS_KEY,
+                KtxTextureLoader.describeRegions(atlas, names));
+        // GL_RGBA
+        KtxFile ktx = new KtxFile(EtcEncoder.ETC2_RGBA8, 0x1908, atlas.getWidth(), atlas.getHeight(), levels, keyValues);
+
+        File parent = out.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs())
+        {
+            throw new IOException("can't create " + parent);
+        }
+        OutputStream stream = new FileOutputStream(out);
+        try
+        {
+            ktx.write(stream);
+        }
+        finally
+        {
+            stream.close();
+        }
+
+        long rgba = 0;
+        for (int level = 0; level < mips.getLevelCount(); level++)
+        {
+            rgba += 4L * mips.getWidth(level) * mips.getHeight(level);
+        }
+        System.out.printf("%s: %dx%d, %d levels, %d KB instead of %d KB as RGBA, %d ms%n", out,
+                atlas.getWidth(), atlas.getHeight(), levels.length, compressed / 1024, rgba / 1024,
+                (System.nanoTime() - start) / 1000000);
+    }
+}